@@ -70,6 +70,21 @@ public class Errors {
     );
   }
 
+  public static final String PRODUCE_RECEIPT_NOT_FOUND_MESSAGE =
+      "Produce receipt not found or expired.";
+  public static final int PRODUCE_RECEIPT_NOT_FOUND_ERROR_CODE = 40405;
+
+  public static RestException produceReceiptNotFoundException() {
+    return new RestNotFoundException(
+        PRODUCE_RECEIPT_NOT_FOUND_MESSAGE,
+        PRODUCE_RECEIPT_NOT_FOUND_ERROR_CODE
+    );
+  }
+
+  public static final String PRODUCE_BUDGET_EXCEEDED_MESSAGE =
+      "Too many bytes are in flight to Kafka, retry the request later: ";
+  public static final int PRODUCE_BUDGET_EXCEEDED_ERROR_CODE = 42901;
+
   public static final String CONSUMER_FORMAT_MISMATCH_MESSAGE =
       "The requested embedded data format does not match the deserializer for this consumer "
       + "instance";
@@ -191,6 +206,31 @@ public class Errors {
     );
   }
 
+  public static final String UNKNOWN_PRODUCER_PROFILE_MESSAGE = "Unknown producer profile: ";
+  public static final int UNKNOWN_PRODUCER_PROFILE_ERROR_CODE = 42206;
+
+  public static RestConstraintViolationException unknownProducerProfileException(
+      String profile
+  ) {
+    return new RestConstraintViolationException(
+        UNKNOWN_PRODUCER_PROFILE_MESSAGE + profile,
+        UNKNOWN_PRODUCER_PROFILE_ERROR_CODE
+    );
+  }
+
+  public static final String UNKNOWN_SCHEMA_FINGERPRINT_MESSAGE =
+      "Unknown schema fingerprint, send the schema text instead: ";
+  public static final int UNKNOWN_SCHEMA_FINGERPRINT_ERROR_CODE = 42207;
+
+  public static RestConstraintViolationException unknownSchemaFingerprintException(
+      String fingerprint
+  ) {
+    return new RestConstraintViolationException(
+        UNKNOWN_SCHEMA_FINGERPRINT_MESSAGE + fingerprint,
+        UNKNOWN_SCHEMA_FINGERPRINT_ERROR_CODE
+    );
+  }
+
   public static final String ZOOKEEPER_ERROR_MESSAGE = "Zookeeper error: ";
   public static final int ZOOKEEPER_ERROR_ERROR_CODE = 50001;
 
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timing wheel expiring consumer instances. Each entry sits in the bucket of the tick its
+ * expiration falls in, and only the buckets of elapsed ticks are looked at, so the cost of a tick
+ * depends on the number of entries due in it rather than on the number of entries tracked.
+ *
+ * <p>Expirations are refreshed lazily: extending an entry's expiration does not touch the wheel.
+ * When the entry's bucket comes up, its current expiration is read again and the entry moves to
+ * the bucket of that tick instead of expiring. Entries whose expiration is more than a revolution
+ * away are simply looked at once per revolution.</p>
+ *
+ * <p>Entries that did expire are cleaned up on a bounded pool of close threads, so a slow close
+ * neither delays the wheel nor takes a thread from consumer requests.</p>
+ */
+public final class ExpirationWheel<T> {
+
+  private static final Logger log = LoggerFactory.getLogger(ExpirationWheel.class);
+
+  public static final long DEFAULT_TICK_MS = 1000;
+  public static final int DEFAULT_NUM_BUCKETS = 512;
+
+  private final Time time;
+  private final long tickMs;
+  private final Handler<T> handler;
+  private final ExecutorService closeExecutor;
+  private final Thread thread;
+  private final AtomicBoolean isRunning = new AtomicBoolean(true);
+  private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+
+  // Scheduled entries are handed to the wheel thread through this queue, the buckets and the
+  // current tick are only accessed by the wheel thread.
+  private final ConcurrentLinkedQueue<T> scheduled = new ConcurrentLinkedQueue<>();
+  private final ArrayDeque<T>[] buckets;
+  private long currentTick;
+
+  /**
+   * Handles the entries of an {@link ExpirationWheel}.
+   */
+  public interface Handler<T> {
+
+    /**
+     * Returns the time in milliseconds {@code entry} currently expires at.
+     */
+    long expiration(T entry);
+
+    /**
+     * Called on the wheel thread once the expiration of {@code entry} has passed. Returns the task
+     * cleaning the entry up, which runs on a close thread, or {@code null} if the entry has been
+     * refreshed or removed meanwhile. A refreshed entry stays on the wheel, others are dropped.
+     */
+    @Nullable
+    Runnable expire(T entry, long nowMs);
+
+    /**
+     * Returns whether {@code entry} has been removed, so the wheel drops it as soon as it comes
+     * across it instead of keeping it until its expiration. Removed entries are never placed
+     * again.
+     */
+    default boolean removed(T entry) {
+      return false;
+    }
+  }
+
+  public ExpirationWheel(String name, Time time, int numCloseThreads, Handler<T> handler) {
+    this(
+        name,
+        time,
+        DEFAULT_TICK_MS,
+        DEFAULT_NUM_BUCKETS,
+        handler,
+        new ThreadPoolExecutor(
+            numCloseThreads,
+            numCloseThreads,
+            /* keepAliveTime= */ 0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new CloseThreadFactory(name)));
+  }
+
+  @SuppressWarnings("unchecked")
+  ExpirationWheel(
+      String name,
+      Time time,
+      long tickMs,
+      int numBuckets,
+      Handler<T> handler,
+      ExecutorService closeExecutor) {
+    this.time = time;
+    this.tickMs = tickMs;
+    this.handler = handler;
+    this.closeExecutor = closeExecutor;
+    this.buckets = new ArrayDeque[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new ArrayDeque<>();
+    }
+    this.currentTick = time.milliseconds() / tickMs;
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Starts tracking {@code entry}, until it expires or is found removed at its expiration.
+   */
+  public void schedule(T entry) {
+    scheduled.add(entry);
+  }
+
+  /**
+   * Expires the entries of all ticks elapsed since the last call.
+   */
+  void advance() {
+    long nowMs = time.milliseconds();
+    long nowTick = nowMs / tickMs;
+
+    T entry;
+    while ((entry = scheduled.poll()) != null) {
+      place(entry);
+    }
+
+    List<T> refreshed = new ArrayList<>();
+    long ticks = Math.min(nowTick - currentTick, buckets.length);
+    for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+      ArrayDeque<T> bucket = buckets[(int) (tick % buckets.length)];
+      while ((entry = bucket.poll()) != null) {
+        if (handler.removed(entry)) {
+          continue;
+        }
+        if (handler.expiration(entry) > nowMs) {
+          refreshed.add(entry);
+          continue;
+        }
+        Runnable close = handler.expire(entry, nowMs);
+        if (close != null) {
+          closeExecutor.execute(() -> {
+            try {
+              close.run();
+            } catch (RuntimeException e) {
+              log.error("Failed to close expired consumer", e);
+            }
+          });
+        } else if (handler.expiration(entry) > nowMs) {
+          refreshed.add(entry);
+        }
+      }
+    }
+    currentTick = Math.max(currentTick, nowTick);
+
+    for (T next : refreshed) {
+      place(next);
+    }
+  }
+
+  private void place(T entry) {
+    if (handler.removed(entry)) {
+      return;
+    }
+    long expiration = handler.expiration(entry);
+    // Rounds up, so an entry is never looked at before it expires.
+    long tick = Math.max(Math.floorDiv(expiration + tickMs - 1, tickMs), currentTick + 1);
+    buckets[(int) (tick % buckets.length)].add(entry);
+  }
+
+  private void run() {
+    try {
+      while (isRunning.get()) {
+        try {
+          advance();
+        } catch (RuntimeException e) {
+          log.error("Failed to expire consumers", e);
+        }
+        Thread.sleep(tickMs);
+      }
+    } catch (InterruptedException e) {
+      // Interrupted by other thread, do nothing to allow this thread to exit
+    } finally {
+      shutdownLatch.countDown();
+    }
+  }
+
+  /**
+   * Stops expiring entries. Closes already handed to the close threads still run.
+   */
+  public void shutdown() {
+    try {
+      isRunning.set(false);
+      thread.interrupt();
+      if (thread.isAlive()) {
+        shutdownLatch.await();
+      }
+      closeExecutor.shutdown();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted when shutting down expiration thread.");
+    }
+  }
+
+  private static final class CloseThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private CloseThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, name + " Close-" + nextId.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -78,6 +78,17 @@ public class KafkaRestConfig extends RestConfig {
       + " The value of -1 denotes unbounded thread creation";
   public static final String CONSUMER_MAX_THREADS_DEFAULT = "50";
 
+  public static final String CONSUMER_EXECUTOR_MODE_CONFIG = "consumer.executor.mode";
+  public static final String CONSUMER_EXECUTOR_MODE_PLATFORM = "platform";
+  public static final String CONSUMER_EXECUTOR_MODE_VIRTUAL = "virtual";
+  private static final String CONSUMER_EXECUTOR_MODE_DOC =
+      "How to run consumer requests. With '" + CONSUMER_EXECUTOR_MODE_PLATFORM + "', they run on a"
+      + " pool of at most " + CONSUMER_MAX_THREADS_CONFIG + " threads, and reads back off and"
+      + " are retried when the pool is busy. With '" + CONSUMER_EXECUTOR_MODE_VIRTUAL + "', each"
+      + " request runs on its own virtual thread, and reads wait in poll until they are done. This"
+      + " requires Java 21 or later, on older versions the thread pool is used instead.";
+  public static final String CONSUMER_EXECUTOR_MODE_DEFAULT = CONSUMER_EXECUTOR_MODE_PLATFORM;
+
   public static final String ZOOKEEPER_CONNECT_CONFIG = "zookeeper.connect";
   private static final String ZOOKEEPER_CONNECT_DOC =
       "NOTE: Only required when using v1 Consumer API's. Specifies the ZooKeeper connection "
@@ -131,9 +142,151 @@ public class KafkaRestConfig extends RestConfig {
 
   public static final String PRODUCER_THREADS_CONFIG = "producer.threads";
   private static final String PRODUCER_THREADS_DOC =
-      "Number of threads to run produce requests on.";
+      "Number of threads used to convert the records of large Avro, JSON Schema and Protobuf "
+      + "produce requests in parallel. Batches are split into chunks that are converted on "
+      + "this pool, keeping record order, and the request still fails as a whole if any record "
+      + "does not convert. Set to 1 to convert every request on its request thread.";
   public static final String PRODUCER_THREADS_DEFAULT = "5";
 
+  public static final String PRODUCER_SHARDS_CONFIG = "producer.shards";
+  private static final String PRODUCER_SHARDS_DOC =
+      "Number of Kafka producers backing each embedded format. Records are routed to a producer "
+      + "by topic and partition, so per-partition ordering is preserved while batching and "
+      + "compression are spread over several sender threads. Keyed records are routed by the "
+      + "partition the default partitioner picks for their key, and keyless records are spread "
+      + "over all producers. With a custom partitioner.class, records without an explicit "
+      + "partition are routed by topic only.";
+  public static final String PRODUCER_SHARDS_DEFAULT = "1";
+
+  public static final String PRODUCER_SCHEMA_CACHE_SIZE_CONFIG = "producer.schema.cache.size";
+  private static final String PRODUCER_SCHEMA_CACHE_SIZE_DOC =
+      "Maximum number of parsed schemas kept per schema format, keyed by subject and the schema "
+      + "text sent in produce requests. Requests resending a cached schema skip parsing and "
+      + "registering it. Also bounds the number of compiled Avro and Protobuf conversion "
+      + "plans, which are kept per schema ID, of schemas looked up by ID, and of schema texts "
+      + "remembered as invalid.";
+  public static final String PRODUCER_SCHEMA_CACHE_SIZE_DEFAULT = "1000";
+
+  public static final String PRODUCER_SCHEMA_RESOLUTION_THREADS_CONFIG =
+      "producer.schema.resolution.threads";
+  private static final String PRODUCER_SCHEMA_RESOLUTION_THREADS_DOC =
+      "Number of threads that look up and register the schemas of produce requests in Schema "
+      + "Registry, so a slow registry does not hold up request threads. Requests whose schemas "
+      + "are cached never wait for these threads, and concurrent requests for the same schema "
+      + "share a single registry call. Set to 0 to resolve schemas on the request thread.";
+  public static final String PRODUCER_SCHEMA_RESOLUTION_THREADS_DEFAULT = "4";
+
+  public static final String PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_CONFIG =
+      "producer.schema.resolution.queue.size";
+  private static final String PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_DOC =
+      "Maximum number of schema lookups waiting for a resolution thread. Produce requests that "
+      + "need a lookup while the queue is full fail right away.";
+  public static final String PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_DEFAULT = "1000";
+
+  public static final String PRODUCER_SCHEMA_SEND_THREADS_CONFIG = "producer.schema.send.threads";
+  private static final String PRODUCER_SCHEMA_SEND_THREADS_DOC =
+      "Number of threads that convert and send the records of produce requests whose schemas "
+      + "had to be looked up, once the lookup completes. These are kept apart from the "
+      + "resolution threads, so producers blocking on a full buffer do not hold up schema "
+      + "lookups. Unused if " + PRODUCER_SCHEMA_RESOLUTION_THREADS_CONFIG + " is 0.";
+  public static final String PRODUCER_SCHEMA_SEND_THREADS_DEFAULT = "4";
+
+  public static final String PRODUCER_SCHEMA_LATEST_REFRESH_MS_CONFIG =
+      "producer.schema.latest.refresh.ms";
+  private static final String PRODUCER_SCHEMA_LATEST_REFRESH_MS_DOC =
+      "How long the latest schema ID of a subject, looked up for produce requests referencing "
+      + "their schema by subject instead of text or ID, is used before it is looked up again. "
+      + "Requests keep using the known ID while it is refreshed.";
+  public static final String PRODUCER_SCHEMA_LATEST_REFRESH_MS_DEFAULT = "30000";
+
+  public static final String PRODUCER_WARMUP_FORMATS_CONFIG = "producer.warmup.formats";
+  private static final String PRODUCER_WARMUP_FORMATS_DOC =
+      "Embedded formats (binary, json, avro, jsonschema or protobuf) whose producers are created "
+      + "when the server starts. Producers of other formats are only created by the first "
+      + "produce request using them.";
+  public static final String PRODUCER_WARMUP_FORMATS_DEFAULT = "";
+
+  public static final String PRODUCER_WARMUP_TOPICS_CONFIG = "producer.warmup.topics";
+  private static final String PRODUCER_WARMUP_TOPICS_DOC =
+      "Topics whose metadata is fetched by the producers of " + PRODUCER_WARMUP_FORMATS_CONFIG
+      + " when the server starts, so the first produce requests to them do not wait for it.";
+  public static final String PRODUCER_WARMUP_TOPICS_DEFAULT = "";
+
+  public static final String PRODUCE_PROFILES_CONFIG = "produce.profiles";
+  public static final String PRODUCE_PROFILE_PREFIX = "produce.profile.";
+  private static final String PRODUCE_PROFILES_DOC =
+      "Names of producer profiles that v2 produce requests can select with a "
+      + "'Prefer: producer-profile=<name>' header, e.g. to send latency sensitive and bulk traffic "
+      + "through differently tuned producers. Each profile gets producers of its own, configured "
+      + "like the default ones plus the producer configs prefixed with "
+      + "'" + PRODUCE_PROFILE_PREFIX + "<name>.', e.g. '" + PRODUCE_PROFILE_PREFIX
+      + "bulk.linger.ms=50'. Requests without the preference use the default producers.";
+  public static final String PRODUCE_PROFILES_DEFAULT = "";
+
+  public static final String PRODUCE_RECEIPTS_MAX_CONFIG = "produce.receipts.max";
+  private static final String PRODUCE_RECEIPTS_MAX_DOC =
+      "Maximum number of receipts of asynchronously accepted produce requests (sent with "
+      + "'Prefer: respond-async') kept in memory. When full, the oldest receipt is dropped.";
+  public static final String PRODUCE_RECEIPTS_MAX_DEFAULT = "10000";
+
+  public static final String PRODUCE_RECEIPTS_TTL_MS_CONFIG = "produce.receipts.ttl.ms";
+  private static final String PRODUCE_RECEIPTS_TTL_MS_DOC =
+      "Time after which the receipt of an asynchronously accepted produce request expires, "
+      + "counted from when the request was accepted.";
+  public static final String PRODUCE_RECEIPTS_TTL_MS_DEFAULT = "300000";
+
+  public static final String PRODUCE_BUDGET_BYTES_CONFIG = "produce.budget.bytes";
+  private static final String PRODUCE_BUDGET_BYTES_DOC =
+      "Maximum number of bytes of record keys and values per embedded format that may be in "
+      + "flight to Kafka, i.e. accepted but not yet acked or failed. Produce requests that would "
+      + "exceed it are rejected with a 429 and a Retry-After header before any record is sent, "
+      + "instead of blocking a server thread until the producer's buffer.memory frees up. A "
+      + "request is always admitted when nothing is in flight. Set to 0 to disable the limit.";
+  public static final String PRODUCE_BUDGET_BYTES_DEFAULT = "0";
+
+  public static final String PRODUCE_BUDGET_TOPIC_BYTES_CONFIG = "produce.budget.topic.bytes";
+  private static final String PRODUCE_BUDGET_TOPIC_BYTES_DOC =
+      "Like " + PRODUCE_BUDGET_BYTES_CONFIG + ", but per topic across all formats, so a single "
+      + "slow topic cannot use up the whole budget. Set to 0 to disable the limit.";
+  public static final String PRODUCE_BUDGET_TOPIC_BYTES_DEFAULT = "0";
+
+  public static final String PRODUCE_BUDGET_RETRY_AFTER_SECONDS_CONFIG =
+      "produce.budget.retry.after.seconds";
+  private static final String PRODUCE_BUDGET_RETRY_AFTER_SECONDS_DOC =
+      "Value of the Retry-After header of produce requests rejected by the produce budget.";
+  public static final String PRODUCE_BUDGET_RETRY_AFTER_SECONDS_DEFAULT = "1";
+
+  public static final String PRODUCE_PAYLOAD_POOL_BYTES_CONFIG = "produce.payload.pool.bytes";
+  private static final String PRODUCE_PAYLOAD_POOL_BYTES_DOC =
+      "Maximum number of bytes of decoded binary record keys and values each request thread keeps "
+      + "for reuse by later requests, once the producer has copied them into its batches. Buffers "
+      + "are reused for payloads of the same length, so this helps most when payload sizes "
+      + "repeat. Must stay 0 when producer interceptors keep references to the records they see. "
+      + "Set to 0 to disable pooling.";
+  public static final String PRODUCE_PAYLOAD_POOL_BYTES_DEFAULT = "0";
+
+  public static final String PRODUCE_COMPLETION_THREADS_CONFIG = "produce.completion.threads";
+  private static final String PRODUCE_COMPLETION_THREADS_DOC =
+      "Number of threads that build produce responses once all records of a request are acked, "
+      + "so the producers' network threads only hand the request off. Set to 0 to build "
+      + "responses on the network threads.";
+  public static final String PRODUCE_COMPLETION_THREADS_DEFAULT = "4";
+
+  public static final String PRODUCE_COMPLETION_QUEUE_SIZE_CONFIG =
+      "produce.completion.queue.size";
+  private static final String PRODUCE_COMPLETION_QUEUE_SIZE_DOC =
+      "Maximum number of completed produce requests waiting for a completion thread. When full, "
+      + "the network thread builds the response itself.";
+  public static final String PRODUCE_COMPLETION_QUEUE_SIZE_DEFAULT = "10000";
+
+  public static final String METADATA_CACHE_TTL_MS_CONFIG = "metadata.cache.ttl.ms";
+  private static final String METADATA_CACHE_TTL_MS_DOC =
+      "Time for which the topic names and topic descriptions (partitions, leaders and replicas) "
+      + "fetched from the cluster are reused for topic and partition lookups. Lookups of a topic "
+      + "or partition missing from the cache always refetch it, so this only bounds how long a "
+      + "deleted topic or a leader change can go unnoticed. Set to 0 to disable the cache.";
+  public static final String METADATA_CACHE_TTL_MS_DEFAULT = "5000";
+
   public static final String CONSUMER_ITERATOR_TIMEOUT_MS_CONFIG = "consumer.iterator.timeout.ms";
   private static final String CONSUMER_ITERATOR_TIMEOUT_MS_DOC =
       "Timeout for blocking consumer iterator operations. "
@@ -151,6 +304,15 @@ public class KafkaRestConfig extends RestConfig {
       + "avoid busy waiting.";
   public static final String CONSUMER_ITERATOR_BACKOFF_MS_DEFAULT = "50";
 
+  public static final String CONSUMER_POLL_BLOCK_MS_CONFIG = "consumer.poll.block.ms";
+  private static final String CONSUMER_POLL_BLOCK_MS_DOC =
+      "Maximum time a read request waits in a single poll of its consumer for records to arrive."
+      + " Records that arrive while waiting are picked up right away, instead of after the next "
+      + CONSUMER_ITERATOR_BACKOFF_MS_CONFIG + ". A waiting read holds one of the consumer"
+      + " threads, and other requests to the same consumer instance wait for the poll to return."
+      + " If 0, reads do not wait in poll and back off instead.";
+  public static final int CONSUMER_POLL_BLOCK_MS_DEFAULT = 0;
+
   public static final String CONSUMER_REQUEST_TIMEOUT_MS_CONFIG = "consumer.request.timeout.ms";
   private static final String CONSUMER_REQUEST_TIMEOUT_MS_DOC =
       "The maximum total time to wait for messages for a "
@@ -173,6 +335,13 @@ public class KafkaRestConfig extends RestConfig {
       + "is automatically destroyed.";
   public static final String CONSUMER_INSTANCE_TIMEOUT_MS_DEFAULT = "300000";
 
+  public static final String CONSUMER_CLOSE_THREADS_CONFIG = "consumer.close.threads";
+  private static final String CONSUMER_CLOSE_THREADS_DOC =
+      "The number of threads closing expired consumer instances. Closing a consumer can block"
+      + " while it commits offsets and leaves its group, so this is kept apart from the threads"
+      + " running consumer requests.";
+  public static final int CONSUMER_CLOSE_THREADS_DEFAULT = 2;
+
   public static final String SIMPLE_CONSUMER_MAX_POOL_SIZE_CONFIG = "simpleconsumer.pool.size.max";
   private static final String SIMPLE_CONSUMER_MAX_POOL_SIZE_DOC =
       "Maximum number of SimpleConsumers that can be instantiated per broker."
@@ -371,6 +540,14 @@ public class KafkaRestConfig extends RestConfig {
         Importance.MEDIUM,
         CONSUMER_MAX_THREADS_DOC
     )
+    .define(
+        CONSUMER_EXECUTOR_MODE_CONFIG,
+        Type.STRING,
+        CONSUMER_EXECUTOR_MODE_DEFAULT,
+        ConfigDef.ValidString.in(CONSUMER_EXECUTOR_MODE_PLATFORM, CONSUMER_EXECUTOR_MODE_VIRTUAL),
+        Importance.LOW,
+        CONSUMER_EXECUTOR_MODE_DOC
+    )
     .define(
         ZOOKEEPER_CONNECT_CONFIG,
         Type.STRING,
@@ -407,6 +584,148 @@ public class KafkaRestConfig extends RestConfig {
         Importance.LOW,
         PRODUCER_THREADS_DOC
     )
+    .define(
+        PRODUCER_SHARDS_CONFIG,
+        Type.INT,
+        PRODUCER_SHARDS_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCER_SHARDS_DOC
+    )
+    .define(
+        PRODUCER_SCHEMA_CACHE_SIZE_CONFIG,
+        Type.INT,
+        PRODUCER_SCHEMA_CACHE_SIZE_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCER_SCHEMA_CACHE_SIZE_DOC
+    )
+    .define(
+        PRODUCER_SCHEMA_RESOLUTION_THREADS_CONFIG,
+        Type.INT,
+        PRODUCER_SCHEMA_RESOLUTION_THREADS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCER_SCHEMA_RESOLUTION_THREADS_DOC
+    )
+    .define(
+        PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_CONFIG,
+        Type.INT,
+        PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_DOC
+    )
+    .define(
+        PRODUCER_SCHEMA_SEND_THREADS_CONFIG,
+        Type.INT,
+        PRODUCER_SCHEMA_SEND_THREADS_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCER_SCHEMA_SEND_THREADS_DOC
+    )
+    .define(
+        PRODUCER_SCHEMA_LATEST_REFRESH_MS_CONFIG,
+        Type.LONG,
+        PRODUCER_SCHEMA_LATEST_REFRESH_MS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCER_SCHEMA_LATEST_REFRESH_MS_DOC
+    )
+    .define(
+        PRODUCER_WARMUP_FORMATS_CONFIG,
+        Type.LIST,
+        PRODUCER_WARMUP_FORMATS_DEFAULT,
+        ConfigDef.ValidList.in("binary", "json", "avro", "jsonschema", "protobuf"),
+        Importance.LOW,
+        PRODUCER_WARMUP_FORMATS_DOC
+    )
+    .define(
+        PRODUCER_WARMUP_TOPICS_CONFIG,
+        Type.LIST,
+        PRODUCER_WARMUP_TOPICS_DEFAULT,
+        Importance.LOW,
+        PRODUCER_WARMUP_TOPICS_DOC
+    )
+    .define(
+        PRODUCE_PROFILES_CONFIG,
+        Type.LIST,
+        PRODUCE_PROFILES_DEFAULT,
+        Importance.LOW,
+        PRODUCE_PROFILES_DOC
+    )
+    .define(
+        PRODUCE_RECEIPTS_MAX_CONFIG,
+        Type.INT,
+        PRODUCE_RECEIPTS_MAX_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCE_RECEIPTS_MAX_DOC
+    )
+    .define(
+        PRODUCE_RECEIPTS_TTL_MS_CONFIG,
+        Type.INT,
+        PRODUCE_RECEIPTS_TTL_MS_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCE_RECEIPTS_TTL_MS_DOC
+    )
+    .define(
+        PRODUCE_BUDGET_BYTES_CONFIG,
+        Type.LONG,
+        PRODUCE_BUDGET_BYTES_DEFAULT,
+        Range.atLeast(0),
+        Importance.MEDIUM,
+        PRODUCE_BUDGET_BYTES_DOC
+    )
+    .define(
+        PRODUCE_BUDGET_TOPIC_BYTES_CONFIG,
+        Type.LONG,
+        PRODUCE_BUDGET_TOPIC_BYTES_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCE_BUDGET_TOPIC_BYTES_DOC
+    )
+    .define(
+        PRODUCE_BUDGET_RETRY_AFTER_SECONDS_CONFIG,
+        Type.INT,
+        PRODUCE_BUDGET_RETRY_AFTER_SECONDS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCE_BUDGET_RETRY_AFTER_SECONDS_DOC
+    )
+    .define(
+        PRODUCE_PAYLOAD_POOL_BYTES_CONFIG,
+        Type.LONG,
+        PRODUCE_PAYLOAD_POOL_BYTES_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCE_PAYLOAD_POOL_BYTES_DOC
+    )
+    .define(
+        PRODUCE_COMPLETION_THREADS_CONFIG,
+        Type.INT,
+        PRODUCE_COMPLETION_THREADS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        PRODUCE_COMPLETION_THREADS_DOC
+    )
+    .define(
+        PRODUCE_COMPLETION_QUEUE_SIZE_CONFIG,
+        Type.INT,
+        PRODUCE_COMPLETION_QUEUE_SIZE_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        PRODUCE_COMPLETION_QUEUE_SIZE_DOC
+    )
+    .define(
+        METADATA_CACHE_TTL_MS_CONFIG,
+        Type.INT,
+        METADATA_CACHE_TTL_MS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        METADATA_CACHE_TTL_MS_DOC
+    )
     .define(
         CONSUMER_ITERATOR_TIMEOUT_MS_CONFIG,
         Type.INT,
@@ -421,6 +740,14 @@ public class KafkaRestConfig extends RestConfig {
         Importance.LOW,
         CONSUMER_ITERATOR_BACKOFF_MS_DOC
     )
+    .define(
+        CONSUMER_POLL_BLOCK_MS_CONFIG,
+        Type.INT,
+        CONSUMER_POLL_BLOCK_MS_DEFAULT,
+        Range.atLeast(0),
+        Importance.LOW,
+        CONSUMER_POLL_BLOCK_MS_DOC
+    )
     .define(
         CONSUMER_REQUEST_TIMEOUT_MS_CONFIG,
         Type.INT,
@@ -442,6 +769,14 @@ public class KafkaRestConfig extends RestConfig {
         Importance.LOW,
         CONSUMER_INSTANCE_TIMEOUT_MS_DOC
     )
+    .define(
+        CONSUMER_CLOSE_THREADS_CONFIG,
+        Type.INT,
+        CONSUMER_CLOSE_THREADS_DEFAULT,
+        Range.atLeast(1),
+        Importance.LOW,
+        CONSUMER_CLOSE_THREADS_DOC
+    )
     .define(
         SIMPLE_CONSUMER_MAX_POOL_SIZE_CONFIG,
         Type.INT,
@@ -721,6 +1056,14 @@ public class KafkaRestConfig extends RestConfig {
     return producerProps;
   }
 
+  /**
+   * Returns the producer configs of {@code profile}, one of {@link #PRODUCE_PROFILES_CONFIG}, with
+   * the {@link #PRODUCE_PROFILE_PREFIX} and profile name stripped.
+   */
+  public Properties getProducerProfileProperties(String profile) {
+    return addPropertiesWithPrefix(PRODUCE_PROFILE_PREFIX + profile + ".", new Properties());
+  }
+
   public Properties getConsumerProperties() {
     Properties consumerProps = new Properties();
     //copy cover the properties with prefixes "client." and  "consumer."
@@ -32,6 +32,9 @@ public class Versions {
   // "LOW" weightings are used to permit using these for resources like consumer where it might
   // be convenient to always use the same type, but where their use should really be discouraged
   public static final String KAFKA_V2_JSON_BINARY_WEIGHTED_LOW = KAFKA_V2_JSON_BINARY + "; qs=0.1";
+  // Raw (non-JSON) binary produce requests, as a stream of length-prefixed record frames. See
+  // FramedBinaryProduceRequestReader for the frame layout.
+  public static final String KAFKA_V2_BINARY_FRAMED = "application/vnd.kafka.binary-framed.v2";
   public static final String KAFKA_V2_JSON_AVRO = "application/vnd.kafka.avro.v2+json";
   public static final String KAFKA_V2_JSON_AVRO_WEIGHTED = KAFKA_V2_JSON_AVRO;
   public static final String KAFKA_V2_JSON_AVRO_WEIGHTED_LOW = KAFKA_V2_JSON_AVRO + "; qs=0.1";
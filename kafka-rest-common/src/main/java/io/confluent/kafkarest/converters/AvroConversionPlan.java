@@ -0,0 +1,332 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.converters;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+
+/**
+ * A JSON to Avro conversion compiled once for a {@link Schema}. The schema is walked a single
+ * time into a tree of converters with field positions, union branch lookups and enum symbols
+ * resolved up front, which are then applied directly to the {@link JsonNode} of each record.
+ *
+ * <p>The plan produces the same objects as Avro's JSON decoder behind
+ * {@link io.confluent.kafka.schemaregistry.avro.AvroSchemaUtils#toObject}, but only covers the
+ * well-formed common case. Whenever a record needs anything else, e.g. a missing field that may
+ * have a default, a number that Avro would truncate or an unknown enum symbol, {@link #convert}
+ * throws {@link ConversionFallback} and the caller converts that record through the generic path
+ * instead, so the generic path keeps deciding on both the result and the error message.</p>
+ */
+final class AvroConversionPlan {
+
+  // Null if the schema uses features the plan does not replicate, all records then take the
+  // generic path.
+  @Nullable
+  private final Converter root;
+
+  private AvroConversionPlan(@Nullable Converter root) {
+    this.root = root;
+  }
+
+  static AvroConversionPlan compile(Schema schema) {
+    Converter root;
+    try {
+      root = compile(schema, new IdentityHashMap<>());
+    } catch (ConversionFallback e) {
+      root = null;
+    }
+    return new AvroConversionPlan(root);
+  }
+
+  /**
+   * Converts {@code value}, throwing {@link ConversionFallback} if it must take the generic path.
+   */
+  Object convert(JsonNode value) {
+    if (root == null || value == null) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return root.convert(value);
+  }
+
+  private static Converter compile(Schema schema, Map<Schema, Converter> compiled) {
+    // String class hints and logical types change what GenericDatumReader returns, leave those
+    // schemas to the generic path.
+    if (schema.getProp(GenericData.STRING_PROP) != null || schema.getLogicalType() != null) {
+      throw ConversionFallback.INSTANCE;
+    }
+    Converter existing = compiled.get(schema);
+    if (existing != null) {
+      return existing;
+    }
+    switch (schema.getType()) {
+      case NULL:
+        return AvroConversionPlan::convertNull;
+      case BOOLEAN:
+        return AvroConversionPlan::convertBoolean;
+      case INT:
+        return AvroConversionPlan::convertInt;
+      case LONG:
+        return AvroConversionPlan::convertLong;
+      case FLOAT:
+        return AvroConversionPlan::convertFloat;
+      case DOUBLE:
+        return AvroConversionPlan::convertDouble;
+      case STRING:
+        return AvroConversionPlan::convertString;
+      case BYTES:
+        return value -> ByteBuffer.wrap(latin1Bytes(value));
+      case FIXED:
+        return value -> convertFixed(schema, value);
+      case ENUM:
+        return new EnumConverter(schema);
+      case ARRAY:
+        return new ArrayConverter(schema, compile(schema.getElementType(), compiled));
+      case MAP:
+        return new MapConverter(compile(schema.getValueType(), compiled));
+      case RECORD:
+        // Registered before its fields are compiled, so recursive records resolve to it.
+        RecordConverter record = new RecordConverter(schema);
+        compiled.put(schema, record);
+        record.compileFields(compiled);
+        return record;
+      case UNION:
+        return new UnionConverter(schema, compiled);
+      default:
+        throw ConversionFallback.INSTANCE;
+    }
+  }
+
+  private static Object convertNull(JsonNode value) {
+    if (!value.isNull()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return null;
+  }
+
+  private static Object convertBoolean(JsonNode value) {
+    if (!value.isBoolean()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.booleanValue();
+  }
+
+  private static Object convertInt(JsonNode value) {
+    if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.intValue();
+  }
+
+  private static Object convertLong(JsonNode value) {
+    if (!value.isIntegralNumber() || !value.canConvertToLong()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.longValue();
+  }
+
+  private static Object convertFloat(JsonNode value) {
+    if (!value.isNumber()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    // Narrow through double, like Jackson's parser does for the generic path.
+    return (float) value.doubleValue();
+  }
+
+  private static Object convertDouble(JsonNode value) {
+    if (!value.isNumber()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.doubleValue();
+  }
+
+  private static Object convertString(JsonNode value) {
+    if (!value.isTextual()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return new Utf8(value.textValue());
+  }
+
+  private static Object convertFixed(Schema schema, JsonNode value) {
+    byte[] bytes = latin1Bytes(value);
+    if (bytes.length != schema.getFixedSize()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return new GenericData.Fixed(schema, bytes);
+  }
+
+  private static byte[] latin1Bytes(JsonNode value) {
+    if (!value.isTextual()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    // Avro's JSON encoding maps each byte to the code point of the same value.
+    return value.textValue().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private interface Converter {
+
+    Object convert(JsonNode value);
+  }
+
+  private static final class EnumConverter implements Converter {
+
+    private final Map<String, GenericData.EnumSymbol> symbols = new HashMap<>();
+
+    private EnumConverter(Schema schema) {
+      for (String symbol : schema.getEnumSymbols()) {
+        symbols.put(symbol, new GenericData.EnumSymbol(schema, symbol));
+      }
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      GenericData.EnumSymbol symbol = value.isTextual() ? symbols.get(value.textValue()) : null;
+      if (symbol == null) {
+        throw ConversionFallback.INSTANCE;
+      }
+      return symbol;
+    }
+  }
+
+  private static final class ArrayConverter implements Converter {
+
+    private final Schema schema;
+    private final Converter elements;
+
+    private ArrayConverter(Schema schema, Converter elements) {
+      this.schema = schema;
+      this.elements = elements;
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      if (!value.isArray()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      GenericData.Array<Object> array = new GenericData.Array<>(value.size(), schema);
+      for (JsonNode element : value) {
+        array.add(elements.convert(element));
+      }
+      return array;
+    }
+  }
+
+  private static final class MapConverter implements Converter {
+
+    private final Converter values;
+
+    private MapConverter(Converter values) {
+      this.values = values;
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      if (!value.isObject()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      Map<Utf8, Object> map = new HashMap<>(value.size());
+      Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+      while (entries.hasNext()) {
+        Map.Entry<String, JsonNode> entry = entries.next();
+        map.put(new Utf8(entry.getKey()), values.convert(entry.getValue()));
+      }
+      return map;
+    }
+  }
+
+  private static final class RecordConverter implements Converter {
+
+    private final Schema schema;
+    private final String[] names;
+    private final Converter[] fields;
+
+    private RecordConverter(Schema schema) {
+      this.schema = schema;
+      this.names = new String[schema.getFields().size()];
+      this.fields = new Converter[names.length];
+    }
+
+    private void compileFields(Map<Schema, Converter> compiled) {
+      List<Schema.Field> schemaFields = schema.getFields();
+      for (int i = 0; i < names.length; i++) {
+        names[i] = schemaFields.get(i).name();
+        fields[i] = compile(schemaFields.get(i).schema(), compiled);
+      }
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      // Missing fields may have defaults and unknown fields have to be rejected, both are up to
+      // the generic path.
+      if (!value.isObject() || value.size() != names.length) {
+        throw ConversionFallback.INSTANCE;
+      }
+      GenericData.Record record = new GenericData.Record(schema);
+      for (int i = 0; i < names.length; i++) {
+        JsonNode field = value.get(names[i]);
+        if (field == null) {
+          throw ConversionFallback.INSTANCE;
+        }
+        record.put(i, fields[i].convert(field));
+      }
+      return record;
+    }
+  }
+
+  private static final class UnionConverter implements Converter {
+
+    private final boolean hasNull;
+    private final Map<String, Converter> branches = new HashMap<>();
+
+    private UnionConverter(Schema schema, Map<Schema, Converter> compiled) {
+      boolean hasNull = false;
+      for (Schema branch : schema.getTypes()) {
+        if (branch.getType() == Schema.Type.NULL) {
+          hasNull = true;
+        } else {
+          // Non-null branches are written as {"<full name or type name>": value}.
+          branches.put(branch.getFullName(), compile(branch, compiled));
+        }
+      }
+      this.hasNull = hasNull;
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      if (value.isNull() && hasNull) {
+        return null;
+      }
+      if (!value.isObject() || value.size() != 1) {
+        throw ConversionFallback.INSTANCE;
+      }
+      Map.Entry<String, JsonNode> branch = value.fields().next();
+      Converter converter = branches.get(branch.getKey());
+      if (converter == null) {
+        throw ConversionFallback.INSTANCE;
+      }
+      return converter.convert(branch.getValue());
+    }
+  }
+}
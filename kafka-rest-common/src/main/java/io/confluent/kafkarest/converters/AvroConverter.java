@@ -28,9 +28,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * Provides conversion of JSON to/from Avro.
+ *
+ * <p>A converter created with {@link #compiled(int)} compiles each schema it is given with an ID
+ * into an {@link AvroConversionPlan} once, and applies that plan to every following record of
+ * the schema instead of going through Avro's JSON decoder.</p>
  */
 public final class AvroConverter implements SchemaConverter {
 
@@ -38,8 +43,45 @@ public final class AvroConverter implements SchemaConverter {
 
   private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
+  @Nullable
+  private final ConversionPlanCache<AvroConversionPlan> plans;
+
+  public AvroConverter() {
+    this.plans = null;
+  }
+
+  private AvroConverter(int maxPlans) {
+    this.plans = new ConversionPlanCache<>(
+        maxPlans, schema -> AvroConversionPlan.compile(((AvroSchema) schema).rawSchema()));
+  }
+
+  /**
+   * Returns a converter that caches compiled conversion plans for up to {@code maxPlans} schema
+   * IDs.
+   */
+  public static AvroConverter compiled(int maxPlans) {
+    return new AvroConverter(maxPlans);
+  }
+
   @Override
   public Object toObject(JsonNode value, ParsedSchema parsedSchema) {
+    return toObjectGeneric(value, parsedSchema);
+  }
+
+  @Override
+  public Object toObject(JsonNode value, ParsedSchema parsedSchema, int schemaId) {
+    if (plans == null) {
+      return toObjectGeneric(value, parsedSchema);
+    }
+    try {
+      return plans.get(schemaId, parsedSchema).convert(value);
+    } catch (ConversionFallback e) {
+      // Not covered by the plan, let the generic path convert or reject this record.
+      return toObjectGeneric(value, parsedSchema);
+    }
+  }
+
+  private static Object toObjectGeneric(JsonNode value, ParsedSchema parsedSchema) {
     try {
       return AvroSchemaUtils.toObject(value, (AvroSchema) parsedSchema);
     } catch (Exception e) {
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.converters;
+
+/**
+ * Thrown by a compiled conversion plan when a value needs the generic conversion path. It is a
+ * preallocated singleton without a stack trace, since it is only used for control flow.
+ */
+final class ConversionFallback extends RuntimeException {
+
+  static final ConversionFallback INSTANCE = new ConversionFallback();
+
+  private ConversionFallback() {
+    super(null, null, false, false);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.converters;
+
+import static java.util.Objects.requireNonNull;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Keeps the conversion plans a converter compiled, keyed by the schema ID they were compiled for.
+ */
+final class ConversionPlanCache<P> {
+
+  private final ConcurrentMap<Integer, Entry<P>> plans = new ConcurrentHashMap<>();
+  private final int maxPlans;
+  private final Function<ParsedSchema, P> compiler;
+
+  ConversionPlanCache(int maxPlans, Function<ParsedSchema, P> compiler) {
+    if (maxPlans < 1) {
+      throw new IllegalArgumentException("maxPlans must be at least 1");
+    }
+    this.maxPlans = maxPlans;
+    this.compiler = requireNonNull(compiler);
+  }
+
+  /**
+   * Returns the plan for {@code schema}, compiling it if there is none for {@code schemaId} yet.
+   */
+  P get(int schemaId, ParsedSchema schema) {
+    Entry<P> entry = plans.get(schemaId);
+    // IDs do not change their schema within a registry, but compare anyway so a converter shared
+    // by several registries can never apply the wrong plan. Schema instances come from the
+    // registry client's cache, so this is an identity check in practice.
+    if (entry != null && (entry.schema == schema || entry.schema.equals(schema))) {
+      return entry.plan;
+    }
+    entry = new Entry<>(schema, compiler.apply(schema));
+    if (plans.size() >= maxPlans) {
+      // Schemas in use change rarely, starting over is cheaper than tracking recency per record.
+      plans.clear();
+    }
+    plans.put(schemaId, entry);
+    return entry.plan;
+  }
+
+  private static final class Entry<P> {
+
+    private final ParsedSchema schema;
+    private final P plan;
+
+    private Entry(ParsedSchema schema, P plan) {
+      this.schema = schema;
+      this.plan = plan;
+    }
+  }
+}
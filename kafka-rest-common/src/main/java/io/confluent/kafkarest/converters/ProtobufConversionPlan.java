@@ -0,0 +1,402 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.converters;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import com.google.protobuf.DynamicMessage;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JSON to Protobuf conversion compiled once for a message {@link Descriptor}. Field name
+ * lookups, enum values and nested message converters are resolved up front, and each record's
+ * {@link JsonNode} is then copied straight into a {@link DynamicMessage.Builder}, without writing
+ * it back to a JSON string for {@code JsonFormat} to parse again.
+ *
+ * <p>The plan builds the same message as {@code JsonFormat.parser()} behind
+ * {@link io.confluent.kafka.schemaregistry.protobuf.ProtobufSchemaUtils#toObject}, but only covers
+ * the well-formed common case. Whenever a record needs anything else, e.g. a number written as a
+ * string, a well-known type with a special JSON mapping or an unknown field,
+ * {@link #convert} throws {@link ConversionFallback} and the caller converts that record through
+ * the generic path instead, so the generic path keeps deciding on both the result and the error
+ * message.</p>
+ */
+final class ProtobufConversionPlan {
+
+  private static final String WELL_KNOWN_TYPES_PACKAGE = "google.protobuf.";
+
+  private final MessageConverter root;
+
+  private ProtobufConversionPlan(MessageConverter root) {
+    this.root = root;
+  }
+
+  static ProtobufConversionPlan compile(Descriptor descriptor) {
+    return new ProtobufConversionPlan(compileMessage(descriptor, new IdentityHashMap<>()));
+  }
+
+  /**
+   * Converts {@code value}, throwing {@link ConversionFallback} if it must take the generic path.
+   */
+  DynamicMessage convert(JsonNode value) {
+    if (value == null) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return root.convert(value);
+  }
+
+  private static MessageConverter compileMessage(
+      Descriptor descriptor, Map<Descriptor, MessageConverter> compiled) {
+    MessageConverter existing = compiled.get(descriptor);
+    if (existing != null) {
+      return existing;
+    }
+    // Registered before its fields are compiled, so recursive messages resolve to it.
+    MessageConverter message = new MessageConverter(descriptor);
+    compiled.put(descriptor, message);
+    message.compileFields(compiled);
+    return message;
+  }
+
+  private static ValueConverter compileValue(
+      FieldDescriptor field, Map<Descriptor, MessageConverter> compiled) {
+    switch (field.getType()) {
+      case INT32:
+      case SINT32:
+      case SFIXED32:
+        return ProtobufConversionPlan::convertInt32;
+      case UINT32:
+      case FIXED32:
+        return ProtobufConversionPlan::convertUint32;
+      case INT64:
+      case SINT64:
+      case SFIXED64:
+        return ProtobufConversionPlan::convertInt64;
+      case UINT64:
+      case FIXED64:
+        return ProtobufConversionPlan::convertUint64;
+      case FLOAT:
+        return ProtobufConversionPlan::convertFloat;
+      case DOUBLE:
+        return ProtobufConversionPlan::convertDouble;
+      case BOOL:
+        return ProtobufConversionPlan::convertBool;
+      case STRING:
+        return ProtobufConversionPlan::convertString;
+      case BYTES:
+        return ProtobufConversionPlan::convertBytes;
+      case ENUM:
+        if (isWellKnownType(field)) {
+          return ProtobufConversionPlan::fallback;
+        }
+        return new EnumConverter(field.getEnumType());
+      case MESSAGE:
+      case GROUP:
+        // Well-known types like Timestamp, Struct or the wrappers have their own JSON mapping.
+        if (isWellKnownType(field)) {
+          return ProtobufConversionPlan::fallback;
+        }
+        return compileMessage(field.getMessageType(), compiled);
+      default:
+        return ProtobufConversionPlan::fallback;
+    }
+  }
+
+  private static boolean isWellKnown(String fullName) {
+    return fullName.startsWith(WELL_KNOWN_TYPES_PACKAGE);
+  }
+
+  private static boolean isWellKnownType(FieldDescriptor field) {
+    switch (field.getJavaType()) {
+      case ENUM:
+        return isWellKnown(field.getEnumType().getFullName());
+      case MESSAGE:
+        return isWellKnown(field.getMessageType().getFullName());
+      default:
+        return false;
+    }
+  }
+
+  private static Object fallback(JsonNode value) {
+    throw ConversionFallback.INSTANCE;
+  }
+
+  private static Object convertInt32(JsonNode value) {
+    if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.intValue();
+  }
+
+  private static Object convertUint32(JsonNode value) {
+    if (!value.isIntegralNumber() || !value.canConvertToLong()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    long unsigned = value.longValue();
+    if (unsigned < 0 || unsigned > 0xFFFFFFFFL) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return (int) unsigned;
+  }
+
+  private static Object convertInt64(JsonNode value) {
+    if (!value.isIntegralNumber() || !value.canConvertToLong()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.longValue();
+  }
+
+  private static Object convertUint64(JsonNode value) {
+    // Values above Long.MAX_VALUE are left to the generic path.
+    if (!value.isIntegralNumber() || !value.canConvertToLong() || value.longValue() < 0) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.longValue();
+  }
+
+  private static Object convertFloat(JsonNode value) {
+    if (!isPlainNumber(value) || Math.abs(value.doubleValue()) > Float.MAX_VALUE) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return (float) value.doubleValue();
+  }
+
+  private static Object convertDouble(JsonNode value) {
+    if (!isPlainNumber(value)) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.doubleValue();
+  }
+
+  private static boolean isPlainNumber(JsonNode value) {
+    return value.isNumber() && !value.isBigDecimal() && !value.isBigInteger();
+  }
+
+  private static Object convertBool(JsonNode value) {
+    if (!value.isBoolean()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.booleanValue();
+  }
+
+  private static Object convertString(JsonNode value) {
+    if (!value.isTextual()) {
+      throw ConversionFallback.INSTANCE;
+    }
+    return value.textValue();
+  }
+
+  private static Object convertBytes(JsonNode value) {
+    // Only padded standard base64 is decoded here, the generic path also accepts URL-safe and
+    // unpadded encodings.
+    if (!value.isTextual() || value.textValue().length() % 4 != 0) {
+      throw ConversionFallback.INSTANCE;
+    }
+    try {
+      return ByteString.copyFrom(Base64.getDecoder().decode(value.textValue()));
+    } catch (IllegalArgumentException e) {
+      throw ConversionFallback.INSTANCE;
+    }
+  }
+
+  private interface ValueConverter {
+
+    Object convert(JsonNode value);
+  }
+
+  private static final class EnumConverter implements ValueConverter {
+
+    private final EnumDescriptor descriptor;
+    private final Map<String, EnumValueDescriptor> values = new HashMap<>();
+
+    private EnumConverter(EnumDescriptor descriptor) {
+      this.descriptor = descriptor;
+      for (EnumValueDescriptor value : descriptor.getValues()) {
+        values.put(value.getName(), value);
+      }
+    }
+
+    @Override
+    public Object convert(JsonNode value) {
+      EnumValueDescriptor result = null;
+      if (value.isTextual()) {
+        result = values.get(value.textValue());
+      } else if (value.isIntegralNumber() && value.canConvertToInt()) {
+        result = descriptor.findValueByNumber(value.intValue());
+      }
+      if (result == null) {
+        throw ConversionFallback.INSTANCE;
+      }
+      return result;
+    }
+  }
+
+  private static final class MessageConverter implements ValueConverter {
+
+    private final Descriptor descriptor;
+    // Both the JSON name and the original field name are accepted.
+    private final Map<String, FieldConverter> fields = new HashMap<>();
+
+    private MessageConverter(Descriptor descriptor) {
+      this.descriptor = descriptor;
+    }
+
+    private void compileFields(Map<Descriptor, MessageConverter> compiled) {
+      for (FieldDescriptor field : descriptor.getFields()) {
+        FieldConverter converter = new FieldConverter(field, compiled);
+        fields.put(field.getName(), converter);
+        fields.put(field.getJsonName(), converter);
+      }
+    }
+
+    @Override
+    public DynamicMessage convert(JsonNode value) {
+      if (!value.isObject()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+      boolean[] seen = new boolean[descriptor.getFields().size()];
+      Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+      while (entries.hasNext()) {
+        Map.Entry<String, JsonNode> entry = entries.next();
+        FieldConverter field = fields.get(entry.getKey());
+        // Unknown fields, and a field given under both of its names, are up to the generic path.
+        if (field == null || seen[field.index]) {
+          throw ConversionFallback.INSTANCE;
+        }
+        seen[field.index] = true;
+        field.merge(builder, entry.getValue());
+      }
+      // A proto2 message missing required fields is rejected by the generic path, with its
+      // error message.
+      if (!builder.isInitialized()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      return builder.build();
+    }
+  }
+
+  private static final class FieldConverter {
+
+    private final FieldDescriptor field;
+    private final int index;
+    private final OneofDescriptor oneof;
+    private final boolean wellKnownType;
+    private final ValueConverter values;
+    // Only set for map fields.
+    private final FieldDescriptor mapKey;
+    private final FieldDescriptor mapValue;
+
+    private FieldConverter(FieldDescriptor field, Map<Descriptor, MessageConverter> compiled) {
+      this.field = field;
+      this.index = field.getIndex();
+      this.oneof = field.getContainingOneof();
+      this.wellKnownType = isWellKnownType(field);
+      if (field.isMapField()) {
+        List<FieldDescriptor> entryFields = field.getMessageType().getFields();
+        this.mapKey = entryFields.get(0);
+        this.mapValue = entryFields.get(1);
+        this.values = compileValue(mapValue, compiled);
+      } else {
+        this.mapKey = null;
+        this.mapValue = null;
+        this.values = compileValue(field, compiled);
+      }
+    }
+
+    private void merge(DynamicMessage.Builder builder, JsonNode value) {
+      if (value.isNull()) {
+        // null means absent, except for google.protobuf.Value and NullValue fields.
+        if (wellKnownType && !field.isRepeated()) {
+          throw ConversionFallback.INSTANCE;
+        }
+        return;
+      }
+      if (mapKey != null) {
+        mergeMap(builder, value);
+      } else if (field.isRepeated()) {
+        mergeRepeated(builder, value);
+      } else {
+        if (oneof != null && builder.getOneofFieldDescriptor(oneof) != null) {
+          throw ConversionFallback.INSTANCE;
+        }
+        builder.setField(field, values.convert(value));
+      }
+    }
+
+    private void mergeRepeated(DynamicMessage.Builder builder, JsonNode value) {
+      if (!value.isArray()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      for (JsonNode element : value) {
+        if (element.isNull()) {
+          throw ConversionFallback.INSTANCE;
+        }
+        builder.addRepeatedField(field, values.convert(element));
+      }
+    }
+
+    private void mergeMap(DynamicMessage.Builder builder, JsonNode value) {
+      if (!value.isObject()) {
+        throw ConversionFallback.INSTANCE;
+      }
+      Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+      while (entries.hasNext()) {
+        Map.Entry<String, JsonNode> entry = entries.next();
+        if (entry.getValue().isNull()) {
+          throw ConversionFallback.INSTANCE;
+        }
+        builder.addRepeatedField(
+            field,
+            DynamicMessage.newBuilder(field.getMessageType())
+                .setField(mapKey, convertMapKey(entry.getKey()))
+                .setField(mapValue, values.convert(entry.getValue()))
+                .build());
+      }
+    }
+
+    private Object convertMapKey(String key) {
+      try {
+        switch (mapKey.getType()) {
+          case STRING:
+            return key;
+          case INT32:
+          case SINT32:
+          case SFIXED32:
+            return Integer.parseInt(key);
+          case INT64:
+          case SINT64:
+          case SFIXED64:
+            return Long.parseLong(key);
+          default:
+            throw ConversionFallback.INSTANCE;
+        }
+      } catch (NumberFormatException e) {
+        throw ConversionFallback.INSTANCE;
+      }
+    }
+  }
+}
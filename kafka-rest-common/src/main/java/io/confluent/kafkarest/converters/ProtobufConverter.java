@@ -25,9 +25,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * Provides conversion of JSON to/from Protobuf.
+ *
+ * <p>A converter created with {@link #compiled(int)} compiles each schema it is given with an ID
+ * into a {@link ProtobufConversionPlan} once, and builds every following record of the schema
+ * directly from its {@link JsonNode} instead of going through {@code JsonFormat}.</p>
  */
 public final class ProtobufConverter implements SchemaConverter {
 
@@ -35,8 +40,48 @@ public final class ProtobufConverter implements SchemaConverter {
 
   private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
+  @Nullable
+  private final ConversionPlanCache<ProtobufConversionPlan> plans;
+
+  public ProtobufConverter() {
+    this.plans = null;
+  }
+
+  private ProtobufConverter(int maxPlans) {
+    this.plans = new ConversionPlanCache<>(
+        maxPlans,
+        schema -> ProtobufConversionPlan.compile(((ProtobufSchema) schema).toDescriptor()));
+  }
+
+  /**
+   * Returns a converter that caches compiled conversion plans for up to {@code maxPlans} schema
+   * IDs.
+   */
+  public static ProtobufConverter compiled(int maxPlans) {
+    return new ProtobufConverter(maxPlans);
+  }
+
   @Override
   public Object toObject(JsonNode value, ParsedSchema parsedSchema) {
+    return toObjectGeneric(value, parsedSchema);
+  }
+
+  @Override
+  public Object toObject(JsonNode value, ParsedSchema parsedSchema, int schemaId) {
+    if (plans == null) {
+      return toObjectGeneric(value, parsedSchema);
+    }
+    try {
+      return plans.get(schemaId, parsedSchema).convert(value);
+    } catch (ConversionFallback e) {
+      // Not covered by the plan, let the generic path convert or reject this record.
+      return toObjectGeneric(value, parsedSchema);
+    } catch (RuntimeException e) {
+      throw new ConversionException("Failed to convert JSON to Protobuf: " + e.getMessage());
+    }
+  }
+
+  private static Object toObjectGeneric(JsonNode value, ParsedSchema parsedSchema) {
     try {
       return ProtobufSchemaUtils.toObject(value, (ProtobufSchema) parsedSchema);
     } catch (Exception e) {
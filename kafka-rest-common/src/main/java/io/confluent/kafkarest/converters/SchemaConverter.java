@@ -25,6 +25,14 @@ public interface SchemaConverter {
 
   Object toObject(JsonNode value, ParsedSchema schema);
 
+  /**
+   * Same as {@link #toObject(JsonNode, ParsedSchema)}, for a schema registered under
+   * {@code schemaId}. Converters may use the ID to reuse state they derived from the schema.
+   */
+  default Object toObject(JsonNode value, ParsedSchema schema, int schemaId) {
+    return toObject(value, schema);
+  }
+
   /**
    * Converts data (including primitive types) to their equivalent JsonNode representation.
    *
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+
+public class ExpirationWheelTest {
+
+  private static final long TICK_MS = 1000;
+
+  private final ManualTime time = new ManualTime();
+  private final ExecutorService closeExecutor = Executors.newSingleThreadExecutor();
+  private final CountingHandler handler = new CountingHandler();
+  private final ExpirationWheel<Entry> wheel =
+      new ExpirationWheel<>("test", time, TICK_MS, 8, handler, closeExecutor);
+
+  @After
+  public void tearDown() {
+    wheel.shutdown();
+  }
+
+  @Test
+  public void advance_expiredEntry_closesEntry() throws Exception {
+    Entry entry = new Entry(1500);
+    wheel.schedule(entry);
+
+    advanceTo(1000);
+    assertFalse(entry.closed);
+
+    advanceTo(2000);
+    assertTrue(entry.closed);
+  }
+
+  @Test
+  public void advance_refreshedEntry_closesEntryAtNewExpiration() throws Exception {
+    Entry entry = new Entry(1500);
+    wheel.schedule(entry);
+    advanceTo(1000);
+
+    entry.expiration = 5500;
+    advanceTo(2000);
+    assertFalse(entry.closed);
+
+    advanceTo(5000);
+    assertFalse(entry.closed);
+
+    advanceTo(6000);
+    assertTrue(entry.closed);
+  }
+
+  @Test
+  public void advance_expirationBeyondOneRevolution_closesEntryAtExpiration() throws Exception {
+    Entry entry = new Entry(20500);
+    wheel.schedule(entry);
+
+    for (long now = 1000; now <= 20000; now += 1000) {
+      advanceTo(now);
+      assertFalse(entry.closed);
+    }
+
+    advanceTo(21000);
+    assertTrue(entry.closed);
+  }
+
+  @Test
+  public void advance_removedEntry_dropsEntry() throws Exception {
+    Entry entry = new Entry(1500);
+    entry.removed = true;
+    wheel.schedule(entry);
+
+    advanceTo(2000);
+    advanceTo(3000);
+    advanceTo(20000);
+
+    assertFalse(entry.closed);
+    assertEquals(0, entry.expireCalls);
+  }
+
+  @Test
+  public void advance_entryRemovedAfterRefresh_isNotPlacedAgain() throws Exception {
+    Entry entry = new Entry(1500);
+    wheel.schedule(entry);
+    advanceTo(1000);
+
+    entry.expiration = 5500;
+    entry.removed = true;
+    handler.expirationCalls = 0;
+    advanceTo(2000);
+    advanceTo(6000);
+
+    assertFalse(entry.closed);
+    assertEquals(0, entry.expireCalls);
+    assertEquals(0, handler.expirationCalls);
+  }
+
+  @Test
+  public void advance_manyEntriesNotDue_onlyLooksAtDueEntries() throws Exception {
+    List<Entry> idle = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Entry entry = new Entry(7500);
+      idle.add(entry);
+      wheel.schedule(entry);
+    }
+    Entry due = new Entry(1500);
+    wheel.schedule(due);
+    advanceTo(0);
+
+    handler.expirationCalls = 0;
+    advanceTo(2000);
+
+    assertTrue(due.closed);
+    assertEquals(1, handler.expirationCalls);
+    for (Entry entry : idle) {
+      assertFalse(entry.closed);
+    }
+  }
+
+  @Test
+  public void advance_skippedTicks_closesAllExpiredEntries() throws Exception {
+    Entry first = new Entry(1500);
+    Entry second = new Entry(4500);
+    Entry third = new Entry(30500);
+    wheel.schedule(first);
+    wheel.schedule(second);
+    wheel.schedule(third);
+
+    advanceTo(25000);
+
+    assertTrue(first.closed);
+    assertTrue(second.closed);
+    assertFalse(third.closed);
+
+    advanceTo(31000);
+    assertTrue(third.closed);
+  }
+
+  private void advanceTo(long nowMs) throws Exception {
+    time.currentMs = nowMs;
+    wheel.advance();
+    // Waits for the closes handed off by this tick.
+    closeExecutor.submit(() -> { }).get();
+  }
+
+  private static final class Entry {
+
+    private volatile long expiration;
+    private volatile boolean removed;
+    private volatile boolean closed;
+    private int expireCalls;
+
+    private Entry(long expiration) {
+      this.expiration = expiration;
+    }
+  }
+
+  private static final class CountingHandler implements ExpirationWheel.Handler<Entry> {
+
+    private int expirationCalls;
+
+    @Override
+    public long expiration(Entry entry) {
+      expirationCalls++;
+      return entry.expiration;
+    }
+
+    @Override
+    public Runnable expire(Entry entry, long nowMs) {
+      entry.expireCalls++;
+      if (entry.removed || entry.expiration > nowMs) {
+        return null;
+      }
+      return () -> entry.closed = true;
+    }
+
+    @Override
+    public boolean removed(Entry entry) {
+      return entry.removed;
+    }
+  }
+
+  private static final class ManualTime implements Time {
+
+    private volatile long currentMs = 0;
+
+    @Override
+    public long milliseconds() {
+      return currentMs;
+    }
+
+    @Override
+    public long nanoseconds() {
+      return currentMs * 1000000;
+    }
+
+    @Override
+    public void sleep(long ms) {
+      currentMs += ms;
+    }
+
+    @Override
+    public void waitOn(Object on, long ms) throws InterruptedException {
+      currentMs += ms;
+    }
+  }
+}
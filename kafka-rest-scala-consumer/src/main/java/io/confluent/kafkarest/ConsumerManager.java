@@ -20,7 +20,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -54,7 +53,8 @@ import kafka.javaapi.consumer.ConsumerConnector;
 
 /**
  * Manages consumer instances by mapping instance IDs to consumer objects, processing read requests,
- * and cleaning up when consumers disappear.
+ * and cleaning up when consumers disappear. Idle consumers are found by an {@link ExpirationWheel},
+ * which closes them on its own threads.
  */
 public class ConsumerManager {
 
@@ -76,7 +76,7 @@ public class ConsumerManager {
   private ConsumerFactory consumerFactory;
   final DelayQueue<RunnableReadTask> delayedReadTasks = new DelayQueue<>();
   private final ReadTaskSchedulerThread readTaskSchedulerThread;
-  private final ExpirationThread expirationThread;
+  private final ExpirationWheel<ConsumerState> expirationWheel;
 
   public ConsumerManager(final KafkaRestConfig config, MetadataObserver mdObserver) {
     this.config = config;
@@ -110,8 +110,13 @@ public class ConsumerManager {
         }
     );
     this.consumerFactory = null;
-    this.expirationThread = new ExpirationThread();
-    this.expirationThread.start();
+    this.expirationWheel =
+        new ExpirationWheel<>(
+            "Consumer Expiration Thread",
+            time,
+            config.getInt(KafkaRestConfig.CONSUMER_CLOSE_THREADS_CONFIG),
+            new ExpirationHandler());
+    this.expirationWheel.start();
     this.readTaskSchedulerThread = new ReadTaskSchedulerThread();
     this.readTaskSchedulerThread.start();
   }
@@ -208,6 +213,7 @@ public class ConsumerManager {
       synchronized (this) {
         consumers.put(cid, state);
       }
+      expirationWheel.schedule(state);
       succeeded = true;
       return name;
     } finally {
@@ -320,10 +326,9 @@ public class ConsumerManager {
   }
 
   public void shutdown() {
-    // Expiration thread needs to be able to acquire a lock on the ConsumerManager to make sure
-    // the shutdown will be able to complete.
+    // Stop expiring consumers first, so it does not race with closing them below.
     log.trace("Shutting down consumer expiration thread");
-    expirationThread.shutdown();
+    expirationWheel.shutdown();
     log.trace("Shutting down read task scheduler thread");
     readTaskSchedulerThread.shutdown();
     synchronized (this) {
@@ -349,7 +354,9 @@ public class ConsumerManager {
     if (state == null) {
       throw Errors.consumerInstanceNotFoundException();
     }
-    state.updateExpiration();
+    if (!toRemove) {
+      state.updateExpiration();
+    }
     return state;
   }
 
@@ -512,55 +519,29 @@ public class ConsumerManager {
     }
   }
 
-  private class ExpirationThread extends Thread {
-
-    AtomicBoolean isRunning = new AtomicBoolean(true);
-    CountDownLatch shutdownLatch = new CountDownLatch(1);
+  private class ExpirationHandler implements ExpirationWheel.Handler<ConsumerState> {
 
-    public ExpirationThread() {
-      super("Consumer Expiration Thread");
-      setDaemon(true);
+    @Override
+    public long expiration(ConsumerState state) {
+      return state.expiration;
     }
 
     @Override
-    public void run() {
-      try {
-        while (isRunning.get()) {
-          synchronized (ConsumerManager.this) {
-            long now = time.milliseconds();
-            Iterator itr = consumers.values().iterator();
-            while (itr.hasNext()) {
-              final ConsumerState state = (ConsumerState) itr.next();
-              if (state != null && state.expired(now)) {
-                log.debug("Removing the expired consumer {}", state.getId());
-                itr.remove();
-                executor.submit(new Runnable() {
-                  @Override
-                  public void run() {
-                    state.close();
-                  }
-                });
-              }
-            }
-          }
-
-          Thread.sleep(1000);
+    public Runnable expire(final ConsumerState state, long nowMs) {
+      // Only consumers that are due take the lock, the others are never looked at.
+      synchronized (ConsumerManager.this) {
+        if (consumers.get(state.getId()) != state || !state.expired(nowMs)) {
+          return null;
         }
-      } catch (InterruptedException e) {
-        // Interrupted by other thread, do nothing to allow this thread to exit
-      }
-      shutdownLatch.countDown();
-    }
-
-    public void shutdown() {
-      try {
-        isRunning.set(false);
-        this.interrupt();
-        shutdownLatch.await();
-      } catch (InterruptedException e) {
-        throw new Error("Interrupted when shutting down consumer worker thread.");
+        log.debug("Removing the expired consumer {}", state.getId());
+        consumers.remove(state.getId());
       }
+      return new Runnable() {
+        @Override
+        public void run() {
+          state.close();
+        }
+      };
     }
   }
 }
-
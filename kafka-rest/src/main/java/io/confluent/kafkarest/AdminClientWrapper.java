@@ -23,28 +23,51 @@ import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.TopicPartitionInfo;
 import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.InvalidMetadataException;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import io.confluent.kafkarest.entities.Partition;
 import io.confluent.kafkarest.entities.PartitionReplica;
 import io.confluent.kafkarest.entities.Topic;
 
+/**
+ * Topic and partition lookups on top of an {@link AdminClient}.
+ *
+ * <p>Topic names and topic descriptions are cached for {@code metadata.cache.ttl.ms}, so the
+ * existence checks done on every partition produce request don't list all topics and describe
+ * the topic each time. A lookup that misses the cache, i.e. an unknown topic or a partition past
+ * the cached partition count, always refetches before answering, so newly created topics and
+ * added partitions are seen right away. Cached entries of a topic are dropped when the cluster
+ * reports its metadata as stale, see {@link #invalidateOnProduceErrors}.</p>
+ */
 public class AdminClientWrapper {
 
   private AdminClient adminClient;
   private int initTimeOut;
+  private final long metadataTtlMs;
+  private final Time time;
+
+  private volatile Cached<SortedSet<String>> topicNames;
+  private final ConcurrentMap<String, Cached<TopicDescription>> topicDescriptions =
+      new ConcurrentHashMap<>();
 
   public AdminClientWrapper(KafkaRestConfig kafkaRestConfig, AdminClient adminClient) {
     this.adminClient = adminClient;
     this.initTimeOut = kafkaRestConfig.getInt(KafkaRestConfig.KAFKACLIENT_INIT_TIMEOUT_CONFIG);
+    this.metadataTtlMs = kafkaRestConfig.getInt(KafkaRestConfig.METADATA_CACHE_TTL_MS_CONFIG);
+    this.time = kafkaRestConfig.getTime();
   }
 
   public static Properties adminProperties(KafkaRestConfig kafkaRestConfig) {
@@ -67,15 +90,20 @@ public class AdminClientWrapper {
   }
 
   public Collection<String> getTopicNames() throws Exception {
-    Collection<String> allTopics = null;
-    allTopics = new TreeSet<>(
-        adminClient.listTopics().names().get(initTimeOut, TimeUnit.MILLISECONDS));
-    return allTopics;
+    Cached<SortedSet<String>> cached = topicNames;
+    if (cached != null && isFresh(cached)) {
+      return cached.value;
+    }
+    return fetchTopicNames();
   }
 
   public boolean topicExists(String topic) throws Exception {
-    Collection<String> allTopics = getTopicNames();
-    return allTopics.contains(topic);
+    Cached<SortedSet<String>> cached = topicNames;
+    if (cached != null && isFresh(cached) && cached.value.contains(topic)) {
+      return true;
+    }
+    // The topic may have been created since the names were cached.
+    return fetchTopicNames().contains(topic);
   }
 
   public Topic getTopic(String topicName) throws Exception {
@@ -105,8 +133,35 @@ public class AdminClientWrapper {
   }
 
   public boolean partitionExists(String topicName, int partition) throws Exception {
-    Topic topic = getTopic(topicName);
-    return (partition >= 0 && partition < topic.getPartitions().size());
+    if (partition < 0 || !topicExists(topicName)) {
+      return false;
+    }
+    if (partition < getTopicDescription(topicName).partitions().size()) {
+      return true;
+    }
+    // Partitions may have been added since the description was cached.
+    return partition < fetchTopicDescription(topicName).partitions().size();
+  }
+
+  /**
+   * Drops the cached metadata of {@code topicName}, so the next lookup refetches it.
+   */
+  public void invalidate(String topicName) {
+    topicDescriptions.remove(topicName);
+    topicNames = null;
+  }
+
+  /**
+   * Drops the cached metadata of {@code topicName} if producing to it failed because the
+   * producer's view of its metadata was stale, e.g. the topic was deleted or its leader moved.
+   */
+  public void invalidateOnProduceErrors(String topicName, List<RecordMetadataOrException> results) {
+    for (RecordMetadataOrException result : results) {
+      if (result.getException() instanceof InvalidMetadataException) {
+        invalidate(topicName);
+        return;
+      }
+    }
   }
 
   private Topic buildTopic(String topicName, TopicDescription topicDescription) throws Exception {
@@ -161,11 +216,56 @@ public class AdminClientWrapper {
   }
 
   private TopicDescription getTopicDescription(String topicName) throws Exception {
-    return adminClient.describeTopics(Collections.unmodifiableList(Arrays.asList(topicName)))
-        .values().get(topicName).get(initTimeOut, TimeUnit.MILLISECONDS);
+    Cached<TopicDescription> cached = topicDescriptions.get(topicName);
+    if (cached != null && isFresh(cached)) {
+      return cached.value;
+    }
+    return fetchTopicDescription(topicName);
+  }
+
+  private SortedSet<String> fetchTopicNames() throws Exception {
+    SortedSet<String> allTopics = Collections.unmodifiableSortedSet(new TreeSet<>(
+        adminClient.listTopics().names().get(initTimeOut, TimeUnit.MILLISECONDS)));
+    if (metadataTtlMs > 0) {
+      topicNames = new Cached<>(allTopics, time.milliseconds());
+    }
+    return allTopics;
+  }
+
+  private TopicDescription fetchTopicDescription(String topicName) throws Exception {
+    TopicDescription topicDescription;
+    try {
+      topicDescription =
+          adminClient.describeTopics(Collections.unmodifiableList(Arrays.asList(topicName)))
+              .values().get(topicName).get(initTimeOut, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof InvalidMetadataException) {
+        invalidate(topicName);
+      }
+      throw e;
+    }
+    if (metadataTtlMs > 0) {
+      topicDescriptions.put(topicName, new Cached<>(topicDescription, time.milliseconds()));
+    }
+    return topicDescription;
+  }
+
+  private boolean isFresh(Cached<?> cached) {
+    return time.milliseconds() - cached.fetchedMs < metadataTtlMs;
   }
 
   public void shutdown() {
     adminClient.close();
   }
+
+  private static final class Cached<T> {
+
+    private final T value;
+    private final long fetchedMs;
+
+    private Cached(T value, long fetchedMs) {
+      this.value = value;
+      this.fetchedMs = fetchedMs;
+    }
+  }
 }
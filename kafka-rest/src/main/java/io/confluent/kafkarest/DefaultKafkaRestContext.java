@@ -28,6 +28,7 @@ public class DefaultKafkaRestContext implements KafkaRestContext {
   private final KafkaRestConfig config;
   private final ScalaConsumersContext scalaConsumersContext;
   private ProducerPool producerPool;
+  private ProduceReceiptStore produceReceiptStore;
   private KafkaConsumerManager kafkaConsumerManager;
   private AdminClientWrapper adminClientWrapper;
   private AdminClient admin;
@@ -61,6 +62,15 @@ public class DefaultKafkaRestContext implements KafkaRestContext {
     return producerPool;
   }
 
+  @Override
+  public synchronized ProduceReceiptStore getProduceReceiptStore() {
+    // Unlike the clients, a second instance would silently lose receipts, so this one is guarded.
+    if (produceReceiptStore == null) {
+      produceReceiptStore = new ProduceReceiptStore(config);
+    }
+    return produceReceiptStore;
+  }
+
   @Override
   public ScalaConsumersContext getScalaConsumersContext() {
     return scalaConsumersContext;
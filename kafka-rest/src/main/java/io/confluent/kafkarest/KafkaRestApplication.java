@@ -18,7 +18,10 @@ package io.confluent.kafkarest;
 import io.confluent.kafkarest.backends.BackendsModule;
 import io.confluent.kafkarest.config.ConfigModule;
 import io.confluent.kafkarest.controllers.ControllersModule;
+import io.confluent.kafkarest.exceptions.ProduceBudgetExceededExceptionMapper;
+import io.confluent.kafkarest.extension.BinaryProduceRequestReader;
 import io.confluent.kafkarest.extension.ContextInvocationHandler;
+import io.confluent.kafkarest.extension.FramedBinaryProduceRequestReader;
 import io.confluent.kafkarest.extension.InstantConverterProvider;
 import io.confluent.kafkarest.extension.KafkaRestCleanupFilter;
 import io.confluent.kafkarest.extension.KafkaRestContextProvider;
@@ -34,6 +37,7 @@ import io.confluent.rest.exceptions.WebApplicationExceptionMapper;
 import java.lang.reflect.Proxy;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.Supplier;
 import javax.ws.rs.core.Configurable;
 import org.eclipse.jetty.util.StringUtil;
 
@@ -90,6 +94,7 @@ public class KafkaRestApplication extends Application<KafkaRestConfig> {
     KafkaRestContextProvider.initialize(config, appConfig, producerPool,
         kafkaConsumerManager, adminClientWrapperInjected, scalaConsumersContext
     );
+    warmUpProducers(appConfig);
     ContextInvocationHandler contextInvocationHandler = new ContextInvocationHandler();
     KafkaRestContext context =
         (KafkaRestContext) Proxy.newProxyInstance(
@@ -106,17 +111,40 @@ public class KafkaRestApplication extends Application<KafkaRestConfig> {
 
     config.register(KafkaRestCleanupFilter.class);
     config.register(InstantConverterProvider.class);
+    // Looked up per request, so the producer pool is still only created once it is needed.
+    Supplier<PayloadBufferPool> payloads =
+        () -> context.getProducerPool().getPayloadBufferPool();
+    config.register(new BinaryProduceRequestReader.V1TopicReader(payloads));
+    config.register(new BinaryProduceRequestReader.V1PartitionReader(payloads));
+    config.register(new BinaryProduceRequestReader.V2TopicReader(payloads));
+    config.register(new BinaryProduceRequestReader.V2PartitionReader(payloads));
+    config.register(new FramedBinaryProduceRequestReader(payloads));
 
     for (RestResourceExtension restResourceExtension : restResourceExtensions) {
       restResourceExtension.register(config, appConfig);
     }
   }
 
+  /**
+   * Creates the producers of {@link KafkaRestConfig#PRODUCER_WARMUP_FORMATS_CONFIG} in the
+   * background, so a slow or unreachable cluster does not hold up startup.
+   */
+  private static void warmUpProducers(KafkaRestConfig appConfig) {
+    if (appConfig.getList(KafkaRestConfig.PRODUCER_WARMUP_FORMATS_CONFIG).isEmpty()) {
+      return;
+    }
+    ProducerPool producerPool = KafkaRestContextProvider.getDefaultContext().getProducerPool();
+    Thread warmUp = new Thread(producerPool::warmUp, "kafka-rest-producer-warmup");
+    warmUp.setDaemon(true);
+    warmUp.start();
+  }
+
   @Override
   protected void registerExceptionMappers(Configurable<?> config, KafkaRestConfig restConfig) {
     config.register(ConstraintViolationExceptionMapper.class);
     config.register(new WebApplicationExceptionMapper(restConfig));
     config.register(new KafkaExceptionMapper(restConfig));
+    config.register(new ProduceBudgetExceededExceptionMapper());
   }
 
   @Override
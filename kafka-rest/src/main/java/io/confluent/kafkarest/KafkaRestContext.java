@@ -23,6 +23,8 @@ public interface KafkaRestContext {
 
   public ProducerPool getProducerPool();
 
+  ProduceReceiptStore getProduceReceiptStore();
+
   @Deprecated
   public ScalaConsumersContext getScalaConsumersContext();
 
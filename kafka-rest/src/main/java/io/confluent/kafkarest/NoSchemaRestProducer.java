@@ -17,6 +17,8 @@ package io.confluent.kafkarest;
 
 import io.confluent.kafkarest.entities.ProduceRecord;
 import java.util.Collection;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
@@ -25,10 +27,23 @@ import org.apache.kafka.clients.producer.ProducerRecord;
  */
 public class NoSchemaRestProducer<K, V> implements RestProducer<K, V> {
 
-  private KafkaProducer<K, V> producer;
+  private final ShardedProducer<K, V> producer;
+  private final PayloadBufferPool payloads;
 
   public NoSchemaRestProducer(KafkaProducer<K, V> producer) {
+    this(new ShardedProducer<>(producer));
+  }
+
+  public NoSchemaRestProducer(ShardedProducer<K, V> producer) {
+    this(producer, PayloadBufferPool.DISABLED);
+  }
+
+  /**
+   * @param payloads pool to release {@code byte[]} keys and values to once they were sent
+   */
+  public NoSchemaRestProducer(ShardedProducer<K, V> producer, PayloadBufferPool payloads) {
     this.producer = producer;
+    this.payloads = payloads;
   }
 
   @Override
@@ -39,15 +54,43 @@ public class NoSchemaRestProducer<K, V> implements RestProducer<K, V> {
       Collection<? extends ProduceRecord<K, V>> produceRecords
   ) {
     for (ProduceRecord<K, V> record : produceRecords) {
+      String recordTopic = topic;
+      if (recordTopic == null) {
+        recordTopic = record.getTopic();
+      }
       Integer recordPartition = partition;
       if (recordPartition == null) {
         recordPartition = record.getPartition();
       }
-      producer.send(
-          new ProducerRecord<>(topic, recordPartition, record.getKey(), record.getValue()),
-          task.createCallback()
-      );
+      Callback callback = task.createCallback();
+      try {
+        producer.send(
+            new ProducerRecord<>(recordTopic, recordPartition, record.getKey(), record.getValue()),
+            callback
+        );
+      } catch (RuntimeException e) {
+        // Earlier records may be on their way already, so only this one fails.
+        callback.onCompletion(null, e);
+      }
+      if (payloads.isEnabled()) {
+        release(record.getKey(), record.getValue());
+      }
     }
+    task.sent();
+  }
+
+  private void release(@Nullable Object key, @Nullable Object value) {
+    // send() has copied both into the producer's batch by now, or failed without keeping them.
+    if (key instanceof byte[] && key != value) {
+      payloads.release((byte[]) key);
+    }
+    if (value instanceof byte[]) {
+      payloads.release((byte[]) value);
+    }
+  }
+
+  public ShardedProducer<K, V> getProducer() {
+    return producer;
   }
 
   @Override
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import static java.util.Objects.requireNonNull;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+
+/**
+ * A bounded LRU cache from the raw schema text sent in a produce request, and the subject it is
+ * registered under, to the parsed schema and its registered ID. Clients typically resend the same
+ * schema text with every request, and parsing it costs far more than converting a small batch.
+ */
+public final class ParsedSchemaCache {
+
+  private final Cache<Key, SchemaAndId> cache;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public ParsedSchemaCache(int maxSize) {
+    this.cache = new SynchronizedCache<>(new LRUCache<>(maxSize));
+  }
+
+  /**
+   * Returns the cached schema and ID for {@code schema} under {@code subject}, or {@code null}.
+   */
+  @Nullable
+  public SchemaAndId get(String subject, String schema) {
+    SchemaAndId cached = cache.get(new Key(subject, schema));
+    if (cached != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return cached;
+  }
+
+  public void put(String subject, String schema, ParsedSchema parsedSchema, int id) {
+    cache.put(new Key(subject, schema), new SchemaAndId(parsedSchema, id));
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public static final class SchemaAndId {
+
+    private final ParsedSchema schema;
+    private final int id;
+
+    public SchemaAndId(ParsedSchema schema, int id) {
+      this.schema = requireNonNull(schema);
+      this.id = id;
+    }
+
+    public ParsedSchema getSchema() {
+      return schema;
+    }
+
+    public int getId() {
+      return id;
+    }
+  }
+
+  private static final class Key {
+
+    private final String subject;
+    private final String schema;
+    private final int hash;
+
+    private Key(String subject, String schema) {
+      this.subject = requireNonNull(subject);
+      this.schema = requireNonNull(schema);
+      this.hash = Objects.hash(subject, schema);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      // Compare the full text, a hash collision must never hand out the wrong schema.
+      return hash == key.hash && subject.equals(key.subject) && schema.equals(key.schema);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
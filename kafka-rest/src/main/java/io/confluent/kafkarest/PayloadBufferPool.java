@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Per-thread free lists of {@code byte[]} for decoded binary record keys and values.
+ *
+ * <p>{@code KafkaProducer.send()} copies the serialized key and value into its batch buffers
+ * before it returns, so the arrays the request was decoded into can be handed to the next
+ * request decoded on the same thread. The producer takes whole arrays, not slices, so arrays are
+ * pooled by exact length. Each thread keeps at most {@code maxBytesPerThread}; when a released
+ * array does not fit, the thread drops what it kept, so a shift in payload sizes cannot pin the
+ * budget with lengths no longer seen.</p>
+ *
+ * <p>A released array must not be referenced anywhere else anymore, in particular not by a
+ * producer interceptor.</p>
+ */
+public final class PayloadBufferPool {
+
+  /**
+   * A pool that allocates every array and keeps none.
+   */
+  public static final PayloadBufferPool DISABLED = new PayloadBufferPool(0);
+
+  // Smaller arrays are cheaper to allocate than to look up.
+  static final int MIN_POOLED_LENGTH = 512;
+
+  private final long maxBytesPerThread;
+  private final ThreadLocal<Arena> arenas = ThreadLocal.withInitial(Arena::new);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public PayloadBufferPool(long maxBytesPerThread) {
+    this.maxBytesPerThread = maxBytesPerThread;
+  }
+
+  public boolean isEnabled() {
+    return maxBytesPerThread >= MIN_POOLED_LENGTH;
+  }
+
+  /**
+   * Returns an array of exactly {@code length} bytes, with undefined contents.
+   */
+  public byte[] acquire(int length) {
+    if (!isPooled(length)) {
+      return new byte[length];
+    }
+    byte[] buffer = arenas.get().poll(length);
+    if (buffer == null) {
+      misses.increment();
+      return new byte[length];
+    }
+    hits.increment();
+    return buffer;
+  }
+
+  /**
+   * Makes {@code buffer} available to later {@link #acquire(int)} calls on this thread.
+   */
+  public void release(@Nullable byte[] buffer) {
+    if (buffer == null || !isPooled(buffer.length)) {
+      return;
+    }
+    arenas.get().offer(buffer, maxBytesPerThread);
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  private boolean isPooled(int length) {
+    return length >= MIN_POOLED_LENGTH && length <= maxBytesPerThread;
+  }
+
+  private static final class Arena {
+
+    private final Map<Integer, ArrayDeque<byte[]>> buffers = new HashMap<>();
+    private long pooledBytes = 0;
+
+    @Nullable
+    private byte[] poll(int length) {
+      ArrayDeque<byte[]> free = buffers.get(length);
+      byte[] buffer = free != null ? free.pollLast() : null;
+      if (buffer != null) {
+        pooledBytes -= length;
+      }
+      return buffer;
+    }
+
+    private void offer(byte[] buffer, long maxBytes) {
+      if (pooledBytes + buffer.length > maxBytes) {
+        buffers.clear();
+        pooledBytes = 0;
+      }
+      buffers.computeIfAbsent(buffer.length, length -> new ArrayDeque<>()).addLast(buffer);
+      pooledBytes += buffer.length;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.exceptions.ProduceBudgetExceededException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Admission control for produce requests, based on the bytes of record keys and values in flight
+ * to Kafka per embedded format and per topic.
+ *
+ * <p>A request {@link #acquire acquires} its bytes before any of its records is converted or
+ * sent, and its {@link Reservation} is released once every record was acked or failed. A request
+ * that would exceed a limit is rejected right away with a
+ * {@link ProduceBudgetExceededException}, instead of blocking a server thread in
+ * {@code KafkaProducer.send()} until the producer's {@code buffer.memory} frees up. A request is
+ * always admitted when nothing is in flight, so one larger than a limit still goes through on its
+ * own.</p>
+ *
+ * <p>Record sizes are estimated from the request, i.e. the raw bytes for binary records and the
+ * size of the JSON values for the other formats, not from the serialized records.</p>
+ */
+public final class ProduceBudget {
+
+  private final long maxBytes;
+  private final long maxTopicBytes;
+  private final int retryAfterSeconds;
+
+  // One counter per format, all created up front so the map is only ever read concurrently.
+  private final Map<EmbeddedFormat, AtomicLong> formatBytes = new EnumMap<>(EmbeddedFormat.class);
+  private final Map<EmbeddedFormat, LongAdder> formatRejections =
+      new EnumMap<>(EmbeddedFormat.class);
+  // Only topics with bytes in flight have an entry, topic names come from clients and need not
+  // exist. Entries are only updated through compute, so one is never dropped while charged.
+  private final ConcurrentMap<String, Long> topicBytes = new ConcurrentHashMap<>();
+  private final LongAdder topicRejections = new LongAdder();
+
+  public ProduceBudget(long maxBytes, long maxTopicBytes, int retryAfterSeconds) {
+    this.maxBytes = maxBytes;
+    this.maxTopicBytes = maxTopicBytes;
+    this.retryAfterSeconds = retryAfterSeconds;
+    for (EmbeddedFormat format : EmbeddedFormat.values()) {
+      formatBytes.put(format, new AtomicLong());
+      formatRejections.put(format, new LongAdder());
+    }
+  }
+
+  public ProduceBudget(KafkaRestConfig config) {
+    this(
+        config.getLong(KafkaRestConfig.PRODUCE_BUDGET_BYTES_CONFIG),
+        config.getLong(KafkaRestConfig.PRODUCE_BUDGET_TOPIC_BYTES_CONFIG),
+        config.getInt(KafkaRestConfig.PRODUCE_BUDGET_RETRY_AFTER_SECONDS_CONFIG));
+  }
+
+  /**
+   * Reserves the estimated bytes of {@code request}.
+   *
+   * @param topic the topic of all records, or {@code null} if each record names its own topic, in
+   *              which case every topic is charged for its own records
+   * @throws ProduceBudgetExceededException if that would exceed the budget of {@code format} or
+   *                                        of a topic
+   */
+  public Reservation acquire(
+      EmbeddedFormat format, @Nullable String topic, ProduceRequest<?, ?> request) {
+    if (topic != null) {
+      return acquire(format, topic, estimateSize(request));
+    }
+    Map<String, Long> topicSizes = new LinkedHashMap<>();
+    for (ProduceRecord<?, ?> record : request.getRecords()) {
+      topicSizes.merge(record.getTopic(), estimateSize(record), Long::sum);
+    }
+    return acquire(format, topicSizes);
+  }
+
+  Reservation acquire(EmbeddedFormat format, String topic, long bytes) {
+    return acquire(format, Collections.singletonMap(topic, bytes));
+  }
+
+  private Reservation acquire(EmbeddedFormat format, Map<String, Long> topicSizes) {
+    long bytes = 0;
+    for (long size : topicSizes.values()) {
+      bytes += size;
+    }
+    AtomicLong inFlight = formatBytes.get(format);
+    if (!tryAdd(inFlight, bytes, maxBytes)) {
+      formatRejections.get(format).increment();
+      throw new ProduceBudgetExceededException(
+          "the limit of " + maxBytes + " bytes for " + format.name().toLowerCase()
+              + " records is reached.",
+          retryAfterSeconds);
+    }
+    Map<String, Long> topicsInFlight = Collections.emptyMap();
+    if (maxTopicBytes > 0) {
+      topicsInFlight = new HashMap<>(topicSizes.size());
+      for (Map.Entry<String, Long> topicSize : topicSizes.entrySet()) {
+        if (!tryAddTopic(topicSize.getKey(), topicSize.getValue())) {
+          inFlight.addAndGet(-bytes);
+          topicsInFlight.forEach(this::releaseTopic);
+          topicRejections.increment();
+          throw new ProduceBudgetExceededException(
+              "the limit of " + maxTopicBytes + " bytes for topic " + topicSize.getKey()
+                  + " is reached.",
+              retryAfterSeconds);
+        }
+        topicsInFlight.put(topicSize.getKey(), topicSize.getValue());
+      }
+    }
+    return new Reservation(this, inFlight, topicsInFlight, bytes);
+  }
+
+  private boolean tryAddTopic(String topic, long bytes) {
+    boolean[] added = new boolean[1];
+    topicBytes.compute(topic, (name, current) -> {
+      long inFlight = current != null ? current : 0;
+      if (inFlight > 0 && inFlight + bytes > maxTopicBytes) {
+        return current;
+      }
+      added[0] = true;
+      return inFlight + bytes > 0 ? inFlight + bytes : null;
+    });
+    return added[0];
+  }
+
+  private void releaseTopic(String topic, long bytes) {
+    // Removes the topic once nothing is in flight for it anymore.
+    topicBytes.computeIfPresent(
+        topic, (name, current) -> current - bytes > 0 ? current - bytes : null);
+  }
+
+
+  public long bytesInFlight(EmbeddedFormat format) {
+    return formatBytes.get(format).get();
+  }
+
+  public long rejections(EmbeddedFormat format) {
+    return formatRejections.get(format).sum();
+  }
+
+  public long topicRejections() {
+    return topicRejections.sum();
+  }
+
+  /**
+   * Returns the number of topics that currently have bytes in flight.
+   */
+  public int topicsInFlight() {
+    return topicBytes.size();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getMaxTopicBytes() {
+    return maxTopicBytes;
+  }
+
+  private static boolean tryAdd(AtomicLong inFlight, long bytes, long limit) {
+    while (true) {
+      long current = inFlight.get();
+      if (limit > 0 && current > 0 && current + bytes > limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  static long estimateSize(ProduceRequest<?, ?> request) {
+    long size = 0;
+    for (ProduceRecord<?, ?> record : request.getRecords()) {
+      size += estimateSize(record);
+    }
+    return size;
+  }
+
+  private static long estimateSize(ProduceRecord<?, ?> record) {
+    return estimateSize(record.getKey()) + estimateSize(record.getValue());
+  }
+
+  private static long estimateSize(@Nullable Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    }
+    if (value instanceof JsonNode) {
+      return estimateSize((JsonNode) value);
+    }
+    return 0;
+  }
+
+  private static long estimateSize(JsonNode node) {
+    if (node.isTextual()) {
+      return node.textValue().length();
+    }
+    if (node.isNumber()) {
+      return 8;
+    }
+    if (node.isObject()) {
+      long size = 0;
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        size += field.getKey().length() + estimateSize(field.getValue());
+      }
+      return size;
+    }
+    if (node.isArray()) {
+      long size = 0;
+      for (JsonNode element : node) {
+        size += estimateSize(element);
+      }
+      return size;
+    }
+    // Booleans, nulls and anything else.
+    return 1;
+  }
+
+  /**
+   * Bytes acquired by one produce request. Releasing it more than once has no effect.
+   */
+  public static final class Reservation {
+
+    private final ProduceBudget budget;
+    private final AtomicLong formatBytes;
+    // Bytes acquired per topic, empty if topics are not limited.
+    private final Map<String, Long> topicBytes;
+    private final long bytes;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Reservation(
+        ProduceBudget budget, AtomicLong formatBytes, Map<String, Long> topicBytes, long bytes) {
+      this.budget = budget;
+      this.formatBytes = formatBytes;
+      this.topicBytes = topicBytes;
+      this.bytes = bytes;
+    }
+
+    public void release() {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      formatBytes.addAndGet(-bytes);
+      topicBytes.forEach(budget::releaseTopic);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.metrics.Sensor;
+
+/**
+ * A bounded pool of threads that complete produce requests, i.e. build their responses and resume
+ * them, once the producers' network threads have acked all of their records. Handing off keeps the
+ * network threads free to process acks for other partitions.
+ *
+ * <p>When the queue is full, the handing off thread completes the request itself, so a completion
+ * is never dropped. The same happens after {@link #shutdown()}.</p>
+ */
+public final class ProduceCompletionExecutor implements Executor {
+
+  private final ThreadPoolExecutor executor;
+  @Nullable
+  private final Sensor handoffSensor;
+  private final LongAdder inlineCompletions = new LongAdder();
+
+  /**
+   * @param handoffSensor sensor recording the time in milliseconds between handing a completion
+   *                      off and a completion thread starting it, or {@code null}
+   */
+  public ProduceCompletionExecutor(int numThreads, int queueSize, @Nullable Sensor handoffSensor) {
+    this.handoffSensor = handoffSensor;
+    this.executor =
+        new ThreadPoolExecutor(
+            numThreads,
+            numThreads,
+            /* keepAliveTime= */ 0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            new CompletionThreadFactory(),
+            (completion, pool) -> {
+              inlineCompletions.increment();
+              completion.run();
+            });
+  }
+
+  @Override
+  public void execute(Runnable completion) {
+    long handedOffNanos = System.nanoTime();
+    executor.execute(() -> {
+      if (handoffSensor != null) {
+        handoffSensor.record((System.nanoTime() - handedOffNanos) / 1e6);
+      }
+      completion.run();
+    });
+  }
+
+  /**
+   * Returns the number of completions waiting for a thread.
+   */
+  public int queueSize() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Returns the number of completions run on the handing off thread because the queue was full.
+   */
+  public long inlineCompletions() {
+    return inlineCompletions.sum();
+  }
+
+  /**
+   * Stops accepting completions once the queued ones have run.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private static final class CompletionThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread =
+          new Thread(runnable, "kafka-rest-produce-completion-" + nextId.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import io.confluent.kafkarest.entities.v2.ProduceReceiptResponse;
+import io.confluent.kafkarest.entities.v2.ProduceResponse;
+import io.confluent.rest.exceptions.RestException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Bounded, expiring, in-memory store for the results of produce requests that were accepted
+ * asynchronously. A request gets a receipt when its records are handed to the producer, and the
+ * receipt is completed with the request's results once every record was acked or failed.
+ *
+ * <p>Receipts expire {@code ttlMs} after they were created, whether they completed or not. When
+ * the store is full, the oldest receipt is dropped to make room for a new one.</p>
+ */
+public final class ProduceReceiptStore {
+
+  private final int maxReceipts;
+  private final long ttlMs;
+  private final Time time;
+
+  // In creation order, so expired receipts are always at the head. Guarded by this.
+  private final LinkedHashMap<String, Receipt> receipts = new LinkedHashMap<>();
+
+  public ProduceReceiptStore(int maxReceipts, long ttlMs, Time time) {
+    if (maxReceipts < 1) {
+      throw new IllegalArgumentException("maxReceipts must be at least 1");
+    }
+    this.maxReceipts = maxReceipts;
+    this.ttlMs = ttlMs;
+    this.time = time;
+  }
+
+  public ProduceReceiptStore(KafkaRestConfig config) {
+    this(
+        config.getInt(KafkaRestConfig.PRODUCE_RECEIPTS_MAX_CONFIG),
+        config.getInt(KafkaRestConfig.PRODUCE_RECEIPTS_TTL_MS_CONFIG),
+        config.getTime());
+  }
+
+  /**
+   * Creates a pending receipt and returns its ID.
+   */
+  public String create() {
+    String receiptId = UUID.randomUUID().toString();
+    long now = time.milliseconds();
+    synchronized (this) {
+      expire(now);
+      if (receipts.size() >= maxReceipts) {
+        Iterator<String> oldest = receipts.keySet().iterator();
+        oldest.next();
+        oldest.remove();
+      }
+      receipts.put(receiptId, new Receipt(now, null, null));
+    }
+    return receiptId;
+  }
+
+  /**
+   * Completes the receipt with the results of its request. Does nothing if it already expired.
+   */
+  public synchronized void complete(String receiptId, ProduceResponse response) {
+    Receipt receipt = receipts.get(receiptId);
+    if (receipt != null) {
+      // Replacing the value keeps the receipt's position in the creation order.
+      receipts.put(receiptId, new Receipt(receipt.createdMs, response, null));
+    }
+  }
+
+  /**
+   * Completes the receipt with an error that failed its whole request. Does nothing if it already
+   * expired.
+   */
+  public synchronized void fail(String receiptId, RestException error) {
+    Receipt receipt = receipts.get(receiptId);
+    if (receipt != null) {
+      receipts.put(receiptId, new Receipt(receipt.createdMs, null, error));
+    }
+  }
+
+  public synchronized void remove(String receiptId) {
+    receipts.remove(receiptId);
+  }
+
+  /**
+   * Returns the current state of the receipt, or {@code null} if it does not exist or expired.
+   *
+   * @throws RestException the error its request failed with, if any
+   */
+  @Nullable
+  public ProduceReceiptResponse get(String receiptId) {
+    Receipt receipt;
+    synchronized (this) {
+      expire(time.milliseconds());
+      receipt = receipts.get(receiptId);
+    }
+    if (receipt == null) {
+      return null;
+    }
+    if (receipt.error != null) {
+      throw receipt.error;
+    }
+    if (receipt.response == null) {
+      return ProduceReceiptResponse.pending(receiptId);
+    }
+    return ProduceReceiptResponse.completed(receiptId, receipt.response);
+  }
+
+  public synchronized int size() {
+    return receipts.size();
+  }
+
+  private void expire(long now) {
+    Iterator<Map.Entry<String, Receipt>> it = receipts.entrySet().iterator();
+    while (it.hasNext() && now - it.next().getValue().createdMs >= ttlMs) {
+      it.remove();
+    }
+  }
+
+  private static final class Receipt {
+
+    private final long createdMs;
+
+    @Nullable
+    private final ProduceResponse response;
+
+    @Nullable
+    private final RestException error;
+
+    private Receipt(
+        long createdMs, @Nullable ProduceResponse response, @Nullable RestException error) {
+      this.createdMs = createdMs;
+      this.response = response;
+      this.error = error;
+    }
+  }
+}
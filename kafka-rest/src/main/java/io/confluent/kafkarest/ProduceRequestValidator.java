@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.validation.ConstraintViolations;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Validates produce requests in a single pass over their records, in place of bean validation of
+ * the request entities followed by separate passes checking for key and value schemas.
+ *
+ * <ul>
+ *   <li>A request must contain at least one record, see {@link #checkNotEmpty}.</li>
+ *   <li>Record partitions, if set, must not be negative.</li>
+ *   <li>For formats with schemas, a request with any non-null key (or value) must reference a
+ *   key (or value) schema.</li>
+ * </ul>
+ *
+ * <p>There is one validator per format, obtained with {@link #forFormat(EmbeddedFormat)}.</p>
+ */
+public final class ProduceRequestValidator {
+
+  private static final Map<EmbeddedFormat, ProduceRequestValidator> VALIDATORS =
+      new EnumMap<>(EmbeddedFormat.class);
+
+  static {
+    for (EmbeddedFormat format : EmbeddedFormat.values()) {
+      VALIDATORS.put(format, new ProduceRequestValidator(requiresSchemas(format)));
+    }
+  }
+
+  private final boolean requiresSchemas;
+
+  private ProduceRequestValidator(boolean requiresSchemas) {
+    this.requiresSchemas = requiresSchemas;
+  }
+
+  public static ProduceRequestValidator forFormat(EmbeddedFormat format) {
+    return VALIDATORS.get(format);
+  }
+
+  /**
+   * Checks that the {@code records} of a request entity are present, before the entity is turned
+   * into a {@link ProduceRequest}.
+   */
+  public static void checkNotEmpty(@Nullable Collection<?> records) {
+    if (records == null || records.isEmpty()) {
+      throw ConstraintViolations.simpleException("Request contains no records");
+    }
+  }
+
+  /**
+   * Throws a {@link io.confluent.rest.exceptions.RestConstraintViolationException} for the first
+   * violation found in {@code request}.
+   */
+  public void validate(ProduceRequest<?, ?> request) {
+    boolean checkKeys = requiresSchemas && !hasKeySchema(request);
+    boolean checkValues = requiresSchemas && !hasValueSchema(request);
+    int index = 0;
+    for (ProduceRecord<?, ?> record : request.getRecords()) {
+      Integer partition = record.getPartition();
+      if (partition != null && partition < 0) {
+        throw ConstraintViolations.simpleException(
+            "Record " + index + " has an invalid partition " + partition);
+      }
+      if (checkKeys && !isNull(record.getKey())) {
+        throw Errors.keySchemaMissingException();
+      }
+      if (checkValues && !isNull(record.getValue())) {
+        throw Errors.valueSchemaMissingException();
+      }
+      index++;
+    }
+  }
+
+  private static boolean requiresSchemas(EmbeddedFormat format) {
+    switch (format) {
+      case AVRO:
+      case JSONSCHEMA:
+      case PROTOBUF:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean hasKeySchema(ProduceRequest<?, ?> request) {
+    return request.getKeySchema() != null
+        || request.getKeySchemaId() != null
+        || request.getKeySchemaRef() != null;
+  }
+
+  private static boolean hasValueSchema(ProduceRequest<?, ?> request) {
+    return request.getValueSchema() != null
+        || request.getValueSchemaId() != null
+        || request.getValueSchemaRef() != null;
+  }
+
+  private static boolean isNull(@Nullable Object data) {
+    return data == null || (data instanceof JsonNode && ((JsonNode) data).isNull());
+  }
+}
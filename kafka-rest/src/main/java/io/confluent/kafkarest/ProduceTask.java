@@ -16,15 +16,27 @@
 package io.confluent.kafkarest;
 
 import io.confluent.kafkarest.entities.ProduceRequest;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Container for state associated with one REST-ful produce request, i.e. a batched send
+ * Container for state associated with one REST-ful produce request, i.e. a batched send.
+ *
+ * <p>Results are stored in a preallocated array addressed by the record's index in the request.
+ * Callbacks are created in send order on the request thread, but acks arrive on the producers' I/O
+ * threads, so completion is tracked with an atomic countdown rather than a monitor: an I/O thread
+ * acking a record never waits for the request thread (or another I/O thread) to release a lock.
+ * </p>
+ *
+ * <p>The request's {@link ProduceBudget.Reservation}, if any, is released once the last record
+ * completes, before the request's callback runs. The callback runs on the task's completion
+ * executor if it has one, otherwise on the I/O thread that acked the last record.</p>
  */
 public class ProduceTask {
 
@@ -33,46 +45,101 @@ public class ProduceTask {
   private final ProduceRequest<?, ?> produceRequest;
   private final int numRecords;
   private final ProducerPool.ProduceRequestCallback callback;
-  private int completed;
-  private Integer keySchemaId;
-  private Integer valueSchemaId;
-  private List<RecordMetadataOrException> results;
+  private final RecordMetadataOrException[] results;
+  @Nullable
+  private final ProduceBudget.Reservation reservation;
+  @Nullable
+  private final Executor completionExecutor;
+  // Index of the next callback to hand out. Only the request thread creates callbacks, but it is
+  // atomic so that a misbehaving caller fails loudly instead of corrupting results.
+  private final AtomicInteger nextIndex;
+  private final AtomicInteger remaining;
+  private volatile Integer keySchemaId;
+  private volatile Integer valueSchemaId;
 
   public ProduceTask(ProduceRequest<?, ?> produceRequest, int numRecords,
       ProducerPool.ProduceRequestCallback callback) {
+    this(produceRequest, numRecords, callback, /* reservation= */ null);
+  }
+
+  public ProduceTask(ProduceRequest<?, ?> produceRequest, int numRecords,
+      ProducerPool.ProduceRequestCallback callback,
+      @Nullable ProduceBudget.Reservation reservation) {
+    this(produceRequest, numRecords, callback, reservation, /* completionExecutor= */ null);
+  }
+
+  public ProduceTask(ProduceRequest<?, ?> produceRequest, int numRecords,
+      ProducerPool.ProduceRequestCallback callback,
+      @Nullable ProduceBudget.Reservation reservation,
+      @Nullable Executor completionExecutor) {
     this.produceRequest = produceRequest;
     this.numRecords = numRecords;
     this.callback = callback;
-    this.completed = 0;
-    this.results = new ArrayList<RecordMetadataOrException>();
+    this.reservation = reservation;
+    this.completionExecutor = completionExecutor;
+    this.results = new RecordMetadataOrException[numRecords];
+    this.nextIndex = new AtomicInteger(0);
+    this.remaining = new AtomicInteger(numRecords);
   }
 
-  public synchronized Callback createCallback() {
-    final int index = results.size();
-    // Dummy data, which just helps us keep track of the index & ensures there's a slot for
-    // storage when we get the callback
-    results.add(null);
-    return new Callback() {
-      @Override
-      public void onCompletion(RecordMetadata metadata, Exception exception) {
-        ProduceTask.this.onCompletion(index, metadata, exception);
-      }
-    };
+  public Callback createCallback() {
+    int index = nextIndex.getAndIncrement();
+    if (index >= numRecords) {
+      throw new IllegalStateException(
+          "Created more callbacks than the " + numRecords + " records in the request.");
+    }
+    return new RecordCallback(this, index);
   }
 
-  public synchronized void onCompletion(int messageNum, RecordMetadata metadata,
-                                        Exception exception) {
-    results.set(messageNum, new RecordMetadataOrException(metadata, exception));
+  public void onCompletion(int messageNum, RecordMetadata metadata, Exception exception) {
+    // Each slot is written by exactly one callback. The write happens-before the decrement below,
+    // and whoever brings the count to zero therefore sees every slot.
+    results[messageNum] = new RecordMetadataOrException(metadata, exception);
 
     if (exception != null) {
       log.error("Producer error for request " + this.toString(), exception);
     }
 
-    completed += 1;
+    if (remaining.decrementAndGet() == 0) {
+      if (reservation != null) {
+        reservation.release();
+      }
+      if (completionExecutor != null) {
+        completionExecutor.execute(this::complete);
+      } else {
+        complete();
+      }
+    }
+  }
 
-    if (completed == numRecords) {
-      this.callback.onCompletion(keySchemaId, valueSchemaId, results);
+  /**
+   * Fails the request before any of its records was sent, e.g. because its schema could not be
+   * resolved. Records that fail once callbacks have been created must complete their callback
+   * with the error instead, since the other records may be sent already.
+   *
+   * @throws IllegalStateException if callbacks have been created
+   */
+  public void fail(Exception exception) {
+    if (nextIndex.get() > 0) {
+      throw new IllegalStateException(
+          "Cannot fail a request some of whose records were sent already.", exception);
+    }
+    if (reservation != null) {
+      reservation.release();
     }
+    callback.onException(exception);
+  }
+
+  /**
+   * Signals that every record of the request has been handed to the producer, see
+   * {@link ProducerPool.ProduceRequestCallback#onSent()}.
+   */
+  public void sent() {
+    callback.onSent();
+  }
+
+  private void complete() {
+    this.callback.onCompletion(keySchemaId, valueSchemaId, Arrays.asList(results));
   }
 
   public ProduceRequest<?, ?> getSchemaHolder() {
@@ -83,4 +150,20 @@ public class ProduceTask {
     this.keySchemaId = keySchemaId;
     this.valueSchemaId = valueSchemaId;
   }
+
+  private static final class RecordCallback implements Callback {
+
+    private final ProduceTask task;
+    private final int index;
+
+    private RecordCallback(ProduceTask task, int index) {
+      this.task = task;
+      this.index = index;
+    }
+
+    @Override
+    public void onCompletion(RecordMetadata metadata, Exception exception) {
+      task.onCompletion(index, metadata, exception);
+    }
+  }
 }
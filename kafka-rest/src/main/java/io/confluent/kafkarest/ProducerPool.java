@@ -15,7 +15,10 @@
 
 package io.confluent.kafkarest;
 
+import io.confluent.kafka.schemaregistry.SchemaProvider;
 import io.confluent.kafka.schemaregistry.avro.AvroSchemaProvider;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
 import io.confluent.kafka.schemaregistry.json.JsonSchemaProvider;
 import io.confluent.kafka.schemaregistry.protobuf.ProtobufSchemaProvider;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
@@ -27,27 +30,98 @@ import io.confluent.kafkarest.converters.JsonSchemaConverter;
 import io.confluent.kafkarest.converters.ProtobufConverter;
 import io.confluent.kafkarest.entities.EmbeddedFormat;
 import io.confluent.kafkarest.entities.ProduceRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.MetricsReporter;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Shared pool of Kafka producers used to send messages. The pool manages batched sends, tracking
- * all required acks for a batch and managing timeouts. Currently this pool only contains one
- * producer per serialization format (e.g. byte[], Avro).
+ * all required acks for a batch and managing timeouts. Each serialization format (e.g. byte[],
+ * Avro) is backed by {@link KafkaRestConfig#PRODUCER_SHARDS_CONFIG} producers, see
+ * {@link ShardedProducer} for how records are routed between them. Requests can also select one
+ * of the {@link KafkaRestConfig#PRODUCE_PROFILES_CONFIG}, which get producers of their own. The
+ * producers of a format and profile are only created once a request needs them, or on
+ * {@link #warmUp()}.
  */
 public class ProducerPool {
 
   private static final Logger log = LoggerFactory.getLogger(ProducerPool.class);
-  private Map<EmbeddedFormat, RestProducer> producers =
-      new HashMap<EmbeddedFormat, RestProducer>();
+  private static final String JMX_PREFIX = "kafka.rest";
+  private static final String METRIC_GROUP = "produce-metrics";
+  // How long shutdown() waits for pending schema lookups and their sends.
+  private static final long SHUTDOWN_TIMEOUT_MS = 30000;
+  private final ConcurrentMap<ProducerKey, LazyProducer> producers =
+      new ConcurrentHashMap<ProducerKey, LazyProducer>();
+  private final Map<ProducerKey, ShardedProducer<?, ?>> shardedProducers =
+      new ConcurrentHashMap<ProducerKey, ShardedProducer<?, ?>>();
+  // Shared by the producers of all profiles of a format. Guarded by this.
+  private final Map<EmbeddedFormat, SchemaResolver> schemaResolvers =
+      new EnumMap<EmbeddedFormat, SchemaResolver>(EmbeddedFormat.class);
+  // Looks up schema subjects for all resolvers, created with the first one. Guarded by this.
+  private SchemaRegistryClient schemaRegistry;
+  private final KafkaRestConfig appConfig;
+  private final String bootstrapBrokers;
+  private final Properties producerConfigOverrides;
+  private final int numShards;
+  private final int schemaCacheSize;
+  private final List<EmbeddedFormat> warmUpFormats;
+  private final List<String> warmUpTopics;
+  private final Set<String> profiles;
+  private final Metrics metrics;
+  private final ProduceBudget budget;
+  // Decoded binary payloads, released by the binary producers once sent.
+  private final PayloadBufferPool payloadBufferPool;
+  // Null when producer.threads is 1, records are then always converted on the request thread.
+  private final ForkJoinPool conversionPool;
+  // Null when produce.completion.threads is 0, requests then complete on the producer I/O threads.
+  private final ProduceCompletionExecutor completionExecutor;
+  // Null when producer.schema.resolution.threads is 0, schemas are then resolved on the request
+  // thread.
+  private final ThreadPoolExecutor resolutionExecutor;
+  // Converts and sends requests once their schemas are resolved. Null when resolutionExecutor is.
+  private final ThreadPoolExecutor sendExecutor;
+  private volatile boolean closed = false;
 
   public ProducerPool(KafkaRestConfig appConfig) {
     this(appConfig, null);
@@ -60,72 +134,229 @@ public class ProducerPool {
     this(appConfig, RestConfigUtils.bootstrapBrokers(appConfig), producerConfigOverrides);
   }
 
+  /**
+   * Producers are only created by the first request for their format, or by {@link #warmUp()}.
+   */
   public ProducerPool(
       KafkaRestConfig appConfig,
       String bootstrapBrokers,
       Properties producerConfigOverrides
   ) {
+    this.appConfig = appConfig;
+    this.bootstrapBrokers = bootstrapBrokers;
+    this.producerConfigOverrides = producerConfigOverrides;
+    this.numShards = appConfig.getInt(KafkaRestConfig.PRODUCER_SHARDS_CONFIG);
+    this.schemaCacheSize = appConfig.getInt(KafkaRestConfig.PRODUCER_SCHEMA_CACHE_SIZE_CONFIG);
+    this.warmUpFormats = new ArrayList<EmbeddedFormat>();
+    for (String format : appConfig.getList(KafkaRestConfig.PRODUCER_WARMUP_FORMATS_CONFIG)) {
+      if (!format.trim().isEmpty()) {
+        warmUpFormats.add(EmbeddedFormat.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+      }
+    }
+    this.warmUpTopics = new ArrayList<String>();
+    for (String topic : appConfig.getList(KafkaRestConfig.PRODUCER_WARMUP_TOPICS_CONFIG)) {
+      if (!topic.trim().isEmpty()) {
+        warmUpTopics.add(topic.trim());
+      }
+    }
+    this.profiles = new HashSet<String>();
+    for (String profile : appConfig.getList(KafkaRestConfig.PRODUCE_PROFILES_CONFIG)) {
+      if (!profile.trim().isEmpty()) {
+        profiles.add(profile.trim());
+      }
+    }
+    this.metrics =
+        new Metrics(
+            new MetricConfig(),
+            Collections.<MetricsReporter>singletonList(new JmxReporter()),
+            Time.SYSTEM,
+            new KafkaMetricsContext(JMX_PREFIX));
+    this.budget = new ProduceBudget(appConfig);
+    this.conversionPool =
+        buildConversionPool(appConfig.getInt(KafkaRestConfig.PRODUCER_THREADS_CONFIG));
+    addBudgetMetrics();
+    this.payloadBufferPool =
+        new PayloadBufferPool(
+            appConfig.getLong(KafkaRestConfig.PRODUCE_PAYLOAD_POOL_BYTES_CONFIG));
+    metrics.addMetric(
+        metrics.metricName(
+            "payload-pool-hit-total",
+            METRIC_GROUP,
+            "Number of binary record keys and values decoded into a reused buffer."),
+        (config, now) -> payloadBufferPool.hitCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "payload-pool-miss-total",
+            METRIC_GROUP,
+            "Number of binary record keys and values that needed a new buffer although pooling "
+                + "is enabled."),
+        (config, now) -> payloadBufferPool.missCount());
+    this.completionExecutor =
+        buildCompletionExecutor(
+            appConfig.getInt(KafkaRestConfig.PRODUCE_COMPLETION_THREADS_CONFIG),
+            appConfig.getInt(KafkaRestConfig.PRODUCE_COMPLETION_QUEUE_SIZE_CONFIG));
+    this.resolutionExecutor =
+        buildResolutionExecutor(
+            appConfig.getInt(KafkaRestConfig.PRODUCER_SCHEMA_RESOLUTION_THREADS_CONFIG),
+            appConfig.getInt(KafkaRestConfig.PRODUCER_SCHEMA_RESOLUTION_QUEUE_SIZE_CONFIG));
+    if (resolutionExecutor != null) {
+      metrics.addMetric(
+          metrics.metricName(
+              "schema-lookup-queue-size",
+              METRIC_GROUP,
+              "Number of schema lookups waiting for a resolution thread."),
+          (config, now) -> resolutionExecutor.getQueue().size());
+    }
+    this.sendExecutor =
+        resolutionExecutor != null
+            ? buildSendExecutor(
+                appConfig.getInt(KafkaRestConfig.PRODUCER_SCHEMA_SEND_THREADS_CONFIG))
+            : null;
+    if (sendExecutor != null) {
+      metrics.addMetric(
+          metrics.metricName(
+              "schema-send-queue-size",
+              METRIC_GROUP,
+              "Number of produce requests with resolved schemas waiting for a send thread."),
+          (config, now) -> sendExecutor.getQueue().size());
+    }
+  }
 
-    Map<String, Object> binaryProps =
-        buildStandardConfig(appConfig, bootstrapBrokers, producerConfigOverrides);
-    producers.put(EmbeddedFormat.BINARY, buildBinaryProducer(binaryProps));
+  /**
+   * Returns the producer for {@code format} and {@code profile}, creating it if this is the first
+   * time it is needed.
+   *
+   * @param profile one of {@link KafkaRestConfig#PRODUCE_PROFILES_CONFIG}, or {@code null} for the
+   *                default producers
+   */
+  private RestProducer getProducer(EmbeddedFormat format, @Nullable String profile) {
+    if (profile != null && !profiles.contains(profile)) {
+      throw Errors.unknownProducerProfileException(profile);
+    }
+    ProducerKey key = new ProducerKey(format, profile);
+    LazyProducer producer = producers.get(key);
+    if (producer == null) {
+      producer = producers.computeIfAbsent(key, LazyProducer::new);
+    }
+    return producer.get();
+  }
 
-    Map<String, Object> jsonProps =
-        buildStandardConfig(appConfig, bootstrapBrokers, producerConfigOverrides);
-    producers.put(EmbeddedFormat.JSON, buildJsonProducer(jsonProps));
+  private RestProducer buildProducer(ProducerKey key) {
+    switch (key.format) {
+      case BINARY:
+        return buildBinaryProducer(
+            key, buildStandardConfig(appConfig, bootstrapBrokers, key.profile));
+      case JSON:
+        return buildJsonProducer(
+            key, buildStandardConfig(appConfig, bootstrapBrokers, key.profile));
+      case AVRO:
+        return buildAvroProducer(
+            key, buildSchemaConfig(appConfig, bootstrapBrokers, key.profile));
+      case JSONSCHEMA:
+        return buildJsonSchemaProducer(
+            key, buildSchemaConfig(appConfig, bootstrapBrokers, key.profile));
+      case PROTOBUF:
+        return buildProtobufProducer(
+            key, buildSchemaConfig(appConfig, bootstrapBrokers, key.profile));
+      default:
+        throw new IllegalArgumentException("Unknown embedded format: " + key.format);
+    }
+  }
 
-    Map<String, Object> avroProps =
-        buildSchemaConfig(appConfig, bootstrapBrokers, producerConfigOverrides);
-    producers.put(EmbeddedFormat.AVRO, buildAvroProducer(avroProps));
+  /**
+   * Creates the producers of {@link KafkaRestConfig#PRODUCER_WARMUP_FORMATS_CONFIG} and has each
+   * of their shards fetch the metadata of {@link KafkaRestConfig#PRODUCER_WARMUP_TOPICS_CONFIG}.
+   * Fetching metadata blocks for up to the producers' {@code max.block.ms} per topic if the
+   * cluster cannot be reached. Failures are logged, the first requests then just wait as usual.
+   */
+  public void warmUp() {
+    for (EmbeddedFormat format : warmUpFormats) {
+      try {
+        getProducer(format, /* profile= */ null);
+      } catch (IllegalStateException e) {
+        // Shut down while warming up.
+        return;
+      }
+      ShardedProducer<?, ?> producer = shardedProducers.get(new ProducerKey(format, null));
+      for (String topic : warmUpTopics) {
+        for (Producer<?, ?> shard : producer.getShards()) {
+          try {
+            shard.partitionsFor(topic);
+          } catch (KafkaException e) {
+            log.warn("Could not fetch metadata of topic {} for {} records.", topic, format, e);
+          }
+        }
+      }
+    }
+  }
 
-    Map<String, Object> jsonSchemaProps =
-        buildSchemaConfig(appConfig, bootstrapBrokers, producerConfigOverrides);
-    producers.put(EmbeddedFormat.JSONSCHEMA, buildJsonSchemaProducer(jsonSchemaProps));
+  /**
+   * Returns whether the default producer for {@code format} has been created.
+   */
+  public boolean isInitialized(EmbeddedFormat format) {
+    return isInitialized(format, /* profile= */ null);
+  }
 
-    Map<String, Object> protobufProps =
-        buildSchemaConfig(appConfig, bootstrapBrokers, producerConfigOverrides);
-    producers.put(EmbeddedFormat.PROTOBUF, buildProtobufProducer(protobufProps));
+  /**
+   * Returns whether the producer for {@code format} and {@code profile} has been created.
+   */
+  public boolean isInitialized(EmbeddedFormat format, @Nullable String profile) {
+    LazyProducer producer = producers.get(new ProducerKey(format, profile));
+    return producer != null && producer.isCreated();
   }
 
   private Map<String, Object> buildStandardConfig(
       KafkaRestConfig appConfig,
       String bootstrapBrokers,
-      Properties producerConfigOverrides
+      @Nullable String profile
   ) {
     Map<String, Object> props = new HashMap<String, Object>();
     props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapBrokers);
 
     Properties producerProps = (Properties) appConfig.getProducerProperties();
-    return buildConfig(props, producerProps, producerConfigOverrides);
+    return buildConfig(props, producerProps, profile);
   }
 
   private NoSchemaRestProducer<byte[], byte[]> buildBinaryProducer(
+      ProducerKey key,
       Map<String, Object>
           binaryProps
   ) {
-    return buildNoSchemaProducer(binaryProps, new ByteArraySerializer(), new ByteArraySerializer());
+    return buildNoSchemaProducer(
+        key,
+        binaryProps,
+        new ByteArraySerializer(),
+        new ByteArraySerializer(),
+        payloadBufferPool);
   }
 
-  private NoSchemaRestProducer<Object, Object> buildJsonProducer(Map<String, Object> jsonProps) {
-    return buildNoSchemaProducer(jsonProps, new KafkaJsonSerializer(), new KafkaJsonSerializer());
+  private NoSchemaRestProducer<Object, Object> buildJsonProducer(
+      ProducerKey key, Map<String, Object> jsonProps) {
+    return buildNoSchemaProducer(
+        key,
+        jsonProps,
+        new KafkaJsonSerializer(),
+        new KafkaJsonSerializer(),
+        PayloadBufferPool.DISABLED);
   }
 
   private <K, V> NoSchemaRestProducer<K, V> buildNoSchemaProducer(
+      ProducerKey key,
       Map<String, Object> props,
       Serializer<K> keySerializer,
-      Serializer<V> valueSerializer
+      Serializer<V> valueSerializer,
+      PayloadBufferPool payloads
   ) {
     keySerializer.configure(props, true);
     valueSerializer.configure(props, false);
-    KafkaProducer<K, V> producer =
-        new KafkaProducer<K, V>(props, keySerializer, valueSerializer);
-    return new NoSchemaRestProducer<K, V>(producer);
+    return new NoSchemaRestProducer<K, V>(
+        buildShardedProducer(key, props, keySerializer, valueSerializer), payloads);
   }
 
   private Map<String, Object> buildSchemaConfig(
       KafkaRestConfig appConfig,
       String bootstrapBrokers,
-      Properties producerConfigOverrides
+      @Nullable String profile
   ) {
     Map<String, Object> schemaDefaults = new HashMap<String, Object>();
     schemaDefaults.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapBrokers);
@@ -135,57 +366,323 @@ public class ProducerPool {
     );
 
     Properties producerProps = (Properties) appConfig.getProducerProperties();
-    return buildConfig(schemaDefaults, producerProps, producerConfigOverrides);
+    return buildConfig(schemaDefaults, producerProps, profile);
   }
 
-  private SchemaRestProducer buildAvroProducer(Map<String, Object> props) {
+  private SchemaRestProducer buildAvroProducer(ProducerKey key, Map<String, Object> props) {
     final KafkaAvroSerializer keySerializer = new KafkaAvroSerializer();
     keySerializer.configure(props, true);
     final KafkaAvroSerializer valueSerializer = new KafkaAvroSerializer();
     valueSerializer.configure(props, false);
-    KafkaProducer<Object, Object> producer
-        = new KafkaProducer<Object, Object>(props, keySerializer, valueSerializer);
+    ShardedProducer<Object, Object> producer =
+        buildShardedProducer(key, props, keySerializer, valueSerializer);
+    SchemaProvider schemaProvider = new AvroSchemaProvider();
     return new SchemaRestProducer(producer, keySerializer, valueSerializer,
-        new AvroSchemaProvider(), new AvroConverter());
+        schemaProvider, AvroConverter.compiled(schemaCacheSize),
+        getSchemaResolver(EmbeddedFormat.AVRO, schemaProvider), getSendExecutor(),
+        conversionPool);
   }
 
-  private SchemaRestProducer buildJsonSchemaProducer(Map<String, Object> props) {
+  private SchemaRestProducer buildJsonSchemaProducer(ProducerKey key, Map<String, Object> props) {
     final KafkaJsonSchemaSerializer keySerializer = new KafkaJsonSchemaSerializer();
     keySerializer.configure(props, true);
     final KafkaJsonSchemaSerializer valueSerializer = new KafkaJsonSchemaSerializer();
     valueSerializer.configure(props, false);
-    KafkaProducer<Object, Object> producer
-        = new KafkaProducer<Object, Object>(props, keySerializer, valueSerializer);
+    ShardedProducer<Object, Object> producer =
+        buildShardedProducer(key, props, keySerializer, valueSerializer);
+    SchemaProvider schemaProvider = new JsonSchemaProvider();
     return new SchemaRestProducer(producer, keySerializer, valueSerializer,
-        new JsonSchemaProvider(), new JsonSchemaConverter());
+        schemaProvider, new JsonSchemaConverter(),
+        getSchemaResolver(EmbeddedFormat.JSONSCHEMA, schemaProvider), getSendExecutor(),
+        conversionPool);
   }
 
-  private SchemaRestProducer buildProtobufProducer(Map<String, Object> props) {
+  private SchemaRestProducer buildProtobufProducer(ProducerKey key, Map<String, Object> props) {
     final KafkaProtobufSerializer keySerializer = new KafkaProtobufSerializer();
     keySerializer.configure(props, true);
     final KafkaProtobufSerializer valueSerializer = new KafkaProtobufSerializer();
     valueSerializer.configure(props, false);
-    KafkaProducer<Object, Object> producer
-        = new KafkaProducer<Object, Object>(props, keySerializer, valueSerializer);
+    ShardedProducer<Object, Object> producer =
+        buildShardedProducer(key, props, keySerializer, valueSerializer);
+    SchemaProvider schemaProvider = new ProtobufSchemaProvider();
     return new SchemaRestProducer(producer, keySerializer, valueSerializer,
-        new ProtobufSchemaProvider(), new ProtobufConverter());
+        schemaProvider, ProtobufConverter.compiled(schemaCacheSize),
+        getSchemaResolver(EmbeddedFormat.PROTOBUF, schemaProvider), getSendExecutor(),
+        conversionPool);
+  }
+
+  private static ForkJoinPool buildConversionPool(int numThreads) {
+    if (numThreads <= 1) {
+      return null;
+    }
+    return new ForkJoinPool(
+        numThreads,
+        pool -> {
+          ForkJoinWorkerThread thread =
+              ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          thread.setName("kafka-rest-conversion-" + thread.getPoolIndex());
+          return thread;
+        },
+        /* handler= */ null,
+        /* asyncMode= */ false);
+  }
+
+  private ProduceCompletionExecutor buildCompletionExecutor(int numThreads, int queueSize) {
+    if (numThreads == 0) {
+      return null;
+    }
+    Sensor handoff = metrics.sensor("produce-completion-handoff");
+    handoff.add(
+        metrics.metricName(
+            "produce-completion-handoff-latency-avg",
+            METRIC_GROUP,
+            "Average time in ms a completed produce request waited for a completion thread."),
+        new Avg());
+    handoff.add(
+        metrics.metricName(
+            "produce-completion-handoff-latency-max",
+            METRIC_GROUP,
+            "Maximum time in ms a completed produce request waited for a completion thread."),
+        new Max());
+    ProduceCompletionExecutor executor =
+        new ProduceCompletionExecutor(numThreads, queueSize, handoff);
+    metrics.addMetric(
+        metrics.metricName(
+            "produce-completion-queue-size",
+            METRIC_GROUP,
+            "Number of completed produce requests waiting for a completion thread."),
+        (config, now) -> executor.queueSize());
+    metrics.addMetric(
+        metrics.metricName(
+            "produce-completion-inline-total",
+            METRIC_GROUP,
+            "Number of produce requests completed on a producer I/O thread because the "
+                + "completion queue was full."),
+        (config, now) -> executor.inlineCompletions());
+    return executor;
+  }
+
+  private static ThreadPoolExecutor buildResolutionExecutor(int numThreads, int queueSize) {
+    if (numThreads == 0) {
+      return null;
+    }
+    AtomicInteger nextId = new AtomicInteger();
+    return new ThreadPoolExecutor(
+        numThreads,
+        numThreads,
+        /* keepAliveTime= */ 0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        runnable -> {
+          Thread thread =
+              new Thread(runnable, "kafka-rest-schema-resolution-" + nextId.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private static ThreadPoolExecutor buildSendExecutor(int numThreads) {
+    AtomicInteger nextId = new AtomicInteger();
+    // Unbounded, the records of queued requests are already held in memory and bounded by the
+    // produce budget.
+    return new ThreadPoolExecutor(
+        numThreads,
+        numThreads,
+        /* keepAliveTime= */ 0,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread =
+              new Thread(runnable, "kafka-rest-schema-send-" + nextId.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private Executor getSendExecutor() {
+    // Without resolution threads every schema is resolved by the time produce() checks for it,
+    // so nothing is ever handed off.
+    return sendExecutor != null ? sendExecutor : Runnable::run;
+  }
+
+  private synchronized SchemaResolver getSchemaResolver(
+      EmbeddedFormat format, SchemaProvider provider) {
+    // Shared between profiles, their schemas are registered in the same registry.
+    SchemaResolver existing = schemaResolvers.get(format);
+    if (existing != null) {
+      return existing;
+    }
+    SchemaResolver resolver =
+        new SchemaResolver(
+            provider,
+            buildParsedSchemaCache(format),
+            schemaCacheSize,
+            resolutionExecutor,
+            getSchemaRegistry(),
+            appConfig.getLong(KafkaRestConfig.PRODUCER_SCHEMA_LATEST_REFRESH_MS_CONFIG),
+            appConfig.getTime());
+    Map<String, String> tags =
+        Collections.singletonMap("format", format.name().toLowerCase());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-lookup-shared-total",
+            METRIC_GROUP,
+            "Number of produce requests that shared a schema lookup already in flight.",
+            tags),
+        (config, now) -> resolver.sharedLookupCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-invalid-cache-hit-total",
+            METRIC_GROUP,
+            "Number of produce requests rejected because their schema was known to be invalid.",
+            tags),
+        (config, now) -> resolver.invalidSchemaHitCount());
+    schemaResolvers.put(format, resolver);
+    return resolver;
+  }
+
+  private synchronized SchemaRegistryClient getSchemaRegistry() {
+    if (schemaRegistry == null) {
+      schemaRegistry =
+          new CachedSchemaRegistryClient(
+              Arrays.asList(
+                  appConfig.getString(KafkaRestConfig.SCHEMA_REGISTRY_URL_CONFIG).split(",")),
+              schemaCacheSize,
+              Arrays.<SchemaProvider>asList(
+                  new AvroSchemaProvider(), new JsonSchemaProvider(), new ProtobufSchemaProvider()),
+              buildSchemaConfig(appConfig, bootstrapBrokers, /* profile= */ null));
+    }
+    return schemaRegistry;
+  }
+
+  private ParsedSchemaCache buildParsedSchemaCache(EmbeddedFormat format) {
+    ParsedSchemaCache cache = new ParsedSchemaCache(schemaCacheSize);
+    Map<String, String> tags =
+        Collections.singletonMap("format", format.name().toLowerCase());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-hit-total",
+            METRIC_GROUP,
+            "Number of produce requests whose schema text was found in the parsed schema cache.",
+            tags),
+        (config, now) -> cache.hitCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-miss-total",
+            METRIC_GROUP,
+            "Number of produce requests whose schema text had to be parsed.",
+            tags),
+        (config, now) -> cache.missCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-size", METRIC_GROUP, "Number of parsed schemas cached.", tags),
+        (config, now) -> cache.size());
+    return cache;
+  }
+
+  private void addBudgetMetrics() {
+    for (EmbeddedFormat format : EmbeddedFormat.values()) {
+      Map<String, String> tags =
+          Collections.singletonMap("format", format.name().toLowerCase());
+      metrics.addMetric(
+          metrics.metricName(
+              "produce-budget-bytes-in-flight",
+              METRIC_GROUP,
+              "Bytes of records accepted for producing but not yet acked or failed.",
+              tags),
+          (config, now) -> budget.bytesInFlight(format));
+      metrics.addMetric(
+          metrics.metricName(
+              "produce-budget-rejected-total",
+              METRIC_GROUP,
+              "Number of produce requests rejected because of the format's produce budget.",
+              tags),
+          (config, now) -> budget.rejections(format));
+    }
+    metrics.addMetric(
+        metrics.metricName(
+            "produce-budget-bytes-limit",
+            METRIC_GROUP,
+            "Maximum bytes in flight per format, 0 if unlimited."),
+        (config, now) -> budget.getMaxBytes());
+    metrics.addMetric(
+        metrics.metricName(
+            "produce-budget-topic-bytes-limit",
+            METRIC_GROUP,
+            "Maximum bytes in flight per topic, 0 if unlimited."),
+        (config, now) -> budget.getMaxTopicBytes());
+    metrics.addMetric(
+        metrics.metricName(
+            "produce-budget-topic-rejected-total",
+            METRIC_GROUP,
+            "Number of produce requests rejected because of a topic's produce budget."),
+        (config, now) -> budget.topicRejections());
+  }
+
+  /**
+   * Builds {@link #numShards} producers for {@code key}. The (already configured) serializers
+   * are shared between the shards, so schema caches are shared too. When there is more than one
+   * shard, or the producers belong to a profile, each gets its own {@code client.id} so its
+   * metrics can be told apart.
+   */
+  private <K, V> ShardedProducer<K, V> buildShardedProducer(
+      ProducerKey key,
+      Map<String, Object> props,
+      Serializer<K> keySerializer,
+      Serializer<V> valueSerializer
+  ) {
+    Object clientId = props.get(ProducerConfig.CLIENT_ID_CONFIG);
+    String clientIdPrefix = clientId != null
+        ? clientId.toString() : "kafka-rest-" + key.format.name().toLowerCase();
+    if (key.profile != null) {
+      clientIdPrefix = clientIdPrefix + "-" + key.profile;
+    }
+    List<KafkaProducer<K, V>> shards = new ArrayList<KafkaProducer<K, V>>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      Map<String, Object> shardProps = props;
+      if (numShards > 1) {
+        shardProps = new HashMap<String, Object>(props);
+        shardProps.put(ProducerConfig.CLIENT_ID_CONFIG, clientIdPrefix + "-" + i);
+      } else if (key.profile != null) {
+        shardProps = new HashMap<String, Object>(props);
+        shardProps.put(ProducerConfig.CLIENT_ID_CONFIG, clientIdPrefix);
+      }
+      shards.add(new KafkaProducer<K, V>(shardProps, keySerializer, valueSerializer));
+    }
+    // Keyed records can only be routed by their partition if it is picked by the default
+    // partitioner, a custom one may decide on anything.
+    Object partitioner = props.get(ProducerConfig.PARTITIONER_CLASS_CONFIG);
+    boolean defaultPartitioner =
+        partitioner == null
+            || partitioner == DefaultPartitioner.class
+            || DefaultPartitioner.class.getName().equals(partitioner.toString().trim());
+    ShardedProducer<K, V> producer =
+        new ShardedProducer<K, V>(shards, defaultPartitioner ? keySerializer : null);
+    shardedProducers.put(key, producer);
+    return producer;
   }
 
   private Map<String, Object> buildConfig(
       Map<String, Object> defaults,
       Properties userProps,
-      Properties overrides
+      @Nullable String profile
   ) {
     // Note careful ordering: built-in values we look up automatically first, then configs
-    // specified by user with initial KafkaRestConfig, and finally explicit overrides passed to
-    // this method (only used for tests)
+    // specified by user with initial KafkaRestConfig, then the configs of the profile, if any, and
+    // finally explicit overrides passed to the constructor (only used for tests)
     Map<String, Object> config = new HashMap<String, Object>(defaults);
     for (String propName : userProps.stringPropertyNames()) {
       config.put(propName, userProps.getProperty(propName));
     }
-    if (overrides != null) {
-      for (String propName : overrides.stringPropertyNames()) {
-        config.put(propName, overrides.getProperty(propName));
+    if (profile != null) {
+      Properties profileProps = appConfig.getProducerProfileProperties(profile);
+      for (String propName : profileProps.stringPropertyNames()) {
+        config.put(propName, profileProps.getProperty(propName));
+      }
+    }
+    if (producerConfigOverrides != null) {
+      for (String propName : producerConfigOverrides.stringPropertyNames()) {
+        config.put(propName, producerConfigOverrides.getProperty(propName));
       }
     }
     return config;
@@ -198,24 +695,208 @@ public class ProducerPool {
       ProduceRequest<K, V> produceRequest,
       ProduceRequestCallback callback
   ) {
+    produce(topic, partition, recordFormat, /* profile= */ null, produceRequest, callback);
+  }
+
+  /**
+   * Produces {@code produceRequest} with the producers of {@code profile}, one of
+   * {@link KafkaRestConfig#PRODUCE_PROFILES_CONFIG}, or the default producers if it is
+   * {@code null}.
+   *
+   * <p>If {@code topic} is {@code null}, each record names its own topic instead, see
+   * {@link io.confluent.kafkarest.entities.ProduceRecord#getTopic()}. The records still share one
+   * {@link ProduceTask}, so the callback gets their results in request order. Only formats without
+   * schemas support this.</p>
+   */
+  public <K, V> void produce(
+      String topic,
+      Integer partition,
+      EmbeddedFormat recordFormat,
+      @Nullable String profile,
+      ProduceRequest<K, V> produceRequest,
+      ProduceRequestCallback callback
+  ) {
+    @SuppressWarnings("unchecked")
+    RestProducer<K, V> restProducer = (RestProducer<K, V>) getProducer(recordFormat, profile);
+    // Rejects the request before any work is done if too many bytes are in flight already.
+    ProduceBudget.Reservation reservation = budget.acquire(recordFormat, topic, produceRequest);
     ProduceTask task =
         new ProduceTask(
             produceRequest,
             produceRequest.getRecords().size(),
-            callback);
+            callback,
+            reservation,
+            completionExecutor);
     log.trace("Starting produce task " + task.toString());
-    @SuppressWarnings("unchecked")
-    RestProducer<K, V> restProducer = (RestProducer<K, V>) producers.get(recordFormat);
-    restProducer.produce(
-        task,
-        topic,
-        partition,
-        produceRequest.getRecords());
+    try {
+      restProducer.produce(
+          task,
+          topic,
+          partition,
+          produceRequest.getRecords());
+    } catch (RuntimeException e) {
+      // The task will never complete, so its bytes are not released otherwise.
+      reservation.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the pool binary produce requests should decode their keys and values into, see
+   * {@link KafkaRestConfig#PRODUCE_PAYLOAD_POOL_BYTES_CONFIG}.
+   */
+  public PayloadBufferPool getPayloadBufferPool() {
+    return payloadBufferPool;
+  }
+
+  /**
+   * Returns the client metrics of every default producer shard backing {@code format}, in shard
+   * order.
+   */
+  public List<Map<MetricName, ? extends Metric>> metrics(EmbeddedFormat format) {
+    return metrics(format, /* profile= */ null);
+  }
+
+  /**
+   * Returns the client metrics of every producer shard backing {@code format} and
+   * {@code profile}, in shard order.
+   */
+  public List<Map<MetricName, ? extends Metric>> metrics(
+      EmbeddedFormat format, @Nullable String profile) {
+    ShardedProducer<?, ?> producer = shardedProducers.get(new ProducerKey(format, profile));
+    if (producer == null) {
+      return Collections.emptyList();
+    }
+    return producer.metrics();
+  }
+
+  /**
+   * Returns the proxy-level produce metrics, exposed over JMX under {@code kafka.rest}.
+   */
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  public ProduceBudget getBudget() {
+    return budget;
   }
 
   public void shutdown() {
-    for (RestProducer restProducer : producers.values()) {
-      restProducer.close();
+    closed = true;
+    // Requests whose schemas are still being resolved are sent before the producers close, or
+    // their records would all fail against closed producers. Lookups hand their requests to the
+    // send executor, so it is drained last.
+    if (resolutionExecutor != null) {
+      resolutionExecutor.shutdown();
+      awaitTermination(resolutionExecutor, "schema resolution");
+    }
+    if (sendExecutor != null) {
+      sendExecutor.shutdown();
+      awaitTermination(sendExecutor, "schema send");
+    }
+    for (LazyProducer producer : producers.values()) {
+      producer.close();
+    }
+    if (conversionPool != null) {
+      conversionPool.shutdown();
+    }
+    // After the producers, whose close waits for in-flight requests to complete.
+    if (completionExecutor != null) {
+      completionExecutor.shutdown();
+    }
+    metrics.close();
+  }
+
+  private static void awaitTermination(ExecutorService executor, String name) {
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        log.warn("The {} threads did not finish within {} ms, closing the producers anyway.",
+            name, SHUTDOWN_TIMEOUT_MS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The producer of one {@link ProducerKey}, created by the first request that needs it. Creating
+   * a producer resolves the bootstrap addresses and builds all its shards, serializers and registry
+   * clients, so only the requests for the same key wait for that.
+   */
+  private final class LazyProducer {
+
+    private final ProducerKey key;
+    @Nullable
+    private volatile RestProducer producer;
+    // Guarded by this.
+    private boolean producerClosed = false;
+
+    private LazyProducer(ProducerKey key) {
+      this.key = key;
+    }
+
+    private RestProducer get() {
+      RestProducer created = producer;
+      if (created != null) {
+        return created;
+      }
+      synchronized (this) {
+        // shutdown() sets closed before it closes the producers, so a producer created after this
+        // check is still closed by it.
+        if (closed || producerClosed) {
+          throw new IllegalStateException("The producer pool has been shut down.");
+        }
+        if (producer == null) {
+          producer = buildProducer(key);
+          log.info("Created producer for {}.", key);
+        }
+        return producer;
+      }
+    }
+
+    private boolean isCreated() {
+      return producer != null;
+    }
+
+    private synchronized void close() {
+      producerClosed = true;
+      if (producer != null) {
+        producer.close();
+      }
+    }
+  }
+
+  private static final class ProducerKey {
+
+    private final EmbeddedFormat format;
+    @Nullable
+    private final String profile;
+
+    private ProducerKey(EmbeddedFormat format, @Nullable String profile) {
+      this.format = format;
+      this.profile = profile;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ProducerKey that = (ProducerKey) o;
+      return format == that.format && Objects.equals(profile, that.profile);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(format, profile);
+    }
+
+    @Override
+    public String toString() {
+      return profile == null ? format.toString() : format + " (profile " + profile + ")";
     }
   }
 
@@ -232,5 +913,24 @@ public class ProducerPool {
         Integer valueSchemaId,
         List<RecordMetadataOrException> results
     );
+
+    /**
+     * Invoked instead of {@link #onCompletion} if the request failed after
+     * {@link ProducerPool#produce} returned, but before any of its records was sent, e.g. because
+     * its schema could not be resolved. Failures detected before {@code produce} returns are
+     * thrown by it instead. The default implementation only logs the exception.
+     */
+    default void onException(Exception exception) {
+      log.error("Produce request failed before sending any records", exception);
+    }
+
+    /**
+     * Invoked once every record of the request has been handed to the producer, which may be after
+     * {@link ProducerPool#produce} returned if a schema had to be looked up first. Acks may
+     * arrive concurrently, so this can run after {@link #onCompletion}. Not invoked if the request
+     * fails as a whole, i.e. if {@code produce} throws or {@link #onException} is invoked.
+     */
+    default void onSent() {
+    }
   }
 }
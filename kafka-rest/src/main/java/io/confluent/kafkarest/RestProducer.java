@@ -28,6 +28,9 @@ public interface RestProducer<K, V> {
    * Produces messages to the topic, handling any conversion, schema lookups or other operations
    * that need to be performed before sending the messages. If schemas are looked up or registered,
    * the SchemaHolder is updated with the resulting IDs.
+   *
+   * @param topic the topic of all records, or {@code null} if each record names its own topic, see
+   *              {@link ProduceRecord#getTopic()}
    */
   public void produce(ProduceTask task, String topic, Integer partition,
                       Collection<? extends ProduceRecord<K, V>> records);
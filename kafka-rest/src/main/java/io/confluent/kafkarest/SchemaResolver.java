@@ -0,0 +1,391 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.SchemaProvider;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDe;
+import io.confluent.kafkarest.entities.SchemaRef;
+import io.confluent.rest.exceptions.RestException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+
+/**
+ * Resolves the schemas of produce requests, either by ID, by parsing and registering their text,
+ * or from a {@link SchemaRef}, without blocking the request thread on Schema Registry.
+ *
+ * <ul>
+ *   <li>Schemas already seen are returned from memory as completed futures.</li>
+ *   <li>Anything else is looked up on the resolution executor. Concurrent requests for the same
+ *   schema share that single lookup.</li>
+ *   <li>Schema text that failed to parse is remembered, and is rejected again without parsing.
+ *   Registry errors are never remembered, the next request tries again.</li>
+ *   <li>Subject versions are looked up once. The latest version of a subject is looked up again
+ *   after the refresh interval, requests keep using the known ID meanwhile.</li>
+ *   <li>Fingerprints resolve to schema text this resolver parsed before, so a client can stop
+ *   resending the text once it was accepted.</li>
+ * </ul>
+ */
+public final class SchemaResolver {
+
+  private final SchemaProvider schemaProvider;
+  private final ParsedSchemaCache parsedSchemaCache;
+  private final Cache<Integer, ParsedSchema> schemasById;
+  private final Cache<String, Boolean> invalidSchemas;
+  private final Cache<String, String> schemasByFingerprint;
+  private final Cache<Map.Entry<String, Integer>, Integer> idsBySubjectVersion;
+  // Subjects are never removed, the map is bounded by the number of subjects referenced.
+  private final ConcurrentMap<String, LatestId> latestIds = new ConcurrentHashMap<>();
+  @Nullable
+  private final Executor executor;
+  @Nullable
+  private final SchemaRegistryClient schemaRegistry;
+  private final long latestRefreshMs;
+  private final Time time;
+  private final ConcurrentMap<Integer, CompletableFuture<ParsedSchemaCache.SchemaAndId>>
+      lookupsById = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Map.Entry<String, String>,
+      CompletableFuture<ParsedSchemaCache.SchemaAndId>> lookupsByText = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Map.Entry<String, Integer>,
+      CompletableFuture<ParsedSchemaCache.SchemaAndId>> lookupsBySubjectVersion =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<ParsedSchemaCache.SchemaAndId>>
+      lookupsLatest = new ConcurrentHashMap<>();
+  private final LongAdder sharedLookups = new LongAdder();
+  private final LongAdder invalidSchemaHits = new LongAdder();
+
+  /**
+   * @param executor executor to run registry lookups on, or {@code null} to run them on the
+   *                 calling thread
+   */
+  public SchemaResolver(
+      SchemaProvider schemaProvider,
+      ParsedSchemaCache parsedSchemaCache,
+      int maxSize,
+      @Nullable Executor executor
+  ) {
+    this(
+        schemaProvider,
+        parsedSchemaCache,
+        maxSize,
+        executor,
+        /* schemaRegistry= */ null,
+        /* latestRefreshMs= */ 0,
+        new SystemTime());
+  }
+
+  /**
+   * @param executor        executor to run registry lookups on, or {@code null} to run them on
+   *                        the calling thread
+   * @param schemaRegistry  client to look up subject versions with, or {@code null} to reject
+   *                        requests referencing their schema by subject
+   * @param latestRefreshMs how long the latest ID of a subject is used before it is refreshed
+   */
+  public SchemaResolver(
+      SchemaProvider schemaProvider,
+      ParsedSchemaCache parsedSchemaCache,
+      int maxSize,
+      @Nullable Executor executor,
+      @Nullable SchemaRegistryClient schemaRegistry,
+      long latestRefreshMs,
+      Time time
+  ) {
+    this.schemaProvider = schemaProvider;
+    this.parsedSchemaCache = parsedSchemaCache;
+    this.schemasById = new SynchronizedCache<>(new LRUCache<>(maxSize));
+    this.invalidSchemas = new SynchronizedCache<>(new LRUCache<>(maxSize));
+    this.schemasByFingerprint = new SynchronizedCache<>(new LRUCache<>(maxSize));
+    this.idsBySubjectVersion = new SynchronizedCache<>(new LRUCache<>(maxSize));
+    this.executor = executor;
+    this.schemaRegistry = schemaRegistry;
+    this.latestRefreshMs = latestRefreshMs;
+    this.time = time;
+  }
+
+  /**
+   * Resolves the schema for one side of a request, from {@code schemaId} if it is set and from
+   * {@code schemaText} otherwise. Completes with {@code null} if neither is set, and exceptionally
+   * with a {@link RestException} if the schema cannot be resolved.
+   */
+  public CompletableFuture<ParsedSchemaCache.SchemaAndId> resolve(
+      AbstractKafkaSchemaSerDe serializer,
+      String subject,
+      @Nullable Integer schemaId,
+      @Nullable String schemaText
+  ) {
+    return resolve(serializer, subject, schemaId, schemaText, /* schemaRef= */ null);
+  }
+
+  /**
+   * Resolves the schema for one side of a request, from {@code schemaId} if it is set, from
+   * {@code schemaText} otherwise, and from {@code schemaRef} if neither is set. Completes with
+   * {@code null} if none is set, and exceptionally with a {@link RestException} if the schema
+   * cannot be resolved.
+   */
+  public CompletableFuture<ParsedSchemaCache.SchemaAndId> resolve(
+      AbstractKafkaSchemaSerDe serializer,
+      String subject,
+      @Nullable Integer schemaId,
+      @Nullable String schemaText,
+      @Nullable SchemaRef schemaRef
+  ) {
+    if (schemaId != null) {
+      return resolveId(serializer, schemaId);
+    }
+    if (schemaText != null) {
+      return resolveText(serializer, subject, schemaText, /* registerFingerprint= */ true);
+    }
+    if (schemaRef == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    if (schemaRef.getFingerprint() != null) {
+      String text = schemasByFingerprint.get(schemaRef.getFingerprint());
+      if (text == null) {
+        return failed(Errors.unknownSchemaFingerprintException(schemaRef.getFingerprint()));
+      }
+      return resolveText(serializer, subject, text, /* registerFingerprint= */ false);
+    }
+    if (schemaRegistry == null) {
+      return failed(
+          new IllegalStateException("Schemas cannot be referenced by subject without a client."));
+    }
+    if (schemaRef.getVersion() != null) {
+      return resolveVersion(serializer, schemaRef.getSubject(), schemaRef.getVersion());
+    }
+    return resolveLatest(serializer, schemaRef.getSubject());
+  }
+
+  private CompletableFuture<ParsedSchemaCache.SchemaAndId> resolveId(
+      AbstractKafkaSchemaSerDe serializer, int schemaId) {
+    ParsedSchema schema = schemasById.get(schemaId);
+    if (schema != null) {
+      return CompletableFuture.completedFuture(
+          new ParsedSchemaCache.SchemaAndId(schema, schemaId));
+    }
+    return lookup(lookupsById, schemaId, () -> getSchemaById(serializer, schemaId));
+  }
+
+  private ParsedSchemaCache.SchemaAndId getSchemaById(
+      AbstractKafkaSchemaSerDe serializer, int schemaId) throws IOException, RestClientException {
+    ParsedSchema schema = schemasById.get(schemaId);
+    if (schema == null) {
+      schema = serializer.getSchemaById(schemaId);
+      schemasById.put(schemaId, schema);
+    }
+    return new ParsedSchemaCache.SchemaAndId(schema, schemaId);
+  }
+
+  private CompletableFuture<ParsedSchemaCache.SchemaAndId> resolveVersion(
+      AbstractKafkaSchemaSerDe serializer, String subject, int version) {
+    Map.Entry<String, Integer> key = new SimpleImmutableEntry<>(subject, version);
+    // Registered versions never change, so their IDs are cached for good.
+    Integer schemaId = idsBySubjectVersion.get(key);
+    if (schemaId != null) {
+      return resolveId(serializer, schemaId);
+    }
+    return lookup(lookupsBySubjectVersion, key, () -> {
+      int found = schemaRegistry.getSchemaMetadata(subject, version).getId();
+      idsBySubjectVersion.put(key, found);
+      return getSchemaById(serializer, found);
+    });
+  }
+
+  private CompletableFuture<ParsedSchemaCache.SchemaAndId> resolveLatest(
+      AbstractKafkaSchemaSerDe serializer, String subject) {
+    LatestId latest = latestIds.get(subject);
+    if (latest == null) {
+      return refreshLatest(serializer, subject);
+    }
+    if (time.milliseconds() - latest.fetchedMs >= latestRefreshMs) {
+      // Refreshed in the background, this request goes ahead with the ID known so far.
+      refreshLatest(serializer, subject);
+    }
+    return resolveId(serializer, latest.schemaId);
+  }
+
+  private CompletableFuture<ParsedSchemaCache.SchemaAndId> refreshLatest(
+      AbstractKafkaSchemaSerDe serializer, String subject) {
+    return lookup(lookupsLatest, subject, () -> {
+      int found = schemaRegistry.getLatestSchemaMetadata(subject).getId();
+      latestIds.put(subject, new LatestId(found, time.milliseconds()));
+      return getSchemaById(serializer, found);
+    });
+  }
+
+  /**
+   * @param registerFingerprint whether to (re-)register the fingerprint of {@code schemaText} if
+   *                            it is parsed already, i.e. whether the request sent the text
+   */
+  private CompletableFuture<ParsedSchemaCache.SchemaAndId> resolveText(
+      AbstractKafkaSchemaSerDe serializer,
+      String subject,
+      String schemaText,
+      boolean registerFingerprint
+  ) {
+    ParsedSchemaCache.SchemaAndId cached = parsedSchemaCache.get(subject, schemaText);
+    if (cached != null) {
+      if (registerFingerprint) {
+        // Its fingerprint may have been evicted meanwhile, sending the text again must make it
+        // known again.
+        schemasByFingerprint.put(fingerprint(schemaText), schemaText);
+      }
+      return CompletableFuture.completedFuture(cached);
+    }
+    if (invalidSchemas.get(schemaText) != null) {
+      invalidSchemaHits.increment();
+      return failed(Errors.invalidSchemaException(schemaText));
+    }
+    return lookup(lookupsByText, new SimpleImmutableEntry<>(subject, schemaText), () -> {
+      ParsedSchema schema =
+          schemaProvider.parseSchema(schemaText, Collections.emptyList()).orElse(null);
+      if (schema == null) {
+        invalidSchemas.put(schemaText, Boolean.TRUE);
+        throw Errors.invalidSchemaException(schemaText);
+      }
+      int id = serializer.register(subject, schema);
+      parsedSchemaCache.put(subject, schemaText, schema, id);
+      schemasByFingerprint.put(fingerprint(schemaText), schemaText);
+      return new ParsedSchemaCache.SchemaAndId(schema, id);
+    });
+  }
+
+  /**
+   * Returns the fingerprint clients use to reference {@code schemaText}, the lowercase hex SHA-256
+   * of its UTF-8 bytes.
+   */
+  public static String fingerprint(String schemaText) {
+    byte[] digest;
+    try {
+      digest =
+          MessageDigest.getInstance("SHA-256").digest(schemaText.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hex = new StringBuilder(digest.length * 2);
+    for (byte b : digest) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  public ParsedSchemaCache getParsedSchemaCache() {
+    return parsedSchemaCache;
+  }
+
+  /**
+   * Returns the number of resolutions that joined a lookup already in flight for their schema.
+   */
+  public long sharedLookupCount() {
+    return sharedLookups.sum();
+  }
+
+  /**
+   * Returns the number of resolutions rejected because their schema text was known to be invalid.
+   */
+  public long invalidSchemaHitCount() {
+    return invalidSchemaHits.sum();
+  }
+
+  private <K> CompletableFuture<ParsedSchemaCache.SchemaAndId> lookup(
+      ConcurrentMap<K, CompletableFuture<ParsedSchemaCache.SchemaAndId>> inFlight,
+      K key,
+      Lookup lookup
+  ) {
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> future = new CompletableFuture<>();
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      sharedLookups.increment();
+      return existing;
+    }
+    Runnable task = () -> {
+      ParsedSchemaCache.SchemaAndId result = null;
+      RuntimeException error = null;
+      try {
+        result = lookup.run();
+      } catch (IOException | RestClientException e) {
+        error = lookupFailed(e);
+      } catch (RuntimeException e) {
+        error = e;
+      } finally {
+        // Results are cached before completing, so later requests do not need this entry. Removed
+        // before completing, which runs the dependents of the lookup.
+        inFlight.remove(key, future);
+      }
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(result);
+      }
+    };
+    if (executor == null) {
+      task.run();
+      return future;
+    }
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, future);
+      future.completeExceptionally(lookupFailed(e));
+    }
+    return future;
+  }
+
+  private static RestException lookupFailed(Exception cause) {
+    // FIXME We should return more specific error codes (unavailable vs registration failed in
+    // a way that isn't retriable?).
+    return new RestException("Schema registration or lookup failed", 408, 40801, cause);
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable error) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(error);
+    return future;
+  }
+
+  private static final class LatestId {
+
+    private final int schemaId;
+    private final long fetchedMs;
+
+    private LatestId(int schemaId, long fetchedMs) {
+      this.schemaId = schemaId;
+      this.fetchedMs = fetchedMs;
+    }
+  }
+
+  private interface Lookup {
+
+    ParsedSchemaCache.SchemaAndId run() throws IOException, RestClientException;
+  }
+}
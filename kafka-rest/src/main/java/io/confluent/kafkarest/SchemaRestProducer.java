@@ -18,30 +18,46 @@ package io.confluent.kafkarest;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.kafka.schemaregistry.ParsedSchema;
 import io.confluent.kafka.schemaregistry.SchemaProvider;
-import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
 import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDe;
 import io.confluent.kafkarest.converters.ConversionException;
 import io.confluent.kafkarest.converters.SchemaConverter;
 import io.confluent.kafkarest.entities.ProduceRecord;
 import io.confluent.kafkarest.entities.ProduceRequest;
-import io.confluent.rest.exceptions.RestException;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 public class SchemaRestProducer implements RestProducer<JsonNode, JsonNode> {
 
-  protected final KafkaProducer<Object, Object> producer;
+  private static final int DEFAULT_PARSED_SCHEMA_CACHE_SIZE =
+      Integer.parseInt(KafkaRestConfig.PRODUCER_SCHEMA_CACHE_SIZE_DEFAULT);
+
+  // Batches are split into chunks of at most this many records for parallel conversion. Smaller
+  // batches are converted on the request thread, handing them off would cost more than it saves.
+  static final int CONVERSION_CHUNK_SIZE = 256;
+
+  protected final ShardedProducer<Object, Object> producer;
   protected final AbstractKafkaSchemaSerDe keySerializer;
   protected final AbstractKafkaSchemaSerDe valueSerializer;
   protected final SchemaProvider schemaProvider;
   protected final SchemaConverter schemaConverter;
-  protected final Map<ParsedSchema, Integer> schemaIdCache;
+  protected final SchemaResolver schemaResolver;
+  protected final ParsedSchemaCache parsedSchemaCache;
+  protected final Executor sendExecutor;
+  @Nullable
+  protected final ForkJoinPool conversionPool;
 
   public SchemaRestProducer(
       KafkaProducer<Object, Object> producer,
@@ -49,99 +65,362 @@ public class SchemaRestProducer implements RestProducer<JsonNode, JsonNode> {
       AbstractKafkaSchemaSerDe valueSerializer,
       SchemaProvider schemaProvider,
       SchemaConverter schemaConverter
+  ) {
+    this(new ShardedProducer<>(producer), keySerializer, valueSerializer, schemaProvider,
+        schemaConverter, new ParsedSchemaCache(DEFAULT_PARSED_SCHEMA_CACHE_SIZE));
+  }
+
+  public SchemaRestProducer(
+      ShardedProducer<Object, Object> producer,
+      AbstractKafkaSchemaSerDe keySerializer,
+      AbstractKafkaSchemaSerDe valueSerializer,
+      SchemaProvider schemaProvider,
+      SchemaConverter schemaConverter,
+      ParsedSchemaCache parsedSchemaCache
+  ) {
+    this(producer, keySerializer, valueSerializer, schemaProvider, schemaConverter,
+        parsedSchemaCache, /* conversionPool= */ null);
+  }
+
+  /**
+   * @param conversionPool pool to convert large batches on in parallel, or {@code null} to always
+   *                       convert on the calling thread
+   */
+  public SchemaRestProducer(
+      ShardedProducer<Object, Object> producer,
+      AbstractKafkaSchemaSerDe keySerializer,
+      AbstractKafkaSchemaSerDe valueSerializer,
+      SchemaProvider schemaProvider,
+      SchemaConverter schemaConverter,
+      ParsedSchemaCache parsedSchemaCache,
+      @Nullable ForkJoinPool conversionPool
+  ) {
+    this(producer, keySerializer, valueSerializer, schemaProvider, schemaConverter,
+        new SchemaResolver(
+            schemaProvider,
+            parsedSchemaCache,
+            DEFAULT_PARSED_SCHEMA_CACHE_SIZE,
+            /* executor= */ null),
+        // Schemas are resolved on the calling thread, requests never wait for them.
+        /* sendExecutor= */ Runnable::run,
+        conversionPool);
+  }
+
+  /**
+   * @param schemaResolver resolver for the schemas of requests
+   * @param sendExecutor   executor to convert and send records on when a schema had to be looked
+   *                       up, once the lookup completes
+   * @param conversionPool pool to convert large batches on in parallel, or {@code null} to always
+   *                       convert on the calling thread
+   */
+  public SchemaRestProducer(
+      ShardedProducer<Object, Object> producer,
+      AbstractKafkaSchemaSerDe keySerializer,
+      AbstractKafkaSchemaSerDe valueSerializer,
+      SchemaProvider schemaProvider,
+      SchemaConverter schemaConverter,
+      SchemaResolver schemaResolver,
+      Executor sendExecutor,
+      @Nullable ForkJoinPool conversionPool
   ) {
     this.producer = producer;
     this.keySerializer = keySerializer;
     this.valueSerializer = valueSerializer;
     this.schemaProvider = schemaProvider;
     this.schemaConverter = schemaConverter;
-    this.schemaIdCache = new ConcurrentHashMap<>(100);
+    this.schemaResolver = schemaResolver;
+    this.parsedSchemaCache = schemaResolver.getParsedSchemaCache();
+    this.sendExecutor = sendExecutor;
+    this.conversionPool = conversionPool;
   }
 
+  /**
+   * Produces {@code records} once both schemas of the request are resolved. Requests whose schemas
+   * are already known are converted and sent on the calling thread, and their errors are thrown.
+   * Otherwise this returns right away, the records are converted and sent on the send executor
+   * once the schemas are resolved, and errors are reported through {@link ProduceTask#fail}.
+   * Either way, a record whose {@code send} fails gets the error as its result, the other records
+   * of the request are still sent.
+   *
+   * <p>Schemas are registered under subjects named after the topic, so all records must go to
+   * {@code topic}.</p>
+   */
   public void produce(
       ProduceTask task,
       String topic,
       Integer partition,
       Collection<? extends ProduceRecord<JsonNode, JsonNode>> records
   ) {
+    if (topic == null) {
+      throw new IllegalArgumentException("Records with schemas must be produced to one topic.");
+    }
     ProduceRequest<?, ?> schemaHolder = task.getSchemaHolder();
-    ParsedSchema keySchema = null;
-    ParsedSchema valueSchema = null;
-    Integer keySchemaId = schemaHolder.getKeySchemaId();
-    Integer valueSchemaId = schemaHolder.getValueSchemaId();
-    try {
-      // If both ID and schema are null, that may be ok. Validation of the ProduceTask by the
-      // caller should have checked this already.
-      if (keySchemaId != null) {
-        keySchema = keySerializer.getSchemaById(keySchemaId);
-      } else if (schemaHolder.getKeySchema() != null) {
-        keySchema = schemaProvider.parseSchema(
-                schemaHolder.getKeySchema(), Collections.emptyList())
-                .orElseThrow(() -> Errors.invalidSchemaException(schemaHolder.getKeySchema())
-        );
-        if (schemaIdCache.containsKey(keySchema)) {
-          keySchemaId = schemaIdCache.get(keySchema);
-          keySchema = keySerializer.getSchemaById(keySchemaId);
-        } else {
-          keySchemaId = keySerializer.register(topic + "-key", keySchema);
-          schemaIdCache.put(keySchema, keySchemaId);
-        }
-      }
+    // If both ID and schema are null, that may be ok. Validation of the ProduceTask by the
+    // caller should have checked this already.
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> key =
+        schemaResolver.resolve(
+            keySerializer,
+            topic + "-key",
+            schemaHolder.getKeySchemaId(),
+            schemaHolder.getKeySchema(),
+            schemaHolder.getKeySchemaRef());
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> value =
+        schemaResolver.resolve(
+            valueSerializer,
+            topic + "-value",
+            schemaHolder.getValueSchemaId(),
+            schemaHolder.getValueSchema(),
+            schemaHolder.getValueSchemaRef());
 
-      if (valueSchemaId != null) {
-        valueSchema = valueSerializer.getSchemaById(valueSchemaId);
-      } else if (schemaHolder.getValueSchema() != null) {
-        valueSchema = schemaProvider.parseSchema(
-                schemaHolder.getValueSchema(), Collections.emptyList())
-                .orElseThrow(() -> Errors.invalidSchemaException(schemaHolder.getValueSchema())
-        );
-        if (schemaIdCache.containsKey(valueSchema)) {
-          valueSchemaId = schemaIdCache.get(valueSchema);
-          valueSchema = valueSerializer.getSchemaById(valueSchemaId);
-        } else {
-          valueSchemaId = valueSerializer.register(topic + "-value", valueSchema);
-          schemaIdCache.put(valueSchema, valueSchemaId);
-        }
-      }
-    } catch (RestClientException e) {
-      // FIXME We should return more specific error codes (unavailable vs registration failed in
-      // a way that isn't retriable?).
-      throw new RestException("Schema registration or lookup failed", 408, 40801, e);
-    } catch (IOException e) {
-      throw new RestException("Schema registration or lookup failed", 408, 40801, e);
+    if (key.isDone() && value.isDone()) {
+      send(task, topic, partition, records, getResolved(key), getResolved(value));
+      return;
     }
+    // Completes on a resolution thread, which must not wait for conversion or a full producer
+    // buffer meanwhile.
+    CompletableFuture.allOf(key, value).whenComplete((ignored, error) -> {
+      try {
+        sendExecutor.execute(() -> {
+          try {
+            send(task, topic, partition, records, getResolved(key), getResolved(value));
+          } catch (RuntimeException e) {
+            task.fail(e);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        task.fail(e);
+      }
+    });
+  }
+
+  private void send(
+      ProduceTask task,
+      String topic,
+      Integer partition,
+      Collection<? extends ProduceRecord<JsonNode, JsonNode>> records,
+      @Nullable ParsedSchemaCache.SchemaAndId key,
+      @Nullable ParsedSchemaCache.SchemaAndId value
+  ) {
+    ProduceRequest<?, ?> schemaHolder = task.getSchemaHolder();
+    ParsedSchema keySchema = key != null ? key.getSchema() : null;
+    Integer keySchemaId = key != null ? key.getId() : schemaHolder.getKeySchemaId();
+    ParsedSchema valueSchema = value != null ? value.getSchema() : null;
+    Integer valueSchemaId = value != null ? value.getId() : schemaHolder.getValueSchemaId();
 
     // Store the schema IDs in the task. These will be used to include the IDs in the response
     task.setSchemaIds(keySchemaId, valueSchemaId);
 
     // Convert everything before doing any sends so if any conversion fails we can kill
     // the entire request so we don't get partially sent requests
-    ArrayList<ProducerRecord<Object, Object>> kafkaRecords
-        = new ArrayList<ProducerRecord<Object, Object>>();
+    List<ProducerRecord<Object, Object>> kafkaRecords =
+        convert(
+            new RecordConversion(
+                topic, partition, keySchema, keySchemaId, valueSchema, valueSchemaId),
+            records);
+    for (ProducerRecord<Object, Object> rec : kafkaRecords) {
+      Callback callback = task.createCallback();
+      try {
+        producer.send(rec, callback);
+      } catch (RuntimeException e) {
+        // Earlier records may be on their way already, so only this one fails, like KafkaProducer
+        // fails records whose send() hit an ApiException.
+        callback.onCompletion(null, e);
+      }
+    }
+    task.sent();
+  }
+
+  /**
+   * Returns the result of a completed resolution, or throws the exception it failed with.
+   */
+  @Nullable
+  private static ParsedSchemaCache.SchemaAndId getResolved(
+      CompletableFuture<ParsedSchemaCache.SchemaAndId> resolution) {
     try {
-      for (ProduceRecord<JsonNode, JsonNode> record : records) {
-        // Beware of null schemas and NullNodes here: we need to avoid attempting the conversion
-        // if there isn't a schema. Validation will have already checked that all the keys/values
-        // were NullNodes.
-        Object key = keySchema != null
-            ? schemaConverter.toObject(record.getKey(), keySchema) : null;
-        Object value = valueSchema != null
-            ? schemaConverter.toObject(record.getValue(), valueSchema) : null;
-        Integer recordPartition = partition;
-        if (recordPartition == null) {
-          recordPartition = record.getPartition();
-        }
-        kafkaRecords.add(new ProducerRecord(topic, recordPartition, key, value));
+      return resolution.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
-    } catch (ConversionException e) {
-      throw Errors.jsonConversionException(e);
+      throw e;
     }
-    for (ProducerRecord<Object, Object> rec : kafkaRecords) {
-      producer.send(rec, task.createCallback());
+  }
+
+  /**
+   * Converts {@code records} in request order. Large batches are split into chunks that are
+   * converted on {@link #conversionPool}. Either way, the error of the first record (in request
+   * order) that fails to convert is thrown and nothing is returned.
+   */
+  private List<ProducerRecord<Object, Object>> convert(
+      RecordConversion conversion,
+      Collection<? extends ProduceRecord<JsonNode, JsonNode>> records
+  ) {
+    List<? extends ProduceRecord<JsonNode, JsonNode>> recordList =
+        records instanceof List
+            ? (List<? extends ProduceRecord<JsonNode, JsonNode>>) records
+            : new ArrayList<>(records);
+    @SuppressWarnings("unchecked")
+    ProducerRecord<Object, Object>[] converted = new ProducerRecord[recordList.size()];
+    AtomicReference<ConversionFailure> failure = new AtomicReference<>();
+    ConvertChunk task =
+        new ConvertChunk(conversion, recordList, converted, 0, recordList.size(), failure);
+    if (conversionPool == null || recordList.size() <= CONVERSION_CHUNK_SIZE) {
+      task.compute();
+    } else {
+      conversionPool.invoke(task);
     }
+
+    ConversionFailure firstFailure = failure.get();
+    if (firstFailure != null) {
+      if (firstFailure.error instanceof ConversionException) {
+        throw Errors.jsonConversionException((ConversionException) firstFailure.error);
+      }
+      throw firstFailure.error;
+    }
+    return Arrays.asList(converted);
+  }
+
+  public ParsedSchemaCache getParsedSchemaCache() {
+    return parsedSchemaCache;
+  }
+
+  public SchemaResolver getSchemaResolver() {
+    return schemaResolver;
+  }
+
+  public ShardedProducer<Object, Object> getProducer() {
+    return producer;
   }
 
   public void close() {
     producer.close();
   }
+
+  /**
+   * Converts the records of one request, with its resolved schemas.
+   */
+  private final class RecordConversion {
+
+    private final String topic;
+    @Nullable
+    private final Integer partition;
+    @Nullable
+    private final ParsedSchema keySchema;
+    private final Integer keySchemaId;
+    @Nullable
+    private final ParsedSchema valueSchema;
+    private final Integer valueSchemaId;
+
+    private RecordConversion(
+        String topic,
+        @Nullable Integer partition,
+        @Nullable ParsedSchema keySchema,
+        Integer keySchemaId,
+        @Nullable ParsedSchema valueSchema,
+        Integer valueSchemaId
+    ) {
+      this.topic = topic;
+      this.partition = partition;
+      this.keySchema = keySchema;
+      this.keySchemaId = keySchemaId;
+      this.valueSchema = valueSchema;
+      this.valueSchemaId = valueSchemaId;
+    }
+
+    private ProducerRecord<Object, Object> convert(ProduceRecord<JsonNode, JsonNode> record) {
+      // Beware of null schemas and NullNodes here: we need to avoid attempting the conversion
+      // if there isn't a schema. Validation will have already checked that all the keys/values
+      // were NullNodes.
+      Object key = keySchema != null
+          ? schemaConverter.toObject(record.getKey(), keySchema, keySchemaId) : null;
+      Object value = valueSchema != null
+          ? schemaConverter.toObject(record.getValue(), valueSchema, valueSchemaId) : null;
+      Integer recordPartition = partition;
+      if (recordPartition == null) {
+        recordPartition = record.getPartition();
+      }
+      return new ProducerRecord<>(topic, recordPartition, key, value);
+    }
+  }
+
+  /**
+   * Converts the records in {@code [from, to)} into {@code converted}, forking halves until they
+   * are at most {@link #CONVERSION_CHUNK_SIZE} records.
+   */
+  private static final class ConvertChunk extends RecursiveAction {
+
+    private final RecordConversion conversion;
+    private final List<? extends ProduceRecord<JsonNode, JsonNode>> records;
+    private final ProducerRecord<Object, Object>[] converted;
+    private final int from;
+    private final int to;
+    private final AtomicReference<ConversionFailure> failure;
+
+    private ConvertChunk(
+        RecordConversion conversion,
+        List<? extends ProduceRecord<JsonNode, JsonNode>> records,
+        ProducerRecord<Object, Object>[] converted,
+        int from,
+        int to,
+        AtomicReference<ConversionFailure> failure
+    ) {
+      this.conversion = conversion;
+      this.records = records;
+      this.converted = converted;
+      this.from = from;
+      this.to = to;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > CONVERSION_CHUNK_SIZE && getPool() != null) {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ConvertChunk(conversion, records, converted, from, middle, failure),
+            new ConvertChunk(conversion, records, converted, middle, to, failure));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        ConversionFailure current = failure.get();
+        if (current != null && current.index < i) {
+          // An earlier record already failed, its error is the one reported.
+          return;
+        }
+        try {
+          converted[i] = conversion.convert(records.get(i));
+        } catch (RuntimeException e) {
+          ConversionFailure.record(failure, new ConversionFailure(i, e));
+          return;
+        }
+      }
+    }
+  }
+
+  private static final class ConversionFailure {
+
+    private final int index;
+    private final RuntimeException error;
+
+    private ConversionFailure(int index, RuntimeException error) {
+      this.index = index;
+      this.error = error;
+    }
+
+    /**
+     * Keeps the failure of the lowest record index, like a serial conversion would.
+     */
+    private static void record(
+        AtomicReference<ConversionFailure> failure, ConversionFailure candidate) {
+      while (true) {
+        ConversionFailure current = failure.get();
+        if (current != null && current.index < candidate.index) {
+          return;
+        }
+        if (failure.compareAndSet(current, candidate)) {
+          return;
+        }
+      }
+    }
+  }
 }
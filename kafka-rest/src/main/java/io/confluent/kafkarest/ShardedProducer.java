@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.ApiException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * A fixed set of Kafka producers sharing the same configuration and serializers. Each record is
+ * routed to a shard by its topic and the partition it is written to, so all records for a given
+ * partition always go through the same producer and keep their relative order.
+ *
+ * <ul>
+ *   <li>Records with an explicit partition are routed by it.</li>
+ *   <li>Keyed records get the partition the default partitioner would pick for their serialized
+ *   key filled in, and are routed by it.</li>
+ *   <li>Keyless records have no partition to keep the order of, and are spread over all
+ *   shards.</li>
+ * </ul>
+ *
+ * <p>Routing a keyed record serializes its key, which the producer then serializes again when
+ * sending it. That is cheap for raw bytes, but for schema formats it encodes the key a second
+ * time (the schema's ID is cached by then). Records are only routed this way with more than one
+ * shard.</p>
+ *
+ * <p>If the producers use a custom partitioner, the partition of a record cannot be known before
+ * it is sent. Records without an explicit partition are then routed by topic only, so all such
+ * traffic to one topic goes through a single shard, and may share a partition with records sent
+ * to it explicitly through another shard.</p>
+ */
+public class ShardedProducer<K, V> {
+
+  private final List<Producer<K, V>> shards;
+  // Null if the producers use a custom partitioner.
+  @Nullable
+  private final Serializer<K> keySerializer;
+  private final AtomicInteger nextKeylessShard = new AtomicInteger();
+
+  public ShardedProducer(Producer<K, V> producer) {
+    this(Collections.singletonList(producer), /* keySerializer= */ null);
+  }
+
+  /**
+   * Creates a sharded producer that routes records without an explicit partition by topic only.
+   */
+  public ShardedProducer(List<? extends Producer<K, V>> shards) {
+    this(shards, /* keySerializer= */ null);
+  }
+
+  /**
+   * @param keySerializer serializer of the producers' keys, used to find the partition of keyed
+   *                      records, or {@code null} if the producers use a custom partitioner
+   */
+  public ShardedProducer(
+      List<? extends Producer<K, V>> shards, @Nullable Serializer<K> keySerializer) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one producer shard is required.");
+    }
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    this.keySerializer = keySerializer;
+  }
+
+  /**
+   * Sends {@code record} through the shard responsible for the partition it is written to.
+   */
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+    if (shards.size() == 1) {
+      return shards.get(0).send(record, callback);
+    }
+    if (record.partition() != null || keySerializer == null) {
+      return shardFor(record.topic(), record.partition()).send(record, callback);
+    }
+    byte[] keyBytes;
+    try {
+      keyBytes =
+          record.key() != null
+              ? keySerializer.serialize(record.topic(), record.headers(), record.key())
+              : null;
+    } catch (ApiException e) {
+      return failed(e, callback);
+    }
+    if (keyBytes == null) {
+      Producer<K, V> shard =
+          shards.get(Math.floorMod(nextKeylessShard.getAndIncrement(), shards.size()));
+      return shard.send(record, callback);
+    }
+    List<PartitionInfo> partitions;
+    try {
+      // Blocks for the topic's metadata like send() would, later records find it cached.
+      partitions = shards.get(0).partitionsFor(record.topic());
+    } catch (ApiException e) {
+      return failed(e, callback);
+    }
+    if (partitions.isEmpty()) {
+      return shardFor(record.topic(), /* partition= */ null).send(record, callback);
+    }
+    // Same as DefaultPartitioner for keyed records.
+    int partition = Utils.toPositive(Utils.murmur2(keyBytes)) % partitions.size();
+    return shardFor(record.topic(), partition).send(
+        new ProducerRecord<>(
+            record.topic(),
+            partition,
+            record.timestamp(),
+            record.key(),
+            record.value(),
+            record.headers()),
+        callback);
+  }
+
+  /**
+   * Fails a record the way {@code KafkaProducer.send()} fails records on an {@link ApiException},
+   * e.g. a metadata timeout: through its callback and future, without failing other records.
+   */
+  private static Future<RecordMetadata> failed(ApiException error, @Nullable Callback callback) {
+    if (callback != null) {
+      callback.onCompletion(null, error);
+    }
+    CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+    future.completeExceptionally(error);
+    return future;
+  }
+
+  /**
+   * Returns the producer responsible for the given {@code topic} and {@code partition}. Records
+   * without a partition are only routed by topic, see {@link #send} to route them by their key.
+   */
+  public Producer<K, V> shardFor(String topic, @Nullable Integer partition) {
+    return shards.get(shardIndex(topic, partition, shards.size()));
+  }
+
+  public List<Producer<K, V>> getShards() {
+    return shards;
+  }
+
+  public int size() {
+    return shards.size();
+  }
+
+  /**
+   * Returns the client metrics of each shard, in shard order.
+   */
+  public List<Map<MetricName, ? extends Metric>> metrics() {
+    List<Map<MetricName, ? extends Metric>> metrics = new ArrayList<>(shards.size());
+    for (Producer<K, V> shard : shards) {
+      metrics.add(shard.metrics());
+    }
+    return metrics;
+  }
+
+  public void close() {
+    for (Producer<K, V> shard : shards) {
+      shard.close();
+    }
+  }
+
+  static int shardIndex(String topic, @Nullable Integer partition, int numShards) {
+    if (numShards == 1) {
+      return 0;
+    }
+    int hash = topic.hashCode();
+    if (partition != null) {
+      hash = 31 * hash + partition;
+    }
+    // Spread the bits a little, topic names often only differ in their last characters.
+    hash ^= (hash >>> 16);
+    return Math.floorMod(hash, numShards);
+  }
+}
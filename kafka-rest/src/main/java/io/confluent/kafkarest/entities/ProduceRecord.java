@@ -21,6 +21,10 @@ import javax.annotation.Nullable;
 
 public final class ProduceRecord<K, V> {
 
+  // Only set for requests whose records each name their topic.
+  @Nullable
+  private final String topic;
+
   @Nullable
   private final K key;
 
@@ -31,11 +35,25 @@ public final class ProduceRecord<K, V> {
   private final Integer partition;
 
   public ProduceRecord(@Nullable K key, @Nullable V value, @Nullable Integer partition) {
+    this(/* topic= */ null, key, value, partition);
+  }
+
+  public ProduceRecord(
+      @Nullable String topic, @Nullable K key, @Nullable V value, @Nullable Integer partition) {
+    this.topic = topic;
     this.key = key;
     this.value = value;
     this.partition = partition;
   }
 
+  /**
+   * Returns the topic of this record, or {@code null} if it goes to the topic of its request.
+   */
+  @Nullable
+  public String getTopic() {
+    return topic;
+  }
+
   @Nullable
   public K getKey() {
     return key;
@@ -60,19 +78,21 @@ public final class ProduceRecord<K, V> {
       return false;
     }
     ProduceRecord<?, ?> that = (ProduceRecord<?, ?>) o;
-    return Objects.equals(key, that.key)
+    return Objects.equals(topic, that.topic)
+        && Objects.equals(key, that.key)
         && Objects.equals(value, that.value)
         && Objects.equals(partition, that.partition);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(key, value, partition);
+    return Objects.hash(topic, key, value, partition);
   }
 
   @Override
   public String toString() {
     return new StringJoiner(", ", ProduceRecord.class.getSimpleName() + "[", "]")
+        .add("topic=" + topic)
         .add("key=" + key)
         .add("value=" + value)
         .add("partition=" + partition)
@@ -36,12 +36,36 @@ public final class ProduceRequest<K, V> {
   @Nullable
   private final Integer valueSchemaId;
 
+  @Nullable
+  private final SchemaRef keySchemaRef;
+
+  @Nullable
+  private final SchemaRef valueSchemaRef;
+
   public ProduceRequest(
       List<ProduceRecord<K, V>> records,
       @Nullable String keySchema,
       @Nullable Integer keySchemaId,
       @Nullable String valueSchema,
       @Nullable Integer valueSchemaId) {
+    this(
+        records,
+        keySchema,
+        keySchemaId,
+        valueSchema,
+        valueSchemaId,
+        /* keySchemaRef= */ null,
+        /* valueSchemaRef= */ null);
+  }
+
+  public ProduceRequest(
+      List<ProduceRecord<K, V>> records,
+      @Nullable String keySchema,
+      @Nullable Integer keySchemaId,
+      @Nullable String valueSchema,
+      @Nullable Integer valueSchemaId,
+      @Nullable SchemaRef keySchemaRef,
+      @Nullable SchemaRef valueSchemaRef) {
     if (records.isEmpty()) {
       throw new IllegalStateException();
     }
@@ -50,6 +74,8 @@ public final class ProduceRequest<K, V> {
     this.keySchemaId = keySchemaId;
     this.valueSchema = valueSchema;
     this.valueSchemaId = valueSchemaId;
+    this.keySchemaRef = keySchemaRef;
+    this.valueSchemaRef = valueSchemaRef;
   }
 
   public List<ProduceRecord<K, V>> getRecords() {
@@ -76,6 +102,31 @@ public final class ProduceRequest<K, V> {
     return valueSchemaId;
   }
 
+  /**
+   * Returns the reference to the key schema, only used if neither its text nor ID is set.
+   */
+  @Nullable
+  public SchemaRef getKeySchemaRef() {
+    return keySchemaRef;
+  }
+
+  /**
+   * Returns the reference to the value schema, only used if neither its text nor ID is set.
+   */
+  @Nullable
+  public SchemaRef getValueSchemaRef() {
+    return valueSchemaRef;
+  }
+
+  /**
+   * Returns a copy of this request with the given schema references.
+   */
+  public ProduceRequest<K, V> withSchemaRefs(
+      @Nullable SchemaRef keySchemaRef, @Nullable SchemaRef valueSchemaRef) {
+    return new ProduceRequest<>(
+        records, keySchema, keySchemaId, valueSchema, valueSchemaId, keySchemaRef, valueSchemaRef);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -89,12 +140,15 @@ public final class ProduceRequest<K, V> {
         && Objects.equals(keySchema, that.keySchema)
         && Objects.equals(keySchemaId, that.keySchemaId)
         && Objects.equals(valueSchema, that.valueSchema)
-        && Objects.equals(valueSchemaId, that.valueSchemaId);
+        && Objects.equals(valueSchemaId, that.valueSchemaId)
+        && Objects.equals(keySchemaRef, that.keySchemaRef)
+        && Objects.equals(valueSchemaRef, that.valueSchemaRef);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(records, keySchema, keySchemaId, valueSchema, valueSchemaId);
+    return Objects.hash(
+        records, keySchema, keySchemaId, valueSchema, valueSchemaId, keySchemaRef, valueSchemaRef);
   }
 
   @Override
@@ -105,6 +159,8 @@ public final class ProduceRequest<K, V> {
         .add("keySchemaId=" + keySchemaId)
         .add("valueSchema='" + valueSchema + "'")
         .add("valueSchemaId=" + valueSchemaId)
+        .add("keySchemaRef=" + keySchemaRef)
+        .add("valueSchemaRef=" + valueSchemaRef)
         .toString();
   }
 }
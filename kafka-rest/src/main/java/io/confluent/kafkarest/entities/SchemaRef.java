@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.entities;
+
+import static java.util.Objects.requireNonNull;
+
+import io.confluent.rest.validation.ConstraintViolations;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+
+/**
+ * A reference to a schema that a produce request sends instead of the schema text or ID. It is
+ * either a subject and version, with a {@code null} version meaning the latest one, or the
+ * fingerprint of schema text sent before, i.e. the lowercase hex SHA-256 of that text.
+ */
+public final class SchemaRef {
+
+  public static final String LATEST = "latest";
+
+  @Nullable
+  private final String subject;
+
+  @Nullable
+  private final Integer version;
+
+  @Nullable
+  private final String fingerprint;
+
+  private SchemaRef(
+      @Nullable String subject, @Nullable Integer version, @Nullable String fingerprint) {
+    this.subject = subject;
+    this.version = version;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * @param version the version of the schema under {@code subject}, or {@code null} for the latest
+   */
+  public static SchemaRef subject(String subject, @Nullable Integer version) {
+    return new SchemaRef(requireNonNull(subject), version, /* fingerprint= */ null);
+  }
+
+  public static SchemaRef fingerprint(String fingerprint) {
+    return new SchemaRef(
+        /* subject= */ null,
+        /* version= */ null,
+        requireNonNull(fingerprint).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Parses the subject and version fields of a produce request, where the version is a number or
+   * {@value #LATEST} and defaults to the latest. Returns {@code null} if neither is set.
+   */
+  @Nullable
+  public static SchemaRef parse(@Nullable String subject, @Nullable String version) {
+    if (subject == null) {
+      if (version != null) {
+        throw ConstraintViolations.simpleException("Schema version given without a subject");
+      }
+      return null;
+    }
+    if (version == null || LATEST.equalsIgnoreCase(version)) {
+      return subject(subject, /* version= */ null);
+    }
+    try {
+      int number = Integer.parseInt(version);
+      if (number > 0) {
+        return subject(subject, number);
+      }
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+    throw ConstraintViolations.simpleException("Invalid schema version: " + version);
+  }
+
+  /**
+   * Returns the subject, or {@code null} if this is a fingerprint.
+   */
+  @Nullable
+  public String getSubject() {
+    return subject;
+  }
+
+  /**
+   * Returns the version under {@link #getSubject()}, or {@code null} for the latest one.
+   */
+  @Nullable
+  public Integer getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the version as sent in produce requests, i.e. the number or {@value #LATEST}.
+   */
+  @Nullable
+  public String getVersionString() {
+    if (subject == null) {
+      return null;
+    }
+    return version != null ? version.toString() : LATEST;
+  }
+
+  /**
+   * Returns the fingerprint, or {@code null} if this is a subject and version.
+   */
+  @Nullable
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SchemaRef that = (SchemaRef) o;
+    return Objects.equals(subject, that.subject)
+        && Objects.equals(version, that.version)
+        && Objects.equals(fingerprint, that.fingerprint);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(subject, version, fingerprint);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", SchemaRef.class.getSimpleName() + "[", "]")
+        .add("subject=" + subject)
+        .add("version=" + version)
+        .add("fingerprint=" + fingerprint)
+        .toString();
+  }
+}
@@ -65,6 +65,20 @@ public final class BinaryTopicProduceRequest {
         /* valueSchemaId= */ null);
   }
 
+  /**
+   * Creates a request from already decoded records, without checking them. Used when reading the
+   * request entity with {@code BinaryProduceRequestReader}, bean validation still runs after.
+   */
+  public static BinaryTopicProduceRequest fromRecords(
+      @Nullable List<BinaryTopicProduceRecord> records) {
+    return new BinaryTopicProduceRequest(
+        records,
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
   public ProduceRequest<byte[], byte[]> toProduceRequest() {
     if (records == null || records.isEmpty()) {
       throw new IllegalStateException();
@@ -135,6 +149,21 @@ public final class BinaryTopicProduceRequest {
       this.partition = partition;
     }
 
+    private BinaryTopicProduceRecord(
+        @Nullable byte[] key, @Nullable byte[] value, @Nullable Integer partition) {
+      this.key = key;
+      this.value = value;
+      this.partition = partition;
+    }
+
+    /**
+     * Creates a record from already decoded key and value bytes. The arrays are not copied.
+     */
+    public static BinaryTopicProduceRecord fromBytes(
+        @Nullable byte[] key, @Nullable byte[] value, @Nullable Integer partition) {
+      return new BinaryTopicProduceRecord(key, value, partition);
+    }
+
     @JsonProperty("key")
     @Nullable
     public String getKey() {
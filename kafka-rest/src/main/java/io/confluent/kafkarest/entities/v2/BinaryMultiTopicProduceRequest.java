@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.entities.v2;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.confluent.kafkarest.entities.EntityUtils;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.validation.ConstraintViolations;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.PositiveOrZero;
+
+/**
+ * A binary produce request whose records each name the topic they go to.
+ */
+public final class BinaryMultiTopicProduceRequest {
+
+  @NotEmpty
+  @Nullable
+  private final List<BinaryMultiTopicProduceRecord> records;
+
+  @JsonCreator
+  private BinaryMultiTopicProduceRequest(
+      @JsonProperty("records") @Nullable List<BinaryMultiTopicProduceRecord> records
+  ) {
+    this.records = records;
+  }
+
+  @JsonProperty("records")
+  @Nullable
+  public List<BinaryMultiTopicProduceRecord> getRecords() {
+    return records;
+  }
+
+  public static BinaryMultiTopicProduceRequest create(
+      List<BinaryMultiTopicProduceRecord> records) {
+    if (records.isEmpty()) {
+      throw new IllegalArgumentException();
+    }
+    return new BinaryMultiTopicProduceRequest(records);
+  }
+
+  public ProduceRequest<byte[], byte[]> toProduceRequest() {
+    if (records == null || records.isEmpty()) {
+      throw new IllegalStateException();
+    }
+    return new ProduceRequest<>(
+        records.stream()
+            .map(record ->
+                new ProduceRecord<>(record.topic, record.key, record.value, record.partition))
+            .collect(Collectors.toList()),
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    BinaryMultiTopicProduceRequest request = (BinaryMultiTopicProduceRequest) o;
+    return Objects.equals(records, request.records);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(records);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(
+        ", ", BinaryMultiTopicProduceRequest.class.getSimpleName() + "[", "]")
+        .add("records=" + records)
+        .toString();
+  }
+
+  public static final class BinaryMultiTopicProduceRecord {
+
+    private final String topic;
+
+    @Nullable
+    private final byte[] key;
+
+    @Nullable
+    private final byte[] value;
+
+    @PositiveOrZero
+    @Nullable
+    private final Integer partition;
+
+    @JsonCreator
+    public BinaryMultiTopicProduceRecord(
+        @JsonProperty("topic") @Nullable String topic,
+        @JsonProperty("key") @Nullable String key,
+        @JsonProperty("value") @Nullable String value,
+        @JsonProperty("partition") @Nullable Integer partition
+    ) {
+      if (topic == null || topic.isEmpty()) {
+        throw ConstraintViolations.simpleException("Record topic must not be empty");
+      }
+      this.topic = topic;
+      try {
+        this.key = (key != null) ? EntityUtils.parseBase64Binary(key) : null;
+      } catch (IllegalArgumentException e) {
+        throw ConstraintViolations.simpleException("Record key contains invalid base64 encoding");
+      }
+      try {
+        this.value = (value != null) ? EntityUtils.parseBase64Binary(value) : null;
+      } catch (IllegalArgumentException e) {
+        throw ConstraintViolations.simpleException("Record value contains invalid base64 encoding");
+      }
+      this.partition = partition;
+    }
+
+    @JsonProperty("topic")
+    public String getTopic() {
+      return topic;
+    }
+
+    @JsonProperty("key")
+    @Nullable
+    public String getKey() {
+      return (key == null ? null : EntityUtils.encodeBase64Binary(key));
+    }
+
+    @JsonProperty("value")
+    @Nullable
+    public String getValue() {
+      return (value == null ? null : EntityUtils.encodeBase64Binary(value));
+    }
+
+    @JsonProperty("partition")
+    @Nullable
+    public Integer getPartition() {
+      return partition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BinaryMultiTopicProduceRecord that = (BinaryMultiTopicProduceRecord) o;
+      return topic.equals(that.topic)
+          && Arrays.equals(key, that.key)
+          && Arrays.equals(value, that.value)
+          && Objects.equals(partition, that.partition);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Objects.hash(topic, partition);
+      result = 31 * result + Arrays.hashCode(key);
+      result = 31 * result + Arrays.hashCode(value);
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(
+          ", ", BinaryMultiTopicProduceRecord.class.getSimpleName() + "[", "]")
+          .add("topic=" + topic)
+          .add("key=" + Arrays.toString(key))
+          .add("value=" + Arrays.toString(value))
+          .add("partition=" + partition)
+          .toString();
+    }
+  }
+}
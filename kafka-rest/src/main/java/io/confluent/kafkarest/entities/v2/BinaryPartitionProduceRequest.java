@@ -64,6 +64,20 @@ public final class BinaryPartitionProduceRequest {
         /* valueSchemaId= */ null);
   }
 
+  /**
+   * Creates a request from already decoded records, without checking them. Used when reading the
+   * request entity with {@code BinaryProduceRequestReader}, bean validation still runs after.
+   */
+  public static BinaryPartitionProduceRequest fromRecords(
+      @Nullable List<BinaryPartitionProduceRecord> records) {
+    return new BinaryPartitionProduceRequest(
+        records,
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
   public ProduceRequest<byte[], byte[]> toProduceRequest() {
     if (records == null || records.isEmpty()) {
       throw new IllegalStateException();
@@ -128,6 +142,19 @@ public final class BinaryPartitionProduceRequest {
       }
     }
 
+    private BinaryPartitionProduceRecord(@Nullable byte[] key, @Nullable byte[] value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    /**
+     * Creates a record from already decoded key and value bytes. The arrays are not copied.
+     */
+    public static BinaryPartitionProduceRecord fromBytes(
+        @Nullable byte[] key, @Nullable byte[] value) {
+      return new BinaryPartitionProduceRecord(key, value);
+    }
+
     @JsonProperty("key")
     @Nullable
     public String getKey() {
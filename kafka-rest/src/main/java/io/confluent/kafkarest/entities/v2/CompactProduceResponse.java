@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.entities.v2;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.Utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.Response;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * A compact alternative to {@link ProduceResponse} for large batches. Records that landed in the
+ * same partition at consecutive offsets, one after the other in the request, are collapsed into a
+ * single {@link OffsetRange}, and only failed records are listed individually, by their index in
+ * the request.
+ *
+ * <p>The offset of every record can be recovered by walking the request in order: a record whose
+ * index is listed in {@code errors} failed, every other record takes the next offset of the
+ * current range.</p>
+ */
+public final class CompactProduceResponse {
+
+  private final List<OffsetRange> ranges;
+
+  private final List<RecordError> errors;
+
+  @Nullable
+  private final Integer keySchemaId;
+
+  @Nullable
+  private final Integer valueSchemaId;
+
+  @JsonCreator
+  public CompactProduceResponse(
+      @JsonProperty("ranges") List<OffsetRange> ranges,
+      @JsonProperty("errors") List<RecordError> errors,
+      @JsonProperty("key_schema_id") @Nullable Integer keySchemaId,
+      @JsonProperty("value_schema_id") @Nullable Integer valueSchemaId
+  ) {
+    this.ranges = ranges != null ? ranges : Collections.emptyList();
+    this.errors = errors != null ? errors : Collections.emptyList();
+    this.keySchemaId = keySchemaId;
+    this.valueSchemaId = valueSchemaId;
+  }
+
+  /**
+   * Builds the response for the {@code results} of a produce request, in request order.
+   *
+   * @throws io.confluent.rest.exceptions.RestServerErrorException if a record failed with a
+   *     non-Kafka exception, which fails the whole request
+   */
+  public static CompactProduceResponse fromResults(
+      @Nullable Integer keySchemaId,
+      @Nullable Integer valueSchemaId,
+      List<RecordMetadataOrException> results
+  ) {
+    List<OffsetRange> ranges = new ArrayList<>();
+    List<RecordError> errors = new ArrayList<>();
+    int partition = -1;
+    long firstOffset = -1;
+    int count = 0;
+    for (int i = 0; i < results.size(); i++) {
+      RecordMetadataOrException result = results.get(i);
+      if (result.getException() != null) {
+        errors.add(
+            new RecordError(
+                i,
+                Utils.errorCodeFromProducerException(result.getException()),
+                result.getException().getMessage()));
+        continue;
+      }
+      RecordMetadata metadata = result.getRecordMetadata();
+      if (count > 0 && metadata.partition() == partition
+          && metadata.offset() == firstOffset + count) {
+        count++;
+        continue;
+      }
+      if (count > 0) {
+        ranges.add(new OffsetRange(partition, firstOffset, count));
+      }
+      partition = metadata.partition();
+      firstOffset = metadata.offset();
+      count = 1;
+    }
+    if (count > 0) {
+      ranges.add(new OffsetRange(partition, firstOffset, count));
+    }
+    return new CompactProduceResponse(ranges, errors, keySchemaId, valueSchemaId);
+  }
+
+  @JsonProperty("ranges")
+  public List<OffsetRange> getRanges() {
+    return ranges;
+  }
+
+  @JsonProperty("errors")
+  public List<RecordError> getErrors() {
+    return errors;
+  }
+
+  @JsonProperty("key_schema_id")
+  @Nullable
+  public Integer getKeySchemaId() {
+    return keySchemaId;
+  }
+
+  @JsonProperty("value_schema_id")
+  @Nullable
+  public Integer getValueSchemaId() {
+    return valueSchemaId;
+  }
+
+  /**
+   * Same as {@link ProduceResponse#getRequestStatus()}.
+   */
+  @JsonIgnore
+  public Response.Status getRequestStatus() {
+    for (RecordError error : errors) {
+      if (error.getErrorCode() == Errors.KAFKA_AUTHENTICATION_ERROR_CODE) {
+        return Response.Status.UNAUTHORIZED;
+      } else if (error.getErrorCode() == Errors.KAFKA_AUTHORIZATION_ERROR_CODE) {
+        return Response.Status.FORBIDDEN;
+      }
+    }
+    return Response.Status.OK;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CompactProduceResponse that = (CompactProduceResponse) o;
+    return ranges.equals(that.ranges)
+        && errors.equals(that.errors)
+        && Objects.equals(keySchemaId, that.keySchemaId)
+        && Objects.equals(valueSchemaId, that.valueSchemaId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(ranges, errors, keySchemaId, valueSchemaId);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", CompactProduceResponse.class.getSimpleName() + "[", "]")
+        .add("ranges=" + ranges)
+        .add("errors=" + errors)
+        .add("keySchemaId=" + keySchemaId)
+        .add("valueSchemaId=" + valueSchemaId)
+        .toString();
+  }
+
+  /**
+   * {@code count} records produced to {@code partition} at offsets starting with
+   * {@code firstOffset}.
+   */
+  public static final class OffsetRange {
+
+    private final int partition;
+
+    private final long firstOffset;
+
+    private final int count;
+
+    @JsonCreator
+    public OffsetRange(
+        @JsonProperty("partition") int partition,
+        @JsonProperty("first_offset") long firstOffset,
+        @JsonProperty("count") int count
+    ) {
+      this.partition = partition;
+      this.firstOffset = firstOffset;
+      this.count = count;
+    }
+
+    @JsonProperty("partition")
+    public int getPartition() {
+      return partition;
+    }
+
+    @JsonProperty("first_offset")
+    public long getFirstOffset() {
+      return firstOffset;
+    }
+
+    @JsonProperty("count")
+    public int getCount() {
+      return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      OffsetRange that = (OffsetRange) o;
+      return partition == that.partition
+          && firstOffset == that.firstOffset
+          && count == that.count;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(partition, firstOffset, count);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", OffsetRange.class.getSimpleName() + "[", "]")
+          .add("partition=" + partition)
+          .add("firstOffset=" + firstOffset)
+          .add("count=" + count)
+          .toString();
+    }
+  }
+
+  /**
+   * The error of the record at {@code index} in the request.
+   */
+  public static final class RecordError {
+
+    private final int index;
+
+    private final int errorCode;
+
+    @Nullable
+    private final String error;
+
+    @JsonCreator
+    public RecordError(
+        @JsonProperty("index") int index,
+        @JsonProperty("error_code") int errorCode,
+        @JsonProperty("error") @Nullable String error
+    ) {
+      this.index = index;
+      this.errorCode = errorCode;
+      this.error = error;
+    }
+
+    @JsonProperty("index")
+    public int getIndex() {
+      return index;
+    }
+
+    @JsonProperty("error_code")
+    public int getErrorCode() {
+      return errorCode;
+    }
+
+    @JsonProperty("error")
+    @Nullable
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RecordError that = (RecordError) o;
+      return index == that.index
+          && errorCode == that.errorCode
+          && Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(index, errorCode, error);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", RecordError.class.getSimpleName() + "[", "]")
+          .add("index=" + index)
+          .add("errorCode=" + errorCode)
+          .add("error='" + error + "'")
+          .toString();
+    }
+  }
+}
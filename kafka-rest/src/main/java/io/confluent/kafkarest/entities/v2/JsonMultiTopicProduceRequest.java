@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.entities.v2;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.validation.ConstraintViolations;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.PositiveOrZero;
+
+/**
+ * A JSON produce request whose records each name the topic they go to.
+ */
+public final class JsonMultiTopicProduceRequest {
+
+  @NotEmpty
+  @Nullable
+  private final List<JsonMultiTopicProduceRecord> records;
+
+  @JsonCreator
+  private JsonMultiTopicProduceRequest(
+      @JsonProperty("records") @Nullable List<JsonMultiTopicProduceRecord> records
+  ) {
+    this.records = records;
+  }
+
+  @JsonProperty("records")
+  @Nullable
+  public List<JsonMultiTopicProduceRecord> getRecords() {
+    return records;
+  }
+
+  public static JsonMultiTopicProduceRequest create(List<JsonMultiTopicProduceRecord> records) {
+    if (records.isEmpty()) {
+      throw new IllegalArgumentException();
+    }
+    return new JsonMultiTopicProduceRequest(records);
+  }
+
+  public ProduceRequest<Object, Object> toProduceRequest() {
+    if (records == null || records.isEmpty()) {
+      throw new IllegalStateException();
+    }
+    return new ProduceRequest<>(
+        records.stream()
+            .map(record ->
+                new ProduceRecord<>(record.topic, record.key, record.value, record.partition))
+            .collect(Collectors.toList()),
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    JsonMultiTopicProduceRequest that = (JsonMultiTopicProduceRequest) o;
+    return Objects.equals(records, that.records);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(records);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", JsonMultiTopicProduceRequest.class.getSimpleName() + "[", "]")
+        .add("records=" + records)
+        .toString();
+  }
+
+  public static final class JsonMultiTopicProduceRecord {
+
+    private final String topic;
+
+    @Nullable
+    private final Object key;
+
+    @Nullable
+    private final Object value;
+
+    @PositiveOrZero
+    @Nullable
+    private final Integer partition;
+
+    @JsonCreator
+    public JsonMultiTopicProduceRecord(
+        @JsonProperty("topic") @Nullable String topic,
+        @JsonProperty("key") @Nullable Object key,
+        @JsonProperty("value") @Nullable Object value,
+        @JsonProperty("partition") @Nullable Integer partition
+    ) {
+      if (topic == null || topic.isEmpty()) {
+        throw ConstraintViolations.simpleException("Record topic must not be empty");
+      }
+      this.topic = topic;
+      this.key = key;
+      this.value = value;
+      this.partition = partition;
+    }
+
+    @JsonProperty("topic")
+    public String getTopic() {
+      return topic;
+    }
+
+    @JsonProperty("key")
+    @Nullable
+    public Object getKey() {
+      return key;
+    }
+
+    @JsonProperty("value")
+    @Nullable
+    public Object getValue() {
+      return value;
+    }
+
+    @JsonProperty("partition")
+    @Nullable
+    public Integer getPartition() {
+      return partition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      JsonMultiTopicProduceRecord that = (JsonMultiTopicProduceRecord) o;
+      return topic.equals(that.topic)
+          && Objects.equals(key, that.key)
+          && Objects.equals(value, that.value)
+          && Objects.equals(partition, that.partition);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(topic, key, value, partition);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", JsonMultiTopicProduceRecord.class.getSimpleName() + "[", "]")
+          .add("topic=" + topic)
+          .add("key=" + key)
+          .add("value=" + value)
+          .add("partition=" + partition)
+          .toString();
+    }
+  }
+}
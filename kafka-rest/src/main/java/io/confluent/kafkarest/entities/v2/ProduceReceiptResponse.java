@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.entities.v2;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The receipt of a produce request that was accepted asynchronously. Its offsets and schema IDs
+ * are only set once the request completed.
+ */
+public final class ProduceReceiptResponse {
+
+  public enum Status {
+    PENDING,
+    COMPLETED
+  }
+
+  @NotNull
+  private final String receiptId;
+
+  @NotNull
+  private final Status status;
+
+  @Nullable
+  private final List<PartitionOffset> offsets;
+
+  @Nullable
+  private final Integer keySchemaId;
+
+  @Nullable
+  private final Integer valueSchemaId;
+
+  @JsonCreator
+  public ProduceReceiptResponse(
+      @JsonProperty("receipt_id") String receiptId,
+      @JsonProperty("status") Status status,
+      @JsonProperty("offsets") @Nullable List<PartitionOffset> offsets,
+      @JsonProperty("key_schema_id") @Nullable Integer keySchemaId,
+      @JsonProperty("value_schema_id") @Nullable Integer valueSchemaId
+  ) {
+    this.receiptId = receiptId;
+    this.status = status;
+    this.offsets = offsets;
+    this.keySchemaId = keySchemaId;
+    this.valueSchemaId = valueSchemaId;
+  }
+
+  public static ProduceReceiptResponse pending(String receiptId) {
+    return new ProduceReceiptResponse(
+        receiptId,
+        Status.PENDING,
+        /* offsets= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  public static ProduceReceiptResponse completed(String receiptId, ProduceResponse response) {
+    return new ProduceReceiptResponse(
+        receiptId,
+        Status.COMPLETED,
+        response.getOffsets(),
+        response.getKeySchemaId(),
+        response.getValueSchemaId());
+  }
+
+  @JsonProperty("receipt_id")
+  public String getReceiptId() {
+    return receiptId;
+  }
+
+  @JsonProperty
+  public Status getStatus() {
+    return status;
+  }
+
+  @JsonProperty
+  @Nullable
+  public List<PartitionOffset> getOffsets() {
+    return offsets;
+  }
+
+  @JsonProperty("key_schema_id")
+  @Nullable
+  public Integer getKeySchemaId() {
+    return keySchemaId;
+  }
+
+  @JsonProperty("value_schema_id")
+  @Nullable
+  public Integer getValueSchemaId() {
+    return valueSchemaId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ProduceReceiptResponse that = (ProduceReceiptResponse) o;
+    return Objects.equals(receiptId, that.receiptId)
+        && status == that.status
+        && Objects.equals(offsets, that.offsets)
+        && Objects.equals(keySchemaId, that.keySchemaId)
+        && Objects.equals(valueSchemaId, that.valueSchemaId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(receiptId, status, offsets, keySchemaId, valueSchemaId);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ProduceReceiptResponse.class.getSimpleName() + "[", "]")
+        .add("receiptId='" + receiptId + "'")
+        .add("status=" + status)
+        .add("offsets=" + offsets)
+        .add("keySchemaId=" + keySchemaId)
+        .add("valueSchemaId=" + valueSchemaId)
+        .toString();
+  }
+}
@@ -19,6 +19,9 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.Utils;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
@@ -49,6 +52,34 @@ public final class ProduceResponse {
     this.valueSchemaId = valueSchemaId;
   }
 
+  /**
+   * Builds the response for the {@code results} of a produce request, in request order.
+   *
+   * @throws io.confluent.rest.exceptions.RestServerErrorException if a record failed with a
+   *     non-Kafka exception, which fails the whole request
+   */
+  public static ProduceResponse fromResults(
+      @Nullable Integer keySchemaId,
+      @Nullable Integer valueSchemaId,
+      List<RecordMetadataOrException> results
+  ) {
+    List<PartitionOffset> offsets = new ArrayList<>(results.size());
+    for (RecordMetadataOrException result : results) {
+      if (result.getException() != null) {
+        int errorCode = Utils.errorCodeFromProducerException(result.getException());
+        String errorMessage = result.getException().getMessage();
+        offsets.add(new PartitionOffset(null, null, errorCode, errorMessage));
+      } else {
+        offsets.add(new PartitionOffset(
+            result.getRecordMetadata().partition(),
+            result.getRecordMetadata().offset(),
+            null,
+            null));
+      }
+    }
+    return new ProduceResponse(offsets, keySchemaId, valueSchemaId);
+  }
+
   @JsonProperty
   @Nullable
   public List<PartitionOffset> getOffsets() {
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.kafkarest.entities.ProduceRecord;
 import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.SchemaRef;
 import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
@@ -46,19 +47,67 @@ public final class SchemaTopicProduceRequest {
   @Nullable
   private final Integer valueSchemaId;
 
-  @JsonCreator
+  @Nullable
+  private final SchemaRef keySchemaRef;
+
+  @Nullable
+  private final SchemaRef valueSchemaRef;
+
   public SchemaTopicProduceRequest(
+      @Nullable List<SchemaTopicProduceRecord> records,
+      @Nullable String keySchema,
+      @Nullable Integer keySchemaId,
+      @Nullable String valueSchema,
+      @Nullable Integer valueSchemaId
+  ) {
+    this(
+        records,
+        keySchema,
+        keySchemaId,
+        valueSchema,
+        valueSchemaId,
+        /* keySchemaRef= */ null,
+        /* valueSchemaRef= */ null);
+  }
+
+  @JsonCreator
+  private SchemaTopicProduceRequest(
       @JsonProperty("records") @Nullable List<SchemaTopicProduceRecord> records,
       @JsonProperty("key_schema") @Nullable String keySchema,
       @JsonProperty("key_schema_id") @Nullable Integer keySchemaId,
       @JsonProperty("value_schema") @Nullable String valueSchema,
-      @JsonProperty("value_schema_id") @Nullable Integer valueSchemaId
+      @JsonProperty("value_schema_id") @Nullable Integer valueSchemaId,
+      @JsonProperty("key_schema_subject") @Nullable String keySchemaSubject,
+      @JsonProperty("key_schema_version") @Nullable String keySchemaVersion,
+      @JsonProperty("value_schema_subject") @Nullable String valueSchemaSubject,
+      @JsonProperty("value_schema_version") @Nullable String valueSchemaVersion
+  ) {
+    this(
+        records,
+        keySchema,
+        keySchemaId,
+        valueSchema,
+        valueSchemaId,
+        SchemaRef.parse(keySchemaSubject, keySchemaVersion),
+        SchemaRef.parse(valueSchemaSubject, valueSchemaVersion));
+  }
+
+  private SchemaTopicProduceRequest(
+      @Nullable List<SchemaTopicProduceRecord> records,
+      @Nullable String keySchema,
+      @Nullable Integer keySchemaId,
+      @Nullable String valueSchema,
+      @Nullable Integer valueSchemaId,
+      @Nullable SchemaRef keySchemaRef,
+      @Nullable SchemaRef valueSchemaRef
   ) {
     this.records = records;
     this.keySchema = keySchema;
     this.keySchemaId = keySchemaId;
     this.valueSchema = valueSchema;
     this.valueSchemaId = valueSchemaId;
+    this.keySchemaRef = keySchemaRef;
+    this.valueSchemaRef = valueSchemaRef;
   }
 
   @JsonProperty("records")
@@ -91,6 +140,30 @@ public final class SchemaTopicProduceRequest {
     return valueSchemaId;
   }
 
+  @JsonProperty("key_schema_subject")
+  @Nullable
+  public String getKeySchemaSubject() {
+    return keySchemaRef != null ? keySchemaRef.getSubject() : null;
+  }
+
+  @JsonProperty("key_schema_version")
+  @Nullable
+  public String getKeySchemaVersion() {
+    return keySchemaRef != null ? keySchemaRef.getVersionString() : null;
+  }
+
+  @JsonProperty("value_schema_subject")
+  @Nullable
+  public String getValueSchemaSubject() {
+    return valueSchemaRef != null ? valueSchemaRef.getSubject() : null;
+  }
+
+  @JsonProperty("value_schema_version")
+  @Nullable
+  public String getValueSchemaVersion() {
+    return valueSchemaRef != null ? valueSchemaRef.getVersionString() : null;
+  }
+
   public static SchemaTopicProduceRequest create(
       List<SchemaTopicProduceRecord> records,
       @Nullable String keySchema,
@@ -104,6 +177,23 @@ public final class SchemaTopicProduceRequest {
         records, keySchema, keySchemaId, valueSchema, valueSchemaId);
   }
 
+  public static SchemaTopicProduceRequest create(
+      List<SchemaTopicProduceRecord> records,
+      @Nullable SchemaRef keySchemaRef,
+      @Nullable SchemaRef valueSchemaRef) {
+    if (records.isEmpty()) {
+      throw new IllegalArgumentException();
+    }
+    return new SchemaTopicProduceRequest(
+        records,
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null,
+        keySchemaRef,
+        valueSchemaRef);
+  }
+
   public ProduceRequest<JsonNode, JsonNode> toProduceRequest() {
     if (records == null || records.isEmpty()) {
       throw new IllegalStateException();
@@ -115,7 +205,9 @@ public final class SchemaTopicProduceRequest {
         keySchema,
         keySchemaId,
         valueSchema,
-        valueSchemaId);
+        valueSchemaId,
+        keySchemaRef,
+        valueSchemaRef);
   }
 
   @Override
@@ -131,12 +223,15 @@ public final class SchemaTopicProduceRequest {
         && Objects.equals(keySchema, that.keySchema)
         && Objects.equals(keySchemaId, that.keySchemaId)
         && Objects.equals(valueSchema, that.valueSchema)
-        && Objects.equals(valueSchemaId, that.valueSchemaId);
+        && Objects.equals(valueSchemaId, that.valueSchemaId)
+        && Objects.equals(keySchemaRef, that.keySchemaRef)
+        && Objects.equals(valueSchemaRef, that.valueSchemaRef);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(records, keySchema, keySchemaId, valueSchema, valueSchemaId);
+    return Objects.hash(
+        records, keySchema, keySchemaId, valueSchema, valueSchemaId, keySchemaRef, valueSchemaRef);
   }
 
   @Override
@@ -148,6 +243,8 @@ public final class SchemaTopicProduceRequest {
         .add("keySchemaId=" + keySchemaId)
         .add("valueSchema='" + valueSchema + "'")
         .add("valueSchemaId=" + valueSchemaId)
+        .add("keySchemaRef=" + keySchemaRef)
+        .add("valueSchemaRef=" + valueSchemaRef)
         .toString();
   }
 
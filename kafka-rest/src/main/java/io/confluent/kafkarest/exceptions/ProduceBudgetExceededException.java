@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.exceptions;
+
+import io.confluent.kafkarest.Errors;
+import io.confluent.rest.exceptions.RestException;
+
+/**
+ * Thrown when a produce request would exceed the bytes allowed in flight to Kafka. Mapped to a
+ * {@code 429 Too Many Requests} with a {@code Retry-After} header by
+ * {@link ProduceBudgetExceededExceptionMapper}.
+ */
+public final class ProduceBudgetExceededException extends RestException {
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private final int retryAfterSeconds;
+
+  public ProduceBudgetExceededException(String reason, int retryAfterSeconds) {
+    super(
+        Errors.PRODUCE_BUDGET_EXCEEDED_MESSAGE + reason,
+        TOO_MANY_REQUESTS,
+        Errors.PRODUCE_BUDGET_EXCEEDED_ERROR_CODE);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.exceptions;
+
+import io.confluent.rest.entities.ErrorMessage;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Maps {@link ProduceBudgetExceededException} like any other
+ * {@link io.confluent.rest.exceptions.RestException}, plus a {@code Retry-After} header.
+ */
+public final class ProduceBudgetExceededExceptionMapper
+    implements ExceptionMapper<ProduceBudgetExceededException> {
+
+  @Override
+  public Response toResponse(ProduceBudgetExceededException e) {
+    return Response.status(e.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, e.getRetryAfterSeconds())
+        .entity(new ErrorMessage(e.getErrorCode(), e.getMessage()))
+        .build();
+  }
+}
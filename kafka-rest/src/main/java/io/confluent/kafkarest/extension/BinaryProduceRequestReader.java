@@ -0,0 +1,419 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.extension;
+
+import static java.util.Objects.requireNonNull;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import io.confluent.kafkarest.PayloadBufferPool;
+import io.confluent.kafkarest.Versions;
+import io.confluent.rest.validation.ConstraintViolations;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * A {@link MessageBodyReader} for binary produce requests that decodes the base64 encoded keys and
+ * values straight from the request stream into {@code byte[]}, using
+ * {@link JsonParser#readBinaryValue(OutputStream)}. Reading them through the regular Jackson
+ * provider would first materialize every key and value as a {@link String}.
+ *
+ * <p>The entity is built exactly as Jackson would have built it and is validated afterwards like
+ * any other. Unknown properties are rejected, like the default Jackson provider does. Keys and
+ * values given as numbers or booleans are decoded from their text, as Jackson would coerce them
+ * to a {@link String}, and base64 padding is optional, as it is for the entities.</p>
+ *
+ * <p>Keys and values are decoded into a per-thread scratch buffer first and then copied into an
+ * exactly sized array. If the {@link PayloadBufferPool} is enabled, that array comes from the
+ * pool, and the binary producer releases it again once the record was sent.</p>
+ */
+public abstract class BinaryProduceRequestReader<T> implements MessageBodyReader<T> {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // Like the DatatypeConverter the entities decode with, padding may be left out.
+  private static final Base64Variant BASE64 =
+      Base64Variants.MIME_NO_LINEFEEDS.withPaddingAllowed();
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  private static final Collection<Object> TOPIC_RECORD_PROPERTIES =
+      Arrays.asList("key", "value", "partition");
+  private static final Collection<Object> PARTITION_RECORD_PROPERTIES =
+      Arrays.asList("key", "value");
+  private static final Collection<Object> REQUEST_PROPERTIES =
+      Arrays.asList("records", "key_schema", "key_schema_id", "value_schema", "value_schema_id");
+
+  private final Class<T> type;
+  private final boolean allowsPartition;
+  private final Supplier<PayloadBufferPool> payloads;
+
+  private BinaryProduceRequestReader(
+      Class<T> type, boolean allowsPartition, Supplier<PayloadBufferPool> payloads) {
+    this.type = requireNonNull(type);
+    this.allowsPartition = allowsPartition;
+    this.payloads = requireNonNull(payloads);
+  }
+
+  @Override
+  public final boolean isReadable(
+      Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return this.type.equals(type);
+  }
+
+  @Override
+  @Nullable
+  public final T readFrom(
+      Class<T> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders,
+      InputStream entityStream
+  ) throws IOException {
+    JsonParser parser = MAPPER.getFactory().createParser(entityStream);
+    parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    try {
+      JsonToken token = parser.nextToken();
+      if (token == null || token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      expect(parser, JsonToken.START_OBJECT);
+      PayloadBufferPool pool = payloads.get();
+      List<DecodedRecord> records = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if ("records".equals(field)) {
+          records = readRecords(parser, pool);
+        } else if (REQUEST_PROPERTIES.contains(field)) {
+          // Binary requests carry no schemas, these are accepted and ignored.
+          parser.skipChildren();
+        } else {
+          throw UnrecognizedPropertyException.from(
+              parser, this.type, field, REQUEST_PROPERTIES);
+        }
+      }
+      return createRequest(records);
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Nullable
+  private List<DecodedRecord> readRecords(JsonParser parser, PayloadBufferPool pool)
+      throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    expect(parser, JsonToken.START_ARRAY);
+    List<DecodedRecord> records = new ArrayList<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (token == JsonToken.VALUE_NULL) {
+        records.add(null);
+        continue;
+      }
+      expect(parser, JsonToken.START_OBJECT);
+      records.add(readRecord(parser, pool));
+    }
+    return records;
+  }
+
+  private DecodedRecord readRecord(JsonParser parser, PayloadBufferPool pool)
+      throws IOException {
+    byte[] key = null;
+    byte[] value = null;
+    Integer partition = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if ("key".equals(field)) {
+        key = readBinary(parser, pool, "Record key contains invalid base64 encoding");
+      } else if ("value".equals(field)) {
+        value = readBinary(parser, pool, "Record value contains invalid base64 encoding");
+      } else if (allowsPartition && "partition".equals(field)) {
+        partition = parser.readValueAs(Integer.class);
+      } else {
+        throw UnrecognizedPropertyException.from(
+            parser,
+            this.type,
+            field,
+            allowsPartition ? TOPIC_RECORD_PROPERTIES : PARTITION_RECORD_PROPERTIES);
+      }
+    }
+    return new DecodedRecord(key, value, partition);
+  }
+
+  @Nullable
+  private byte[] readBinary(
+      JsonParser parser, PayloadBufferPool pool, String errorMessage) throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    Scratch scratch = SCRATCH.get();
+    try {
+      try {
+        if (parser.currentToken().isScalarValue()
+            && parser.currentToken() != JsonToken.VALUE_STRING) {
+          // Jackson coerces numbers and booleans to their text when binding to a String.
+          scratch.write(BASE64.decode(parser.getText()));
+        } else {
+          expect(parser, JsonToken.VALUE_STRING);
+          parser.readBinaryValue(BASE64, scratch);
+        }
+      } catch (IllegalArgumentException e) {
+        // The decoder only reports invalid base64 this way. Malformed JSON, e.g. a truncated
+        // body, still fails with a JsonParseException like any other parse error.
+        throw ConstraintViolations.simpleException(errorMessage);
+      }
+      byte[] bytes = pool.isEnabled() ? pool.acquire(scratch.size) : new byte[scratch.size];
+      System.arraycopy(scratch.buffer, 0, bytes, 0, scratch.size);
+      return bytes;
+    } finally {
+      scratch.reset();
+    }
+  }
+
+  private void expect(JsonParser parser, JsonToken expected) throws IOException {
+    if (parser.currentToken() != expected) {
+      throw MismatchedInputException.from(
+          parser,
+          this.type,
+          String.format("Expected %s but found %s", expected, parser.currentToken()));
+    }
+  }
+
+  abstract T createRequest(@Nullable List<DecodedRecord> records);
+
+  /**
+   * A growable buffer reused by all keys and values decoded on one thread.
+   */
+  private static final class Scratch extends OutputStream {
+
+    // Larger buffers are not kept between records, so one huge value does not stay around.
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private byte[] buffer = new byte[8192];
+    private int size = 0;
+
+    @Override
+    public void write(int b) {
+      ensureCapacity(size + 1);
+      buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      ensureCapacity(size + length);
+      System.arraycopy(bytes, offset, buffer, size, length);
+      size += length;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+      }
+    }
+
+    private void reset() {
+      size = 0;
+      if (buffer.length > MAX_RETAINED_SIZE) {
+        buffer = new byte[8192];
+      }
+    }
+  }
+
+  static final class DecodedRecord {
+
+    @Nullable
+    final byte[] key;
+
+    @Nullable
+    final byte[] value;
+
+    @Nullable
+    final Integer partition;
+
+    private DecodedRecord(
+        @Nullable byte[] key, @Nullable byte[] value, @Nullable Integer partition) {
+      this.key = key;
+      this.value = value;
+      this.partition = partition;
+    }
+  }
+
+  @Provider
+  @Consumes({Versions.KAFKA_V1_JSON_BINARY, Versions.KAFKA_V1_JSON,
+             Versions.KAFKA_DEFAULT_JSON, Versions.JSON, Versions.GENERIC_REQUEST})
+  public static final class V1TopicReader extends
+      BinaryProduceRequestReader<io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest> {
+
+    public V1TopicReader() {
+      this(() -> PayloadBufferPool.DISABLED);
+    }
+
+    public V1TopicReader(Supplier<PayloadBufferPool> payloads) {
+      super(io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest.class, true, payloads);
+    }
+
+    @Override
+    io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest createRequest(
+        @Nullable List<DecodedRecord> records) {
+      List<io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest.BinaryTopicProduceRecord>
+          converted = null;
+      if (records != null) {
+        converted = new ArrayList<>(records.size());
+        for (DecodedRecord record : records) {
+          converted.add(
+              record == null
+                  ? null
+                  : io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest
+                      .BinaryTopicProduceRecord.fromBytes(
+                          record.key, record.value, record.partition));
+        }
+      }
+      return io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest.fromRecords(converted);
+    }
+  }
+
+  @Provider
+  @Consumes({Versions.KAFKA_V1_JSON_BINARY, Versions.KAFKA_V1_JSON,
+             Versions.KAFKA_DEFAULT_JSON, Versions.JSON, Versions.GENERIC_REQUEST})
+  public static final class V1PartitionReader extends
+      BinaryProduceRequestReader<
+          io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest> {
+
+    public V1PartitionReader() {
+      this(() -> PayloadBufferPool.DISABLED);
+    }
+
+    public V1PartitionReader(Supplier<PayloadBufferPool> payloads) {
+      super(
+          io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest.class,
+          false,
+          payloads);
+    }
+
+    @Override
+    io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest createRequest(
+        @Nullable List<DecodedRecord> records) {
+      List<io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest
+          .BinaryPartitionProduceRecord> converted = null;
+      if (records != null) {
+        converted = new ArrayList<>(records.size());
+        for (DecodedRecord record : records) {
+          converted.add(
+              record == null
+                  ? null
+                  : io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest
+                      .BinaryPartitionProduceRecord.fromBytes(record.key, record.value));
+        }
+      }
+      return io.confluent.kafkarest.entities.v1.BinaryPartitionProduceRequest.fromRecords(
+          converted);
+    }
+  }
+
+  @Provider
+  @Consumes({Versions.KAFKA_V2_JSON_BINARY, Versions.KAFKA_V2_JSON})
+  public static final class V2TopicReader extends
+      BinaryProduceRequestReader<io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest> {
+
+    public V2TopicReader() {
+      this(() -> PayloadBufferPool.DISABLED);
+    }
+
+    public V2TopicReader(Supplier<PayloadBufferPool> payloads) {
+      super(io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest.class, true, payloads);
+    }
+
+    @Override
+    io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest createRequest(
+        @Nullable List<DecodedRecord> records) {
+      List<io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest.BinaryTopicProduceRecord>
+          converted = null;
+      if (records != null) {
+        converted = new ArrayList<>(records.size());
+        for (DecodedRecord record : records) {
+          converted.add(
+              record == null
+                  ? null
+                  : io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest
+                      .BinaryTopicProduceRecord.fromBytes(
+                          record.key, record.value, record.partition));
+        }
+      }
+      return io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest.fromRecords(converted);
+    }
+  }
+
+  @Provider
+  @Consumes({Versions.KAFKA_V2_JSON_BINARY})
+  public static final class V2PartitionReader extends
+      BinaryProduceRequestReader<
+          io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest> {
+
+    public V2PartitionReader() {
+      this(() -> PayloadBufferPool.DISABLED);
+    }
+
+    public V2PartitionReader(Supplier<PayloadBufferPool> payloads) {
+      super(
+          io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest.class,
+          false,
+          payloads);
+    }
+
+    @Override
+    io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest createRequest(
+        @Nullable List<DecodedRecord> records) {
+      List<io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest
+          .BinaryPartitionProduceRecord> converted = null;
+      if (records != null) {
+        converted = new ArrayList<>(records.size());
+        for (DecodedRecord record : records) {
+          converted.add(
+              record == null
+                  ? null
+                  : io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest
+                      .BinaryPartitionProduceRecord.fromBytes(record.key, record.value));
+        }
+      }
+      return io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest.fromRecords(
+          converted);
+    }
+  }
+}
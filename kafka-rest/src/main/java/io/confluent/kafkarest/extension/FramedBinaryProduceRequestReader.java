@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.extension;
+
+import io.confluent.kafkarest.PayloadBufferPool;
+import io.confluent.kafkarest.Versions;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.validation.ConstraintViolations;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * A {@link MessageBodyReader} for {@link Versions#KAFKA_V2_BINARY_FRAMED} produce requests. The
+ * body is a sequence of record frames, with all integers big-endian:
+ *
+ * <pre>
+ * partition    int32, -1 if the producer should choose the partition
+ * key length   int32, -1 for a null key
+ * key          key length bytes
+ * value length int32, -1 for a null value
+ * value        value length bytes
+ * </pre>
+ *
+ * <p>Frames are read straight into a {@link ProduceRequest}, without any JSON or base64 step.
+ * Frame partitions are ignored when producing to a specific partition. Keys and values are read
+ * into arrays from the {@link PayloadBufferPool}, if it is enabled.</p>
+ */
+@Provider
+@Consumes(Versions.KAFKA_V2_BINARY_FRAMED)
+public final class FramedBinaryProduceRequestReader
+    implements MessageBodyReader<ProduceRequest<byte[], byte[]>> {
+
+  private static final MediaType FRAMED = MediaType.valueOf(Versions.KAFKA_V2_BINARY_FRAMED);
+
+  // Lengths above this are read in chunks, so a bogus length prefix cannot make us allocate much
+  // more than what was actually sent.
+  private static final int MAX_EAGER_ALLOCATION = 1024 * 1024;
+
+  private final Supplier<PayloadBufferPool> payloads;
+
+  public FramedBinaryProduceRequestReader() {
+    this(() -> PayloadBufferPool.DISABLED);
+  }
+
+  public FramedBinaryProduceRequestReader(Supplier<PayloadBufferPool> payloads) {
+    this.payloads = payloads;
+  }
+
+  @Override
+  public boolean isReadable(
+      Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return ProduceRequest.class.equals(type) && FRAMED.isCompatible(mediaType);
+  }
+
+  @Override
+  public ProduceRequest<byte[], byte[]> readFrom(
+      Class<ProduceRequest<byte[], byte[]>> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders,
+      InputStream entityStream
+  ) throws IOException {
+    return readRequest(entityStream, payloads.get());
+  }
+
+  /**
+   * Reads all frames from {@code in} until it is exhausted.
+   */
+  public static ProduceRequest<byte[], byte[]> readRequest(InputStream in) throws IOException {
+    return readRequest(in, PayloadBufferPool.DISABLED);
+  }
+
+  /**
+   * Reads all frames from {@code in} until it is exhausted, into arrays from {@code payloads}.
+   */
+  public static ProduceRequest<byte[], byte[]> readRequest(
+      InputStream in, PayloadBufferPool payloads) throws IOException {
+    DataInputStream frames = new DataInputStream(new BufferedInputStream(in));
+    List<ProduceRecord<byte[], byte[]>> records = new ArrayList<>();
+    while (!atEnd(frames)) {
+      int partition = readInt(frames);
+      if (partition < -1) {
+        throw ConstraintViolations.simpleException(
+            "Record " + records.size() + " has an invalid partition " + partition);
+      }
+      byte[] key = readBytes(frames, payloads, records.size(), "key");
+      byte[] value = readBytes(frames, payloads, records.size(), "value");
+      records.add(new ProduceRecord<>(key, value, partition == -1 ? null : partition));
+    }
+    if (records.isEmpty()) {
+      throw ConstraintViolations.simpleException("Request contains no records");
+    }
+    return new ProduceRequest<>(
+        records,
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  private static boolean atEnd(DataInputStream in) throws IOException {
+    in.mark(1);
+    if (in.read() == -1) {
+      return true;
+    }
+    in.reset();
+    return false;
+  }
+
+  private static int readInt(DataInputStream in) throws IOException {
+    try {
+      return in.readInt();
+    } catch (EOFException e) {
+      throw ConstraintViolations.simpleException("Request ends with a truncated record frame");
+    }
+  }
+
+  @Nullable
+  private static byte[] readBytes(
+      DataInputStream in, PayloadBufferPool payloads, int recordIndex, String field)
+      throws IOException {
+    int length = readInt(in);
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0) {
+      throw ConstraintViolations.simpleException(
+          "Record " + recordIndex + " has an invalid " + field + " length " + length);
+    }
+    try {
+      if (length <= MAX_EAGER_ALLOCATION) {
+        byte[] bytes = payloads.acquire(length);
+        in.readFully(bytes);
+        return bytes;
+      }
+      byte[] bytes = new byte[MAX_EAGER_ALLOCATION];
+      int read = 0;
+      while (read < length) {
+        if (read == bytes.length) {
+          bytes = Arrays.copyOf(bytes, (int) Math.min((long) bytes.length * 2, length));
+        }
+        int n = in.read(bytes, read, bytes.length - read);
+        if (n == -1) {
+          throw new EOFException();
+        }
+        read += n;
+      }
+      return bytes;
+    } catch (EOFException e) {
+      throw ConstraintViolations.simpleException("Request ends with a truncated record frame");
+    }
+  }
+}
@@ -399,6 +399,11 @@ public final class PartitionsResource {
             Response.Status requestStatus = response.getRequestStatus();
             asyncResponse.resume(Response.status(requestStatus).entity(response).build());
           }
+
+          @Override
+          public void onException(Exception exception) {
+            asyncResponse.resume(exception);
+          }
         }
     );
   }
@@ -160,6 +160,11 @@ public final class TopicsResource {
             Response.Status requestStatus = response.getRequestStatus();
             asyncResponse.resume(Response.status(requestStatus).entity(response).build());
           }
+
+          @Override
+          public void onException(Exception exception) {
+            asyncResponse.resume(exception);
+          }
         }
     );
   }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.resources.v2;
+
+import io.confluent.kafkarest.KafkaRestContext;
+import io.confluent.kafkarest.ProduceReceiptStore;
+import io.confluent.kafkarest.ProducerPool;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.v2.ProduceReceiptResponse;
+import io.confluent.kafkarest.entities.v2.ProduceResponse;
+import io.confluent.rest.exceptions.RestException;
+import java.net.URI;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Produce requests sent with a {@code Prefer: respond-async} header (RFC 7240). These are answered
+ * with {@code 202 Accepted} and a receipt as soon as their records are handed to the producer,
+ * which for schema formats may only be once their schemas were looked up. Until then a request can
+ * still fail as a whole, e.g. on an unknown schema or a record that does not convert, and is
+ * answered with that error like a synchronous one. The results are kept in the
+ * {@link ProduceReceiptStore} and served by {@link ProduceReceiptsResource} under the receipt's
+ * {@code Location}.
+ */
+final class AsyncProduce {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncProduce.class);
+
+  private AsyncProduce() {
+  }
+
+  /**
+   * Returns whether the {@code Prefer} header asks for an asynchronous response.
+   */
+  static boolean isRequested(@Nullable String prefer) {
+    return ProducePreferences.contains(prefer, ProducePreferences.RESPOND_ASYNC);
+  }
+
+  static <K, V> void produce(
+      KafkaRestContext ctx,
+      AsyncResponse asyncResponse,
+      @Nullable String topic,
+      @Nullable Integer partition,
+      EmbeddedFormat format,
+      @Nullable String profile,
+      ProduceRequest<K, V> request
+  ) {
+    ProduceReceiptStore receipts = ctx.getProduceReceiptStore();
+    String receiptId = receipts.create();
+    log.trace(
+        "Accepting produce request id={} topic={} partition={} format={} receipt={}",
+        asyncResponse, topic, partition, format, receiptId);
+    try {
+      ctx.getProducerPool().produce(
+          topic,
+          partition,
+          format,
+          profile,
+          request,
+          new ProducerPool.ProduceRequestCallback() {
+            @Override
+            public void onCompletion(
+                Integer keySchemaId,
+                Integer valueSchemaId,
+                List<RecordMetadataOrException> results
+            ) {
+              if (partition != null) {
+                ctx.getAdminClientWrapper().invalidateOnProduceErrors(topic, results);
+              }
+              try {
+                receipts.complete(
+                    receiptId, ProduceResponse.fromResults(keySchemaId, valueSchemaId, results));
+              } catch (RestException e) {
+                receipts.fail(receiptId, e);
+              }
+            }
+
+            @Override
+            public void onException(Exception exception) {
+              // Nothing was sent, the error goes back on this request like a synchronous one.
+              receipts.remove(receiptId);
+              asyncResponse.resume(exception);
+            }
+
+            @Override
+            public void onSent() {
+              asyncResponse.resume(
+                  Response.accepted(ProduceReceiptResponse.pending(receiptId))
+                      .location(URI.create("produce-receipts/" + receiptId))
+                      .header(
+                          ProducePreferences.PREFERENCE_APPLIED_HEADER,
+                          ProducePreferences.RESPOND_ASYNC)
+                      .build());
+            }
+          });
+    } catch (RuntimeException e) {
+      // Nothing was accepted, the error goes back on this request like a synchronous one.
+      receipts.remove(receiptId);
+      throw e;
+    }
+  }
+}
@@ -15,32 +15,27 @@
 
 package io.confluent.kafkarest.resources.v2;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.kafkarest.Errors;
 import io.confluent.kafkarest.KafkaRestContext;
+import io.confluent.kafkarest.ProduceRequestValidator;
 import io.confluent.kafkarest.ProducerPool;
 import io.confluent.kafkarest.RecordMetadataOrException;
-import io.confluent.kafkarest.Utils;
 import io.confluent.kafkarest.Versions;
 import io.confluent.kafkarest.entities.EmbeddedFormat;
 import io.confluent.kafkarest.entities.Partition;
-import io.confluent.kafkarest.entities.ProduceRecord;
 import io.confluent.kafkarest.entities.ProduceRequest;
 import io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest;
 import io.confluent.kafkarest.entities.v2.GetPartitionResponse;
 import io.confluent.kafkarest.entities.v2.JsonPartitionProduceRequest;
-import io.confluent.kafkarest.entities.v2.PartitionOffset;
-import io.confluent.kafkarest.entities.v2.ProduceResponse;
 import io.confluent.kafkarest.entities.v2.SchemaPartitionProduceRequest;
 import io.confluent.kafkarest.entities.v2.TopicPartitionOffsetResponse;
 import io.confluent.rest.annotations.PerformanceMetric;
 import java.util.List;
-import java.util.Vector;
 import java.util.stream.Collectors;
-import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -93,7 +88,6 @@ public final class PartitionsResource {
     return GetPartitionResponse.fromPartition(part);
   }
 
-
   @POST
   @Path("/{partition}")
   @PerformanceMetric("partition.produce-binary+v2")
@@ -102,16 +96,33 @@ public final class PartitionsResource {
       final @Suspended AsyncResponse asyncResponse,
       final @PathParam("topic") String topic,
       final @PathParam("partition") int partition,
-      @Valid @NotNull BinaryPartitionProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull BinaryPartitionProduceRequest request
   )  throws Exception {
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
     produce(
         asyncResponse,
+        prefer,
         topic,
         partition,
         EmbeddedFormat.BINARY,
         request.toProduceRequest());
   }
 
+  @POST
+  @Path("/{partition}")
+  @PerformanceMetric("partition.produce-binary-framed+v2")
+  @Consumes({Versions.KAFKA_V2_BINARY_FRAMED})
+  public void produceBinaryFramed(
+      final @Suspended AsyncResponse asyncResponse,
+      final @PathParam("topic") String topic,
+      final @PathParam("partition") int partition,
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull ProduceRequest<byte[], byte[]> request
+  )  throws Exception {
+    produce(asyncResponse, prefer, topic, partition, EmbeddedFormat.BINARY, request);
+  }
+
   @POST
   @Path("/{partition}")
   @PerformanceMetric("partition.produce-json+v2")
@@ -120,10 +131,13 @@ public final class PartitionsResource {
       final @Suspended AsyncResponse asyncResponse,
       final @PathParam("topic") String topic,
       final @PathParam("partition") int partition,
-      @Valid @NotNull JsonPartitionProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull JsonPartitionProduceRequest request
   )  throws Exception {
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
     produce(
         asyncResponse,
+        prefer,
         topic,
         partition,
         EmbeddedFormat.JSON,
@@ -138,14 +152,18 @@ public final class PartitionsResource {
       final @Suspended AsyncResponse asyncResponse,
       final @PathParam("topic") String topic,
       final @PathParam("partition") int partition,
-      @Valid @NotNull SchemaPartitionProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaPartitionProduceRequest request
   )  throws Exception {
-    produceSchema(
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
         asyncResponse,
+        prefer,
         topic,
         partition,
-        request.toProduceRequest(),
-        EmbeddedFormat.AVRO);
+        EmbeddedFormat.AVRO,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
   @POST
@@ -156,16 +174,18 @@ public final class PartitionsResource {
       final @Suspended AsyncResponse asyncResponse,
       final @PathParam("topic") String topic,
       final @PathParam("partition") int partition,
-      @Valid @NotNull SchemaPartitionProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaPartitionProduceRequest request
   )  throws Exception {
-    // Validations we can't do generically since they depend on the data format -- schemas need to
-    // be available if there are any non-null entries
-    produceSchema(
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
         asyncResponse,
+        prefer,
         topic,
         partition,
-        request.toProduceRequest(),
-        EmbeddedFormat.JSONSCHEMA);
+        EmbeddedFormat.JSONSCHEMA,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
   @POST
@@ -176,25 +196,29 @@ public final class PartitionsResource {
       final @Suspended AsyncResponse asyncResponse,
       final @PathParam("topic") String topic,
       final @PathParam("partition") int partition,
-      @Valid @NotNull SchemaPartitionProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaPartitionProduceRequest request
   )  throws Exception {
-    // Validations we can't do generically since they depend on the data format -- schemas need to
-    // be available if there are any non-null entries
-    produceSchema(
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
         asyncResponse,
+        prefer,
         topic,
         partition,
-        request.toProduceRequest(),
-        EmbeddedFormat.PROTOBUF);
+        EmbeddedFormat.PROTOBUF,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
   protected <K, V> void produce(
       final AsyncResponse asyncResponse,
+      final String prefer,
       final String topic,
       final int partition,
       final EmbeddedFormat format,
       final ProduceRequest<K, V> request
   ) throws Exception {
+    ProduceRequestValidator.forFormat(format).validate(request);
     // If the topic already exists, we can proactively check for the partition
     if (topicExists(topic)) {
       if (!ctx.getAdminClientWrapper().partitionExists(topic, partition)) {
@@ -202,83 +226,43 @@ public final class PartitionsResource {
       }
     }
 
+    String profile = ProducePreferences.value(prefer, ProducePreferences.PRODUCER_PROFILE);
+    if (AsyncProduce.isRequested(prefer)) {
+      AsyncProduce.produce(ctx, asyncResponse, topic, partition, format, profile, request);
+      return;
+    }
+
     log.trace(
         "Executing topic produce request id={} topic={} partition={} format={} request={}",
         asyncResponse, topic, partition, format, request
     );
 
     ctx.getProducerPool().produce(
-        topic, partition, format,
+        topic, partition, format, profile,
         request,
         new ProducerPool.ProduceRequestCallback() {
           public void onCompletion(
               Integer keySchemaId, Integer valueSchemaId,
               List<RecordMetadataOrException> results
           ) {
-            List<PartitionOffset> offsets = new Vector<PartitionOffset>();
-            for (RecordMetadataOrException result : results) {
-              if (result.getException() != null) {
-                int errorCode =
-                    Utils.errorCodeFromProducerException(result.getException());
-                String errorMessage = result.getException().getMessage();
-                offsets.add(new PartitionOffset(null, null, errorCode, errorMessage));
-              } else {
-                offsets.add(new PartitionOffset(
-                    result.getRecordMetadata().partition(),
-                    result.getRecordMetadata().offset(),
-                    null,
-                    null
-                ));
-              }
-            }
-            ProduceResponse response = new ProduceResponse(offsets, keySchemaId, valueSchemaId);
+            ctx.getAdminClientWrapper().invalidateOnProduceErrors(topic, results);
+            Response response = ProducePreferences.completedResponse(
+                prefer, keySchemaId, valueSchemaId, results);
             log.trace(
                 "Completed topic produce request id={} response={}",
-                asyncResponse, response
+                asyncResponse, response.getEntity()
             );
-            Response.Status requestStatus = response.getRequestStatus();
-            asyncResponse.resume(Response.status(requestStatus).entity(response).build());
+            asyncResponse.resume(response);
+          }
+
+          @Override
+          public void onException(Exception exception) {
+            asyncResponse.resume(exception);
           }
         }
     );
   }
 
-  private void produceSchema(
-      AsyncResponse asyncResponse,
-      String topic,
-      int partition,
-      ProduceRequest<JsonNode, JsonNode> request,
-      EmbeddedFormat avro
-  ) throws Exception {
-    checkKeySchema(request);
-    checkValueSchema(request);
-    produce(asyncResponse, topic, partition, avro, request);
-  }
-
-  private static void checkKeySchema(ProduceRequest<JsonNode, ?> request) {
-    for (ProduceRecord<JsonNode, ?> record : request.getRecords()) {
-      if (record.getKey() == null || record.getKey().isNull()) {
-        continue;
-      }
-      if (request.getKeySchema() != null || request.getKeySchemaId() != null) {
-        continue;
-      }
-      throw Errors.keySchemaMissingException();
-    }
-  }
-
-  private static void checkValueSchema(ProduceRequest<?, JsonNode> request) {
-    for (ProduceRecord<?, JsonNode> record : request.getRecords()) {
-      if (record.getValue() == null || record.getValue().isNull()) {
-        continue;
-      }
-      if (request.getValueSchema() != null || request.getValueSchemaId() != null) {
-        continue;
-      }
-      throw Errors.valueSchemaMissingException();
-    }
-  }
-
   /**
    * Returns a summary with beginning and end offsets for the given {@code topic} and {@code
    * partition}.
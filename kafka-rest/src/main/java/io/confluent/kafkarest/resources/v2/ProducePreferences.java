@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.resources.v2;
+
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse;
+import io.confluent.kafkarest.entities.v2.ProduceResponse;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.Response;
+
+/**
+ * Preferences a client can send with a v2 produce request in a {@code Prefer} header (RFC 7240).
+ *
+ * <ul>
+ *   <li>{@value #RESPOND_ASYNC}: answer with a receipt once the records are handed to the
+ *   producer, see {@link AsyncProduce}.</li>
+ *   <li>{@value #COMPACT_OFFSETS}: answer with a {@link CompactProduceResponse} instead of one
+ *   offset per record.</li>
+ *   <li>{@value #PRODUCER_PROFILE}{@code =<name>}: produce with the producers of one of the
+ *   {@link io.confluent.kafkarest.KafkaRestConfig#PRODUCE_PROFILES_CONFIG}.</li>
+ * </ul>
+ */
+final class ProducePreferences {
+
+  static final String PREFER_HEADER = "Prefer";
+  static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+
+  static final String RESPOND_ASYNC = "respond-async";
+  static final String COMPACT_OFFSETS = "compact-offsets";
+  static final String PRODUCER_PROFILE = "producer-profile";
+
+  private ProducePreferences() {
+  }
+
+  /**
+   * Returns whether the {@code Prefer} header contains {@code preference}.
+   */
+  static boolean contains(@Nullable String prefer, String preference) {
+    if (prefer == null) {
+      return false;
+    }
+    for (String token : prefer.split(",")) {
+      // Preferences may carry parameters, e.g. "respond-async; wait=10".
+      if (preference.equalsIgnoreCase(token.split(";", 2)[0].trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the value of {@code preference} in the {@code Prefer} header, e.g. {@code bulk} for
+   * {@code producer-profile=bulk}, or {@code null} if the header does not contain it.
+   */
+  @Nullable
+  static String value(@Nullable String prefer, String preference) {
+    if (prefer == null) {
+      return null;
+    }
+    for (String token : prefer.split(",")) {
+      String[] nameAndValue = token.split(";", 2)[0].split("=", 2);
+      if (nameAndValue.length == 2 && preference.equalsIgnoreCase(nameAndValue[0].trim())) {
+        String value = nameAndValue[1].trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+          value = value.substring(1, value.length() - 1);
+        }
+        return value.isEmpty() ? null : value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Builds the response of a synchronous produce request from its {@code results}.
+   */
+  static Response completedResponse(
+      @Nullable String prefer,
+      @Nullable Integer keySchemaId,
+      @Nullable Integer valueSchemaId,
+      List<RecordMetadataOrException> results
+  ) {
+    if (contains(prefer, COMPACT_OFFSETS)) {
+      CompactProduceResponse response =
+          CompactProduceResponse.fromResults(keySchemaId, valueSchemaId, results);
+      return Response.status(response.getRequestStatus())
+          .entity(response)
+          .header(PREFERENCE_APPLIED_HEADER, COMPACT_OFFSETS)
+          .build();
+    }
+    ProduceResponse response = ProduceResponse.fromResults(keySchemaId, valueSchemaId, results);
+    return Response.status(response.getRequestStatus()).entity(response).build();
+  }
+}
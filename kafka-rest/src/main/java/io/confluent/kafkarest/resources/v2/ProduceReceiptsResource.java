@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.resources.v2;
+
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.KafkaRestContext;
+import io.confluent.kafkarest.Versions;
+import io.confluent.kafkarest.entities.v2.ProduceReceiptResponse;
+import io.confluent.rest.annotations.PerformanceMetric;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+/**
+ * Serves the results of produce requests that were accepted asynchronously, see
+ * {@link AsyncProduce}.
+ */
+@Path("/produce-receipts")
+@Produces({Versions.KAFKA_V2_JSON_WEIGHTED})
+@Consumes({Versions.KAFKA_V2_JSON})
+public final class ProduceReceiptsResource {
+
+  private final KafkaRestContext ctx;
+
+  public ProduceReceiptsResource(KafkaRestContext ctx) {
+    this.ctx = ctx;
+  }
+
+  @GET
+  @Path("/{receipt}")
+  @PerformanceMetric("produce-receipt.get+v2")
+  public ProduceReceiptResponse getReceipt(@PathParam("receipt") String receiptId) {
+    ProduceReceiptResponse receipt = ctx.getProduceReceiptStore().get(receiptId);
+    if (receipt == null) {
+      throw Errors.produceReceiptNotFoundException();
+    }
+    return receipt;
+  }
+}
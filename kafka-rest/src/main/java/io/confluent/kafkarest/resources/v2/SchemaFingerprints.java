@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.resources.v2;
+
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.SchemaRef;
+import javax.annotation.Nullable;
+
+/**
+ * Applies the {@value #SCHEMA_FINGERPRINT_HEADER} header of a v2 produce request, e.g.
+ * {@code Schema-Fingerprint: value=<hex>}, which references a schema by the SHA-256 of schema text
+ * sent before instead of sending the text again. See
+ * {@link io.confluent.kafkarest.SchemaResolver#fingerprint(String)}.
+ */
+final class SchemaFingerprints {
+
+  static final String SCHEMA_FINGERPRINT_HEADER = "Schema-Fingerprint";
+
+  private static final String KEY = "key";
+  private static final String VALUE = "value";
+
+  private SchemaFingerprints() {
+  }
+
+  /**
+   * Returns {@code request} with the fingerprints of {@code header} as the schema references of
+   * the sides that do not already name their schema in the body.
+   */
+  static <K, V> ProduceRequest<K, V> apply(
+      @Nullable String header, ProduceRequest<K, V> request) {
+    if (header == null) {
+      return request;
+    }
+    SchemaRef keyRef = request.getKeySchemaRef();
+    String key = ProducePreferences.value(header, KEY);
+    if (key != null && !namesSchema(request.getKeySchema(), request.getKeySchemaId(), keyRef)) {
+      keyRef = SchemaRef.fingerprint(key);
+    }
+    SchemaRef valueRef = request.getValueSchemaRef();
+    String value = ProducePreferences.value(header, VALUE);
+    if (value != null
+        && !namesSchema(request.getValueSchema(), request.getValueSchemaId(), valueRef)) {
+      valueRef = SchemaRef.fingerprint(value);
+    }
+    if (keyRef == request.getKeySchemaRef() && valueRef == request.getValueSchemaRef()) {
+      return request;
+    }
+    return request.withSchemaRefs(keyRef, valueRef);
+  }
+
+  private static boolean namesSchema(
+      @Nullable String schema, @Nullable Integer schemaId, @Nullable SchemaRef schemaRef) {
+    return schema != null || schemaId != null || schemaRef != null;
+  }
+}
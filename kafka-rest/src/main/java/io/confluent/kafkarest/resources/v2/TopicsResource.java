@@ -15,31 +15,29 @@
 
 package io.confluent.kafkarest.resources.v2;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.kafkarest.Errors;
 import io.confluent.kafkarest.KafkaRestContext;
+import io.confluent.kafkarest.ProduceRequestValidator;
 import io.confluent.kafkarest.ProducerPool;
 import io.confluent.kafkarest.RecordMetadataOrException;
-import io.confluent.kafkarest.Utils;
 import io.confluent.kafkarest.Versions;
 import io.confluent.kafkarest.entities.EmbeddedFormat;
-import io.confluent.kafkarest.entities.ProduceRecord;
 import io.confluent.kafkarest.entities.ProduceRequest;
 import io.confluent.kafkarest.entities.Topic;
+import io.confluent.kafkarest.entities.v2.BinaryMultiTopicProduceRequest;
 import io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest;
 import io.confluent.kafkarest.entities.v2.GetTopicResponse;
+import io.confluent.kafkarest.entities.v2.JsonMultiTopicProduceRequest;
 import io.confluent.kafkarest.entities.v2.JsonTopicProduceRequest;
-import io.confluent.kafkarest.entities.v2.PartitionOffset;
-import io.confluent.kafkarest.entities.v2.ProduceResponse;
 import io.confluent.kafkarest.entities.v2.SchemaTopicProduceRequest;
 import io.confluent.rest.annotations.PerformanceMetric;
 import java.util.Collection;
 import java.util.List;
-import java.util.Vector;
-import javax.validation.Valid;
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -70,6 +68,44 @@ public final class TopicsResource {
     return ctx.getAdminClientWrapper().getTopicNames();
   }
 
+  /**
+   * Produces records that each name their topic, so a client writing to many topics needs a single
+   * round trip. The response has one offset per record, in request order.
+   */
+  @POST
+  @PerformanceMetric("topics.produce-binary+v2")
+  @Consumes({Versions.KAFKA_V2_JSON_BINARY, Versions.KAFKA_V2_JSON})
+  public void produceBinaryToTopics(
+      final @Suspended AsyncResponse asyncResponse,
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull BinaryMultiTopicProduceRequest request
+  ) {
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
+        asyncResponse,
+        prefer,
+        /* topicName= */ null,
+        EmbeddedFormat.BINARY,
+        request.toProduceRequest());
+  }
+
+  @POST
+  @PerformanceMetric("topics.produce-json+v2")
+  @Consumes({Versions.KAFKA_V2_JSON_JSON})
+  public void produceJsonToTopics(
+      final @Suspended AsyncResponse asyncResponse,
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull JsonMultiTopicProduceRequest request
+  ) {
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
+        asyncResponse,
+        prefer,
+        /* topicName= */ null,
+        EmbeddedFormat.JSON,
+        request.toProduceRequest());
+  }
+
   @GET
   @Path("/{topic}")
   @PerformanceMetric("topic.get+v2")
@@ -88,9 +124,24 @@ public final class TopicsResource {
   public void produceBinary(
       final @Suspended AsyncResponse asyncResponse,
       @PathParam("topic") String topicName,
-      @Valid @NotNull BinaryTopicProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull BinaryTopicProduceRequest request
   ) {
-    produce(asyncResponse, topicName, EmbeddedFormat.BINARY, request.toProduceRequest());
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(asyncResponse, prefer, topicName, EmbeddedFormat.BINARY, request.toProduceRequest());
+  }
+
+  @POST
+  @Path("/{topic}")
+  @PerformanceMetric("topic.produce-binary-framed+v2")
+  @Consumes({Versions.KAFKA_V2_BINARY_FRAMED})
+  public void produceBinaryFramed(
+      final @Suspended AsyncResponse asyncResponse,
+      @PathParam("topic") String topicName,
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull ProduceRequest<byte[], byte[]> request
+  ) {
+    produce(asyncResponse, prefer, topicName, EmbeddedFormat.BINARY, request);
   }
 
   @POST
@@ -100,9 +151,11 @@ public final class TopicsResource {
   public void produceJson(
       final @Suspended AsyncResponse asyncResponse,
       @PathParam("topic") String topicName,
-      @Valid @NotNull JsonTopicProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @NotNull JsonTopicProduceRequest request
   ) {
-    produce(asyncResponse, topicName, EmbeddedFormat.JSON, request.toProduceRequest());
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(asyncResponse, prefer, topicName, EmbeddedFormat.JSON, request.toProduceRequest());
   }
 
   @POST
@@ -112,11 +165,17 @@ public final class TopicsResource {
   public void produceAvro(
       final @Suspended AsyncResponse asyncResponse,
       @PathParam("topic") String topicName,
-      @Valid @NotNull SchemaTopicProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaTopicProduceRequest request
   ) {
-    // Validations we can't do generically since they depend on the data format -- schemas need to
-    // be available if there are any non-null entries
-    produceSchema(asyncResponse, topicName, request.toProduceRequest(), EmbeddedFormat.AVRO);
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
+        asyncResponse,
+        prefer,
+        topicName,
+        EmbeddedFormat.AVRO,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
   @POST
@@ -126,13 +185,17 @@ public final class TopicsResource {
   public void produceJsonSchema(
       final @Suspended AsyncResponse asyncResponse,
       @PathParam("topic") String topicName,
-      @Valid @NotNull SchemaTopicProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaTopicProduceRequest request
   ) {
-    produceSchema(
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
         asyncResponse,
+        prefer,
         topicName,
-        request.toProduceRequest(),
-        EmbeddedFormat.JSONSCHEMA);
+        EmbeddedFormat.JSONSCHEMA,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
   @POST
@@ -142,91 +205,59 @@ public final class TopicsResource {
   public void produceProtobuf(
       final @Suspended AsyncResponse asyncResponse,
       @PathParam("topic") String topicName,
-      @Valid @NotNull SchemaTopicProduceRequest request
+      @HeaderParam(ProducePreferences.PREFER_HEADER) String prefer,
+      @HeaderParam(SchemaFingerprints.SCHEMA_FINGERPRINT_HEADER) String schemaFingerprint,
+      @NotNull SchemaTopicProduceRequest request
   ) {
-    // Validations we can't do generically since they depend on the data format -- schemas need to
-    // be available if there are any non-null entries
-    produceSchema(
+    ProduceRequestValidator.checkNotEmpty(request.getRecords());
+    produce(
         asyncResponse,
+        prefer,
         topicName,
-        request.toProduceRequest(),
-        EmbeddedFormat.PROTOBUF);
+        EmbeddedFormat.PROTOBUF,
+        SchemaFingerprints.apply(schemaFingerprint, request.toProduceRequest()));
   }
 
+  /**
+   * @param topicName the topic of all records, or {@code null} if each record names its own
+   */
   public <K, V> void produce(
       final AsyncResponse asyncResponse,
-      final String topicName,
+      final String prefer,
+      final @Nullable String topicName,
       final EmbeddedFormat format,
       final ProduceRequest<K, V> request
   ) {
+    ProduceRequestValidator.forFormat(format).validate(request);
+    String profile = ProducePreferences.value(prefer, ProducePreferences.PRODUCER_PROFILE);
+    if (AsyncProduce.isRequested(prefer)) {
+      AsyncProduce.produce(ctx, asyncResponse, topicName, null, format, profile, request);
+      return;
+    }
     log.trace("Executing topic produce request id={} topic={} format={} request={}",
         asyncResponse, topicName, format, request
     );
     ctx.getProducerPool().produce(
-        topicName, null, format,
+        topicName, null, format, profile,
         request,
         new ProducerPool.ProduceRequestCallback() {
           public void onCompletion(
               Integer keySchemaId, Integer valueSchemaId,
               List<RecordMetadataOrException> results
           ) {
-            List<PartitionOffset> offsets = new Vector<PartitionOffset>();
-            for (RecordMetadataOrException result : results) {
-              if (result.getException() != null) {
-                int errorCode =
-                    Utils.errorCodeFromProducerException(result.getException());
-                String errorMessage = result.getException().getMessage();
-                offsets.add(new PartitionOffset(null, null, errorCode, errorMessage));
-              } else {
-                offsets.add(new PartitionOffset(result.getRecordMetadata().partition(),
-                                                result.getRecordMetadata().offset(),
-                                                null, null
-                ));
-              }
-            }
-            ProduceResponse response = new ProduceResponse(offsets, keySchemaId, valueSchemaId);
+            Response response = ProducePreferences.completedResponse(
+                prefer, keySchemaId, valueSchemaId, results);
             log.trace("Completed topic produce request id={} response={}",
-                      asyncResponse, response
+                      asyncResponse, response.getEntity()
             );
-            Response.Status requestStatus = response.getRequestStatus();
-            asyncResponse.resume(Response.status(requestStatus).entity(response).build());
+            asyncResponse.resume(response);
+          }
+
+          @Override
+          public void onException(Exception exception) {
+            asyncResponse.resume(exception);
           }
         }
     );
   }
-
-  private void produceSchema(
-      AsyncResponse asyncResponse,
-      String topicName,
-      ProduceRequest<JsonNode, JsonNode> request,
-      EmbeddedFormat jsonschema
-  ) {
-    checkKeySchema(request);
-    checkValueSchema(request);
-    produce(asyncResponse, topicName, jsonschema, request);
-  }
-
-  private static void checkKeySchema(ProduceRequest<JsonNode, ?> request) {
-    for (ProduceRecord<JsonNode, ?> record : request.getRecords()) {
-      if (record.getKey() == null || record.getKey().isNull()) {
-        continue;
-      }
-      if (request.getKeySchema() != null || request.getKeySchemaId() != null) {
-        continue;
-      }
-      throw Errors.keySchemaMissingException();
-    }
-  }
-
-  private static void checkValueSchema(ProduceRequest<?, JsonNode> request) {
-    for (ProduceRecord<?, JsonNode> record : request.getRecords()) {
-      if (record.getValue() == null || record.getValue().isNull()) {
-        continue;
-      }
-      if (request.getValueSchema() != null || request.getValueSchemaId() != null) {
-        continue;
-      }
-      throw Errors.valueSchemaMissingException();
-    }
-  }
 }
@@ -26,7 +26,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ProducerPerformance extends AbstractPerformanceTest {
 
@@ -38,7 +44,10 @@ public class ProducerPerformance extends AbstractPerformanceTest {
   String targetUrl;
   String requestEntityLength;
   byte[] requestEntity;
-  byte[] buffer;
+  // Responses are read into a per-thread buffer and discarded.
+  final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[1024 * 1024]);
+  int concurrency;
+  ExecutorService requestExecutor;
 
   private final ObjectMapper jsonDeserializer = new ObjectMapper();
 
@@ -46,7 +55,7 @@ public class ProducerPerformance extends AbstractPerformanceTest {
     if (args.length < 6) {
       System.out.println(
           "Usage: java " + ProducerPerformance.class.getName() + " rest_url topic_name "
-          + "num_records record_size batch_size target_records_sec"
+          + "num_records record_size batch_size target_records_sec [concurrency]"
       );
       System.exit(1);
     }
@@ -56,44 +65,82 @@ public class ProducerPerformance extends AbstractPerformanceTest {
     int numRecords = Integer.parseInt(args[2]);
     int recordSize = Integer.parseInt(args[3]);
     int batchSize = Integer.parseInt(args[4]);
-    int throughput = Integer.parseInt(args[5]) / batchSize;
+    // Number of requests in flight at once, each iteration sends one request per connection.
+    int concurrency = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+    int throughput = Integer.parseInt(args[5]) / (batchSize * concurrency);
 
     ProducerPerformance
         perf =
         new ProducerPerformance(
             baseUrl,
             topic,
-            numRecords / batchSize,
+            numRecords / (batchSize * concurrency),
             batchSize,
             throughput,
-            recordSize
+            recordSize,
+            concurrency
         );
-    perf.run(throughput);
+    try {
+      perf.run(throughput);
+    } finally {
+      perf.close();
+    }
   }
 
   public ProducerPerformance(
       String baseUrl, String topic, long iterations, int recordsPerIteration,
       long iterationsPerSec, int recordSize
   ) throws Exception {
-    super(iterations * recordsPerIteration);
+    this(baseUrl, topic, iterations, recordsPerIteration, iterationsPerSec, recordSize, 1);
+  }
+
+  public ProducerPerformance(
+      String baseUrl, String topic, long iterations, int recordsPerRequest,
+      long iterationsPerSec, int recordSize, int concurrency
+  ) throws Exception {
+    super(iterations * recordsPerRequest * concurrency);
     this.iterations = iterations;
     this.iterationsPerSec = iterationsPerSec;
-    this.recordsPerIteration = recordsPerIteration;
-    this.bytesPerIteration = recordsPerIteration * recordSize;
+    this.recordsPerIteration = recordsPerRequest * concurrency;
+    this.bytesPerIteration = (long) recordsPerIteration * recordSize;
+    this.concurrency = concurrency;
+    this.requestExecutor = concurrency > 1 ? Executors.newFixedThreadPool(concurrency) : null;
 
     /* setup perf test */
     targetUrl = baseUrl + "/topics/" + topic;
     BinaryTopicProduceRecord record = new BinaryTopicProduceRecord(null, "payload", null);
-    BinaryTopicProduceRecord[] records = new BinaryTopicProduceRecord[recordsPerIteration];
+    BinaryTopicProduceRecord[] records = new BinaryTopicProduceRecord[recordsPerRequest];
     Arrays.fill(records, record);
     BinaryTopicProduceRequest request = BinaryTopicProduceRequest.create(Arrays.asList(records));
     requestEntity = new ObjectMapper().writeValueAsBytes(request);
     requestEntityLength = Integer.toString(requestEntity.length);
-    buffer = new byte[1024 * 1024];
   }
 
   @Override
   protected void doIteration(PerformanceStats.Callback cb) {
+    if (requestExecutor == null) {
+      sendRequest();
+    } else {
+      List<Future<?>> requests = new ArrayList<>(concurrency);
+      for (int i = 0; i < concurrency; i++) {
+        requests.add(requestExecutor.submit(this::sendRequest));
+      }
+      for (Future<?> request : requests) {
+        try {
+          request.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException e) {
+          e.getCause().printStackTrace();
+        }
+      }
+    }
+    cb.onCompletion(recordsPerIteration, bytesPerIteration);
+  }
+
+  private void sendRequest() {
+    byte[] buffer = this.buffer.get();
     HttpURLConnection connection = null;
     try {
       URL url = new URL(targetUrl);
@@ -133,7 +180,12 @@ public class ProducerPerformance extends AbstractPerformanceTest {
         connection.disconnect();
       }
     }
-    cb.onCompletion(recordsPerIteration, bytesPerIteration);
+  }
+
+  void close() {
+    if (requestExecutor != null) {
+      requestExecutor.shutdownNow();
+    }
   }
 
   @Override
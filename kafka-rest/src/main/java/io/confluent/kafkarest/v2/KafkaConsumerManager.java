@@ -22,6 +22,7 @@ import static io.confluent.kafkarest.KafkaRestConfig.MAX_POLL_RECORDS_VALUE;
 import io.confluent.kafkarest.ConsumerInstanceId;
 import io.confluent.kafkarest.ConsumerReadCallback;
 import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ExpirationWheel;
 import io.confluent.kafkarest.KafkaRestConfig;
 import io.confluent.kafkarest.RestConfigUtils;
 import io.confluent.kafkarest.Time;
@@ -44,8 +45,6 @@ import io.confluent.rest.exceptions.RestNotFoundException;
 import io.confluent.rest.exceptions.RestServerErrorException;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -53,12 +52,16 @@ import java.util.Properties;
 import java.util.UUID;
 import java.util.Vector;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.SynchronousQueue;
@@ -66,6 +69,8 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.ws.rs.core.Response;
 import org.apache.kafka.clients.consumer.Consumer;
@@ -84,7 +89,16 @@ import org.slf4j.LoggerFactory;
  * Since read tasks do not complete on the first run but rather call the AK consumer's poll() method
  * continuously, we re-schedule them via a {@link DelayQueue}.
  * A {@link ReadTaskSchedulerThread} runs in a separate thread
- *  and re-submits the tasks to the executor.
+ * and re-submits the tasks to the executor.
+ * If {@link KafkaRestConfig#CONSUMER_POLL_BLOCK_MS_CONFIG} is set, read tasks instead wait in poll
+ * for records to arrive and are re-submitted without a delay.
+ * With {@link KafkaRestConfig#CONSUMER_EXECUTOR_MODE_VIRTUAL}, each task runs on a virtual thread
+ * of its own instead, and read tasks wait in poll until they are done.
+ *
+ * <p>Consumer instances are kept in a concurrent map, so looking one up never takes a lock shared
+ * with other instances. Each entry moves from creating to active to closing exactly once, which
+ * decides whether a create, a delete or an expiration wins when they race on the same instance.
+ * Idle instances are found by an {@link ExpirationWheel}, which closes them on its own threads.
  */
 public class KafkaConsumerManager {
 
@@ -97,14 +111,17 @@ public class KafkaConsumerManager {
   // KafkaConsumerState is generic, but we store them untyped here. This allows many operations to
   // work without having to know the types for the consumer, only requiring type information
   // during read operations.
-  private final Map<ConsumerInstanceId, KafkaConsumerState> consumers =
-      new HashMap<ConsumerInstanceId, KafkaConsumerState>();
+  private final ConcurrentMap<ConsumerInstanceId, ConsumerEntry> consumers =
+      new ConcurrentHashMap<>();
   // All kind of operations, like reading records, committing offsets and closing a consumer
   // are executed separately in dedicated threads via a cached thread pool.
   private final ExecutorService executor;
+  // Whether executor runs each task on its own virtual thread, in which case read tasks block
+  // until they are done instead of being re-scheduled.
+  final boolean virtualThreads;
   private KafkaConsumerFactory consumerFactory;
   final DelayQueue<RunnableReadTask> delayedReadTasks = new DelayQueue<>();
-  private final ExpirationThread expirationThread;
+  private final ExpirationWheel<ConsumerEntry> expirationWheel;
   private ReadTaskSchedulerThread readTaskSchedulerThread;
 
   @GuardedBy("this")
@@ -115,11 +132,35 @@ public class KafkaConsumerManager {
     this.time = config.getTime();
     this.bootstrapServers = RestConfigUtils.bootstrapBrokers(config);
 
+    ExecutorService virtualThreadExecutor = null;
+    if (KafkaRestConfig.CONSUMER_EXECUTOR_MODE_VIRTUAL.equals(
+        config.getString(KafkaRestConfig.CONSUMER_EXECUTOR_MODE_CONFIG))) {
+      virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+      if (virtualThreadExecutor == null) {
+        log.warn("Virtual threads are not available in this JVM, running consumer requests on a"
+            + " thread pool instead.");
+      }
+    }
+    this.virtualThreads = virtualThreadExecutor != null;
+    this.executor = virtualThreads ? virtualThreadExecutor : newThreadPoolExecutor(config);
+    this.consumerFactory = null;
+    this.expirationWheel =
+        new ExpirationWheel<>(
+            "Consumer Expiration Thread",
+            time,
+            config.getInt(KafkaRestConfig.CONSUMER_CLOSE_THREADS_CONFIG),
+            new ExpirationHandler());
+    this.readTaskSchedulerThread = new ReadTaskSchedulerThread();
+    this.expirationWheel.start();
+    this.readTaskSchedulerThread.start();
+  }
+
+  private ThreadPoolExecutor newThreadPoolExecutor(KafkaRestConfig config) {
     // Cached thread pool
     int maxThreadCount = config.getInt(CONSUMER_MAX_THREADS_CONFIG) < 0 ? Integer.MAX_VALUE
             : config.getInt(CONSUMER_MAX_THREADS_CONFIG);
 
-    this.executor = new KafkaConsumerThreadPoolExecutor(0, maxThreadCount,
+    return new KafkaConsumerThreadPoolExecutor(0, maxThreadCount,
             60L, TimeUnit.SECONDS,
             new SynchronousQueue<Runnable>(),
             new RejectedExecutionHandler() {
@@ -139,18 +180,44 @@ public class KafkaConsumerManager {
             }
           }
     );
-    this.consumerFactory = null;
-    this.expirationThread = new ExpirationThread();
-    this.readTaskSchedulerThread = new ReadTaskSchedulerThread();
-    this.expirationThread.start();
-    this.readTaskSchedulerThread.start();
   }
 
-  KafkaConsumerManager(KafkaRestConfig config, KafkaConsumerFactory consumerFactory) {
+  /**
+   * Returns an executor starting a virtual thread for each task, or {@code null} if this JVM does
+   * not support virtual threads. Looked up reflectively, as we still build for older Java versions.
+   */
+  @Nullable
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  public KafkaConsumerManager(KafkaRestConfig config, KafkaConsumerFactory consumerFactory) {
     this(config);
     this.consumerFactory = consumerFactory;
   }
 
+  /**
+   * Submits {@code task} to the executor. A virtual thread executor only rejects tasks once it is
+   * shut down, those are dropped like the thread pool's rejection handler drops them.
+   */
+  private Future<?> submit(Runnable task) {
+    if (!virtualThreads) {
+      return executor.submit(task);
+    }
+    FutureTask<?> future = new FutureTask<>(task, null);
+    try {
+      executor.execute(future);
+    } catch (RejectedExecutionException e) {
+      log.debug("The runnable {} was rejected execution, the executor is shut down", task);
+    }
+    return future;
+  }
+
   /**
    * Creates a new consumer instance and returns its unique ID.
    *
@@ -179,14 +246,10 @@ public class KafkaConsumerManager {
     }
 
     ConsumerInstanceId cid = new ConsumerInstanceId(group, name);
-    // Perform this check before
-    synchronized (this) {
-      if (consumers.containsKey(cid)) {
-        throw Errors.consumerAlreadyExistsException();
-      } else {
-        // Placeholder to reserve this ID
-        consumers.put(cid, null);
-      }
+    // Reserve this ID, the entry stays invisible to lookups until the consumer is created
+    ConsumerEntry entry = new ConsumerEntry();
+    if (consumers.putIfAbsent(cid, entry) != null) {
+      throw Errors.consumerAlreadyExistsException();
     }
 
     // Ensure we clean up the placeholder if there are any issues creating the consumer instance
@@ -267,16 +330,19 @@ public class KafkaConsumerManager {
       }
 
       KafkaConsumerState state = createConsumerState(instanceConfig, cid, consumer);
-      synchronized (this) {
-        consumers.put(cid, state);
+      if (!entry.activate(state)) {
+        // The manager was shut down while we were creating the consumer
+        state.close();
+        throw new RestServerErrorException(
+            "Consumer manager is shutting down.",
+            Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
       }
+      expirationWheel.schedule(entry);
       succeeded = true;
       return name;
     } finally {
       if (!succeeded) {
-        synchronized (this) {
-          consumers.remove(cid);
-        }
+        consumers.remove(cid, entry);
       }
     }
   }
@@ -337,9 +403,12 @@ public class KafkaConsumerManager {
           state,
           timeout,
           maxBytes,
-          callback
+          callback,
+          // A virtual thread is cheap to block, so wait in poll for the whole request.
+          virtualThreads ? Long.MAX_VALUE : state.getConfig().getInt(
+              KafkaRestConfig.CONSUMER_POLL_BLOCK_MS_CONFIG)
     );
-    executor.submit(new RunnableReadTask(new ReadTaskState(task, state, callback)));
+    submit(new RunnableReadTask(new ReadTaskState(task, state, callback)));
   }
 
   private class ReadFutureTask<V> extends FutureTask<V> {
@@ -377,6 +446,7 @@ public class KafkaConsumerManager {
     private final long started;
     private final long requestExpiration;
     private final int backoffMs;
+    private final boolean blockingPoll;
     // Expiration if this task is waiting, considering both the expiration of the whole task and
     // a single backoff, if one is in progress
     private long waitExpirationMs;
@@ -388,6 +458,7 @@ public class KafkaConsumerManager {
       this.requestExpiration = this.started
               + consumerConfig.getInt(KafkaRestConfig.CONSUMER_REQUEST_TIMEOUT_MS_CONFIG);
       this.backoffMs = consumerConfig.getInt(KafkaRestConfig.CONSUMER_ITERATOR_BACKOFF_MS_CONFIG);
+      this.blockingPoll = consumerConfig.getInt(KafkaRestConfig.CONSUMER_POLL_BLOCK_MS_CONFIG) > 0;
       this.waitExpirationMs = 0;
     }
 
@@ -421,10 +492,21 @@ public class KafkaConsumerManager {
       try {
         log.trace("Executing consumer read task ({})", taskState.task);
 
+        if (virtualThreads) {
+          // This read has a virtual thread to itself, so it simply blocks until it is done.
+          while (!taskState.task.isDone()) {
+            taskState.task.doPartialRead();
+            taskState.consumerState.updateExpiration();
+          }
+          log.trace("Finished executing consumer read task ({})", taskState.task);
+          return;
+        }
+
         taskState.task.doPartialRead();
         taskState.consumerState.updateExpiration();
         if (!taskState.task.isDone()) {
-          delayFor(this.backoffMs);
+          // A blocking poll has already waited for records, so there is no need to back off.
+          delayFor(blockingPoll ? 0 : this.backoffMs);
         } else {
           log.trace("Finished executing consumer read task ({})", taskState.task);
         }
@@ -470,7 +552,7 @@ public class KafkaConsumerManager {
       return null;
     }
 
-    return executor.submit(new Runnable() {
+    return submit(new Runnable() {
       @Override
       public void run() {
         try {
@@ -550,9 +632,14 @@ public class KafkaConsumerManager {
     // Consumers expire when not used for some time. They can also be explicitly deleted by a user
     // using DELETE /consumers/{consumerGroup}/instances/{consumerInstances}. If the consumer does
     // not exist, create a new one.
-    if (adminConsumerInstanceId == null || !consumers.containsKey(adminConsumerInstanceId)) {
-      adminConsumerInstanceId = createAdminConsumerInstance();
+    if (adminConsumerInstanceId != null) {
+      ConsumerEntry entry = consumers.get(adminConsumerInstanceId);
+      KafkaConsumerState<?, ?, ?, ?> state = entry != null ? entry.refresh() : null;
+      if (state != null) {
+        return state;
+      }
     }
+    adminConsumerInstanceId = createAdminConsumerInstance();
     return getConsumerInstance(adminConsumerInstanceId);
   }
 
@@ -649,35 +736,46 @@ public class KafkaConsumerManager {
   public void shutdown() {
     log.debug("Shutting down consumers");
     executor.shutdown();
-    // Expiration thread needs to be able to acquire a lock on the KafkaConsumerManager to make sure
-    // the shutdown will be able to complete.
+    // Stop expiring consumers first, so it does not race with closing them below.
     log.trace("Shutting down consumer expiration thread");
-    expirationThread.shutdown();
+    expirationWheel.shutdown();
     readTaskSchedulerThread.shutdown();
-    synchronized (this) {
-      for (Map.Entry<ConsumerInstanceId, KafkaConsumerState> entry : consumers.entrySet()) {
-        entry.getValue().close();
+    for (Map.Entry<ConsumerInstanceId, ConsumerEntry> entry : consumers.entrySet()) {
+      // Consumers still being created are closed by createConsumer once it sees this transition
+      KafkaConsumerState<?, ?, ?, ?> state = entry.getValue().close();
+      consumers.remove(entry.getKey(), entry.getValue());
+      if (state != null) {
+        state.close();
       }
-      consumers.clear();
-      executor.shutdown();
     }
   }
 
   /**
    * Gets the specified consumer instance or throws a not found exception. Also removes the
    * consumer's expiration timeout so it is not cleaned up mid-operation.
+   *
+   * <p>Lookups only read the concurrent map. Removing moves the instance to closing first, so of
+   * a concurrent delete and expiration only one gets to close it. A lookup racing with the
+   * expiration of its instance either refreshes it in time or finds it gone, it never returns an
+   * instance that is being closed.
    */
-  private synchronized KafkaConsumerState<?, ?, ?, ?> getConsumerInstance(
+  private KafkaConsumerState<?, ?, ?, ?> getConsumerInstance(
       String group,
       String instance,
       boolean toRemove
   ) {
     ConsumerInstanceId id = new ConsumerInstanceId(group, instance);
-    final KafkaConsumerState state = toRemove ? consumers.remove(id) : consumers.get(id);
+    ConsumerEntry entry = consumers.get(id);
+    if (entry == null) {
+      throw Errors.consumerInstanceNotFoundException();
+    }
+    final KafkaConsumerState<?, ?, ?, ?> state = toRemove ? entry.close() : entry.refresh();
     if (state == null) {
       throw Errors.consumerInstanceNotFoundException();
     }
-    state.updateExpiration();
+    if (toRemove) {
+      consumers.remove(id, entry);
+    }
     return state;
   }
 
@@ -695,6 +793,117 @@ public class KafkaConsumerManager {
     Consumer createConsumer(Properties props);
   }
 
+  /**
+   * A slot in the consumer registry. An entry is reserved as creating before its consumer exists,
+   * becomes active once the consumer is created, and is closing once it is being removed. Only
+   * active entries are visible to lookups.
+   *
+   * <p>Expiring an entry briefly moves it to expiring, while its expiration is checked once more.
+   * Lookups and closes wait for that check, which either closes the entry or leaves it active.</p>
+   */
+  private static final class ConsumerEntry {
+
+    private enum Phase {
+      CREATING,
+      ACTIVE,
+      EXPIRING,
+      CLOSING
+    }
+
+    private final AtomicReference<Phase> phase = new AtomicReference<>(Phase.CREATING);
+    // Written before the entry becomes active, and read only after seeing it active. Cleared once
+    // closing, so an entry still on the expiration wheel does not keep its consumer reachable.
+    @Nullable
+    private volatile KafkaConsumerState<?, ?, ?, ?> state;
+
+    /**
+     * Makes {@code state} visible to lookups, unless the entry has already been closed.
+     */
+    boolean activate(KafkaConsumerState<?, ?, ?, ?> state) {
+      this.state = state;
+      if (phase.compareAndSet(Phase.CREATING, Phase.ACTIVE)) {
+        return true;
+      }
+      this.state = null;
+      return false;
+    }
+
+    /**
+     * Returns the expiration of the consumer, or {@link Long#MIN_VALUE} once the entry is closing.
+     */
+    long expiration() {
+      KafkaConsumerState<?, ?, ?, ?> current = state;
+      return current != null ? current.expiration : Long.MIN_VALUE;
+    }
+
+    boolean closing() {
+      return phase.get() == Phase.CLOSING;
+    }
+
+    /**
+     * Refreshes the expiration of the consumer and returns its state, or returns {@code null} if
+     * the entry is not active.
+     */
+    @Nullable
+    KafkaConsumerState<?, ?, ?, ?> refresh() {
+      KafkaConsumerState<?, ?, ?, ?> active = settledPhase() == Phase.ACTIVE ? state : null;
+      if (active == null) {
+        return null;
+      }
+      active.updateExpiration();
+      // An expiration that moves the entry to expiring from here on sees the new expiration.
+      return settledPhase() == Phase.ACTIVE ? active : null;
+    }
+
+    /**
+     * Moves the entry to closing and returns its consumer state, if it was active. Returns
+     * {@code null} if the entry was still being created or someone else is closing it already.
+     */
+    @Nullable
+    KafkaConsumerState<?, ?, ?, ?> close() {
+      while (true) {
+        Phase previous = settledPhase();
+        if (phase.compareAndSet(previous, Phase.CLOSING)) {
+          KafkaConsumerState<?, ?, ?, ?> closed = state;
+          state = null;
+          return previous == Phase.ACTIVE ? closed : null;
+        }
+      }
+    }
+
+    /**
+     * Like {@link #close()}, but only if the entry is active and expired at {@code nowMs}.
+     */
+    @Nullable
+    KafkaConsumerState<?, ?, ?, ?> closeIfExpired(long nowMs) {
+      KafkaConsumerState<?, ?, ?, ?> active = phase.get() == Phase.ACTIVE ? state : null;
+      if (active == null || !active.expired(nowMs)
+          || !phase.compareAndSet(Phase.ACTIVE, Phase.EXPIRING)) {
+        return null;
+      }
+      // A lookup may have refreshed the consumer before it could see the entry expiring.
+      if (!active.expired(nowMs)) {
+        phase.set(Phase.ACTIVE);
+        return null;
+      }
+      phase.set(Phase.CLOSING);
+      state = null;
+      return active;
+    }
+
+    /**
+     * Returns the phase of the entry once it is not expiring, which only takes the wheel thread a
+     * moment.
+     */
+    private Phase settledPhase() {
+      Phase current;
+      while ((current = phase.get()) == Phase.EXPIRING) {
+        Thread.yield();
+      }
+      return current;
+    }
+  }
+
   private static class ReadTaskState {
     final KafkaConsumerReadTask task;
     final KafkaConsumerState consumerState;
@@ -725,7 +934,7 @@ public class KafkaConsumerManager {
         while (isRunning.get()) {
           RunnableReadTask readTask = delayedReadTasks.poll(500, TimeUnit.MILLISECONDS);
           if (readTask != null) {
-            executor.submit(readTask);
+            submit(readTask);
           }
         }
       } catch (InterruptedException e) {
@@ -746,54 +955,29 @@ public class KafkaConsumerManager {
     }
   }
 
-  private class ExpirationThread extends Thread {
+  private class ExpirationHandler implements ExpirationWheel.Handler<ConsumerEntry> {
 
-    AtomicBoolean isRunning = new AtomicBoolean(true);
-    CountDownLatch shutdownLatch = new CountDownLatch(1);
-
-    public ExpirationThread() {
-      super("Consumer Expiration Thread");
-      setDaemon(true);
+    @Override
+    public long expiration(ConsumerEntry entry) {
+      return entry.expiration();
     }
 
     @Override
-    public void run() {
-      try {
-        while (isRunning.get()) {
-          synchronized (KafkaConsumerManager.this) {
-            long now = time.milliseconds();
-            Iterator itr = consumers.values().iterator();
-            while (itr.hasNext()) {
-              final KafkaConsumerState state = (KafkaConsumerState) itr.next();
-              if (state != null && state.expired(now)) {
-                log.debug("Removing the expired consumer {}", state.getId());
-                itr.remove();
-                executor.submit(new Runnable() {
-                  @Override
-                  public void run() {
-                    state.close();
-                  }
-                });
-              }
-            }
-          }
-
-          Thread.sleep(1000);
-        }
-      } catch (InterruptedException e) {
-        // Interrupted by other thread, do nothing to allow this thread to exit
-      }
-      shutdownLatch.countDown();
+    public boolean removed(ConsumerEntry entry) {
+      // Deleted and expired consumers alike, their entries are never reactivated.
+      return entry.closing();
     }
 
-    public void shutdown() {
-      try {
-        isRunning.set(false);
-        this.interrupt();
-        shutdownLatch.await();
-      } catch (InterruptedException e) {
-        throw new RuntimeException("Interrupted when shutting down expiration thread.");
+    @Override
+    @Nullable
+    public Runnable expire(ConsumerEntry entry, long nowMs) {
+      final KafkaConsumerState<?, ?, ?, ?> state = entry.closeIfExpired(nowMs);
+      if (state == null) {
+        return null;
       }
+      log.debug("Removing the expired consumer {}", state.getId());
+      consumers.remove(state.getId(), entry);
+      return state::close;
     }
   }
 }
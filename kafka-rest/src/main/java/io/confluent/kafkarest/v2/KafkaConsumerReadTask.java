@@ -47,6 +47,8 @@ class KafkaConsumerReadTask<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> {
   // in cases where the functionality is disabled
   private final int responseMinBytes;
   private final long maxResponseBytes;
+  // how long to wait in poll for records to arrive once none are available, 0 to not wait
+  private final long pollBlockMs;
   private final ConsumerReadCallback<ClientKeyT, ClientValueT> callback;
   private boolean finished;
 
@@ -62,6 +64,25 @@ class KafkaConsumerReadTask<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> {
       long timeout,
       long maxBytes,
       ConsumerReadCallback<ClientKeyT, ClientValueT> callback
+  ) {
+    this(
+        parent,
+        timeout,
+        maxBytes,
+        callback,
+        parent.getConfig().getInt(KafkaRestConfig.CONSUMER_POLL_BLOCK_MS_CONFIG));
+  }
+
+  /**
+   * @param pollBlockMs how long to wait in a single poll for records to arrive once none are
+   *                    available, 0 to not wait
+   */
+  public KafkaConsumerReadTask(
+      KafkaConsumerState<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> parent,
+      long timeout,
+      long maxBytes,
+      ConsumerReadCallback<ClientKeyT, ClientValueT> callback,
+      long pollBlockMs
   ) {
     this.parent = parent;
     this.maxResponseBytes =
@@ -77,7 +98,7 @@ class KafkaConsumerReadTask<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> {
     int responseMinBytes = parent.getConfig().getInt(
             KafkaRestConfig.PROXY_FETCH_MIN_BYTES_CONFIG);
     this.responseMinBytes = responseMinBytes < 0 ? Integer.MAX_VALUE : responseMinBytes;
-
+    this.pollBlockMs = pollBlockMs;
 
     this.callback = callback;
     this.finished = false;
@@ -135,11 +156,20 @@ class KafkaConsumerReadTask<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> {
   /**
    * Polls for and reads records until either the minimum response bytes are filled,
    *  the maximum response bytes will be reached, or no more records can be read from polling.
+   * If blocking polls are enabled, it then waits in poll for more records to arrive, for at most
+   * the remaining request time.
    */
   private void addRecords() {
     while (!exceededMinResponseBytes && !exceededMaxResponseBytes && parent.hasNext()) {
       maybeAddRecord();
     }
+    if (pollBlockMs > 0 && !exceededMinResponseBytes && !exceededMaxResponseBytes) {
+      long remainingMs =
+          requestTimeoutMs - (parent.getConfig().getTime().milliseconds() - started);
+      if (remainingMs > 0) {
+        parent.awaitRecords(Math.min(remainingMs, pollBlockMs));
+      }
+    }
     while (!exceededMaxResponseBytes && parent.hasNextCached()) {
       // will not call poll() anymore. Continue draining loaded records
       maybeAddRecord();
@@ -153,8 +183,8 @@ class KafkaConsumerReadTask<KafkaKeyT, KafkaValueT, ClientKeyT, ClientValueT> {
    * have exceeded the min response bytes
    */
   private void maybeAddRecord() {
-    ConsumerRecordAndSize<ClientKeyT, ClientValueT> recordAndSize =
-            parent.createConsumerRecord(parent.peek());
+    // If the record does not fit, its conversion is kept for the next read.
+    ConsumerRecordAndSize<ClientKeyT, ClientValueT> recordAndSize = parent.peekConverted();
     long roughMsgSize = recordAndSize.getSize();
     if (bytesConsumed + roughMsgSize >= maxResponseBytes) {
       this.exceededMaxResponseBytes = true;
@@ -30,6 +30,7 @@ import io.confluent.kafkarest.entities.v2.ConsumerSeekToRequest;
 import io.confluent.kafkarest.entities.v2.ConsumerSubscriptionRecord;
 import io.confluent.kafkarest.entities.TopicPartitionOffset;
 import io.confluent.kafkarest.entities.v2.TopicPartitionOffsetMetadata;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
 import java.util.Collection;
@@ -42,6 +43,7 @@ import java.util.Queue;
 import java.util.Vector;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import javax.ws.rs.InternalServerErrorException;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
@@ -64,6 +66,12 @@ public abstract class KafkaConsumerState<KafkaKeyT, KafkaValueT, ClientKeyT, Cli
   private Consumer<KafkaKeyT, KafkaValueT> consumer;
 
   private Queue<ConsumerRecord<KafkaKeyT, KafkaValueT>> consumerRecords = new ArrayDeque<>();
+  // The head of consumerRecords converted for the client, kept until the head is taken off, so a
+  // record that did not fit in one response is not converted again for the next one.
+  @Nullable
+  private ConsumerRecord<KafkaKeyT, KafkaValueT> convertedHead;
+  @Nullable
+  private ConsumerRecordAndSize<ClientKeyT, ClientValueT> convertedHeadRecord;
 
   volatile long expiration;
   private ReentrantLock lock;
@@ -429,8 +437,17 @@ public abstract class KafkaConsumerState<KafkaKeyT, KafkaValueT, ClientKeyT, Cli
   }
 
 
-  ConsumerRecord<KafkaKeyT, KafkaValueT> peek() {
-    return consumerRecords.peek();
+  /**
+   * Returns the next record converted for the client, without taking it off. The record is only
+   * converted once, however often it is peeked at before {@link #next()} takes it.
+   */
+  ConsumerRecordAndSize<ClientKeyT, ClientValueT> peekConverted() {
+    ConsumerRecord<KafkaKeyT, KafkaValueT> head = consumerRecords.peek();
+    if (head != convertedHead) {
+      convertedHeadRecord = createConsumerRecord(head);
+      convertedHead = head;
+    }
+    return convertedHeadRecord;
   }
 
   boolean hasNext() {
@@ -448,12 +465,32 @@ public abstract class KafkaConsumerState<KafkaKeyT, KafkaValueT, ClientKeyT, Cli
     }
   }
 
+  /**
+   * Waits in poll for up to {@code timeoutMs} for records to arrive, unless there are records left
+   * from an earlier poll. Records that arrive are returned by {@link #next()}.
+   */
+  void awaitRecords(long timeoutMs) {
+    lock.lock();
+    try {
+      if (!hasNextCached()) {
+        bufferRecords(consumer.poll(Duration.ofMillis(timeoutMs)));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
   boolean hasNextCached() {
     return !consumerRecords.isEmpty();
   }
 
   ConsumerRecord<KafkaKeyT, KafkaValueT> next() {
-    return consumerRecords.poll();
+    ConsumerRecord<KafkaKeyT, KafkaValueT> record = consumerRecords.poll();
+    if (record == convertedHead) {
+      convertedHead = null;
+      convertedHeadRecord = null;
+    }
+    return record;
   }
 
   /**
@@ -463,8 +500,11 @@ public abstract class KafkaConsumerState<KafkaKeyT, KafkaValueT, ClientKeyT, Cli
    * invoked with the lock held, i.e. after startRead().
    */
   private void getOrCreateConsumerRecords() {
+    bufferRecords(consumer.poll(0));
+  }
+
+  private void bufferRecords(ConsumerRecords<KafkaKeyT, KafkaValueT> polledRecords) {
     consumerRecords = new ArrayDeque<>();
-    ConsumerRecords<KafkaKeyT, KafkaValueT> polledRecords = consumer.poll(0);
     //drain the iterator and buffer to list
     for (ConsumerRecord<KafkaKeyT, KafkaValueT> consumerRecord : polledRecords) {
       consumerRecords.add(consumerRecord);
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafkarest.converters.AvroConverter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares converting produce request records from JSON to Avro through the generic
+ * {@link AvroConverter} with a converter using compiled conversion plans, and reports the
+ * average time per record of each.
+ *
+ * <p>Usage: {@code AvroConversionBenchmark [records] [rounds]}</p>
+ */
+public final class AvroConversionBenchmark {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final AvroSchema SCHEMA = new AvroSchema(
+      "{\"type\": \"record\", \"name\": \"PageView\", \"namespace\": \"benchmark\", \"fields\": ["
+          + "{\"name\": \"user_id\", \"type\": \"long\"},"
+          + "{\"name\": \"session\", \"type\": \"string\"},"
+          + "{\"name\": \"url\", \"type\": \"string\"},"
+          + "{\"name\": \"referrer\", \"type\": [\"null\", \"string\"]},"
+          + "{\"name\": \"duration_ms\", \"type\": \"int\"},"
+          + "{\"name\": \"score\", \"type\": \"double\"},"
+          + "{\"name\": \"device\", \"type\": {\"type\": \"enum\", \"name\": \"Device\","
+          + " \"symbols\": [\"DESKTOP\", \"MOBILE\", \"TABLET\"]}},"
+          + "{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+          + "{\"name\": \"attributes\", \"type\": {\"type\": \"map\", \"values\": \"string\"}}"
+          + "]}");
+
+  private static final int SCHEMA_ID = 1;
+
+  private static long checksum;
+
+  private AvroConversionBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    List<JsonNode> records = new ArrayList<>(numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      records.add(MAPPER.readTree(
+          "{\"user_id\": " + (1000000L + i) + ", \"session\": \"s-" + (i % 97) + "\","
+              + " \"url\": \"/products/" + i + "\","
+              + " \"referrer\": " + (i % 3 == 0 ? "null" : "{\"string\": \"/search\"}") + ","
+              + " \"duration_ms\": " + (i % 5000) + ", \"score\": " + (i * 0.25) + ","
+              + " \"device\": \"" + (i % 2 == 0 ? "MOBILE" : "DESKTOP") + "\","
+              + " \"tags\": [\"a\", \"b\", \"c\"],"
+              + " \"attributes\": {\"country\": \"NL\", \"lang\": \"en\"}}"));
+    }
+
+    AvroConverter generic = new AvroConverter();
+    AvroConverter compiled = AvroConverter.compiled(1000);
+
+    // Warm up both paths before measuring.
+    run(generic, records);
+    run(compiled, records);
+
+    long genericNanos = 0;
+    long compiledNanos = 0;
+    for (int round = 0; round < rounds; round++) {
+      genericNanos += run(generic, records);
+      compiledNanos += run(compiled, records);
+    }
+
+    long total = (long) numRecords * rounds;
+    System.out.printf("records:  %d x %d rounds%n", numRecords, rounds);
+    System.out.printf("generic:  %.1f ns/record%n", (double) genericNanos / total);
+    System.out.printf("compiled: %.1f ns/record%n", (double) compiledNanos / total);
+    System.out.printf("speedup:  %.2fx%n", (double) genericNanos / compiledNanos);
+    // Printing what the conversions produced keeps them from being optimized away.
+    System.out.printf("checksum: %d%n", checksum);
+  }
+
+  private static long run(AvroConverter converter, List<JsonNode> records) {
+    long start = System.nanoTime();
+    int sink = 0;
+    for (JsonNode record : records) {
+      sink += converter.toObject(record, SCHEMA, SCHEMA_ID).hashCode();
+    }
+    long elapsed = System.nanoTime() - start;
+    checksum += sink;
+    return elapsed;
+  }
+}
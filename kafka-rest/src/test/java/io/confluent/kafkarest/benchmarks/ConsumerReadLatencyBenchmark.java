@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.benchmarks;
+
+import io.confluent.kafkarest.KafkaRestConfig;
+import io.confluent.kafkarest.SystemTime;
+import io.confluent.kafkarest.entities.ConsumerInstanceConfig;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.v2.ConsumerSubscriptionRecord;
+import io.confluent.kafkarest.v2.BinaryKafkaConsumerState;
+import io.confluent.kafkarest.v2.KafkaConsumerManager;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Measures how long a long-polling consumer read takes to return a record that arrives while the
+ * read is waiting, once with reads backing off between non-blocking polls and once with reads
+ * waiting in poll, and reports the latencies and the number of polls per read of each.
+ *
+ * <p>Usage: {@code ConsumerReadLatencyBenchmark [reads] [backoff-ms] [poll-block-ms]}</p>
+ */
+public final class ConsumerReadLatencyBenchmark {
+
+  private static final String GROUP = "benchmark";
+  private static final String TOPIC = "benchmark";
+  private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+  private ConsumerReadLatencyBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int reads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int backoffMs = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int pollBlockMs = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+    run("backoff", reads, backoffMs, /* pollBlockMs= */ 0);
+    run("blocking", reads, backoffMs, pollBlockMs);
+  }
+
+  private static void run(String mode, int reads, int backoffMs, int pollBlockMs)
+      throws Exception {
+    Properties props = new Properties();
+    props.setProperty(KafkaRestConfig.BOOTSTRAP_SERVERS_CONFIG, "PLAINTEXT://localhost:9092");
+    props.setProperty(KafkaRestConfig.CONSUMER_REQUEST_TIMEOUT_MS_CONFIG, "5000");
+    props.setProperty(KafkaRestConfig.CONSUMER_ITERATOR_BACKOFF_MS_CONFIG,
+        Integer.toString(backoffMs));
+    props.setProperty(KafkaRestConfig.CONSUMER_POLL_BLOCK_MS_CONFIG,
+        Integer.toString(pollBlockMs));
+    // Return as soon as any record has been read.
+    props.setProperty(KafkaRestConfig.PROXY_FETCH_MIN_BYTES_CONFIG, "0");
+
+    WaitingConsumer consumer = new WaitingConsumer();
+    KafkaConsumerManager consumerManager =
+        new KafkaConsumerManager(new KafkaRestConfig(props, new SystemTime()), p -> consumer);
+    String instance =
+        consumerManager.createConsumer(GROUP, new ConsumerInstanceConfig(EmbeddedFormat.BINARY));
+    consumerManager.subscribe(
+        GROUP, instance, new ConsumerSubscriptionRecord(Collections.singletonList(TOPIC), null));
+    consumer.rebalance(Collections.singletonList(PARTITION));
+    consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+
+    long[] latenciesNs = new long[reads];
+    long pollsBefore = consumer.polls.get();
+    for (int i = 0; i < reads; i++) {
+      CountDownLatch done = new CountDownLatch(1);
+      AtomicLong completedNs = new AtomicLong();
+      consumerManager.readRecords(
+          GROUP,
+          instance,
+          BinaryKafkaConsumerState.class,
+          /* timeout= */ -1,
+          Long.MAX_VALUE,
+          (records, e) -> {
+            completedNs.set(System.nanoTime());
+            done.countDown();
+          });
+      // Let the read start waiting before the record arrives.
+      Thread.sleep(ThreadLocalRandom.current().nextInt(20, 120));
+      long producedNs = System.nanoTime();
+      consumer.produce(new ConsumerRecord<>(TOPIC, 0, i, new byte[8], new byte[64]));
+      if (!done.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Read " + i + " did not complete");
+      }
+      latenciesNs[i] = completedNs.get() - producedNs;
+    }
+    long polls = consumer.polls.get() - pollsBefore;
+    consumerManager.shutdown();
+
+    Arrays.sort(latenciesNs);
+    long totalNs = 0;
+    for (long latencyNs : latenciesNs) {
+      totalNs += latencyNs;
+    }
+    System.out.printf(
+        "%-8s reads=%d mean=%.2f ms p50=%.2f ms p99=%.2f ms polls/read=%.1f%n",
+        mode,
+        reads,
+        totalNs / 1e6 / reads,
+        latenciesNs[reads / 2] / 1e6,
+        latenciesNs[(int) Math.min(reads - 1, (long) reads * 99 / 100)] / 1e6,
+        (double) polls / reads);
+  }
+
+  /**
+   * A mock consumer that, like a real one, waits in poll until records arrive or the timeout
+   * passes.
+   */
+  private static final class WaitingConsumer extends MockConsumer<byte[], byte[]> {
+
+    private final AtomicLong polls = new AtomicLong();
+
+    private WaitingConsumer() {
+      super(OffsetResetStrategy.EARLIEST);
+    }
+
+    private synchronized void produce(ConsumerRecord<byte[], byte[]> record) {
+      addRecord(record);
+      notifyAll();
+    }
+
+    @Override
+    public synchronized ConsumerRecords<byte[], byte[]> poll(Duration timeout) {
+      polls.incrementAndGet();
+      long deadlineMs = System.currentTimeMillis() + timeout.toMillis();
+      ConsumerRecords<byte[], byte[]> records = super.poll(Duration.ZERO);
+      long remainingMs = deadlineMs - System.currentTimeMillis();
+      while (records.isEmpty() && remainingMs > 0) {
+        try {
+          wait(remainingMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        records = super.poll(Duration.ZERO);
+        remainingMs = deadlineMs - System.currentTimeMillis();
+      }
+      return records;
+    }
+  }
+}
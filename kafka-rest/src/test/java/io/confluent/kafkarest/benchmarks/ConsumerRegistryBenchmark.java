@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.benchmarks;
+
+import io.confluent.kafkarest.KafkaRestConfig;
+import io.confluent.kafkarest.SystemTime;
+import io.confluent.kafkarest.entities.ConsumerInstanceConfig;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.v2.KafkaConsumerManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+
+/**
+ * Looks up random consumer instances of a {@link KafkaConsumerManager} holding thousands of them
+ * from many request threads, while another thread keeps creating and deleting instances, and
+ * reports the lookup throughput and how often and for how long the request threads were blocked
+ * on a monitor while doing so.
+ *
+ * <p>Usage: {@code ConsumerRegistryBenchmark [instances] [threads] [lookups-per-thread]}</p>
+ */
+public final class ConsumerRegistryBenchmark {
+
+  private static final String GROUP = "benchmark";
+
+  private ConsumerRegistryBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int instances = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+    int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+    int lookupsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+
+    Properties props = new Properties();
+    props.setProperty(KafkaRestConfig.BOOTSTRAP_SERVERS_CONFIG, "PLAINTEXT://localhost:9092");
+    KafkaConsumerManager consumerManager =
+        new KafkaConsumerManager(
+            new KafkaRestConfig(props, new SystemTime()),
+            consumerProps -> new MockConsumer<byte[], byte[]>(OffsetResetStrategy.EARLIEST));
+
+    String[] names = new String[instances];
+    for (int i = 0; i < instances; i++) {
+      names[i] = consumerManager.createConsumer(GROUP, instanceConfig("instance-" + i));
+    }
+
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean.isThreadContentionMonitoringSupported()) {
+      threadBean.setThreadContentionMonitoringEnabled(true);
+    }
+
+    AtomicBoolean churning = new AtomicBoolean(true);
+    AtomicLong churned = new AtomicLong();
+    AtomicLong checksum = new AtomicLong();
+    Thread churnThread = new Thread(() -> {
+      while (churning.get()) {
+        String name = consumerManager.createConsumer(GROUP, instanceConfig(null));
+        consumerManager.deleteConsumer(GROUP, name);
+        churned.incrementAndGet();
+      }
+    }, "benchmark-consumer-churn");
+
+    CountDownLatch ready = new CountDownLatch(numThreads);
+    CountDownLatch go = new CountDownLatch(1);
+    ThreadInfo[] infos = new ThreadInfo[numThreads];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int index = t;
+      threads[t] = new Thread(() -> {
+        ready.countDown();
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sink = 0;
+        for (int i = 0; i < lookupsPerThread; i++) {
+          sink += consumerManager.subscription(GROUP, names[random.nextInt(names.length)])
+              .getTopics().size();
+        }
+        checksum.addAndGet(sink);
+        // Sample before exiting, thread info is not available once the thread has terminated.
+        infos[index] = threadBean.getThreadInfo(Thread.currentThread().getId());
+      }, "benchmark-request-" + t);
+      threads[t].start();
+    }
+
+    ready.await();
+    churnThread.start();
+    long start = System.nanoTime();
+    go.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsedNs = System.nanoTime() - start;
+    churning.set(false);
+    churnThread.join();
+    consumerManager.shutdown();
+
+    long blockedCount = 0;
+    long blockedTimeMs = 0;
+    for (ThreadInfo info : infos) {
+      if (info != null) {
+        blockedCount += info.getBlockedCount();
+        blockedTimeMs += info.getBlockedTime();
+      }
+    }
+    long totalLookups = (long) numThreads * lookupsPerThread;
+    System.out.printf(
+        "instances=%d threads=%d lookups=%d churned=%d elapsed=%.1f ms throughput=%.0f lookups/s%n",
+        instances,
+        numThreads,
+        totalLookups,
+        churned.get(),
+        elapsedNs / 1e6,
+        totalLookups / (elapsedNs / 1e9));
+    System.out.printf(
+        "request thread monitor blocks: count=%d time=%d ms%n", blockedCount, blockedTimeMs);
+    // Printing what the lookups returned keeps them from being optimized away.
+    System.out.printf("checksum=%d%n", checksum.get());
+  }
+
+  private static ConsumerInstanceConfig instanceConfig(String name) {
+    return new ConsumerInstanceConfig(
+        /* id= */ null,
+        name,
+        EmbeddedFormat.BINARY,
+        /* autoOffsetReset= */ null,
+        /* autoCommitEnable= */ null,
+        /* responseMinBytes= */ null,
+        /* requestWaitMs= */ null);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.benchmarks;
+
+import io.confluent.kafkarest.ProduceTask;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Simulates the hand-off between a request thread calling {@link ProduceTask#createCallback()}
+ * and a producer I/O thread acking records of the same batch concurrently, and reports how often
+ * and for how long the I/O thread was blocked on a monitor while doing so.
+ *
+ * <p>Usage: {@code ProduceTaskBenchmark [batches] [records-per-batch]}</p>
+ */
+public final class ProduceTaskBenchmark {
+
+  private static final RecordMetadata METADATA =
+      new RecordMetadata(new TopicPartition("benchmark", 0), 0L, 0L, 0L, 0L, 0, 0);
+
+  private ProduceTaskBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int batches = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int recordsPerBatch = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    ProduceRequest<byte[], byte[]> request =
+        new ProduceRequest<>(
+            Collections.singletonList(new ProduceRecord<>(null, new byte[0], null)),
+            /* keySchema= */ null,
+            /* keySchemaId= */ null,
+            /* valueSchema= */ null,
+            /* valueSchemaId= */ null);
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads.isThreadContentionMonitoringSupported()) {
+      threads.setThreadContentionMonitoringEnabled(true);
+    }
+
+    ConcurrentLinkedQueue<Callback> pending = new ConcurrentLinkedQueue<>();
+    AtomicInteger completedBatches = new AtomicInteger();
+    AtomicReference<ThreadInfo> ioThreadInfo = new AtomicReference<>();
+    long totalRecords = (long) batches * recordsPerBatch;
+
+    Thread ioThread = new Thread(() -> {
+      long acked = 0;
+      while (acked < totalRecords) {
+        Callback callback = pending.poll();
+        if (callback == null) {
+          Thread.yield();
+          continue;
+        }
+        callback.onCompletion(METADATA, null);
+        acked++;
+      }
+      // Sample before exiting, thread info is not available once the thread has terminated.
+      ioThreadInfo.set(threads.getThreadInfo(Thread.currentThread().getId()));
+    }, "benchmark-producer-io");
+
+    long start = System.nanoTime();
+    ioThread.start();
+    for (int b = 0; b < batches; b++) {
+      ProduceTask task =
+          new ProduceTask(
+              request,
+              recordsPerBatch,
+              (keySchemaId, valueSchemaId, results) -> completedBatches.incrementAndGet());
+      for (int r = 0; r < recordsPerBatch; r++) {
+        pending.add(task.createCallback());
+      }
+    }
+    ioThread.join();
+    long elapsedNs = System.nanoTime() - start;
+
+    ThreadInfo info = ioThreadInfo.get();
+    System.out.printf(
+        "batches=%d records/batch=%d completed=%d elapsed=%.1f ms throughput=%.0f acks/s%n",
+        batches,
+        recordsPerBatch,
+        completedBatches.get(),
+        elapsedNs / 1e6,
+        totalRecords / (elapsedNs / 1e9));
+    if (info != null) {
+      System.out.printf(
+          "I/O thread monitor blocks: count=%d time=%d ms%n",
+          info.getBlockedCount(),
+          info.getBlockedTime());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.confluent.kafkarest.ProduceRequestValidator;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.v2.SchemaTopicProduceRequest;
+import io.confluent.kafkarest.entities.v2.SchemaTopicProduceRequest.SchemaTopicProduceRecord;
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+/**
+ * Compares validating an Avro produce request with bean validation of the request entity followed
+ * by the separate key and value schema passes the resources used to make, with
+ * {@link ProduceRequestValidator}, and reports the average time per 1000 records of each.
+ *
+ * <p>Usage: {@code ProduceValidationBenchmark [records] [rounds]}</p>
+ */
+public final class ProduceValidationBenchmark {
+
+  private static final String SCHEMA = "{\"type\": \"int\"}";
+
+  private static long checksum;
+
+  private ProduceValidationBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+    List<SchemaTopicProduceRecord> records = new ArrayList<>(numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      ObjectNode value = JsonNodeFactory.instance.objectNode();
+      value.put("id", i);
+      records.add(new SchemaTopicProduceRecord(new IntNode(i), value, i % 3));
+    }
+    SchemaTopicProduceRequest entity =
+        new SchemaTopicProduceRequest(records, SCHEMA, null, SCHEMA, null);
+    ProduceRequest<JsonNode, JsonNode> request = entity.toProduceRequest();
+
+    Validator beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+    ProduceRequestValidator validator = ProduceRequestValidator.forFormat(EmbeddedFormat.AVRO);
+
+    // Warm up both paths before measuring.
+    runBeanValidation(beanValidator, entity, request, rounds);
+    runSinglePass(validator, entity, request, rounds);
+
+    long beanNanos = runBeanValidation(beanValidator, entity, request, rounds);
+    long singlePassNanos = runSinglePass(validator, entity, request, rounds);
+
+    double thousands = numRecords * (double) rounds / 1000;
+    System.out.printf("records:         %d x %d rounds%n", numRecords, rounds);
+    System.out.printf("bean validation: %.1f ns/1k records%n", beanNanos / thousands);
+    System.out.printf("single pass:     %.1f ns/1k records%n", singlePassNanos / thousands);
+    System.out.printf("speedup:         %.2fx%n", (double) beanNanos / singlePassNanos);
+    // Printed so the bean validation pass is not optimized away.
+    System.out.printf("checksum:        %d%n", checksum);
+  }
+
+  private static long runBeanValidation(
+      Validator beanValidator,
+      SchemaTopicProduceRequest entity,
+      ProduceRequest<JsonNode, JsonNode> request,
+      int rounds
+  ) {
+    long start = System.nanoTime();
+    int sink = 0;
+    for (int round = 0; round < rounds; round++) {
+      sink += beanValidator.validate(entity).size();
+      sink += checkKeySchema(request) + checkValueSchema(request);
+    }
+    long elapsed = System.nanoTime() - start;
+    checksum += sink;
+    return elapsed;
+  }
+
+  private static long runSinglePass(
+      ProduceRequestValidator validator,
+      SchemaTopicProduceRequest entity,
+      ProduceRequest<JsonNode, JsonNode> request,
+      int rounds
+  ) {
+    long start = System.nanoTime();
+    for (int round = 0; round < rounds; round++) {
+      ProduceRequestValidator.checkNotEmpty(entity.getRecords());
+      validator.validate(request);
+    }
+    return System.nanoTime() - start;
+  }
+
+  // The checks the v2 resources ran after bean validation, one pass over the records each.
+  private static int checkKeySchema(ProduceRequest<JsonNode, ?> request) {
+    int checked = 0;
+    for (ProduceRecord<JsonNode, ?> record : request.getRecords()) {
+      if (record.getKey() == null || record.getKey().isNull()) {
+        continue;
+      }
+      if (request.getKeySchema() != null || request.getKeySchemaId() != null) {
+        checked++;
+        continue;
+      }
+      throw new IllegalStateException();
+    }
+    return checked;
+  }
+
+  private static int checkValueSchema(ProduceRequest<?, JsonNode> request) {
+    int checked = 0;
+    for (ProduceRecord<?, JsonNode> record : request.getRecords()) {
+      if (record.getValue() == null || record.getValue().isNull()) {
+        continue;
+      }
+      if (request.getValueSchema() != null || request.getValueSchemaId() != null) {
+        checked++;
+        continue;
+      }
+      throw new IllegalStateException();
+    }
+    return checked;
+  }
+}
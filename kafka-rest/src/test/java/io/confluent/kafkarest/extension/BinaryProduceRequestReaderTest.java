@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.extension;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import io.confluent.kafkarest.PayloadBufferPool;
+import io.confluent.kafkarest.Versions;
+import io.confluent.kafkarest.entities.v2.BinaryPartitionProduceRequest;
+import io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest;
+import io.confluent.rest.exceptions.RestConstraintViolationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.ws.rs.core.MediaType;
+import org.junit.Test;
+
+public class BinaryProduceRequestReaderTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final MediaType BINARY_V2 = MediaType.valueOf(Versions.KAFKA_V2_JSON_BINARY);
+
+  private final BinaryProduceRequestReader.V2TopicReader topicReader =
+      new BinaryProduceRequestReader.V2TopicReader();
+  private final BinaryProduceRequestReader.V2PartitionReader partitionReader =
+      new BinaryProduceRequestReader.V2PartitionReader();
+
+  @Test
+  public void isReadable_onlyForOwnType() {
+    assertTrue(
+        topicReader.isReadable(
+            BinaryTopicProduceRequest.class, null, new Annotation[0], BINARY_V2));
+    assertFalse(
+        topicReader.isReadable(
+            BinaryPartitionProduceRequest.class, null, new Annotation[0], BINARY_V2));
+    assertFalse(
+        topicReader.isReadable(
+            io.confluent.kafkarest.entities.v1.BinaryTopicProduceRequest.class,
+            null,
+            new Annotation[0],
+            BINARY_V2));
+  }
+
+  @Test
+  public void readFrom_topicRequest_sameAsJackson() throws Exception {
+    String json =
+        "{\"records\":["
+            + "{\"key\":\"a2V5\",\"value\":\"dmFsdWU=\",\"partition\":1},"
+            + "{\"value\":\"dmFsdWUy\"},"
+            + "{\"key\":null,\"value\":null,\"partition\":null}"
+            + "],\"value_schema\":null}";
+
+    BinaryTopicProduceRequest actual = readTopic(json);
+
+    assertEquals(MAPPER.readValue(json, BinaryTopicProduceRequest.class), actual);
+    assertEquals(
+        "value", new String(actual.toProduceRequest().getRecords().get(0).getValue(),
+            StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void readFrom_partitionRequest_sameAsJackson() throws Exception {
+    String json = "{\"records\":[{\"key\":\"a2V5\",\"value\":\"dmFsdWU=\"},{\"value\":\"\"}]}";
+
+    assertEquals(
+        MAPPER.readValue(json, BinaryPartitionProduceRequest.class),
+        partitionReader.readFrom(
+            BinaryPartitionProduceRequest.class,
+            null,
+            new Annotation[0],
+            BINARY_V2,
+            null,
+            stream(json)));
+  }
+
+  @Test
+  public void readFrom_emptyOrNullBody_returnsNull() throws Exception {
+    assertNull(readTopic(""));
+    assertNull(readTopic("null"));
+  }
+
+  @Test
+  public void readFrom_noRecords_returnsRequestWithoutRecords() throws Exception {
+    assertNull(readTopic("{}").getRecords());
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readFrom_invalidBase64_throwsConstraintViolation() throws Exception {
+    readTopic("{\"records\":[{\"value\":\"aGVsbG8==\"}]}");
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void readFrom_truncatedValue_throwsJsonParseException() throws Exception {
+    readTopic("{\"records\":[{\"value\":\"aGVs");
+  }
+
+  @Test
+  public void readFrom_unpaddedBase64_sameAsJackson() throws Exception {
+    String json = "{\"records\":[{\"key\":\"aGk\",\"value\":\"aGVsbG8\"}]}";
+
+    BinaryTopicProduceRequest actual = readTopic(json);
+
+    assertEquals(MAPPER.readValue(json, BinaryTopicProduceRequest.class), actual);
+    assertEquals(
+        "hello", new String(actual.toProduceRequest().getRecords().get(0).getValue(),
+            StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void readFrom_scalarKeysAndValues_sameAsJackson() throws Exception {
+    String json =
+        "{\"records\":[{\"key\":1234,\"value\":\"dmFsdWU=\"},{\"key\":true,\"value\":5678}]}";
+
+    BinaryTopicProduceRequest actual = readTopic(json);
+
+    assertEquals(MAPPER.readValue(json, BinaryTopicProduceRequest.class), actual);
+    assertArrayEquals(
+        Base64.getDecoder().decode("1234"),
+        actual.toProduceRequest().getRecords().get(0).getKey());
+  }
+
+  @Test(expected = MismatchedInputException.class)
+  public void readFrom_objectValue_throwsMismatchedInput() throws Exception {
+    readTopic("{\"records\":[{\"value\":{}}]}");
+  }
+
+  @Test(expected = UnrecognizedPropertyException.class)
+  public void readFrom_unknownProperty_throwsUnrecognizedProperty() throws Exception {
+    readTopic("{\"records\":[{\"value\":\"aGVsbG8=\",\"foo\":1}]}");
+  }
+
+  @Test(expected = UnrecognizedPropertyException.class)
+  public void readFrom_partitionOnPartitionRequest_throwsUnrecognizedProperty()
+      throws Exception {
+    partitionReader.readFrom(
+        BinaryPartitionProduceRequest.class,
+        null,
+        new Annotation[0],
+        BINARY_V2,
+        null,
+        stream("{\"records\":[{\"value\":\"aGVsbG8=\",\"partition\":0}]}"));
+  }
+
+  @Test
+  public void readFrom_pooledPayloads_sameAsJacksonAndReusesReleasedBuffers() throws Exception {
+    PayloadBufferPool pool = new PayloadBufferPool(1024 * 1024);
+    BinaryProduceRequestReader.V2TopicReader pooledReader =
+        new BinaryProduceRequestReader.V2TopicReader(() -> pool);
+    byte[] large = new byte[2000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+    String json =
+        "{\"records\":[{\"key\":\"a2V5\",\"value\":\""
+            + Base64.getEncoder().encodeToString(large) + "\"}]}";
+
+    BinaryTopicProduceRequest first = readTopic(pooledReader, json);
+    assertEquals(MAPPER.readValue(json, BinaryTopicProduceRequest.class), first);
+    byte[] firstValue = first.toProduceRequest().getRecords().get(0).getValue();
+    pool.release(firstValue);
+    BinaryTopicProduceRequest second = readTopic(pooledReader, json);
+
+    byte[] secondValue = second.toProduceRequest().getRecords().get(0).getValue();
+    assertSame(firstValue, secondValue);
+    assertArrayEquals(large, secondValue);
+    assertEquals(1, pool.hitCount());
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readFrom_pooledInvalidBase64_throwsConstraintViolation() throws Exception {
+    readTopic(
+        new BinaryProduceRequestReader.V2TopicReader(() -> new PayloadBufferPool(1024 * 1024)),
+        "{\"records\":[{\"value\":\"aGVsbG8==\"}]}");
+  }
+
+  private BinaryTopicProduceRequest readTopic(String json) throws IOException {
+    return readTopic(topicReader, json);
+  }
+
+  private static BinaryTopicProduceRequest readTopic(
+      BinaryProduceRequestReader.V2TopicReader reader, String json) throws IOException {
+    return reader.readFrom(
+        BinaryTopicProduceRequest.class, null, new Annotation[0], BINARY_V2, null, stream(json));
+  }
+
+  private static ByteArrayInputStream stream(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
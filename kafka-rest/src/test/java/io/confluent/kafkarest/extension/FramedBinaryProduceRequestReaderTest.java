@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.extension;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.confluent.kafkarest.Versions;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.exceptions.RestConstraintViolationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.ws.rs.core.MediaType;
+import org.junit.Test;
+
+public class FramedBinaryProduceRequestReaderTest {
+
+  private final FramedBinaryProduceRequestReader reader = new FramedBinaryProduceRequestReader();
+
+  @Test
+  public void isReadable_framedProduceRequest_returnsTrue() {
+    assertTrue(
+        reader.isReadable(
+            ProduceRequest.class,
+            null,
+            new Annotation[0],
+            MediaType.valueOf(Versions.KAFKA_V2_BINARY_FRAMED)));
+    assertFalse(
+        reader.isReadable(
+            ProduceRequest.class,
+            null,
+            new Annotation[0],
+            MediaType.valueOf(Versions.KAFKA_V2_JSON_BINARY)));
+  }
+
+  @Test
+  public void readRequest_multipleFrames_returnsRecordsInOrder() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    writeFrame(out, -1, "key".getBytes(StandardCharsets.UTF_8), bytes(2048));
+    writeFrame(out, 3, null, "value".getBytes(StandardCharsets.UTF_8));
+    writeFrame(out, 0, new byte[0], null);
+
+    ProduceRequest<byte[], byte[]> request =
+        FramedBinaryProduceRequestReader.readRequest(new ByteArrayInputStream(body.toByteArray()));
+
+    assertEquals(3, request.getRecords().size());
+    ProduceRecord<byte[], byte[]> first = request.getRecords().get(0);
+    assertArrayEquals("key".getBytes(StandardCharsets.UTF_8), first.getKey());
+    assertArrayEquals(bytes(2048), first.getValue());
+    assertNull(first.getPartition());
+    ProduceRecord<byte[], byte[]> second = request.getRecords().get(1);
+    assertNull(second.getKey());
+    assertEquals(Integer.valueOf(3), second.getPartition());
+    ProduceRecord<byte[], byte[]> third = request.getRecords().get(2);
+    assertArrayEquals(new byte[0], third.getKey());
+    assertNull(third.getValue());
+    assertNull(request.getKeySchema());
+    assertNull(request.getValueSchemaId());
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readRequest_emptyBody_throwsConstraintViolation() throws Exception {
+    FramedBinaryProduceRequestReader.readRequest(new ByteArrayInputStream(new byte[0]));
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readRequest_truncatedFrame_throwsConstraintViolation() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    writeFrame(out, -1, null, bytes(10));
+    byte[] truncated = Arrays.copyOf(body.toByteArray(), body.size() - 1);
+
+    FramedBinaryProduceRequestReader.readRequest(new ByteArrayInputStream(truncated));
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readRequest_bogusLength_throwsConstraintViolation() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeInt(-1);
+    out.writeInt(-1);
+    // Claims a 1 GB value but only sends a few bytes.
+    out.writeInt(1 << 30);
+    out.write(bytes(16));
+
+    FramedBinaryProduceRequestReader.readRequest(new ByteArrayInputStream(body.toByteArray()));
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void readRequest_invalidPartition_throwsConstraintViolation() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeFrame(new DataOutputStream(body), -2, null, bytes(1));
+
+    FramedBinaryProduceRequestReader.readRequest(new ByteArrayInputStream(body.toByteArray()));
+  }
+
+  private static void writeFrame(DataOutputStream out, int partition, byte[] key, byte[] value)
+      throws IOException {
+    out.writeInt(partition);
+    writeBytes(out, key);
+    writeBytes(out, value);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+}
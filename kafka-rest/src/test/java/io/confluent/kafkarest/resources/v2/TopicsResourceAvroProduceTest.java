@@ -127,6 +127,7 @@ public class TopicsResourceAvroProduceTest
     producerPool.produce(EasyMock.eq(topic),
         EasyMock.eq((Integer) null),
         EasyMock.eq(recordFormat),
+        EasyMock.eq((String) null),
         EasyMock.anyObject(),
         EasyMock.capture(produceCallback));
     EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
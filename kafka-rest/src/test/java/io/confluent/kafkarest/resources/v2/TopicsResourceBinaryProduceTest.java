@@ -18,6 +18,7 @@ package io.confluent.kafkarest.resources.v2;
 import static io.confluent.kafkarest.TestUtils.assertErrorResponse;
 import static io.confluent.kafkarest.TestUtils.assertOKResponse;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import io.confluent.kafkarest.DefaultKafkaRestContext;
 import io.confluent.kafkarest.Errors;
@@ -30,12 +31,20 @@ import io.confluent.kafkarest.TestUtils;
 import io.confluent.kafkarest.Utils;
 import io.confluent.kafkarest.Versions;
 import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.v2.BinaryMultiTopicProduceRequest;
+import io.confluent.kafkarest.entities.v2.BinaryMultiTopicProduceRequest.BinaryMultiTopicProduceRecord;
 import io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest;
 import io.confluent.kafkarest.entities.v2.BinaryTopicProduceRequest.BinaryTopicProduceRecord;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse.OffsetRange;
 import io.confluent.kafkarest.entities.v2.PartitionOffset;
+import io.confluent.kafkarest.entities.v2.ProduceReceiptResponse;
 import io.confluent.kafkarest.entities.v2.ProduceResponse;
+import io.confluent.kafkarest.exceptions.ProduceBudgetExceededException;
 import io.confluent.rest.EmbeddedServerTestHarness;
 import io.confluent.rest.RestConfigException;
+import io.confluent.rest.entities.ErrorMessage;
 import io.confluent.rest.exceptions.ConstraintViolationExceptionMapper;
 import io.confluent.rest.exceptions.RestServerErrorException;
 import java.util.Arrays;
@@ -90,6 +99,7 @@ public class TopicsResourceBinaryProduceTest
     ctx = new DefaultKafkaRestContext(config, producerPool, null, null, null);
 
     addResource(new TopicsResource(ctx));
+    addResource(new ProduceReceiptsResource(ctx));
 
     produceRecordsOnlyValues = Arrays.asList(
         new BinaryTopicProduceRecord(null, "value", null),
@@ -184,6 +194,7 @@ public class TopicsResourceBinaryProduceTest
     producerPool.produce(EasyMock.eq(topic),
         EasyMock.eq((Integer) null),
         EasyMock.eq(recordFormat),
+        EasyMock.eq((String) null),
         EasyMock.anyObject(),
         EasyMock.capture(produceCallback));
     EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
@@ -350,4 +361,223 @@ public class TopicsResourceBinaryProduceTest
 
     EasyMock.reset(mdObserver, producerPool);
   }
+
+  @Test
+  public void produceToTopic_respondAsync_returnsAcceptedReceipt() {
+    BinaryTopicProduceRequest request = BinaryTopicProduceRequest.create(produceRecordsWithKeys);
+    Capture<ProducerPool.ProduceRequestCallback> produceCallback = Capture.newInstance();
+    producerPool.produce(
+        EasyMock.eq(topicName),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq((String) null),
+        EasyMock.anyObject(),
+        EasyMock.capture(produceCallback));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      produceCallback.getValue().onSent();
+      return null;
+    });
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response accepted = request("/topics/" + topicName, Versions.KAFKA_V2_JSON)
+        .header("Prefer", "respond-async")
+        .post(Entity.entity(request, Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertEquals(Response.Status.ACCEPTED.getStatusCode(), accepted.getStatus());
+    assertEquals("respond-async", accepted.getHeaderString("Preference-Applied"));
+    ProduceReceiptResponse pending =
+        TestUtils.tryReadEntityOrLog(accepted, ProduceReceiptResponse.class);
+    assertEquals(ProduceReceiptResponse.Status.PENDING, pending.getStatus());
+    String location = accepted.getLocation().getPath();
+    assertTrue(location.endsWith("/produce-receipts/" + pending.getReceiptId()));
+
+    produceCallback.getValue().onCompletion((Integer) null, (Integer) null, produceResults);
+
+    Response completed =
+        request("/produce-receipts/" + pending.getReceiptId(), Versions.KAFKA_V2_JSON).get();
+    assertOKResponse(completed, Versions.KAFKA_V2_JSON);
+    ProduceReceiptResponse receipt =
+        TestUtils.tryReadEntityOrLog(completed, ProduceReceiptResponse.class);
+    assertEquals(ProduceReceiptResponse.Status.COMPLETED, receipt.getStatus());
+    assertEquals(offsetResults, receipt.getOffsets());
+  }
+
+  @Test
+  public void produceToTopic_respondAsyncFailsBeforeSending_returnsError() {
+    Capture<ProducerPool.ProduceRequestCallback> produceCallback = Capture.newInstance();
+    producerPool.produce(
+        EasyMock.eq(topicName),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq((String) null),
+        EasyMock.anyObject(),
+        EasyMock.capture(produceCallback));
+    // Like a schema request whose records fail to convert once their schema was looked up.
+    EasyMock.expectLastCall().andAnswer(() -> {
+      produceCallback.getValue().onException(
+          Errors.jsonConversionException(new Exception("not an int")));
+      return null;
+    });
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response response = request("/topics/" + topicName, Versions.KAFKA_V2_JSON)
+        .header("Prefer", "respond-async")
+        .post(Entity.entity(
+            BinaryTopicProduceRequest.create(produceRecordsWithKeys),
+            Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertErrorResponse(
+        ConstraintViolationExceptionMapper.UNPROCESSABLE_ENTITY,
+        response,
+        Errors.JSON_CONVERSION_ERROR_CODE,
+        Errors.JSON_CONVERSION_MESSAGE + "not an int",
+        Versions.KAFKA_V2_JSON);
+  }
+
+  @Test
+  public void getReceipt_unknownReceipt_returns404() {
+    Response response = request("/produce-receipts/unknown", Versions.KAFKA_V2_JSON).get();
+
+    assertErrorResponse(
+        Response.Status.NOT_FOUND,
+        response,
+        Errors.PRODUCE_RECEIPT_NOT_FOUND_ERROR_CODE,
+        Errors.PRODUCE_RECEIPT_NOT_FOUND_MESSAGE,
+        Versions.KAFKA_V2_JSON);
+  }
+
+  @Test
+  public void produceToTopic_budgetExceeded_returns429WithRetryAfter() {
+    producerPool.produce(
+        EasyMock.eq(topicName),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq((String) null),
+        EasyMock.anyObject(),
+        EasyMock.anyObject());
+    EasyMock.expectLastCall().andThrow(new ProduceBudgetExceededException("full.", 3));
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response response = request("/topics/" + topicName, Versions.KAFKA_V2_JSON)
+        .post(Entity.entity(
+            BinaryTopicProduceRequest.create(produceRecordsWithKeys),
+            Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertEquals(429, response.getStatus());
+    assertEquals("3", response.getHeaderString("Retry-After"));
+    ErrorMessage error = TestUtils.tryReadEntityOrLog(response, ErrorMessage.class);
+    assertEquals(Errors.PRODUCE_BUDGET_EXCEEDED_ERROR_CODE, error.getErrorCode());
+    assertEquals(Errors.PRODUCE_BUDGET_EXCEEDED_MESSAGE + "full.", error.getMessage());
+  }
+
+  @Test
+  public void produceToTopic_compactOffsets_returnsRanges() {
+    Capture<ProducerPool.ProduceRequestCallback> produceCallback = Capture.newInstance();
+    producerPool.produce(
+        EasyMock.eq(topicName),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq((String) null),
+        EasyMock.anyObject(),
+        EasyMock.capture(produceCallback));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      produceCallback.getValue().onCompletion((Integer) null, (Integer) null, produceResults);
+      return null;
+    });
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response rawResponse = request("/topics/" + topicName, Versions.KAFKA_V2_JSON)
+        .header("Prefer", "compact-offsets")
+        .post(Entity.entity(
+            BinaryTopicProduceRequest.create(produceRecordsWithKeys),
+            Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertOKResponse(rawResponse, Versions.KAFKA_V2_JSON);
+    assertEquals("compact-offsets", rawResponse.getHeaderString("Preference-Applied"));
+    CompactProduceResponse response =
+        TestUtils.tryReadEntityOrLog(rawResponse, CompactProduceResponse.class);
+    assertEquals(Collections.singletonList(new OffsetRange(0, 0L, 2)), response.getRanges());
+    assertTrue(response.getErrors().isEmpty());
+  }
+
+  @Test
+  public void produceToTopic_producerProfile_producesWithProfile() {
+    Capture<ProducerPool.ProduceRequestCallback> produceCallback = Capture.newInstance();
+    producerPool.produce(
+        EasyMock.eq(topicName),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq("bulk"),
+        EasyMock.anyObject(),
+        EasyMock.capture(produceCallback));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      produceCallback.getValue().onCompletion((Integer) null, (Integer) null, produceResults);
+      return null;
+    });
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response rawResponse = request("/topics/" + topicName, Versions.KAFKA_V2_JSON)
+        .header("Prefer", "producer-profile=bulk")
+        .post(Entity.entity(
+            BinaryTopicProduceRequest.create(produceRecordsWithKeys),
+            Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertOKResponse(rawResponse, Versions.KAFKA_V2_JSON);
+  }
+
+  @Test
+  public void produceToTopics_recordsWithTopics_producesOneRequest() {
+    Capture<ProduceRequest<byte[], byte[]>> produceRequest = Capture.newInstance();
+    Capture<ProducerPool.ProduceRequestCallback> produceCallback = Capture.newInstance();
+    producerPool.produce(
+        EasyMock.eq((String) null),
+        EasyMock.eq((Integer) null),
+        EasyMock.eq(EmbeddedFormat.BINARY),
+        EasyMock.eq((String) null),
+        EasyMock.capture(produceRequest),
+        EasyMock.capture(produceCallback));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      produceCallback.getValue().onCompletion((Integer) null, (Integer) null, produceResults);
+      return null;
+    });
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response rawResponse = request("/topics", Versions.KAFKA_V2_JSON)
+        .post(Entity.entity(
+            BinaryMultiTopicProduceRequest.create(
+                Arrays.asList(
+                    new BinaryMultiTopicProduceRecord("first", "key", "value", null),
+                    new BinaryMultiTopicProduceRecord("second", null, "value2", 0))),
+            Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertEquals("first", produceRequest.getValue().getRecords().get(0).getTopic());
+    assertEquals("second", produceRequest.getValue().getRecords().get(1).getTopic());
+    assertEquals(
+        Integer.valueOf(0), produceRequest.getValue().getRecords().get(1).getPartition());
+    assertOKResponse(rawResponse, Versions.KAFKA_V2_JSON);
+    ProduceResponse response = TestUtils.tryReadEntityOrLog(rawResponse, ProduceResponse.class);
+    assertEquals(offsetResults, response.getOffsets());
+  }
+
+  @Test
+  public void produceToTopics_recordWithoutTopic_returns422() {
+    EasyMock.replay(mdObserver, producerPool);
+
+    Response response = request("/topics", Versions.KAFKA_V2_JSON)
+        .post(Entity.entity(
+            "{\"records\": [{\"value\": \"dmFsdWU=\"}]}", Versions.KAFKA_V2_JSON_BINARY));
+
+    EasyMock.verify(mdObserver, producerPool);
+    assertErrorResponse(ConstraintViolationExceptionMapper.UNPROCESSABLE_ENTITY,
+        response,
+        ConstraintViolationExceptionMapper.UNPROCESSABLE_ENTITY_CODE,
+        null,
+        Versions.KAFKA_V2_JSON);
+  }
 }
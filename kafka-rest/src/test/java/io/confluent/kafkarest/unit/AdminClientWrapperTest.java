@@ -2,19 +2,26 @@ package io.confluent.kafkarest.unit;
 
 import io.confluent.kafkarest.AdminClientWrapper;
 import io.confluent.kafkarest.KafkaRestConfig;
+import io.confluent.kafkarest.RecordMetadataOrException;
 import io.confluent.kafkarest.entities.Topic;
+import io.confluent.kafkarest.mock.MockTime;
 import org.apache.kafka.clients.admin.MockAdminClient;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
 import org.junit.Test;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class AdminClientWrapperTest {
   @Test
@@ -31,4 +38,99 @@ public class AdminClientWrapperTest {
     Topic topic = new AdminClientWrapper(config, adminClient).getTopic("topic");
     assertEquals(topic.getName(), "topic");
   }
+
+  @Test
+  public void testTopicExistsIsCachedUntilTtl() throws Exception {
+    MockTime time = new MockTime();
+    MockAdminClient adminClient = createAdminClient();
+    AdminClientWrapper wrapper = new AdminClientWrapper(createConfig("1000", time), adminClient);
+
+    assertTrue(wrapper.topicExists("topic"));
+    adminClient.deleteTopics(Collections.singletonList("topic"));
+    assertTrue(wrapper.topicExists("topic"));
+
+    time.sleep(1000);
+    assertFalse(wrapper.topicExists("topic"));
+  }
+
+  @Test
+  public void testTopicExistsRefetchesUnknownTopic() throws Exception {
+    MockAdminClient adminClient = createAdminClient();
+    AdminClientWrapper wrapper =
+        new AdminClientWrapper(createConfig("1000", new MockTime()), adminClient);
+
+    assertFalse(wrapper.topicExists("other"));
+    addTopic(adminClient, "other", 1);
+    assertTrue(wrapper.topicExists("other"));
+  }
+
+  @Test
+  public void testPartitionExistsUsesCachedDescription() throws Exception {
+    MockAdminClient adminClient = createAdminClient();
+    AdminClientWrapper wrapper =
+        new AdminClientWrapper(createConfig("1000", new MockTime()), adminClient);
+
+    assertTrue(wrapper.partitionExists("topic", 1));
+    assertFalse(wrapper.partitionExists("topic", 2));
+    assertFalse(wrapper.partitionExists("topic", -1));
+    assertFalse(wrapper.partitionExists("unknown", 0));
+
+    adminClient.deleteTopics(Collections.singletonList("topic"));
+    assertTrue(wrapper.partitionExists("topic", 0));
+  }
+
+  @Test
+  public void testInvalidateOnProduceErrorsDropsTopic() throws Exception {
+    MockAdminClient adminClient = createAdminClient();
+    AdminClientWrapper wrapper =
+        new AdminClientWrapper(createConfig("1000", new MockTime()), adminClient);
+
+    assertTrue(wrapper.topicExists("topic"));
+    adminClient.deleteTopics(Collections.singletonList("topic"));
+
+    wrapper.invalidateOnProduceErrors(
+        "topic",
+        Collections.singletonList(
+            new RecordMetadataOrException(null, new UnknownTopicOrPartitionException("topic"))));
+
+    assertFalse(wrapper.topicExists("topic"));
+  }
+
+  @Test
+  public void testZeroTtlDisablesCache() throws Exception {
+    MockAdminClient adminClient = createAdminClient();
+    AdminClientWrapper wrapper =
+        new AdminClientWrapper(createConfig("0", new MockTime()), adminClient);
+
+    assertTrue(wrapper.topicExists("topic"));
+    adminClient.deleteTopics(Collections.singletonList("topic"));
+    assertFalse(wrapper.topicExists("topic"));
+  }
+
+  private static KafkaRestConfig createConfig(String metadataTtlMs, MockTime time)
+      throws Exception {
+    Properties props = new Properties();
+    props.put(KafkaRestConfig.KAFKACLIENT_INIT_TIMEOUT_CONFIG, "100");
+    props.put(KafkaRestConfig.METADATA_CACHE_TTL_MS_CONFIG, metadataTtlMs);
+    return new KafkaRestConfig(props, time);
+  }
+
+  private static MockAdminClient createAdminClient() {
+    Node controller = new Node(1, "a", 1);
+    MockAdminClient adminClient =
+        new MockAdminClient(Collections.singletonList(controller), controller);
+    addTopic(adminClient, "topic", 2);
+    return adminClient;
+  }
+
+  private static void addTopic(MockAdminClient adminClient, String topic, int numPartitions) {
+    Node node = adminClient.broker(0);
+    List<TopicPartitionInfo> partitions = new ArrayList<>();
+    for (int i = 0; i < numPartitions; i++) {
+      partitions.add(
+          new TopicPartitionInfo(
+              i, node, Collections.singletonList(node), Collections.singletonList(node)));
+    }
+    adminClient.addTopic(false, topic, partitions, new HashMap<String, String>());
+  }
 }
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
 import io.confluent.kafkarest.TestUtils;
 import io.confluent.kafkarest.converters.AvroConverter;
 import io.confluent.kafkarest.converters.ConversionException;
@@ -377,6 +378,108 @@ public class AvroConverterTest {
   }
 
 
+  @Test
+  public void testCompiledToAvroMatchesGeneric() {
+    Schema nestedSchema = new Schema.Parser().parse(
+        "{\"type\": \"record\",\n"
+        + " \"name\": \"Outer\",\n"
+        + " \"namespace\": \"ns\",\n"
+        + " \"fields\": [\n"
+        + "     {\"name\": \"suit\", \"type\": " + enumSchema + "},\n"
+        + "     {\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},\n"
+        + "     {\"name\": \"counts\", \"type\": {\"type\": \"map\", \"values\": \"long\"}},\n"
+        + "     {\"name\": \"id\", \"type\": {\"type\": \"fixed\", \"name\": \"Id\", "
+        + "\"size\": 2}},\n"
+        + "     {\"name\": \"next\", \"type\": [\"null\", \"Outer\"]}\n"
+        + "]}");
+    String json = "{\"suit\": \"HEARTS\", \"tags\": [\"a\", \"b\"], \"counts\": {\"x\": 1},"
+        + " \"id\": \"ab\", \"next\": {\"ns.Outer\": {\"suit\": \"CLUBS\", \"tags\": [],"
+        + " \"counts\": {}, \"id\": \"cd\", \"next\": null}}}";
+
+    assertCompiledMatchesGeneric(json, nestedSchema);
+    assertCompiledMatchesGeneric(json.replace("HEARTS", "JOKER"), nestedSchema);
+    assertCompiledMatchesGeneric("{\"union\": {\"string\": \"test string\"}}", unionSchema);
+    assertCompiledMatchesGeneric("{\"union\": {\"int\": 12}}", unionSchema);
+    assertCompiledMatchesGeneric("[\"one\", \"two\"]", arraySchema);
+    assertCompiledMatchesGeneric("{\"first\": \"one\"}", mapSchema);
+    assertCompiledMatchesGeneric("\"SPADES\"", enumSchema);
+    assertCompiledMatchesGeneric("\"h\u00e9llo\"", createPrimitiveSchema("bytes"));
+    assertCompiledMatchesGeneric("\"a string\"", createPrimitiveSchema("string"));
+    assertCompiledMatchesGeneric("23", createPrimitiveSchema("float"));
+    assertCompiledMatchesGeneric("5000000000", createPrimitiveSchema("long"));
+    assertCompiledMatchesGeneric("12.7", createPrimitiveSchema("int"));
+  }
+
+  @Test
+  public void testCompiledToAvroFallsBackForMissingDefaults() {
+    String json = "{\"null\": null, \"boolean\": true, \"int\": 12, \"long\": 5000000000,"
+        + " \"float\": 23.4, \"double\": 800.25, \"bytes\": \"hello\", \"string\": \"s\","
+        + " \"null_default\": null, \"boolean_default\": false, \"int_default\": 24,"
+        + " \"long_default\": 4000000000, \"float_default\": 12.3, \"double_default\": 23.2,"
+        + " \"bytes_default\": \"bytes\", \"string_default\": \"default\"}";
+
+    assertCompiledMatchesGeneric(json, recordSchema);
+    assertCompiledMatchesGeneric(json.replace(", \"int_default\": 24", ""), recordSchema);
+    assertCompiledMatchesGeneric(json.replace("}", ", \"unknown\": 1}"), recordSchema);
+  }
+
+  @Test
+  public void testCompiledToAvroSchemaMismatches() {
+    AvroConverter compiled = AvroConverter.compiled(10);
+    AvroSchema schema = new AvroSchema(unionSchema);
+    try {
+      compiled.toObject(TestUtils.jsonTree("12.4"), schema, 1);
+      fail("Trying to convert floating point number to union(string,int) schema should fail");
+    } catch (ConversionException e) {
+      // expected
+    }
+    try {
+      compiled.toObject(
+          TestUtils.jsonTree("false"), new AvroSchema(createPrimitiveSchema("int")), 2);
+      fail("Trying to convert boolean to int schema should fail");
+    } catch (ConversionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompiledToAvroSameIdNewSchema() {
+    AvroConverter compiled = AvroConverter.compiled(1);
+
+    AvroSchema intSchema = new AvroSchema(createPrimitiveSchema("int"));
+    AvroSchema stringSchema = new AvroSchema(createPrimitiveSchema("string"));
+    AvroSchema longSchema = new AvroSchema(createPrimitiveSchema("long"));
+
+    assertEquals(12, compiled.toObject(TestUtils.jsonTree("12"), intSchema, 1));
+    assertEquals(new Utf8("a"), compiled.toObject(TestUtils.jsonTree("\"a\""), stringSchema, 1));
+    assertEquals(12L, compiled.toObject(TestUtils.jsonTree("12"), longSchema, 2));
+  }
+
+  private static void assertCompiledMatchesGeneric(String json, Schema schema) {
+    AvroSchema avroSchema = new AvroSchema(schema);
+    AvroConverter compiled = AvroConverter.compiled(10);
+    Object expected;
+    try {
+      expected = new AvroConverter().toObject(TestUtils.jsonTree(json), avroSchema);
+    } catch (ConversionException e) {
+      expectConversionException(compiled, json, avroSchema);
+      return;
+    }
+    // Twice, the second conversion uses the cached plan.
+    assertEquals(expected, compiled.toObject(TestUtils.jsonTree(json), avroSchema, 1));
+    assertEquals(expected, compiled.toObject(TestUtils.jsonTree(json), avroSchema, 1));
+  }
+
+  private static void expectConversionException(
+      AvroConverter converter, String json, AvroSchema schema) {
+    try {
+      converter.toObject(TestUtils.jsonTree(json), schema, 1);
+      fail("Expected conversion of " + json + " to schema " + schema + " to fail");
+    } catch (ConversionException e) {
+      // Expected
+    }
+  }
+
   private static void expectConversionException(JsonNode obj, Schema schema) {
     try {
       new AvroConverter().toObject(obj, schema);
@@ -15,28 +15,44 @@
 
 package io.confluent.kafkarest.unit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.confluent.kafka.schemaregistry.ParsedSchema;
-import io.confluent.kafka.schemaregistry.avro.AvroSchema;
 import io.confluent.kafka.schemaregistry.avro.AvroSchemaProvider;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
 import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ParsedSchemaCache;
 import io.confluent.kafkarest.ProduceTask;
 import io.confluent.kafkarest.ProducerPool;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.SchemaResolver;
 import io.confluent.kafkarest.SchemaRestProducer;
+import io.confluent.kafkarest.ShardedProducer;
 import io.confluent.kafkarest.converters.AvroConverter;
 import io.confluent.kafkarest.entities.ProduceRecord;
 import io.confluent.kafkarest.entities.ProduceRequest;
 import io.confluent.rest.exceptions.RestConstraintViolationException;
+import io.confluent.rest.exceptions.RestException;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import javax.validation.ConstraintViolationException;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
@@ -114,13 +130,12 @@ public class AvroRestProducerTest {
             + "\"name\": \"User\","
             + "\"fields\": [{\"name\": \"name\", \"type\": \"string\"}]"
             + "}";
-    final ParsedSchema valueSchema = new AvroSchema(valueSchemaStr);
-    // This is the key part of the test, we should only call register once with the same schema, and then see the lookup
-    // by ID the rest of the times
+    // This is the key part of the test, we should only call register once with the same schema,
+    // after that both the parsed schema and its ID come from the parsed schema cache, without
+    // any lookup by ID
     EasyMock.expect(
         valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
         .andReturn(schemaId);
-    EasyMock.expect(valueSerializer.getSchemaById(schemaId)).andReturn(valueSchema).times(9999);
     EasyMock.replay(valueSerializer);
     Future f = EasyMock.createMock(Future.class);
     EasyMock.expect(
@@ -143,5 +158,248 @@ public class AvroRestProducerTest {
           schemaHolder.getRecords());
     }
 
+    EasyMock.verify(valueSerializer);
+    assertEquals(9999, restProducer.getParsedSchemaCache().hitCount());
+    assertEquals(1, restProducer.getParsedSchemaCache().missCount());
+  }
+
+  @Test
+  public void produce_largeBatchOnConversionPool_sendsInRequestOrder() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      SchemaRestProducer parallelProducer = newParallelProducer(pool);
+      EasyMock.expect(
+          valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+          .andReturn(1);
+      EasyMock.replay(valueSerializer);
+      Capture<ProducerRecord<Object, Object>> sent = Capture.newInstance(CaptureType.ALL);
+      EasyMock.expect(producer.send(EasyMock.capture(sent), EasyMock.isA(Callback.class)))
+          .andStubReturn(EasyMock.createMock(Future.class));
+      EasyMock.replay(producer);
+      int numRecords = 10 * 256 + 7;
+      schemaHolder = intRequest(numRecords);
+
+      parallelProducer.produce(
+          new ProduceTask(schemaHolder, numRecords, produceCallback),
+          /* topic= */ "test",
+          /* partition= */ null,
+          schemaHolder.getRecords());
+
+      assertEquals(numRecords, sent.getValues().size());
+      for (int i = 0; i < numRecords; i++) {
+        assertEquals(i, sent.getValues().get(i).value());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void produce_largeBatchWithInvalidRecords_failsLikeSerialConversion() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      SchemaRestProducer parallelProducer = newParallelProducer(pool);
+      EasyMock.expect(
+          valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+          .andStubReturn(1);
+      EasyMock.replay(valueSerializer);
+      // Nothing may be sent.
+      EasyMock.replay(producer);
+      int numRecords = 10 * 256;
+      schemaHolder = intRequest(numRecords, 2000, 700);
+
+      String serialMessage = null;
+      try {
+        restProducer.produce(
+            new ProduceTask(schemaHolder, numRecords, produceCallback),
+            "test",
+            null,
+            schemaHolder.getRecords());
+        fail();
+      } catch (RestConstraintViolationException e) {
+        serialMessage = e.getMessage();
+      }
+      try {
+        parallelProducer.produce(
+            new ProduceTask(schemaHolder, numRecords, produceCallback),
+            "test",
+            null,
+            schemaHolder.getRecords());
+        fail();
+      } catch (RestConstraintViolationException e) {
+        assertEquals(serialMessage, e.getMessage());
+      }
+      EasyMock.verify(producer);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void produce_sendFailsPartway_failsOnlyThatRecord() throws Exception {
+    EasyMock.expect(
+        valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+        .andReturn(1);
+    EasyMock.replay(valueSerializer);
+    SerializationException error = new SerializationException("failed");
+    Capture<Callback> callbacks = Capture.newInstance(CaptureType.ALL);
+    EasyMock.expect(producer.send(EasyMock.anyObject(), EasyMock.capture(callbacks)))
+        .andReturn(EasyMock.createMock(Future.class))
+        .andThrow(error)
+        .andReturn(EasyMock.createMock(Future.class));
+    EasyMock.replay(producer);
+    Capture<List<RecordMetadataOrException>> results = Capture.newInstance();
+    produceCallback.onSent();
+    produceCallback.onCompletion(EasyMock.isNull(), EasyMock.eq(1), EasyMock.capture(results));
+    EasyMock.replay(produceCallback);
+    schemaHolder = intRequest(3);
+
+    restProducer.produce(
+        new ProduceTask(schemaHolder, 3, produceCallback),
+        "test",
+        null,
+        schemaHolder.getRecords());
+    callbacks.getValues().get(0).onCompletion(metadata(0), null);
+    callbacks.getValues().get(2).onCompletion(metadata(2), null);
+
+    EasyMock.verify(producer, produceCallback);
+    assertEquals(0, results.getValue().get(0).getRecordMetadata().offset());
+    assertSame(error, results.getValue().get(1).getException());
+    assertEquals(2, results.getValue().get(2).getRecordMetadata().offset());
+  }
+
+  @Test
+  public void produce_schemaResolvedLater_sendsOnSendExecutor() throws Exception {
+    List<Runnable> lookups = new ArrayList<>();
+    List<Runnable> sends = new ArrayList<>();
+    SchemaRestProducer deferredProducer = newDeferredProducer(lookups, sends::add);
+    EasyMock.expect(
+        valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+        .andReturn(1);
+    EasyMock.replay(valueSerializer);
+    EasyMock.expect(producer.send(EasyMock.anyObject(), EasyMock.isA(Callback.class)))
+        .andReturn(EasyMock.createMock(Future.class));
+    EasyMock.replay(producer);
+    schemaHolder = intRequest(1);
+
+    deferredProducer.produce(
+        new ProduceTask(schemaHolder, 1, produceCallback),
+        "test",
+        null,
+        schemaHolder.getRecords());
+    assertEquals(1, lookups.size());
+
+    lookups.get(0).run();
+    // Nothing is converted or sent on the resolving thread.
+    assertEquals(1, sends.size());
+    sends.get(0).run();
+    EasyMock.verify(producer);
+  }
+
+  @Test
+  public void produce_schemaResolvedLater_signalsSentOnceSent() throws Exception {
+    List<Runnable> lookups = new ArrayList<>();
+    List<Runnable> sends = new ArrayList<>();
+    SchemaRestProducer deferredProducer = newDeferredProducer(lookups, sends::add);
+    EasyMock.expect(
+        valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+        .andReturn(1);
+    EasyMock.replay(valueSerializer);
+    EasyMock.expect(producer.send(EasyMock.anyObject(), EasyMock.isA(Callback.class)))
+        .andReturn(EasyMock.createMock(Future.class));
+    EasyMock.replay(producer);
+    // Nothing may be signalled while the schema is pending.
+    EasyMock.replay(produceCallback);
+    schemaHolder = intRequest(1);
+
+    deferredProducer.produce(
+        new ProduceTask(schemaHolder, 1, produceCallback),
+        "test",
+        null,
+        schemaHolder.getRecords());
+    lookups.get(0).run();
+    EasyMock.verify(produceCallback);
+
+    EasyMock.reset(produceCallback);
+    produceCallback.onSent();
+    EasyMock.replay(produceCallback);
+    sends.get(0).run();
+    EasyMock.verify(producer, produceCallback);
+  }
+
+  @Test
+  public void produce_schemaLookupFailsLater_reportsToCallback() throws Exception {
+    List<Runnable> lookups = new ArrayList<>();
+    SchemaRestProducer deferredProducer = newDeferredProducer(lookups, Runnable::run);
+    EasyMock.expect(
+        valueSerializer.register(EasyMock.isA(String.class), EasyMock.isA(ParsedSchema.class)))
+        .andThrow(new IOException("unavailable"));
+    EasyMock.replay(valueSerializer);
+    // Nothing may be sent.
+    EasyMock.replay(producer);
+    Capture<Exception> error = Capture.newInstance();
+    produceCallback.onException(EasyMock.capture(error));
+    EasyMock.replay(produceCallback);
+    schemaHolder = intRequest(1);
+
+    deferredProducer.produce(
+        new ProduceTask(schemaHolder, 1, produceCallback),
+        "test",
+        null,
+        schemaHolder.getRecords());
+    lookups.get(0).run();
+
+    assertEquals(40801, ((RestException) error.getValue()).getErrorCode());
+    EasyMock.verify(producer, produceCallback);
+  }
+
+  private SchemaRestProducer newDeferredProducer(List<Runnable> lookups, Executor sendExecutor) {
+    return new SchemaRestProducer(
+        new ShardedProducer<>(producer),
+        keySerializer,
+        valueSerializer,
+        new AvroSchemaProvider(),
+        new AvroConverter(),
+        new SchemaResolver(new AvroSchemaProvider(), new ParsedSchemaCache(10), 10, lookups::add),
+        sendExecutor,
+        /* conversionPool= */ null);
+  }
+
+  private SchemaRestProducer newParallelProducer(ForkJoinPool pool) {
+    return new SchemaRestProducer(
+        new ShardedProducer<>(producer),
+        keySerializer,
+        valueSerializer,
+        new AvroSchemaProvider(),
+        new AvroConverter(),
+        new ParsedSchemaCache(10),
+        pool);
+  }
+
+  private static RecordMetadata metadata(long offset) {
+    return new RecordMetadata(new TopicPartition("test", 0), offset, 0L, 0L, 0L, 0, 0);
+  }
+
+  /**
+   * Returns a request of {@code numRecords} int values, where the values at
+   * {@code invalidIndexes} are objects of different shapes that fail to convert.
+   */
+  private static ProduceRequest<JsonNode, JsonNode> intRequest(
+      int numRecords, int... invalidIndexes) throws Exception {
+    List<ProduceRecord<JsonNode, JsonNode>> records = new ArrayList<>();
+    for (int i = 0; i < numRecords; i++) {
+      records.add(new ProduceRecord<>(null, mapper.readTree(Integer.toString(i)), null));
+    }
+    for (int index : invalidIndexes) {
+      records.set(
+          index,
+          new ProduceRecord<>(null, mapper.readTree("{\"invalid_" + index + "\": 1}"), null));
+    }
+    return new ProduceRequest<>(
+        records,
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ "\"int\"",
+        /* valueSchemaId= */ null);
   }
 }
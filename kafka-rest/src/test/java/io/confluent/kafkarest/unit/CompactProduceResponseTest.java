@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse.OffsetRange;
+import io.confluent.kafkarest.entities.v2.CompactProduceResponse.RecordError;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.ws.rs.core.Response;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicAuthorizationException;
+import org.junit.Test;
+
+public class CompactProduceResponseTest {
+
+  @Test
+  public void fromResults_consecutiveOffsets_returnsSingleRange() {
+    List<RecordMetadataOrException> results = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      results.add(success(0, 100 + i));
+    }
+
+    CompactProduceResponse response = CompactProduceResponse.fromResults(1, 2, results);
+
+    assertEquals(
+        new CompactProduceResponse(
+            Collections.singletonList(new OffsetRange(0, 100, 5000)),
+            Collections.emptyList(),
+            1,
+            2),
+        response);
+    assertEquals(Response.Status.OK, response.getRequestStatus());
+  }
+
+  @Test
+  public void fromResults_partitionChangesGapsAndErrors_splitsRanges() {
+    List<RecordMetadataOrException> results =
+        Arrays.asList(
+            success(0, 10),
+            success(0, 11),
+            failure(new KafkaException("failed")),
+            success(0, 12),
+            success(1, 13),
+            success(1, 20),
+            success(1, 21));
+
+    CompactProduceResponse response = CompactProduceResponse.fromResults(null, null, results);
+
+    assertEquals(
+        Arrays.asList(
+            new OffsetRange(0, 10, 3),
+            new OffsetRange(1, 13, 1),
+            new OffsetRange(1, 20, 2)),
+        response.getRanges());
+    assertEquals(
+        Collections.singletonList(new RecordError(2, Errors.KAFKA_ERROR_ERROR_CODE, "failed")),
+        response.getErrors());
+  }
+
+  @Test
+  public void fromResults_authorizationError_returnsForbidden() {
+    CompactProduceResponse response =
+        CompactProduceResponse.fromResults(
+            null,
+            null,
+            Arrays.asList(success(0, 0), failure(new TopicAuthorizationException("topic"))));
+
+    assertEquals(Response.Status.FORBIDDEN, response.getRequestStatus());
+  }
+
+  private static RecordMetadataOrException success(int partition, long offset) {
+    return new RecordMetadataOrException(
+        new RecordMetadata(new TopicPartition("topic", partition), offset, 0L, 0L, 0L, 1, 1),
+        null);
+  }
+
+  private static RecordMetadataOrException failure(Exception exception) {
+    return new RecordMetadataOrException(null, exception);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafkarest.ParsedSchemaCache;
+import org.junit.Test;
+
+public class ParsedSchemaCacheTest {
+
+  private static final String SCHEMA = "\"string\"";
+
+  @Test
+  public void get_sameSubjectAndText_returnsCachedSchemaAndId() {
+    ParsedSchemaCache cache = new ParsedSchemaCache(10);
+    ParsedSchema schema = new AvroSchema(SCHEMA);
+    cache.put("topic-value", SCHEMA, schema, 5);
+
+    ParsedSchemaCache.SchemaAndId cached = cache.get("topic-value", new String(SCHEMA));
+
+    assertSame(schema, cached.getSchema());
+    assertEquals(5, cached.getId());
+    assertEquals(1, cache.hitCount());
+    assertEquals(0, cache.missCount());
+  }
+
+  @Test
+  public void get_differentSubject_returnsNull() {
+    ParsedSchemaCache cache = new ParsedSchemaCache(10);
+    cache.put("topic-value", SCHEMA, new AvroSchema(SCHEMA), 5);
+
+    assertNull(cache.get("topic-key", SCHEMA));
+    assertNull(cache.get("other-value", SCHEMA));
+    assertEquals(0, cache.hitCount());
+    assertEquals(2, cache.missCount());
+  }
+
+  @Test
+  public void put_overMaxSize_evictsLeastRecentlyUsed() {
+    ParsedSchemaCache cache = new ParsedSchemaCache(2);
+    cache.put("a", SCHEMA, new AvroSchema(SCHEMA), 1);
+    cache.put("b", SCHEMA, new AvroSchema(SCHEMA), 2);
+    cache.get("a", SCHEMA);
+    cache.put("c", SCHEMA, new AvroSchema(SCHEMA), 3);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.get("a", SCHEMA).getId());
+    assertNull(cache.get("b", SCHEMA));
+    assertEquals(3, cache.get("c", SCHEMA).getId());
+  }
+}
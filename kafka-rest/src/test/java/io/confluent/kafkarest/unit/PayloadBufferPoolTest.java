@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.confluent.kafkarest.PayloadBufferPool;
+import org.junit.Test;
+
+public class PayloadBufferPoolTest {
+
+  @Test
+  public void acquire_afterRelease_reusesBufferOfSameLength() {
+    PayloadBufferPool pool = new PayloadBufferPool(10000);
+    byte[] buffer = pool.acquire(1000);
+
+    pool.release(buffer);
+
+    assertNotSame(buffer, pool.acquire(999));
+    assertSame(buffer, pool.acquire(1000));
+    assertNotSame(buffer, pool.acquire(1000));
+    assertEquals(1, pool.hitCount());
+    assertEquals(3, pool.missCount());
+  }
+
+  @Test
+  public void acquire_smallBuffer_isNeverPooled() {
+    PayloadBufferPool pool = new PayloadBufferPool(10000);
+    byte[] buffer = new byte[16];
+
+    pool.release(buffer);
+
+    assertNotSame(buffer, pool.acquire(16));
+    assertEquals(0, pool.hitCount());
+    assertEquals(0, pool.missCount());
+  }
+
+  @Test
+  public void release_overBudget_dropsPooledBuffers() {
+    PayloadBufferPool pool = new PayloadBufferPool(2500);
+    byte[] first = new byte[1000];
+    byte[] second = new byte[1000];
+    byte[] third = new byte[1000];
+
+    pool.release(first);
+    pool.release(second);
+    pool.release(third);
+
+    assertSame(third, pool.acquire(1000));
+    assertNotSame(first, pool.acquire(1000));
+  }
+
+  @Test
+  public void acquire_otherThread_doesNotSeeReleasedBuffer() throws Exception {
+    PayloadBufferPool pool = new PayloadBufferPool(10000);
+    byte[] buffer = new byte[1000];
+    pool.release(buffer);
+
+    byte[][] acquired = new byte[1][];
+    Thread thread = new Thread(() -> acquired[0] = pool.acquire(1000));
+    thread.start();
+    thread.join();
+
+    assertNotSame(buffer, acquired[0]);
+    assertSame(buffer, pool.acquire(1000));
+  }
+
+  @Test
+  public void disabled_neverPools() {
+    byte[] buffer = new byte[1000];
+
+    PayloadBufferPool.DISABLED.release(buffer);
+
+    assertFalse(PayloadBufferPool.DISABLED.isEnabled());
+    assertNotSame(buffer, PayloadBufferPool.DISABLED.acquire(1000));
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ProduceBudget;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.exceptions.ProduceBudgetExceededException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ProduceBudgetTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void acquire_withinLimit_tracksBytesUntilReleased() {
+    ProduceBudget budget = new ProduceBudget(100, 0, 1);
+
+    ProduceBudget.Reservation first = budget.acquire(EmbeddedFormat.BINARY, "topic", binary(40));
+    ProduceBudget.Reservation second = budget.acquire(EmbeddedFormat.BINARY, "topic", binary(60));
+    assertEquals(100, budget.bytesInFlight(EmbeddedFormat.BINARY));
+
+    first.release();
+    second.release();
+    assertEquals(0, budget.bytesInFlight(EmbeddedFormat.BINARY));
+  }
+
+  @Test
+  public void acquire_overFormatLimit_throwsAndCountsRejection() {
+    ProduceBudget budget = new ProduceBudget(100, 0, 3);
+    budget.acquire(EmbeddedFormat.BINARY, "topic", binary(60));
+
+    try {
+      budget.acquire(EmbeddedFormat.BINARY, "other", binary(60));
+      fail();
+    } catch (ProduceBudgetExceededException e) {
+      assertEquals(429, e.getStatus());
+      assertEquals(Errors.PRODUCE_BUDGET_EXCEEDED_ERROR_CODE, e.getErrorCode());
+      assertEquals(3, e.getRetryAfterSeconds());
+    }
+    assertEquals(60, budget.bytesInFlight(EmbeddedFormat.BINARY));
+    assertEquals(1, budget.rejections(EmbeddedFormat.BINARY));
+
+    // Formats have separate budgets.
+    budget.acquire(EmbeddedFormat.JSON, "topic", json("\"" + repeat('x', 60) + "\""));
+  }
+
+  @Test
+  public void acquire_overTopicLimit_throwsAndRestoresFormatBytes() {
+    ProduceBudget budget = new ProduceBudget(0, 50, 1);
+    budget.acquire(EmbeddedFormat.BINARY, "slow", binary(40));
+
+    try {
+      budget.acquire(EmbeddedFormat.JSON, "slow", json("\"" + repeat('x', 20) + "\""));
+      fail();
+    } catch (ProduceBudgetExceededException e) {
+      assertEquals(1, budget.topicRejections());
+    }
+    assertEquals(0, budget.bytesInFlight(EmbeddedFormat.JSON));
+
+    // Other topics are not affected.
+    budget.acquire(EmbeddedFormat.BINARY, "fast", binary(40));
+  }
+
+  @Test
+  public void acquire_recordsWithTopics_chargesEachTopic() {
+    ProduceBudget budget = new ProduceBudget(0, 50, 1);
+    budget.acquire(EmbeddedFormat.BINARY, "slow", binary(40));
+
+    try {
+      budget.acquire(
+          EmbeddedFormat.BINARY,
+          /* topic= */ null,
+          request(
+              new ProduceRecord<>("fast", null, new byte[30], null),
+              new ProduceRecord<>("slow", null, new byte[20], null)));
+      fail();
+    } catch (ProduceBudgetExceededException e) {
+      assertEquals(1, budget.topicRejections());
+    }
+    assertEquals(40, budget.bytesInFlight(EmbeddedFormat.BINARY));
+
+    // The bytes acquired for "fast" before "slow" was rejected were given back.
+    ProduceBudget.Reservation reservation =
+        budget.acquire(
+            EmbeddedFormat.BINARY,
+            /* topic= */ null,
+            request(
+                new ProduceRecord<>("fast", null, new byte[30], null),
+                new ProduceRecord<>("other", null, new byte[10], null),
+                new ProduceRecord<>("fast", null, new byte[20], null)));
+    assertEquals(100, budget.bytesInFlight(EmbeddedFormat.BINARY));
+
+    reservation.release();
+    assertEquals(40, budget.bytesInFlight(EmbeddedFormat.BINARY));
+    budget.acquire(EmbeddedFormat.BINARY, "fast", binary(50));
+  }
+
+  @Test
+  public void release_lastReservationOfTopic_stopsTrackingTopic() {
+    ProduceBudget budget = new ProduceBudget(0, 50, 1);
+    List<ProduceBudget.Reservation> reservations = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      reservations.add(budget.acquire(EmbeddedFormat.BINARY, "missing-" + i, binary(10)));
+    }
+    reservations.add(budget.acquire(EmbeddedFormat.BINARY, "missing-0", binary(10)));
+    assertEquals(100, budget.topicsInFlight());
+
+    for (ProduceBudget.Reservation reservation : reservations) {
+      reservation.release();
+    }
+    assertEquals(0, budget.topicsInFlight());
+
+    // Rejected requests do not leave their topics behind either.
+    budget.acquire(EmbeddedFormat.BINARY, "slow", binary(40));
+    try {
+      budget.acquire(
+          EmbeddedFormat.BINARY,
+          /* topic= */ null,
+          request(
+              new ProduceRecord<>("fast", null, new byte[30], null),
+              new ProduceRecord<>("slow", null, new byte[20], null)));
+      fail();
+    } catch (ProduceBudgetExceededException e) {
+      assertEquals(1, budget.topicsInFlight());
+    }
+  }
+
+  @Test
+  public void acquire_nothingInFlight_admitsRequestLargerThanLimit() {
+    ProduceBudget budget = new ProduceBudget(10, 10, 1);
+
+    budget.acquire(EmbeddedFormat.BINARY, "topic", binary(100));
+
+    assertEquals(100, budget.bytesInFlight(EmbeddedFormat.BINARY));
+  }
+
+  @Test
+  public void release_twice_releasesOnce() {
+    ProduceBudget budget = new ProduceBudget(100, 0, 1);
+    budget.acquire(EmbeddedFormat.BINARY, "topic", binary(30));
+    ProduceBudget.Reservation reservation =
+        budget.acquire(EmbeddedFormat.BINARY, "topic", binary(20));
+
+    reservation.release();
+    reservation.release();
+
+    assertEquals(30, budget.bytesInFlight(EmbeddedFormat.BINARY));
+  }
+
+  @Test
+  public void acquire_jsonRecords_estimatesFieldsAndValues() {
+    ProduceBudget budget = new ProduceBudget(0, 0, 1);
+
+    budget.acquire(
+        EmbeddedFormat.AVRO, "topic", json("{\"name\": \"abc\", \"tags\": [\"de\", 1, true]}"));
+
+    // "name" + "abc" + "tags" + "de" + 8 for the number + 1 for the boolean.
+    assertEquals(4 + 3 + 4 + 2 + 8 + 1, budget.bytesInFlight(EmbeddedFormat.AVRO));
+  }
+
+  private static ProduceRequest<byte[], byte[]> binary(int valueSize) {
+    return request(new ProduceRecord<>(null, new byte[valueSize], null));
+  }
+
+  private static ProduceRequest<JsonNode, JsonNode> json(String value) {
+    try {
+      return request(new ProduceRecord<>(null, MAPPER.readTree(value), null));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @SafeVarargs
+  private static <K, V> ProduceRequest<K, V> request(ProduceRecord<K, V>... records) {
+    return new ProduceRequest<>(
+        Arrays.asList(records),
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
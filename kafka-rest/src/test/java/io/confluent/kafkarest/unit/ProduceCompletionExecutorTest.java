@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.confluent.kafkarest.ProduceCompletionExecutor;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProduceCompletionExecutorTest {
+
+  private final CountDownLatch unblock = new CountDownLatch(1);
+  private ProduceCompletionExecutor executor;
+
+  @After
+  public void tearDown() {
+    unblock.countDown();
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void execute_runsOnCompletionThread() throws Exception {
+    executor = new ProduceCompletionExecutor(1, 10, /* handoffSensor= */ null);
+    AtomicReference<Thread> completedOn = new AtomicReference<>();
+    CountDownLatch completed = new CountDownLatch(1);
+
+    executor.execute(() -> {
+      completedOn.set(Thread.currentThread());
+      completed.countDown();
+    });
+
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertNotSame(Thread.currentThread(), completedOn.get());
+    assertTrue(completedOn.get().getName().startsWith("kafka-rest-produce-completion-"));
+  }
+
+  @Test
+  public void execute_queueFull_runsOnCallingThread() throws Exception {
+    executor = new ProduceCompletionExecutor(1, 1, /* handoffSensor= */ null);
+    CountDownLatch running = new CountDownLatch(1);
+    // Occupies the only thread, then the only queue slot.
+    executor.execute(() -> {
+      running.countDown();
+      awaitUninterruptibly(unblock);
+    });
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+    executor.execute(() -> { });
+    assertEquals(1, executor.queueSize());
+
+    AtomicReference<Thread> completedOn = new AtomicReference<>();
+    executor.execute(() -> completedOn.set(Thread.currentThread()));
+
+    assertSame(Thread.currentThread(), completedOn.get());
+    assertEquals(1, executor.inlineCompletions());
+  }
+
+  @Test
+  public void execute_afterShutdown_runsOnCallingThread() {
+    executor = new ProduceCompletionExecutor(1, 10, /* handoffSensor= */ null);
+    executor.shutdown();
+    AtomicReference<Thread> completedOn = new AtomicReference<>();
+
+    executor.execute(() -> completedOn.set(Thread.currentThread()));
+
+    assertSame(Thread.currentThread(), completedOn.get());
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    while (true) {
+      try {
+        latch.await();
+        return;
+      } catch (InterruptedException e) {
+        // Keep waiting, the test releases the latch on tear down.
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ProduceReceiptStore;
+import io.confluent.kafkarest.entities.v2.PartitionOffset;
+import io.confluent.kafkarest.entities.v2.ProduceReceiptResponse;
+import io.confluent.kafkarest.entities.v2.ProduceResponse;
+import io.confluent.kafkarest.mock.MockTime;
+import io.confluent.rest.exceptions.RestException;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProduceReceiptStoreTest {
+
+  private static final long TTL_MS = 1000;
+
+  private static final ProduceResponse RESPONSE =
+      new ProduceResponse(
+          Collections.singletonList(new PartitionOffset(0, 10L, null, null)),
+          /* keySchemaId= */ null,
+          /* valueSchemaId= */ 1);
+
+  private MockTime time;
+  private ProduceReceiptStore store;
+
+  @Before
+  public void setUp() {
+    time = new MockTime();
+    store = new ProduceReceiptStore(/* maxReceipts= */ 2, TTL_MS, time);
+  }
+
+  @Test
+  public void create_returnsPendingReceipt() {
+    String receiptId = store.create();
+
+    assertEquals(ProduceReceiptResponse.pending(receiptId), store.get(receiptId));
+  }
+
+  @Test
+  public void create_returnsUniqueIds() {
+    assertNotEquals(store.create(), store.create());
+  }
+
+  @Test
+  public void complete_returnsCompletedReceipt() {
+    String receiptId = store.create();
+
+    store.complete(receiptId, RESPONSE);
+
+    ProduceReceiptResponse receipt = store.get(receiptId);
+    assertEquals(ProduceReceiptResponse.completed(receiptId, RESPONSE), receipt);
+    assertEquals(ProduceReceiptResponse.Status.COMPLETED, receipt.getStatus());
+    assertEquals(RESPONSE.getOffsets(), receipt.getOffsets());
+    assertEquals(Integer.valueOf(1), receipt.getValueSchemaId());
+  }
+
+  @Test
+  public void fail_getThrowsError() {
+    String receiptId = store.create();
+    RestException error = Errors.keySchemaMissingException();
+
+    store.fail(receiptId, error);
+
+    try {
+      store.get(receiptId);
+      fail();
+    } catch (RestException e) {
+      assertEquals(error, e);
+    }
+  }
+
+  @Test
+  public void get_unknownReceipt_returnsNull() {
+    assertNull(store.get("unknown"));
+  }
+
+  @Test
+  public void get_afterTtl_returnsNull() {
+    String receiptId = store.create();
+    store.complete(receiptId, RESPONSE);
+
+    time.sleep(TTL_MS - 1);
+    assertEquals(ProduceReceiptResponse.completed(receiptId, RESPONSE), store.get(receiptId));
+
+    time.sleep(1);
+    assertNull(store.get(receiptId));
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void complete_afterTtl_isIgnored() {
+    String receiptId = store.create();
+    time.sleep(TTL_MS);
+    String otherId = store.create();
+
+    store.complete(receiptId, RESPONSE);
+
+    assertNull(store.get(receiptId));
+    assertEquals(ProduceReceiptResponse.pending(otherId), store.get(otherId));
+  }
+
+  @Test
+  public void create_full_evictsOldest() {
+    String first = store.create();
+    String second = store.create();
+    String third = store.create();
+
+    assertNull(store.get(first));
+    assertEquals(ProduceReceiptResponse.pending(second), store.get(second));
+    assertEquals(ProduceReceiptResponse.pending(third), store.get(third));
+    assertEquals(2, store.size());
+  }
+
+  @Test
+  public void remove_dropsReceipt() {
+    String receiptId = store.create();
+
+    store.remove(receiptId);
+
+    assertNull(store.get(receiptId));
+  }
+}
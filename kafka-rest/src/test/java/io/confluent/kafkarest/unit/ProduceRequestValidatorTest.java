@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ProduceRequestValidator;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.kafkarest.entities.SchemaRef;
+import io.confluent.rest.exceptions.ConstraintViolationExceptionMapper;
+import io.confluent.rest.exceptions.RestConstraintViolationException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class ProduceRequestValidatorTest {
+
+  private static final String SCHEMA = "\"int\"";
+
+  @Test
+  public void validate_schemaFormatWithSchemas_passes() {
+    ProduceRequestValidator.forFormat(EmbeddedFormat.AVRO)
+        .validate(
+            new ProduceRequest<>(
+                Arrays.asList(record(1, 2, null), record(3, 4, 0)), SCHEMA, null, null, 7));
+  }
+
+  @Test
+  public void validate_nullKeysWithoutKeySchema_passes() {
+    ProduceRequestValidator.forFormat(EmbeddedFormat.AVRO)
+        .validate(
+            new ProduceRequest<>(
+                Arrays.asList(
+                    new ProduceRecord<JsonNode, JsonNode>(null, new IntNode(1), null),
+                    new ProduceRecord<JsonNode, JsonNode>(
+                        NullNode.getInstance(), new IntNode(2), null)),
+                null,
+                null,
+                SCHEMA,
+                null));
+  }
+
+  @Test
+  public void validate_keyWithoutKeySchema_throwsKeySchemaMissing() {
+    assertViolation(
+        Errors.KEY_SCHEMA_MISSING_ERROR_CODE,
+        EmbeddedFormat.PROTOBUF,
+        new ProduceRequest<>(
+            Collections.singletonList(record(1, 2, null)), null, null, SCHEMA, null));
+  }
+
+  @Test
+  public void validate_valueWithoutValueSchema_throwsValueSchemaMissing() {
+    assertViolation(
+        Errors.VALUE_SCHEMA_MISSING_ERROR_CODE,
+        EmbeddedFormat.JSONSCHEMA,
+        new ProduceRequest<>(
+            Collections.singletonList(record(1, 2, null)), SCHEMA, null, null, null));
+  }
+
+  @Test
+  public void validate_valueSchemaReference_passes() {
+    ProduceRequestValidator.forFormat(EmbeddedFormat.AVRO)
+        .validate(
+            new ProduceRequest<>(
+                Collections.singletonList(
+                    new ProduceRecord<JsonNode, JsonNode>(null, new IntNode(1), null)),
+                null,
+                null,
+                null,
+                null,
+                null,
+                SchemaRef.subject("topic-value", null)));
+  }
+
+  @Test
+  public void validate_negativePartition_throwsConstraintViolation() {
+    assertViolation(
+        ConstraintViolationExceptionMapper.UNPROCESSABLE_ENTITY_CODE,
+        EmbeddedFormat.BINARY,
+        new ProduceRequest<>(
+            Collections.singletonList(new ProduceRecord<>(new byte[1], new byte[1], -1)),
+            null,
+            null,
+            null,
+            null));
+  }
+
+  @Test
+  public void validate_binaryWithoutSchemas_passes() {
+    ProduceRequestValidator.forFormat(EmbeddedFormat.BINARY)
+        .validate(
+            new ProduceRequest<>(
+                Collections.singletonList(new ProduceRecord<>(new byte[1], new byte[1], 0)),
+                null,
+                null,
+                null,
+                null));
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void checkNotEmpty_noRecords_throwsConstraintViolation() {
+    ProduceRequestValidator.checkNotEmpty(Collections.emptyList());
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void checkNotEmpty_nullRecords_throwsConstraintViolation() {
+    ProduceRequestValidator.checkNotEmpty(null);
+  }
+
+  private static ProduceRecord<JsonNode, JsonNode> record(int key, int value, Integer partition) {
+    return new ProduceRecord<>(new IntNode(key), new IntNode(value), partition);
+  }
+
+  private static void assertViolation(
+      int errorCode, EmbeddedFormat format, ProduceRequest<?, ?> request) {
+    try {
+      ProduceRequestValidator.forFormat(format).validate(request);
+      fail();
+    } catch (RestConstraintViolationException e) {
+      assertEquals(errorCode, e.getErrorCode());
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.confluent.kafkarest.ProduceBudget;
+import io.confluent.kafkarest.ProduceTask;
+import io.confluent.kafkarest.ProducerPool;
+import io.confluent.kafkarest.RecordMetadataOrException;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+public class ProduceTaskTest {
+
+  private static final ProduceRequest<byte[], byte[]> REQUEST =
+      new ProduceRequest<>(
+          Collections.singletonList(new ProduceRecord<>(null, new byte[0], null)),
+          /* keySchema= */ null,
+          /* keySchemaId= */ null,
+          /* valueSchema= */ null,
+          /* valueSchemaId= */ null);
+
+  @Test
+  public void onCompletion_outOfOrderAcks_returnsResultsInRequestOrder() {
+    AtomicReference<List<RecordMetadataOrException>> results = new AtomicReference<>();
+    ProduceTask task = new ProduceTask(REQUEST, 3, newCallback(results, new AtomicInteger()));
+    Callback first = task.createCallback();
+    Callback second = task.createCallback();
+    Callback third = task.createCallback();
+    task.setSchemaIds(1, 2);
+
+    RuntimeException error = new RuntimeException("failed");
+    third.onCompletion(metadata(2), null);
+    first.onCompletion(metadata(0), null);
+    assertNull(results.get());
+    second.onCompletion(null, error);
+
+    assertEquals(3, results.get().size());
+    assertEquals(0, results.get().get(0).getRecordMetadata().offset());
+    assertSame(error, results.get().get(1).getException());
+    assertEquals(2, results.get().get(2).getRecordMetadata().offset());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void createCallback_moreThanNumRecords_throwsIllegalState() {
+    ProduceTask task =
+        new ProduceTask(REQUEST, 1, newCallback(new AtomicReference<>(), new AtomicInteger()));
+    task.createCallback();
+    task.createCallback();
+  }
+
+  @Test
+  public void onCompletion_concurrentAcks_completesExactlyOnce() throws Exception {
+    int numRecords = 10000;
+    AtomicReference<List<RecordMetadataOrException>> results = new AtomicReference<>();
+    AtomicInteger completions = new AtomicInteger();
+    ProduceTask task = new ProduceTask(REQUEST, numRecords, newCallback(results, completions));
+    List<Callback> callbacks = new ArrayList<>();
+    for (int i = 0; i < numRecords; i++) {
+      callbacks.add(task.createCallback());
+    }
+
+    int numThreads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      executor.submit(() -> {
+        for (int i = thread; i < numRecords; i += numThreads) {
+          callbacks.get(i).onCompletion(metadata(i), null);
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(1, completions.get());
+    for (int i = 0; i < numRecords; i++) {
+      assertEquals(i, results.get().get(i).getRecordMetadata().offset());
+    }
+  }
+
+  @Test
+  public void onCompletion_taskMonitorHeld_doesNotBlock() throws Exception {
+    AtomicInteger completions = new AtomicInteger();
+    ProduceTask task =
+        new ProduceTask(REQUEST, 1, newCallback(new AtomicReference<>(), completions));
+    Callback callback = task.createCallback();
+
+    CountDownLatch acked = new CountDownLatch(1);
+    synchronized (task) {
+      Thread ioThread = new Thread(() -> {
+        callback.onCompletion(metadata(0), null);
+        acked.countDown();
+      });
+      ioThread.start();
+      // The simulated I/O thread must be able to ack while another thread owns the task's monitor.
+      assertTrue(acked.await(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, completions.get());
+  }
+
+  @Test
+  public void onCompletion_lastRecord_releasesReservationBeforeCallback() {
+    ProduceBudget budget = new ProduceBudget(0, 0, 1);
+    ProduceRequest<byte[], byte[]> request =
+        new ProduceRequest<>(
+            Collections.singletonList(new ProduceRecord<>(null, new byte[10], null)),
+            /* keySchema= */ null,
+            /* keySchemaId= */ null,
+            /* valueSchema= */ null,
+            /* valueSchemaId= */ null);
+    ProduceBudget.Reservation reservation =
+        budget.acquire(EmbeddedFormat.BINARY, "topic", request);
+    AtomicReference<Long> inFlightOnCompletion = new AtomicReference<>();
+    ProduceTask task =
+        new ProduceTask(
+            request,
+            1,
+            (keySchemaId, valueSchemaId, results) ->
+                inFlightOnCompletion.set(budget.bytesInFlight(EmbeddedFormat.BINARY)),
+            reservation);
+    Callback callback = task.createCallback();
+    assertEquals(10, budget.bytesInFlight(EmbeddedFormat.BINARY));
+
+    callback.onCompletion(metadata(0), null);
+
+    assertEquals(Long.valueOf(0), inFlightOnCompletion.get());
+  }
+
+  @Test
+  public void onCompletion_withCompletionExecutor_runsCallbackOnExecutor() {
+    AtomicReference<List<RecordMetadataOrException>> results = new AtomicReference<>();
+    List<Runnable> handedOff = new ArrayList<>();
+    ProduceTask task =
+        new ProduceTask(
+            REQUEST,
+            1,
+            newCallback(results, new AtomicInteger()),
+            /* reservation= */ null,
+            handedOff::add);
+    Callback callback = task.createCallback();
+
+    callback.onCompletion(metadata(0), null);
+    assertNull(results.get());
+    assertEquals(1, handedOff.size());
+
+    handedOff.get(0).run();
+    assertEquals(0, results.get().get(0).getRecordMetadata().offset());
+  }
+
+  private static ProducerPool.ProduceRequestCallback newCallback(
+      AtomicReference<List<RecordMetadataOrException>> results, AtomicInteger completions) {
+    return (keySchemaId, valueSchemaId, recordResults) -> {
+      completions.incrementAndGet();
+      results.set(recordResults);
+    };
+  }
+
+  private static RecordMetadata metadata(long offset) {
+    return new RecordMetadata(new TopicPartition("topic", 0), offset, 0L, 0L, 0L, 0, 0);
+  }
+}
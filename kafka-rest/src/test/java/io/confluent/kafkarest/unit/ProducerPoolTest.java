@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.confluent.kafkarest.KafkaRestConfig;
+import io.confluent.kafkarest.ProducerPool;
+import io.confluent.kafkarest.entities.EmbeddedFormat;
+import io.confluent.kafkarest.entities.ProduceRecord;
+import io.confluent.kafkarest.entities.ProduceRequest;
+import io.confluent.rest.exceptions.RestConstraintViolationException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProducerPoolTest {
+
+  private ProducerPool pool;
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void newPool_createsNoProducers() throws Exception {
+    pool = new ProducerPool(config(new Properties()));
+
+    for (EmbeddedFormat format : EmbeddedFormat.values()) {
+      assertFalse(pool.isInitialized(format));
+      assertTrue(pool.metrics(format).isEmpty());
+    }
+  }
+
+  @Test
+  public void warmUp_createsOnlyConfiguredFormats() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(KafkaRestConfig.PRODUCER_WARMUP_FORMATS_CONFIG, "binary,avro");
+    pool = new ProducerPool(config(props));
+
+    pool.warmUp();
+
+    assertTrue(pool.isInitialized(EmbeddedFormat.BINARY));
+    assertTrue(pool.isInitialized(EmbeddedFormat.AVRO));
+    assertFalse(pool.isInitialized(EmbeddedFormat.JSON));
+    assertFalse(pool.isInitialized(EmbeddedFormat.JSONSCHEMA));
+    assertFalse(pool.isInitialized(EmbeddedFormat.PROTOBUF));
+    assertFalse(pool.metrics(EmbeddedFormat.BINARY).isEmpty());
+  }
+
+  @Test
+  public void warmUp_noConfiguredFormats_createsNoProducers() throws Exception {
+    pool = new ProducerPool(config(new Properties()));
+
+    pool.warmUp();
+
+    for (EmbeddedFormat format : EmbeddedFormat.values()) {
+      assertFalse(pool.isInitialized(format));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void produce_afterShutdown_throwsIllegalState() throws Exception {
+    ProducerPool closedPool = new ProducerPool(config(new Properties()));
+    closedPool.shutdown();
+
+    closedPool.produce(
+        "topic",
+        /* partition= */ null,
+        EmbeddedFormat.BINARY,
+        new ProduceRequest<>(
+            Collections.singletonList(new ProduceRecord<>(null, new byte[1], null)),
+            /* keySchema= */ null,
+            /* keySchemaId= */ null,
+            /* valueSchema= */ null,
+            /* valueSchemaId= */ null),
+        (keySchemaId, valueSchemaId, results) -> { });
+  }
+
+  @Test(expected = RestConstraintViolationException.class)
+  public void produce_unknownProfile_throwsConstraintViolation() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(KafkaRestConfig.PRODUCE_PROFILES_CONFIG, "bulk");
+    pool = new ProducerPool(config(props));
+
+    pool.produce(
+        "topic",
+        /* partition= */ null,
+        EmbeddedFormat.BINARY,
+        "unknown",
+        binaryRequest(),
+        (keySchemaId, valueSchemaId, results) -> { });
+  }
+
+  @Test
+  public void produce_profile_createsSeparateProducers() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(KafkaRestConfig.PRODUCE_PROFILES_CONFIG, "bulk");
+    // No broker is running, fail the send right away instead of waiting for metadata.
+    props.setProperty(KafkaRestConfig.PRODUCE_PROFILE_PREFIX + "bulk.max.block.ms", "1");
+    pool = new ProducerPool(config(props));
+
+    pool.produce(
+        "topic",
+        /* partition= */ null,
+        EmbeddedFormat.BINARY,
+        "bulk",
+        binaryRequest(),
+        (keySchemaId, valueSchemaId, results) -> { });
+
+    assertTrue(pool.isInitialized(EmbeddedFormat.BINARY, "bulk"));
+    assertFalse(pool.isInitialized(EmbeddedFormat.BINARY));
+    Map<MetricName, ? extends Metric> metrics = pool.metrics(EmbeddedFormat.BINARY, "bulk").get(0);
+    assertEquals(
+        "kafka-rest-binary-bulk",
+        metrics.keySet().iterator().next().tags().get("client-id"));
+  }
+
+  private static ProduceRequest<Object, byte[]> binaryRequest() {
+    return new ProduceRequest<>(
+        Collections.singletonList(new ProduceRecord<>(null, new byte[1], null)),
+        /* keySchema= */ null,
+        /* keySchemaId= */ null,
+        /* valueSchema= */ null,
+        /* valueSchemaId= */ null);
+  }
+
+  private static KafkaRestConfig config(Properties props) throws Exception {
+    props.setProperty(KafkaRestConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    return new KafkaRestConfig(props);
+  }
+}
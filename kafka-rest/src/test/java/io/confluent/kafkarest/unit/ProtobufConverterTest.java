@@ -23,6 +23,7 @@ import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.DynamicMessage;
 import io.confluent.kafka.schemaregistry.protobuf.ProtobufSchema;
 import io.confluent.kafkarest.TestUtils;
+import io.confluent.kafkarest.converters.ConversionException;
 import io.confluent.kafkarest.converters.ProtobufConverter;
 import io.confluent.kafkarest.converters.SchemaConverter;
 import org.junit.Test;
@@ -34,6 +35,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ProtobufConverterTest {
 
@@ -242,6 +244,97 @@ public class ProtobufConverterTest {
   }
 
 
+  @Test
+  public void testCompiledToProtobufMatchesGeneric() {
+    String json = "{\n"
+                  + "    \"test_str\": \"string\",\n"
+                  + "    \"testBool\": true,\n"
+                  + "    \"test_bytes\": \"aGVsbG8=\",\n"
+                  + "    \"test_double\": 800.25,\n"
+                  + "    \"test_float\": 23.4,\n"
+                  + "    \"test_fixed32\": 4294967295,\n"
+                  + "    \"test_fixed64\": 64,\n"
+                  + "    \"test_int32\": -32,\n"
+                  + "    \"test_int64\": 5000000000,\n"
+                  + "    \"test_sfixed32\": 32,\n"
+                  + "    \"test_sfixed64\": 64,\n"
+                  + "    \"test_sint32\": 32,\n"
+                  + "    \"test_sint64\": 64,\n"
+                  + "    \"test_uint32\": 32,\n"
+                  + "    \"test_uint64\": 64\n"
+                  + "}";
+
+    assertCompiledMatchesGeneric(json, recordSchema);
+    // Numbers as strings, unpadded base64 and unknown fields are left to the generic path.
+    assertCompiledMatchesGeneric(json.replace("5000000000", "\"5000000000\""), recordSchema);
+    assertCompiledMatchesGeneric(json.replace("aGVsbG8=", "aGVsbG8"), recordSchema);
+    assertCompiledMatchesGeneric(json.replace("}", ", \"unknown\": 1}"), recordSchema);
+    assertCompiledMatchesGeneric("{\"test_int32\": null}", recordSchema);
+    assertCompiledMatchesGeneric("{ \"test_array\": [\"one\", \"two\", \"three\"] }", arraySchema);
+    assertCompiledMatchesGeneric(
+        "{ \"test_map\": {\"first\": \"one\", \"second\": \"two\"} }", mapSchema);
+    assertCompiledMatchesGeneric("{\"name\": \"test string\"}", unionSchema);
+    assertCompiledMatchesGeneric("{\"name\": \"test string\", \"age\": 12}", unionSchema);
+    assertCompiledMatchesGeneric("{\"suit\": \"HEARTS\"}", enumSchema);
+    assertCompiledMatchesGeneric("{\"suit\": 3}", enumSchema);
+  }
+
+  @Test
+  public void testCompiledToProtobufNestedAndWellKnownTypes() {
+    ProtobufSchema schema = new ProtobufSchema(
+        "syntax = \"proto3\";\n"
+        + "\n"
+        + "import \"google/protobuf/timestamp.proto\";\n"
+        + "\n"
+        + "message Node {\n"
+        + "    string name = 1;\n"
+        + "    repeated Node children = 2;\n"
+        + "    map<int32, Node> by_id = 3;\n"
+        + "    google.protobuf.Timestamp created = 4;\n"
+        + "}\n");
+
+    assertCompiledMatchesGeneric(
+        "{\"name\": \"root\", \"children\": [{\"name\": \"a\"}, {\"name\": \"b\"}],"
+            + " \"byId\": {\"1\": {\"name\": \"c\"}}}",
+        schema);
+    assertCompiledMatchesGeneric(
+        "{\"name\": \"root\", \"created\": \"2020-01-01T00:00:00Z\"}", schema);
+  }
+
+  @Test
+  public void testCompiledToProtobufMissingRequiredField() {
+    ProtobufSchema schema = new ProtobufSchema(
+        "syntax = \"proto2\";\n"
+        + "\n"
+        + "message Person {\n"
+        + "    required string name = 1;\n"
+        + "    optional int32 age = 2;\n"
+        + "}\n");
+
+    assertCompiledMatchesGeneric("{\"name\": \"test string\", \"age\": 12}", schema);
+    // Rejected by the generic path rather than failing inside the plan.
+    assertCompiledMatchesGeneric("{\"age\": 12}", schema);
+  }
+
+  private static void assertCompiledMatchesGeneric(String json, ProtobufSchema schema) {
+    ProtobufConverter compiled = ProtobufConverter.compiled(10);
+    Object expected;
+    try {
+      expected = new ProtobufConverter().toObject(TestUtils.jsonTree(json), schema);
+    } catch (ConversionException e) {
+      try {
+        compiled.toObject(TestUtils.jsonTree(json), schema, 1);
+        fail("Expected conversion of " + json + " to fail");
+      } catch (ConversionException expectedException) {
+        // Expected
+      }
+      return;
+    }
+    // Twice, the second conversion uses the cached plan.
+    assertEquals(expected, compiled.toObject(TestUtils.jsonTree(json), schema, 1));
+    assertEquals(expected, compiled.toObject(TestUtils.jsonTree(json), schema, 1));
+  }
+
   @Test
   public void testRecordToJson() {
     DynamicMessage.Builder builder = recordSchema.newMessageBuilder();
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.avro.AvroSchemaProvider;
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.confluent.kafkarest.Errors;
+import io.confluent.kafkarest.ParsedSchemaCache;
+import io.confluent.kafkarest.SchemaResolver;
+import io.confluent.kafkarest.entities.SchemaRef;
+import io.confluent.kafkarest.mock.MockTime;
+import io.confluent.rest.exceptions.RestConstraintViolationException;
+import io.confluent.rest.exceptions.RestException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.easymock.EasyMock;
+import org.easymock.IExpectationSetters;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SchemaResolverTest {
+
+  private static final String SCHEMA = "\"int\"";
+
+  private KafkaAvroSerializer serializer;
+  private final List<Runnable> pending = new ArrayList<>();
+  private final Executor deferred = pending::add;
+
+  @Before
+  public void setUp() {
+    serializer = EasyMock.createMock(KafkaAvroSerializer.class);
+  }
+
+  @Test
+  public void resolve_knownSchemaText_completesWithoutLookup() throws Exception {
+    expectRegister().andReturn(1);
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(deferred);
+
+    resolver.resolve(serializer, "topic-value", null, SCHEMA);
+    runPending();
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> second =
+        resolver.resolve(serializer, "topic-value", null, SCHEMA);
+
+    assertTrue(second.isDone());
+    assertEquals(1, second.join().getId());
+    assertTrue(pending.isEmpty());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_concurrentRequestsForSameSchema_shareOneLookup() throws Exception {
+    expectRegister().andReturn(1);
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(deferred);
+
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> first =
+        resolver.resolve(serializer, "topic-value", null, SCHEMA);
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> second =
+        resolver.resolve(serializer, "topic-value", null, SCHEMA);
+
+    assertSame(first, second);
+    assertFalse(first.isDone());
+    assertEquals(1, pending.size());
+    assertEquals(1, resolver.sharedLookupCount());
+    runPending();
+    assertEquals(1, first.join().getId());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_byId_looksUpOnce() throws Exception {
+    EasyMock.expect(serializer.getSchemaById(7))
+        .andReturn(new AvroSchemaProvider().parseSchema(SCHEMA, new ArrayList<>()).get());
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(deferred);
+
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> first =
+        resolver.resolve(serializer, "topic-value", 7, null);
+    runPending();
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> second =
+        resolver.resolve(serializer, "topic-value", 7, null);
+
+    assertEquals(7, first.join().getId());
+    assertTrue(second.isDone());
+    assertSame(first.join().getSchema(), second.join().getSchema());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_invalidSchemaText_isRejectedAgainWithoutParsing() {
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(/* executor= */ null);
+
+    assertFailsWith(
+        RestConstraintViolationException.class,
+        resolver.resolve(serializer, "topic-value", null, "invalidSchema"));
+    assertEquals(0, resolver.invalidSchemaHitCount());
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> second =
+        resolver.resolve(serializer, "other-value", null, "invalidSchema");
+
+    assertFailsWith(RestConstraintViolationException.class, second);
+    assertEquals(1, resolver.invalidSchemaHitCount());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_registryFailure_isRetriedByNextRequest() throws Exception {
+    expectRegister().andThrow(new IOException("unavailable"));
+    expectRegister().andReturn(1);
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(/* executor= */ null);
+
+    RestException error =
+        assertFailsWith(
+            RestException.class, resolver.resolve(serializer, "topic-value", null, SCHEMA));
+    assertEquals(40801, error.getErrorCode());
+    assertEquals(1, resolver.resolve(serializer, "topic-value", null, SCHEMA).join().getId());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_executorFull_failsWithoutLookup() {
+    EasyMock.replay(serializer);
+    SchemaResolver resolver =
+        newResolver(
+            task -> {
+              throw new RejectedExecutionException();
+            });
+
+    RestException error =
+        assertFailsWith(
+            RestException.class, resolver.resolve(serializer, "topic-value", null, SCHEMA));
+
+    assertEquals(408, error.getStatus());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_noIdAndNoText_completesWithNull() {
+    SchemaResolver resolver = newResolver(deferred);
+
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> resolved =
+        resolver.resolve(serializer, "topic-key", null, null);
+
+    assertTrue(resolved.isDone());
+    assertNull(resolved.join());
+  }
+
+  @Test
+  public void resolve_latestVersion_isRefreshedAfterInterval() throws Exception {
+    SchemaRegistryClient registry = EasyMock.createMock(SchemaRegistryClient.class);
+    EasyMock.expect(registry.getLatestSchemaMetadata("topic-value"))
+        .andReturn(new SchemaMetadata(1, 1, SCHEMA));
+    EasyMock.expect(registry.getLatestSchemaMetadata("topic-value"))
+        .andReturn(new SchemaMetadata(2, 2, SCHEMA));
+    EasyMock.expect(serializer.getSchemaById(1)).andReturn(parse(SCHEMA));
+    EasyMock.expect(serializer.getSchemaById(2)).andReturn(parse(SCHEMA));
+    EasyMock.replay(registry, serializer);
+    MockTime time = new MockTime();
+    SchemaResolver resolver =
+        new SchemaResolver(
+            new AvroSchemaProvider(), new ParsedSchemaCache(10), 10, null, registry, 1000, time);
+    SchemaRef latest = SchemaRef.subject("topic-value", /* version= */ null);
+
+    assertEquals(1, resolver.resolve(serializer, "topic-value", null, null, latest).join().getId());
+    time.sleep(999);
+    assertEquals(1, resolver.resolve(serializer, "topic-value", null, null, latest).join().getId());
+    time.sleep(1);
+    // The stale ID is still used by the request that triggers the refresh.
+    assertEquals(1, resolver.resolve(serializer, "topic-value", null, null, latest).join().getId());
+    assertEquals(2, resolver.resolve(serializer, "topic-value", null, null, latest).join().getId());
+    EasyMock.verify(registry, serializer);
+  }
+
+  @Test
+  public void resolve_fingerprintOfKnownSchema_completesWithoutText() throws Exception {
+    expectRegister().andReturn(1);
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(/* executor= */ null);
+
+    resolver.resolve(serializer, "topic-value", null, SCHEMA).join();
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> resolved =
+        resolver.resolve(
+            serializer,
+            "topic-value",
+            null,
+            null,
+            SchemaRef.fingerprint(SchemaResolver.fingerprint(SCHEMA)));
+
+    assertTrue(resolved.isDone());
+    assertEquals(1, resolved.join().getId());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_fingerprintEvictedThenTextResent_completesAgain() throws Exception {
+    expectRegister().andReturn(1).andReturn(2);
+    EasyMock.replay(serializer);
+    // Remembers a single fingerprint, but parses both schemas.
+    SchemaResolver resolver =
+        new SchemaResolver(
+            new AvroSchemaProvider(), new ParsedSchemaCache(10), 1, /* executor= */ null);
+    SchemaRef ref = SchemaRef.fingerprint(SchemaResolver.fingerprint(SCHEMA));
+
+    resolver.resolve(serializer, "topic-value", null, SCHEMA).join();
+    resolver.resolve(serializer, "topic-value", null, "\"long\"").join();
+    assertFailsWith(
+        RestConstraintViolationException.class,
+        resolver.resolve(serializer, "topic-value", null, null, ref));
+    resolver.resolve(serializer, "topic-value", null, SCHEMA).join();
+    CompletableFuture<ParsedSchemaCache.SchemaAndId> resolved =
+        resolver.resolve(serializer, "topic-value", null, null, ref);
+
+    assertEquals(1, resolved.join().getId());
+    EasyMock.verify(serializer);
+  }
+
+  @Test
+  public void resolve_unknownFingerprint_failsWithUnknownFingerprint() {
+    EasyMock.replay(serializer);
+    SchemaResolver resolver = newResolver(deferred);
+
+    RestConstraintViolationException error =
+        assertFailsWith(
+            RestConstraintViolationException.class,
+            resolver.resolve(
+                serializer,
+                "topic-value",
+                null,
+                null,
+                SchemaRef.fingerprint(SchemaResolver.fingerprint(SCHEMA))));
+
+    assertEquals(Errors.UNKNOWN_SCHEMA_FINGERPRINT_ERROR_CODE, error.getErrorCode());
+    assertTrue(pending.isEmpty());
+    EasyMock.verify(serializer);
+  }
+
+  private IExpectationSetters<Integer> expectRegister() throws Exception {
+    return EasyMock.expect(
+        serializer.register(EasyMock.eq("topic-value"), EasyMock.isA(ParsedSchema.class)));
+  }
+
+  private static ParsedSchema parse(String schema) {
+    return new AvroSchemaProvider().parseSchema(schema, new ArrayList<>()).get();
+  }
+
+  private static SchemaResolver newResolver(Executor executor) {
+    return new SchemaResolver(new AvroSchemaProvider(), new ParsedSchemaCache(10), 10, executor);
+  }
+
+  private void runPending() {
+    List<Runnable> tasks = new ArrayList<>(pending);
+    pending.clear();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+
+  private static <T extends Throwable> T assertFailsWith(
+      Class<T> type, CompletableFuture<?> future) {
+    try {
+      future.join();
+      fail();
+      return null;
+    } catch (CompletionException e) {
+      assertTrue(type.isInstance(e.getCause()));
+      return type.cast(e.getCause());
+    }
+  }
+}
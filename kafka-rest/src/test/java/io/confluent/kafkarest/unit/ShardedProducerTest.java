@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package io.confluent.kafkarest.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.confluent.kafkarest.ShardedProducer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.Test;
+
+public class ShardedProducerTest {
+
+  @Test
+  public void singleShard_alwaysReturnsSameProducer() {
+    MockProducer<byte[], byte[]> producer = newMockProducer();
+    ShardedProducer<byte[], byte[]> sharded = new ShardedProducer<>(producer);
+
+    assertSame(producer, sharded.shardFor("topic-1", null));
+    assertSame(producer, sharded.shardFor("topic-1", 3));
+    assertSame(producer, sharded.shardFor("topic-2", 0));
+  }
+
+  @Test
+  public void samePartition_alwaysRoutedToSameShard() {
+    ShardedProducer<byte[], byte[]> sharded = new ShardedProducer<>(newMockProducers(8));
+
+    for (int partition = 0; partition < 100; partition++) {
+      Producer<byte[], byte[]> shard = sharded.shardFor("topic", partition);
+      for (int i = 0; i < 10; i++) {
+        assertSame(shard, sharded.shardFor("topic", partition));
+      }
+    }
+    assertSame(sharded.shardFor("topic", null), sharded.shardFor("topic", null));
+  }
+
+  @Test
+  public void partitions_spreadOverShards() {
+    ShardedProducer<byte[], byte[]> sharded = new ShardedProducer<>(newMockProducers(4));
+
+    Set<Producer<byte[], byte[]>> used = new HashSet<>();
+    for (int partition = 0; partition < 64; partition++) {
+      used.add(sharded.shardFor("topic", partition));
+    }
+    assertEquals(4, used.size());
+  }
+
+  @Test
+  public void keyedRecords_routedByTheirPartition() {
+    List<MockProducer<byte[], byte[]>> shards = newMockProducers(4, 8);
+    ShardedProducer<byte[], byte[]> sharded =
+        new ShardedProducer<>(shards, new ByteArraySerializer());
+
+    for (int i = 0; i < 100; i++) {
+      byte[] key = ("key-" + (i % 10)).getBytes(StandardCharsets.UTF_8);
+      sharded.send(new ProducerRecord<>("topic", key, new byte[0]), null);
+    }
+
+    Set<MockProducer<byte[], byte[]>> used = new HashSet<>();
+    for (MockProducer<byte[], byte[]> shard : shards) {
+      for (ProducerRecord<byte[], byte[]> record : shard.history()) {
+        int partition = Utils.toPositive(Utils.murmur2(record.key())) % 8;
+        assertEquals(Integer.valueOf(partition), record.partition());
+        assertSame(shard, sharded.shardFor("topic", partition));
+        used.add(shard);
+      }
+    }
+    assertTrue(used.size() > 1);
+  }
+
+  @Test
+  public void keylessRecords_spreadOverShards() {
+    List<MockProducer<byte[], byte[]>> shards = newMockProducers(4, 8);
+    ShardedProducer<byte[], byte[]> sharded =
+        new ShardedProducer<>(shards, new ByteArraySerializer());
+
+    for (int i = 0; i < 8; i++) {
+      sharded.send(new ProducerRecord<>("topic", null, new byte[0]), null);
+    }
+
+    for (MockProducer<byte[], byte[]> shard : shards) {
+      assertEquals(2, shard.history().size());
+    }
+  }
+
+  @Test
+  public void customPartitioner_routesByTopic() {
+    List<MockProducer<byte[], byte[]>> shards = newMockProducers(4, 8);
+    ShardedProducer<byte[], byte[]> sharded = new ShardedProducer<>(shards);
+
+    for (int i = 0; i < 10; i++) {
+      byte[] key = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+      sharded.send(new ProducerRecord<>("topic", key, new byte[0]), null);
+      sharded.send(new ProducerRecord<>("topic", null, new byte[0]), null);
+    }
+
+    MockProducer<?, ?> shard = (MockProducer<?, ?>) sharded.shardFor("topic", null);
+    assertEquals(20, shard.history().size());
+  }
+
+  @Test
+  public void keyedRecord_metadataTimesOut_failsThroughCallback() throws Exception {
+    TimeoutException error = new TimeoutException("no metadata");
+    List<MockProducer<byte[], byte[]>> shards = newMockProducers(2);
+    shards.set(
+        0,
+        new MockProducer<byte[], byte[]>(
+            true, new ByteArraySerializer(), new ByteArraySerializer()) {
+          @Override
+          public List<PartitionInfo> partitionsFor(String topic) {
+            throw error;
+          }
+        });
+    ShardedProducer<byte[], byte[]> sharded =
+        new ShardedProducer<>(shards, new ByteArraySerializer());
+    AtomicReference<Exception> reported = new AtomicReference<>();
+
+    Future<RecordMetadata> future =
+        sharded.send(
+            new ProducerRecord<>("topic", new byte[1], new byte[0]),
+            (metadata, exception) -> reported.set(exception));
+
+    assertSame(error, reported.get());
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertSame(error, e.getCause());
+    }
+    for (MockProducer<byte[], byte[]> shard : shards) {
+      assertTrue(shard.history().isEmpty());
+    }
+  }
+
+  @Test
+  public void close_closesAllShards() {
+    List<MockProducer<byte[], byte[]>> shards = newMockProducers(3);
+    ShardedProducer<byte[], byte[]> sharded = new ShardedProducer<>(shards);
+
+    sharded.close();
+
+    for (MockProducer<byte[], byte[]> shard : shards) {
+      assertTrue(shard.closed());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noShards_throwsIllegalArgument() {
+    new ShardedProducer<byte[], byte[]>(new ArrayList<Producer<byte[], byte[]>>());
+  }
+
+  private static List<MockProducer<byte[], byte[]>> newMockProducers(int count) {
+    List<MockProducer<byte[], byte[]>> producers = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      producers.add(newMockProducer());
+    }
+    return producers;
+  }
+
+  /**
+   * Returns {@code count} producers that know of a "topic" with {@code numPartitions} partitions.
+   */
+  private static List<MockProducer<byte[], byte[]>> newMockProducers(
+      int count, int numPartitions) {
+    Node node = new Node(1, "localhost", 9092);
+    List<PartitionInfo> partitions = new ArrayList<>();
+    for (int i = 0; i < numPartitions; i++) {
+      partitions.add(new PartitionInfo("topic", i, node, new Node[]{node}, new Node[]{node}));
+    }
+    Cluster cluster =
+        new Cluster(
+            "cluster",
+            Collections.singletonList(node),
+            partitions,
+            Collections.emptySet(),
+            Collections.emptySet());
+    List<MockProducer<byte[], byte[]>> producers = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      producers.add(
+          new MockProducer<>(
+              cluster,
+              true,
+              new DefaultPartitioner(),
+              new ByteArraySerializer(),
+              new ByteArraySerializer()));
+    }
+    return producers;
+  }
+
+  private static MockProducer<byte[], byte[]> newMockProducer() {
+    return new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+  }
+}
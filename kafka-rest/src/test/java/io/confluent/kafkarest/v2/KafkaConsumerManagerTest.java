@@ -21,8 +21,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import io.confluent.kafkarest.ConsumerReadCallback;
+import io.confluent.kafkarest.Errors;
 import io.confluent.kafkarest.KafkaRestConfig;
 import io.confluent.kafkarest.SystemTime;
 import io.confluent.kafkarest.entities.ConsumerInstanceConfig;
@@ -32,6 +34,8 @@ import io.confluent.kafkarest.entities.TopicPartitionOffset;
 import io.confluent.kafkarest.entities.v2.ConsumerOffsetCommitRequest;
 import io.confluent.kafkarest.entities.v2.ConsumerSubscriptionRecord;
 import io.confluent.rest.RestConfigException;
+import io.confluent.rest.exceptions.RestException;
+import io.confluent.rest.exceptions.RestNotFoundException;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
@@ -467,6 +471,119 @@ public class KafkaConsumerManagerTest {
         assertTrue(state.expiration > initialExpiration);
     }
 
+    @Test
+    public void testReadRecordsWithBlockingPollWaitsInPoll() throws Exception {
+        Properties props = setUpProperties();
+        props.setProperty(KafkaRestConfig.CONSUMER_POLL_BLOCK_MS_CONFIG, "200");
+        consumerManager.shutdown();
+        setUpConsumer(props);
+        List<ConsumerRecord<byte[], byte[]>> referenceRecords = bootstrapConsumer(consumer);
+
+        consumerManager.readRecords(groupName, consumer.cid(), BinaryKafkaConsumerState.class, -1, Long.MAX_VALUE,
+                new ConsumerReadCallback<byte[], byte[]>() {
+                    @Override
+                    public void onCompletion(
+                        List<ConsumerRecord<byte[], byte[]>> records, Exception e) {
+                        actualException = e;
+                        actualRecords = records;
+                        sawCallback = true;
+                    }
+                });
+
+        awaitRead();
+        assertTrue("Callback failed to fire", sawCallback);
+        assertNull("No exception in callback", actualException);
+        assertEquals("Records returned not as expected", referenceRecords, actualRecords);
+        assertEquals(200, consumer.maxPollTimeoutMs());
+        // Blocking reads are re-submitted right away instead of backing off.
+        assertEquals(0, consumerManager.delayedReadTasks.size());
+    }
+
+    @Test
+    public void testReadRecordsWithVirtualThreadExecutorMode() throws Exception {
+        Properties props = setUpProperties();
+        props.setProperty(KafkaRestConfig.CONSUMER_EXECUTOR_MODE_CONFIG,
+            KafkaRestConfig.CONSUMER_EXECUTOR_MODE_VIRTUAL);
+        consumerManager.shutdown();
+        setUpConsumer(props);
+        // The manager falls back to the thread pool, which the other tests already cover.
+        assumeTrue("Virtual threads are not available in this JVM", consumerManager.virtualThreads);
+        List<ConsumerRecord<byte[], byte[]>> referenceRecords = bootstrapConsumer(consumer);
+
+        consumerManager.readRecords(groupName, consumer.cid(), BinaryKafkaConsumerState.class, -1, Long.MAX_VALUE,
+                new ConsumerReadCallback<byte[], byte[]>() {
+                    @Override
+                    public void onCompletion(
+                        List<ConsumerRecord<byte[], byte[]>> records, Exception e) {
+                        actualException = e;
+                        actualRecords = records;
+                        sawCallback = true;
+                    }
+                });
+
+        awaitRead();
+        assertTrue("Callback failed to fire", sawCallback);
+        assertNull("No exception in callback", actualException);
+        assertEquals("Records returned not as expected", referenceRecords, actualRecords);
+    }
+
+    @Test
+    public void testCreateConsumerWithExistingNameFails() {
+        expectCreate(consumer);
+        ConsumerInstanceConfig instanceConfig =
+            new ConsumerInstanceConfig(
+                null, "instance", EmbeddedFormat.BINARY, null, null, null, null);
+        consumerManager.createConsumer(groupName, instanceConfig);
+        try {
+            consumerManager.createConsumer(groupName, instanceConfig);
+            fail("Creating a consumer with an existing name should fail");
+        } catch (RestException e) {
+            assertEquals(Errors.CONSUMER_ALREADY_EXISTS_ERROR_CODE, e.getErrorCode());
+        }
+        assertNotNull(consumerManager.getConsumerInstance(groupName, "instance"));
+    }
+
+    @Test
+    public void testDeletedConsumerIsNotFound() {
+        bootstrapConsumer(consumer);
+        consumerManager.deleteConsumer(groupName, consumer.cid());
+        try {
+            consumerManager.getConsumerInstance(groupName, consumer.cid());
+            fail("Looking up a deleted consumer should fail");
+        } catch (RestNotFoundException e) {
+            // expected
+        }
+        try {
+            consumerManager.deleteConsumer(groupName, consumer.cid());
+            fail("Deleting a consumer twice should fail");
+        } catch (RestNotFoundException e) {
+            // expected
+        }
+        assertTrue(consumer.closed());
+    }
+
+    @Test
+    public void testExpiredConsumerIsRemoved() throws Exception {
+        Properties props = setUpProperties();
+        props.setProperty(KafkaRestConfig.CONSUMER_INSTANCE_TIMEOUT_MS_CONFIG, "100");
+        consumerManager.shutdown();
+        setUpConsumer(props);
+        bootstrapConsumer(consumer);
+
+        // The expiration thread scans once a second.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!consumer.closed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue("Expired consumer was not closed", consumer.closed());
+        try {
+            consumerManager.getConsumerInstance(groupName, consumer.cid());
+            fail("Looking up an expired consumer should fail");
+        } catch (RestNotFoundException e) {
+            // expected
+        }
+    }
+
     private void awaitRead() throws InterruptedException {
         Thread.sleep((long) (Integer.parseInt(KafkaRestConfig.CONSUMER_REQUEST_TIMEOUT_MS_DEFAULT) * 1.10));
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Confluent Inc.
+ *
+ * Licensed under the Confluent Community License (the "License"); you may not use
+ * this file except in compliance with the License.  You may obtain a copy of the
+ * License at
+ *
+ * http://www.confluent.io/confluent-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package io.confluent.kafkarest.v2;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.confluent.kafkarest.ConsumerInstanceId;
+import io.confluent.kafkarest.ConsumerReadCallback;
+import io.confluent.kafkarest.ConsumerRecordAndSize;
+import io.confluent.kafkarest.KafkaRestConfig;
+import io.confluent.kafkarest.SystemTime;
+import io.confluent.kafkarest.entities.ConsumerRecord;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KafkaConsumerReadTaskTest {
+
+    private static final String TOPIC = "topic";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    private static final int RECORD_SIZE = 100;
+
+    private MockConsumer<byte[], byte[]> consumer;
+    private CountingConsumerState state;
+
+    private List<ConsumerRecord<byte[], byte[]>> actualRecords;
+    private Exception actualException;
+
+    @Before
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(KafkaRestConfig.BOOTSTRAP_SERVERS_CONFIG, "PLAINTEXT://hostname:9092");
+        KafkaRestConfig config = new KafkaRestConfig(props, new SystemTime());
+
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST, "group");
+        consumer.assign(singletonList(PARTITION));
+        consumer.updateBeginningOffsets(singletonMap(PARTITION, 0L));
+        for (int offset = 0; offset < 3; offset++) {
+            consumer.addRecord(
+                new org.apache.kafka.clients.consumer.ConsumerRecord<>(
+                    TOPIC, 0, offset, null, new byte[RECORD_SIZE]));
+        }
+        state = new CountingConsumerState(config, consumer);
+    }
+
+    @Test
+    public void doPartialRead_recordExceedsMaxBytes_convertsRecordOnce() throws Exception {
+        // Fits the first two records, the third one is left for the next read.
+        read(RECORD_SIZE * 5 / 2);
+        assertNull(actualException);
+        assertEquals(2, actualRecords.size());
+
+        read(RECORD_SIZE * 3 / 2);
+        assertNull(actualException);
+        assertEquals(1, actualRecords.size());
+        assertEquals(2, actualRecords.get(0).getOffset());
+
+        assertEquals(3, state.conversions.size());
+        for (Map.Entry<Long, Integer> conversions : state.conversions.entrySet()) {
+            assertEquals(
+                "Conversions of record " + conversions.getKey(), 1, (int) conversions.getValue());
+        }
+    }
+
+    @Test
+    public void doPartialRead_recordExceedsMaxBytesRepeatedly_convertsRecordOnce()
+        throws Exception {
+        read(RECORD_SIZE * 3 / 2);
+        assertEquals(1, actualRecords.size());
+
+        // The second record does not fit in these reads at all.
+        read(RECORD_SIZE / 2);
+        assertTrue(actualRecords.isEmpty());
+        read(RECORD_SIZE / 2);
+        assertTrue(actualRecords.isEmpty());
+
+        read(RECORD_SIZE * 3 / 2);
+        assertEquals(1, actualRecords.size());
+        assertEquals(1, actualRecords.get(0).getOffset());
+
+        assertEquals(1, (int) state.conversions.get(1L));
+    }
+
+    private void read(long maxBytes) throws InterruptedException {
+        actualRecords = null;
+        actualException = null;
+        KafkaConsumerReadTask<byte[], byte[], byte[], byte[]> task =
+            new KafkaConsumerReadTask<>(
+                state,
+                /* timeout= */ 10,
+                maxBytes,
+                new ConsumerReadCallback<byte[], byte[]>() {
+                    @Override
+                    public void onCompletion(
+                        List<ConsumerRecord<byte[], byte[]>> records, Exception e) {
+                        actualRecords = records;
+                        actualException = e;
+                    }
+                });
+        while (!task.isDone()) {
+            task.doPartialRead();
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class CountingConsumerState
+        extends KafkaConsumerState<byte[], byte[], byte[], byte[]> {
+
+        private final Map<Long, Integer> conversions = new HashMap<>();
+
+        private CountingConsumerState(
+            KafkaRestConfig config, MockConsumer<byte[], byte[]> consumer) {
+            super(config, new ConsumerInstanceId("group", "instance"), consumer);
+        }
+
+        @Override
+        public ConsumerRecordAndSize<byte[], byte[]> createConsumerRecord(
+            org.apache.kafka.clients.consumer.ConsumerRecord<byte[], byte[]> record) {
+            conversions.merge(record.offset(), 1, Integer::sum);
+            return new ConsumerRecordAndSize<>(
+                new ConsumerRecord<>(
+                    record.topic(), record.key(), record.value(), record.partition(),
+                    record.offset()),
+                record.value().length);
+        }
+    }
+}
@@ -16,6 +16,7 @@ package io.confluent.kafkarest.v2;
 
 import static java.util.Collections.unmodifiableMap;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -23,6 +24,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
 import org.apache.kafka.clients.consumer.OffsetResetStrategy;
 import org.apache.kafka.common.TopicPartition;
@@ -34,6 +36,8 @@ public class MockConsumer<K, V> extends org.apache.kafka.clients.consumer.MockCo
     private final Map<TopicPartition, SortedSet<OffsetAndTimestamp>> offsetForTimes =
         new HashMap<>();
 
+    private volatile long maxPollTimeoutMs = 0;
+
     MockConsumer(OffsetResetStrategy offsetResetStrategy, String groupName) {
         super(offsetResetStrategy);
         this.groupName = groupName;
@@ -47,6 +51,19 @@ public class MockConsumer<K, V> extends org.apache.kafka.clients.consumer.MockCo
         this.cid = cid;
     }
 
+    /**
+     * Returns the longest timeout poll was called with.
+     */
+    long maxPollTimeoutMs() {
+        return maxPollTimeoutMs;
+    }
+
+    @Override
+    public synchronized ConsumerRecords<K, V> poll(Duration timeout) {
+        maxPollTimeoutMs = Math.max(maxPollTimeoutMs, timeout.toMillis());
+        return super.poll(timeout);
+    }
+
     synchronized void updateOffsetForTime(
         String topic, int partition, long offset, Instant timestamp) {
         SortedSet<OffsetAndTimestamp> offsets =